@@ -40,7 +40,6 @@ import jetbrains.jetpad.cell.trait.CellTrait;
 import jetbrains.jetpad.cell.trait.CellTraitEventSpec;
 import jetbrains.jetpad.cell.trait.CellTraitPropertySpec;
 import jetbrains.jetpad.values.Color;
-import jetbrains.jetpad.model.util.ListMap;
 
 import java.util.*;
 
@@ -55,6 +54,7 @@ public abstract class Cell implements Composite<Cell>, HasVisibility, HasFocusab
   public static final CellPropertySpec<Cell> LEFT_POPUP = new CellPropertySpec<Cell>("leftPopup");
   public static final CellPropertySpec<Cell> RIGHT_POPUP = new CellPropertySpec<Cell>("rightPopup");
 
+  private static final EventPriority[] PRIORITIES = EventPriority.values();
   private static final CellPropertySpec<Cell>[] POPUP_SPECS = new CellPropertySpec[]{LEFT_POPUP, RIGHT_POPUP, BOTTOM_POPUP, FRONT_POPUP};
 
   public static final CellPropertySpec<Boolean> VISIBLE = new CellPropertySpec<Boolean>("visible", true);
@@ -69,10 +69,12 @@ public abstract class Cell implements Composite<Cell>, HasVisibility, HasFocusab
   }
 
   private CellTrait[] myCellTraits = CellTrait.EMPTY_ARRAY;
-  private List<Cell> myChildren;
+  private ChildList myChildren;
   private CellContainer myContainer;
   private Cell myParent;
-  private ListMap<CellPropertySpec<?>, Object> myProperties;
+  private int myBooleanMask;
+  private int myBooleanValues;
+  private PropertySlots myProperties;
   private Listeners<CellListener> myListeners;
 
   protected Cell() {
@@ -140,8 +142,10 @@ public abstract class Cell implements Composite<Cell>, HasVisibility, HasFocusab
 
   private <EventT extends Event> void dispatchStep(EventT e, CellEventSpec<EventT> spec) {
     if (spec == CellEventSpec.KEY_PRESSED || spec == CellEventSpec.KEY_RELEASED || spec == CellEventSpec.KEY_TYPED) {
-      for (EventPriority p : EventPriority.values()) {
+      for (EventPriority p : PRIORITIES) {
         for (CellTrait t : myCellTraits) {
+          if (!t.getHandledEvents().contains(spec)) continue;
+
           if (p == EventPriority.LOW) {
             if (spec == CellEventSpec.KEY_PRESSED) {
               t.onKeyPressedLowPriority(this, (KeyEvent) e);
@@ -164,6 +168,8 @@ public abstract class Cell implements Composite<Cell>, HasVisibility, HasFocusab
       }
     } else {
       for (CellTrait t : myCellTraits) {
+        if (!t.getHandledEvents().contains(spec)) continue;
+
         if (spec == CellEventSpec.FOCUS_GAINED) {
           t.onFocusGained(this, (FocusEvent) e);
         } else if (spec == CellEventSpec.FOCUS_LOST) {
@@ -290,10 +296,16 @@ public abstract class Cell implements Composite<Cell>, HasVisibility, HasFocusab
   }
 
   public <ValueT> ValueT get(CellPropertySpec<ValueT> prop) {
-    if (myProperties == null || !myProperties.containsKey(prop)) {
+    int bit = prop.booleanBit();
+    if ((myBooleanMask & bit) != 0) {
+      return (ValueT) (Boolean) ((myBooleanValues & bit) != 0);
+    }
+
+    int index = propertyIndex(prop);
+    if (index < 0) {
       return getDefaultValue(prop);
     }
-    return (ValueT) myProperties.get(prop);
+    return (ValueT) myProperties.valueAt(index);
   }
 
   public <ValueT> Registration set(final CellPropertySpec<ValueT> prop, ValueT value) {
@@ -306,15 +318,9 @@ public abstract class Cell implements Composite<Cell>, HasVisibility, HasFocusab
     beforePropertySet(prop, event);
 
     if (Objects.equal(value, getDefaultValue(prop))) {
-      myProperties.remove(prop);
-      if (myProperties.isEmpty()) {
-        myProperties = null;
-      }
+      removeValue(prop);
     } else {
-      if (myProperties == null) {
-        myProperties = new ListMap<CellPropertySpec<?>, Object>();
-      }
-      myProperties.put(prop, value);
+      putValue(prop, value);
     }
 
     propertySet(prop, event);
@@ -345,6 +351,41 @@ public abstract class Cell implements Composite<Cell>, HasVisibility, HasFocusab
     };
   }
 
+  private int propertyIndex(CellPropertySpec<?> prop) {
+    if (myProperties == null) return -1;
+    return myProperties.indexOf(prop.slot());
+  }
+
+  private void putValue(CellPropertySpec<?> prop, Object value) {
+    int bit = prop.booleanBit();
+    if (bit != 0 && value instanceof Boolean) {
+      removeValue(prop);
+      myBooleanMask |= bit;
+      if ((Boolean) value) {
+        myBooleanValues |= bit;
+      } else {
+        myBooleanValues &= ~bit;
+      }
+      return;
+    }
+
+    myBooleanMask &= ~bit;
+    if (myProperties == null) {
+      myProperties = new PropertySlots();
+    }
+    myProperties.put(prop.slot(), value);
+  }
+
+  private void removeValue(CellPropertySpec<?> prop) {
+    myBooleanMask &= ~prop.booleanBit();
+
+    if (myProperties == null) return;
+    myProperties.remove(prop.slot());
+    if (myProperties.isEmpty()) {
+      myProperties = null;
+    }
+  }
+
   private <ValueT> ValueT getDefaultValue(CellPropertySpec<ValueT> prop) {
     for (CellTrait t : myCellTraits) {
       Object result = t.get(this, prop);
@@ -410,7 +451,7 @@ public abstract class Cell implements Composite<Cell>, HasVisibility, HasFocusab
     if (myProperties == null) return Collections.emptyList();
     List<Cell> result = new ArrayList<Cell>();
     for (CellPropertySpec<Cell> ps : POPUP_SPECS) {
-      Cell cell = (Cell) myProperties.get(ps);
+      Cell cell = (Cell) myProperties.get(ps.slot());
       if (cell != null) {
         result.add(cell);
       }
@@ -548,7 +589,30 @@ public abstract class Cell implements Composite<Cell>, HasVisibility, HasFocusab
 
   private class ChildList extends ObservableArrayList<Cell> {
     @Override
-    public void add(final int index, final Cell item) {
+    public void add(int index, Cell item) {
+      CollectionItemEvent<Cell> event = addChild(index, item);
+
+      if (myContainer != null) {
+        myContainer.viewChildAdded(Cell.this, event);
+      }
+    }
+
+    @Override
+    public boolean addAll(int index, Collection<? extends Cell> items) {
+      if (items.isEmpty()) return false;
+
+      List<Cell> added = new ArrayList<Cell>(items);
+      for (int i = 0; i < added.size(); i++) {
+        addChild(index + i, added.get(i));
+      }
+
+      if (myContainer != null) {
+        myContainer.viewChildrenAdded(Cell.this, index, added);
+      }
+      return true;
+    }
+
+    private CollectionItemEvent<Cell> addChild(int index, Cell item) {
       if (item.parent().get() != null) throw new IllegalStateException();
 
       final CollectionItemEvent<Cell> event = new CollectionItemEvent<Cell>(item, index, true);
@@ -565,10 +629,6 @@ public abstract class Cell implements Composite<Cell>, HasVisibility, HasFocusab
 
       onChildAdded(event);
 
-      if (myContainer != null) {
-        myContainer.viewChildAdded(Cell.this, event);
-      }
-
       if (myListeners != null) {
         myListeners.fire(new ListenerCaller<CellListener>() {
           @Override
@@ -577,10 +637,35 @@ public abstract class Cell implements Composite<Cell>, HasVisibility, HasFocusab
           }
         });
       }
+      return event;
     }
 
     @Override
-    public Cell remove(final int index) {
+    public Cell remove(int index) {
+      CollectionItemEvent<Cell> event = removeChild(index);
+
+      if (myContainer != null) {
+        myContainer.viewChildRemoved(Cell.this, event);
+      }
+
+      return event.getItem();
+    }
+
+    @Override
+    protected void removeRange(int fromIndex, int toIndex) {
+      if (fromIndex >= toIndex) return;
+
+      List<Cell> removed = new ArrayList<Cell>(toIndex - fromIndex);
+      for (int i = fromIndex; i < toIndex; i++) {
+        removed.add(removeChild(fromIndex).getItem());
+      }
+
+      if (myContainer != null) {
+        myContainer.viewChildrenRemoved(Cell.this, fromIndex, removed);
+      }
+    }
+
+    private CollectionItemEvent<Cell> removeChild(int index) {
       final Cell item = get(index);
       final CollectionItemEvent<Cell> event = new CollectionItemEvent<Cell>(item, index, false);
 
@@ -592,7 +677,7 @@ public abstract class Cell implements Composite<Cell>, HasVisibility, HasFocusab
 
       item.changeParent(null);
 
-      Cell result = super.remove(index);
+      super.remove(index);
 
       if (isAttached()) {
         item.detach();
@@ -600,10 +685,6 @@ public abstract class Cell implements Composite<Cell>, HasVisibility, HasFocusab
 
       onChildRemoved(event);
 
-      if (myContainer != null) {
-        myContainer.viewChildRemoved(Cell.this, event);
-      }
-
       if (myListeners != null) {
         myListeners.fire(new ListenerCaller<CellListener>() {
           @Override
@@ -612,8 +693,7 @@ public abstract class Cell implements Composite<Cell>, HasVisibility, HasFocusab
           }
         });
       }
-
-      return result;
+      return event;
     }
   }
 
@@ -642,6 +722,19 @@ public abstract class Cell implements Composite<Cell>, HasVisibility, HasFocusab
       myChildren.add(index, element);
     }
 
+    @Override
+    public boolean addAll(Collection<? extends Cell> elements) {
+      return addAll(size(), elements);
+    }
+
+    @Override
+    public boolean addAll(int index, Collection<? extends Cell> elements) {
+      if (index < 0 || index > size()) throw new IndexOutOfBoundsException();
+      if (elements.isEmpty()) return false;
+      ensureChildrenInitialized();
+      return myChildren.addAll(index, elements);
+    }
+
     private void ensureChildrenInitialized() {
       if (myChildren == null) {
         myChildren = new ChildList();
@@ -658,6 +751,16 @@ public abstract class Cell implements Composite<Cell>, HasVisibility, HasFocusab
       return result;
     }
 
+    @Override
+    protected void removeRange(int fromIndex, int toIndex) {
+      if (fromIndex == toIndex) return;
+      if (myChildren == null) throw new IndexOutOfBoundsException();
+      myChildren.removeRange(fromIndex, toIndex);
+      if (myChildren.isEmpty()) {
+        myChildren = null;
+      }
+    }
+
     @Override
     public Registration addListener(final CollectionListener<Cell> l) {
       return Cell.this.addListener(new CellAdapter() {
@@ -39,12 +39,24 @@ public class CellContainer {
     }
   };
 
+  private static final KeyMap<ContainerAction> CONTAINER_KEYS = new KeyMap<ContainerAction>()
+    .bind(ContainerAction.COPY, Key.C, ModifierKey.CONTROL)
+    .bind(ContainerAction.COPY, Key.C, ModifierKey.META)
+    .bind(ContainerAction.CUT, Key.X, ModifierKey.CONTROL)
+    .bind(ContainerAction.CUT, Key.X, ModifierKey.META)
+    .bind(ContainerAction.PASTE, Key.V, ModifierKey.CONTROL)
+    .bind(ContainerAction.PASTE, Key.V, ModifierKey.META)
+    .bind(ContainerAction.COMPLETE, Key.SPACE, ModifierKey.CONTROL);
+
   public final Property<Cell> focusedCell;
   public final RootCell root = new RootCell(this);
 
   private List<Cell> myPopups = new ArrayList<Cell>();
   private Listeners<CellContainerListener> myListeners = new Listeners<CellContainerListener>();
   private boolean myDispatching;
+  private boolean myChangingFocus;
+  private List<Runnable> myAfterFocusChange;
+  private Map<Cell, Map<CellPropertySpec<?>, Object>> myChangedProperties;
   private CellContainerPeer myCellContainerPeer = CellContainerPeer.NULL;
 
   private String myLastSeenText;
@@ -64,19 +76,31 @@ public class CellContainer {
 
         FocusEvent event =  new FocusEvent(oldValue, value);
 
-        if (oldValue != null) {
-          oldValue.set(Cell.FOCUSED, false);
-        }
-        super.set(value);
-        if (oldValue != null) {
-          dispatch(oldValue, event, CellEventSpec.FOCUS_LOST);
-        }
-        if (value != null) {
-          dispatch(value, event, CellEventSpec.FOCUS_GAINED);
+        boolean outerChange = !myChangingFocus;
+        myChangingFocus = true;
+        try {
+          if (oldValue != null) {
+            oldValue.set(Cell.FOCUSED, false);
+          }
+          super.set(value);
+          if (oldValue != null) {
+            dispatch(oldValue, event, CellEventSpec.FOCUS_LOST);
+          }
+          if (value != null) {
+            dispatch(value, event, CellEventSpec.FOCUS_GAINED);
+          }
+
+          if (value != null) {
+            value.set(Cell.FOCUSED, true);
+          }
+        } finally {
+          if (outerChange) {
+            myChangingFocus = false;
+          }
         }
 
-        if (value != null) {
-          value.set(Cell.FOCUSED, true);
+        if (outerChange) {
+          runAfterFocusChange();
         }
       }
     };
@@ -100,25 +124,26 @@ public class CellContainer {
   }
 
   public void keyPressed(KeyEvent e) {
-    if ((e.is(Key.C, ModifierKey.CONTROL) || e.is(Key.C, ModifierKey.META))) {
+    ContainerAction action = CONTAINER_KEYS.get(e);
+    if (action == ContainerAction.COPY) {
       copy(new CopyCutEvent(false));
       e.consume();
       return;
     }
 
-    if ((e.is(Key.X, ModifierKey.CONTROL) || e.is(Key.X, ModifierKey.META))) {
+    if (action == ContainerAction.CUT) {
       cut(new CopyCutEvent(true));
       e.consume();
       return;
     }
 
-    if ((e.is(Key.V, ModifierKey.CONTROL) || e.is(Key.V, ModifierKey.META))) {
+    if (action == ContainerAction.PASTE) {
       paste(new PasteEvent(myContent));
       e.consume();
       return;
     }
 
-    if (e.is(Key.SPACE, ModifierKey.CONTROL)) {
+    if (action == ContainerAction.COMPLETE) {
       CompletionEvent event = new CompletionEvent(false);
       complete(event);
       if (event.isConsumed()) {
@@ -240,6 +265,10 @@ public class CellContainer {
   /**
    * Executes a model related command. This method notifies CellContainerListener around the r.run() call.
    * For example, CellContainerListeners can save UI state, record undoable actions, and do other stuff.
+   * Property changes which happen during a command are delivered to listeners once per cell and property,
+   * right before onAfterInputEventHandled(), or earlier if the peer is accessed or children are added or removed.
+   * Changes which are reverted before the end of the command and changes of cells which were detached during it
+   * aren't delivered at all. If the command throws an exception, changes made before it are still delivered.
    */
   public void executeCommand(Runnable r) {
     if (myDispatching) {
@@ -252,9 +281,22 @@ public class CellContainer {
           l.onBeforeInputEventHandled();
         }
       });
+      boolean completed = false;
       try {
         r.run();
+        completed = true;
       } finally {
+        if (completed) {
+          firePropertyChanges();
+        } else {
+          //changes made before the exception aren't rolled back, so listeners should still see them
+          try {
+            firePropertyChanges();
+          } catch (RuntimeException e) {
+            //the exception thrown by the command is more important
+            myChangedProperties = null;
+          }
+        }
         myListeners.fire(new ListenerCaller<CellContainerListener>() {
           @Override
           public void call(CellContainerListener l) {
@@ -266,6 +308,30 @@ public class CellContainer {
     }
   }
 
+  /**
+   * Runs r when the focus change which is in progress is complete, e.g. to move focus from a focus handler,
+   * where other cells aren't yet notified about the current change. Outside of a focus change, r is run right away.
+   */
+  public void afterFocusChange(Runnable r) {
+    if (!myChangingFocus) {
+      r.run();
+      return;
+    }
+    if (myAfterFocusChange == null) {
+      myAfterFocusChange = new ArrayList<Runnable>();
+    }
+    myAfterFocusChange.add(r);
+  }
+
+  private void runAfterFocusChange() {
+    List<Runnable> actions = myAfterFocusChange;
+    myAfterFocusChange = null;
+    if (actions == null) return;
+    for (Runnable action : actions) {
+      action.run();
+    }
+  }
+
   void viewAdded(Cell c) {
     for (Cell p : c.popups()) {
       myPopups.add(p);
@@ -279,6 +345,22 @@ public class CellContainer {
   }
 
   void viewPropertyChanged(final Cell cell, final CellPropertySpec<?> prop, final PropertyChangeEvent<?> change) {
+    if (myDispatching && !Cell.isPopupProp(prop)) {
+      if (myChangedProperties == null) {
+        myChangedProperties = new LinkedHashMap<Cell, Map<CellPropertySpec<?>, Object>>();
+      }
+      Map<CellPropertySpec<?>, Object> cellChanges = myChangedProperties.get(cell);
+      if (cellChanges == null) {
+        cellChanges = new LinkedHashMap<CellPropertySpec<?>, Object>();
+        myChangedProperties.put(cell, cellChanges);
+      }
+      if (!cellChanges.containsKey(prop)) {
+        cellChanges.put(prop, change.getOldValue());
+      }
+      return;
+    }
+
+    firePropertyChanges();
     myListeners.fire(new ListenerCaller<CellContainerListener>() {
       @Override
       public void call(CellContainerListener l) {
@@ -287,7 +369,33 @@ public class CellContainer {
     });
   }
 
+  private void firePropertyChanges() {
+    while (myChangedProperties != null) {
+      Map<Cell, Map<CellPropertySpec<?>, Object>> changes = myChangedProperties;
+      myChangedProperties = null;
+      for (Map.Entry<Cell, Map<CellPropertySpec<?>, Object>> cellChanges : changes.entrySet()) {
+        final Cell cell = cellChanges.getKey();
+        if (cell.container() != this) continue;
+        for (Map.Entry<CellPropertySpec<?>, Object> propChange : cellChanges.getValue().entrySet()) {
+          final CellPropertySpec<?> prop = propChange.getKey();
+          Object oldValue = propChange.getValue();
+          Object newValue = cell.get(prop);
+          if (Objects.equal(oldValue, newValue)) continue;
+
+          final PropertyChangeEvent<Object> change = new PropertyChangeEvent<Object>(oldValue, newValue);
+          myListeners.fire(new ListenerCaller<CellContainerListener>() {
+            @Override
+            public void call(CellContainerListener l) {
+              l.onViewPropertyChanged(cell, prop, change);
+            }
+          });
+        }
+      }
+    }
+  }
+
   void viewChildAdded(final Cell cell, final CollectionItemEvent<Cell> change) {
+    firePropertyChanges();
     myListeners.fire(new ListenerCaller<CellContainerListener>() {
       @Override
       public void call(CellContainerListener l) {
@@ -297,6 +405,7 @@ public class CellContainer {
   }
 
   void viewChildRemoved(final Cell cell, final CollectionItemEvent<Cell> change) {
+    firePropertyChanges();
     myListeners.fire(new ListenerCaller<CellContainerListener>() {
       @Override
       public void call(CellContainerListener l) {
@@ -305,6 +414,26 @@ public class CellContainer {
     });
   }
 
+  void viewChildrenAdded(final Cell cell, final int index, final List<Cell> children) {
+    firePropertyChanges();
+    myListeners.fire(new ListenerCaller<CellContainerListener>() {
+      @Override
+      public void call(CellContainerListener l) {
+        l.onChildrenAdded(cell, index, children);
+      }
+    });
+  }
+
+  void viewChildrenRemoved(final Cell cell, final int index, final List<Cell> children) {
+    firePropertyChanges();
+    myListeners.fire(new ListenerCaller<CellContainerListener>() {
+      @Override
+      public void call(CellContainerListener l) {
+        l.onChildrenRemoved(cell, index, children);
+      }
+    });
+  }
+
   void popupAdded(Cell c) {
     myPopups.add(c);
   }
@@ -318,6 +447,7 @@ public class CellContainer {
   }
 
   CellContainerPeer getCellContainerPeer() {
+    firePropertyChanges();
     return myCellContainerPeer;
   }
 
@@ -333,4 +463,8 @@ public class CellContainer {
   public interface State {
     void restore();
   }
-}
\ No newline at end of file
+
+  private enum ContainerAction {
+    COPY, CUT, PASTE, COMPLETE
+  }
+}
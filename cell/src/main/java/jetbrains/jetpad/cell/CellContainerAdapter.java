@@ -18,6 +18,8 @@ package jetbrains.jetpad.cell;
 import jetbrains.jetpad.model.collections.CollectionItemEvent;
 import jetbrains.jetpad.model.property.PropertyChangeEvent;
 
+import java.util.List;
+
 public class CellContainerAdapter implements CellContainerListener {
   @Override
   public void onBeforeInputEventHandled() {
@@ -38,4 +40,18 @@ public class CellContainerAdapter implements CellContainerListener {
   @Override
   public void onChildRemoved(Cell parent, CollectionItemEvent<Cell> change) {
   }
+
+  @Override
+  public void onChildrenAdded(Cell parent, int index, List<Cell> children) {
+    for (int i = 0; i < children.size(); i++) {
+      onChildAdded(parent, new CollectionItemEvent<Cell>(children.get(i), index + i, true));
+    }
+  }
+
+  @Override
+  public void onChildrenRemoved(Cell parent, int index, List<Cell> children) {
+    for (Cell child : children) {
+      onChildRemoved(parent, new CollectionItemEvent<Cell>(child, index, false));
+    }
+  }
 }
\ No newline at end of file
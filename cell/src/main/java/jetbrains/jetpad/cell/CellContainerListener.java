@@ -18,6 +18,8 @@ package jetbrains.jetpad.cell;
 import jetbrains.jetpad.model.collections.CollectionItemEvent;
 import jetbrains.jetpad.model.property.PropertyChangeEvent;
 
+import java.util.List;
+
 public interface CellContainerListener {
   void onBeforeInputEventHandled();
   void onAfterInputEventHandled();
@@ -25,4 +27,15 @@ public interface CellContainerListener {
   void onViewPropertyChanged(Cell cell, CellPropertySpec<?> prop, PropertyChangeEvent<?> change);
   void onChildAdded(Cell parent, CollectionItemEvent<Cell> change);
   void onChildRemoved(Cell parent, CollectionItemEvent<Cell> change);
+
+  /**
+   * Fired once for a range added with addAll instead of onChildAdded for each of its items
+   */
+  void onChildrenAdded(Cell parent, int index, List<Cell> children);
+
+  /**
+   * Fired once for a range removed with removeRange (e.g. clear() or subList().clear())
+   * instead of onChildRemoved for each of its items
+   */
+  void onChildrenRemoved(Cell parent, int index, List<Cell> children);
 }
\ No newline at end of file
@@ -18,8 +18,13 @@ package jetbrains.jetpad.cell;
 import com.google.common.base.Function;
 
 public class CellPropertySpec<ValueT> {
+  private static int ourSlotCount;
+  private static int ourBooleanBitCount;
+
   private String myName;
   private Function<Cell, ValueT> myDefaultValue;
+  private final int mySlot;
+  private final int myBooleanBit;
 
   public CellPropertySpec(String name) {
     this(name, (ValueT) null);
@@ -31,12 +36,18 @@ public class CellPropertySpec<ValueT> {
       public ValueT apply(Cell cell) {
         return defaultValue;
       }
-    });
+    }, defaultValue instanceof Boolean);
   }
 
   public CellPropertySpec(String name, Function<Cell, ValueT> defaultValue) {
+    this(name, defaultValue, false);
+  }
+
+  private CellPropertySpec(String name, Function<Cell, ValueT> defaultValue, boolean isBoolean) {
     myName = name;
     myDefaultValue = defaultValue;
+    mySlot = nextSlot();
+    myBooleanBit = isBoolean ? nextBooleanBit() : 0;
   }
 
   @Override
@@ -47,4 +58,24 @@ public class CellPropertySpec<ValueT> {
   public ValueT getDefault(Cell c) {
     return myDefaultValue.apply(c);
   }
+
+  int slot() {
+    return mySlot;
+  }
+
+  /**
+   * Bit in Cell's boolean storage or 0 if values of this property are stored as objects
+   */
+  int booleanBit() {
+    return myBooleanBit;
+  }
+
+  //spec classes can be initialized from several threads on the JVM
+  private static synchronized int nextSlot() {
+    return ourSlotCount++;
+  }
+
+  private static synchronized int nextBooleanBit() {
+    return ourBooleanBitCount < 32 ? 1 << ourBooleanBitCount++ : 0;
+  }
 }
\ No newline at end of file
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2012-2013 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.cell;
+
+import java.util.Arrays;
+
+/**
+ * Property storage of cells: values are kept in an array sorted by property slot,
+ * so that a lookup is a binary search and a cell with few properties set stays small.
+ */
+final class PropertySlots {
+  private int[] mySlots;
+  private Object[] myValues;
+
+  boolean isEmpty() {
+    return mySlots == null;
+  }
+
+  /**
+   * @return index of the slot or a negative value if there's no value in this slot
+   */
+  int indexOf(int slot) {
+    if (mySlots == null) return -1;
+    return Arrays.binarySearch(mySlots, slot);
+  }
+
+  Object valueAt(int index) {
+    return myValues[index];
+  }
+
+  Object get(int slot) {
+    int index = indexOf(slot);
+    return index >= 0 ? myValues[index] : null;
+  }
+
+  void put(int slot, Object value) {
+    int index = indexOf(slot);
+    if (index >= 0) {
+      myValues[index] = value;
+      return;
+    }
+
+    int insertAt = -index - 1;
+    int length = mySlots == null ? 0 : mySlots.length;
+    int[] slots = new int[length + 1];
+    Object[] values = new Object[length + 1];
+    if (length > 0) {
+      System.arraycopy(mySlots, 0, slots, 0, insertAt);
+      System.arraycopy(mySlots, insertAt, slots, insertAt + 1, length - insertAt);
+      System.arraycopy(myValues, 0, values, 0, insertAt);
+      System.arraycopy(myValues, insertAt, values, insertAt + 1, length - insertAt);
+    }
+    slots[insertAt] = slot;
+    values[insertAt] = value;
+    mySlots = slots;
+    myValues = values;
+  }
+
+  void remove(int slot) {
+    int index = indexOf(slot);
+    if (index < 0) return;
+
+    if (mySlots.length == 1) {
+      mySlots = null;
+      myValues = null;
+      return;
+    }
+
+    int[] slots = new int[mySlots.length - 1];
+    Object[] values = new Object[slots.length];
+    System.arraycopy(mySlots, 0, slots, 0, index);
+    System.arraycopy(mySlots, index + 1, slots, index, slots.length - index);
+    System.arraycopy(myValues, 0, values, 0, index);
+    System.arraycopy(myValues, index + 1, values, index, values.length - index);
+    mySlots = slots;
+    myValues = values;
+  }
+}
@@ -20,7 +20,16 @@ import jetbrains.jetpad.model.property.Property;
 public class VerticalCell extends Cell {
   public static final CellPropertySpec<Boolean> INDENT = new CellPropertySpec<Boolean>("indent", false);
 
+  /**
+   * Hint to create views only for children near the visible area. It's taken into account when the cell is mapped.
+   */
+  public static final CellPropertySpec<Boolean> VIRTUALIZED = new CellPropertySpec<Boolean>("virtualized", false);
+
   public Property<Boolean> indent() {
     return getProp(INDENT);
   }
+
+  public Property<Boolean> virtualized() {
+    return getProp(VIRTUALIZED);
+  }
 }
\ No newline at end of file
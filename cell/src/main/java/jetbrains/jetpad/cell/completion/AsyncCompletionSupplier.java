@@ -0,0 +1,39 @@
+/*
+ * Copyright 2012-2013 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.cell.completion;
+
+import jetbrains.jetpad.model.event.Registration;
+
+import java.util.List;
+
+/**
+ * Supplier whose items are loaded in the background, e.g. from a large symbol store. The completion menu shows
+ * items as they arrive. Other clients use synchronous {@link #get(CompletionParameters)} which returns the items
+ * available immediately, possibly none.
+ */
+public interface AsyncCompletionSupplier extends CompletionSupplier {
+  /**
+   * Starts loading all the items. Batches are passed to the callback in the UI thread as soon as they are ready,
+   * small first batches let the menu show something within a frame. Removal of the returned registration
+   * cancels loading, after that the callback isn't called.
+   */
+  Registration getAsync(CompletionParameters cp, Callback callback);
+
+  interface Callback {
+    void onItems(List<CompletionItem> items);
+    void onFinished();
+  }
+}
@@ -15,6 +15,8 @@
  */
 package jetbrains.jetpad.cell.completion;
 
+import com.google.common.base.Function;
+import com.google.common.base.Functions;
 import jetbrains.jetpad.cell.Cell;
 import jetbrains.jetpad.cell.trait.CellTraitPropertySpec;
 
@@ -36,51 +38,64 @@ public class CompletionHelper {
   }
 
   public static CompletionHelper completionFor(Cell cell, CompletionParameters cp, CellTraitPropertySpec<CompletionSupplier> prop) {
-    return new CompletionHelper(cell.get(prop).get(cp));
+    CompletionSupplier supplier = cell.get(prop);
+    if (supplier instanceof CompletionHelperSupplier) {
+      return ((CompletionHelperSupplier) supplier).getHelper(cp);
+    }
+    return new CompletionHelper(supplier.get(cp));
   }
 
-  private List<CompletionItem> myCompletionItems = new ArrayList<CompletionItem>();
+  private final Lookup myLookup;
+  private final Function<CompletionItem, CompletionItem> myResultWrapper;
 
   public CompletionHelper(List<CompletionItem> items) {
-    myCompletionItems.addAll(items);
+    this(new Lookup(items), null);
+  }
+
+  private CompletionHelper(Lookup lookup, Function<CompletionItem, CompletionItem> resultWrapper) {
+    myLookup = lookup;
+    myResultWrapper = resultWrapper;
+  }
+
+  /**
+   * Helper which answers queries with the items and the index of this one, but wraps the items which it returns,
+   * e.g. to complete them in a different way. Items are matched before they are wrapped.
+   */
+  public CompletionHelper wrapResults(Function<CompletionItem, CompletionItem> wrapper) {
+    return new CompletionHelper(myLookup, myResultWrapper == null ? wrapper : Functions.compose(wrapper, myResultWrapper));
   }
 
   public boolean isEmpty() {
-    return myCompletionItems.isEmpty();
+    return myLookup.myItems.isEmpty();
   }
 
   public List<CompletionItem> getItems() {
-    return Collections.unmodifiableList(myCompletionItems);
+    if (myResultWrapper == null) return Collections.unmodifiableList(myLookup.myItems);
+    return wrap(myLookup.myItems);
   }
 
   public List<CompletionItem> prefixedBy(String prefix) {
-    List<CompletionItem> result = new ArrayList<CompletionItem>();
-    for (CompletionItem item : myCompletionItems) {
-      if (item.isMatchPrefix(prefix)) {
-        result.add(item);
-      }
-    }
-    return result;
+    myLookup.startQuery();
+    return wrap(myLookup.prefixedBy(prefix));
   }
 
   public List<CompletionItem> strictlyPrefixedBy(String prefix) {
-    List<CompletionItem> result = new ArrayList<CompletionItem>();
-    for (CompletionItem item : myCompletionItems) {
-      if (item.isStrictMatchPrefix(prefix)) {
-        result.add(item);
-      }
-    }
-    return result;
+    myLookup.startQuery();
+    return wrap(myLookup.strictlyPrefixedBy(prefix));
   }
 
   public List<CompletionItem> matches(String text) {
-    List<CompletionItem> result = new ArrayList<CompletionItem>();
-    for (CompletionItem item : myCompletionItems) {
-      if (item.isMatch(text)) {
-        result.add(item);
-      }
+    myLookup.startQuery();
+    return wrap(reduce(myLookup.matches(text)));
+  }
+
+  private List<CompletionItem> wrap(List<CompletionItem> items) {
+    if (myResultWrapper == null) return items;
+    List<CompletionItem> result = new ArrayList<CompletionItem>(items.size());
+    for (CompletionItem item : items) {
+      result.add(myResultWrapper.apply(item));
     }
-    return reduce(result);
+    return result;
   }
 
   private List<CompletionItem> reduce(List<CompletionItem> items) {
@@ -98,8 +113,9 @@ public class CompletionHelper {
   }
 
   public boolean hasSingleMatch(String text, boolean eager) {
-    List<CompletionItem> matches = matches(text);
-    List<CompletionItem> strictlyPrefixed = strictlyPrefixedBy(text);
+    myLookup.startQuery();
+    List<CompletionItem> matches = reduce(myLookup.matches(text));
+    List<CompletionItem> strictlyPrefixed = myLookup.strictlyPrefixedBy(text);
 
     if (matches.size() == 1) {
       if (eager) return true;
@@ -121,7 +137,8 @@ public class CompletionHelper {
     String prefix = text.substring(0, position);
     String prefixPlusOne = text.substring(0, position + 1);
 
-    return matches(prefix).size() == 1 && prefixedBy(prefixPlusOne).isEmpty();
+    myLookup.startQuery();
+    return reduce(myLookup.matches(prefix)).size() == 1 && myLookup.prefixedBy(prefixPlusOne).isEmpty();
   }
 
   public void completeFirstMatch(String text) {
@@ -131,4 +148,58 @@ public class CompletionHelper {
   public boolean hasMatches(String text) {
     return !prefixedBy(text).isEmpty();
   }
-}
\ No newline at end of file
+
+  private static class Lookup {
+    private final List<CompletionItem> myItems;
+    //sorting items takes longer than scanning them, so the index is built only for items which are queried again
+    private CompletionIndex myIndex;
+    private boolean myQueried;
+
+    private Lookup(List<CompletionItem> items) {
+      myItems = new ArrayList<CompletionItem>(items);
+    }
+
+    private void startQuery() {
+      if (myQueried && myIndex == null) {
+        myIndex = new CompletionIndex(myItems);
+      }
+      myQueried = true;
+    }
+
+    private List<CompletionItem> prefixedBy(String prefix) {
+      if (myIndex != null) return myIndex.prefixedBy(prefix);
+
+      List<CompletionItem> result = new ArrayList<CompletionItem>();
+      for (CompletionItem item : myItems) {
+        if (item.isMatchPrefix(prefix)) {
+          result.add(item);
+        }
+      }
+      return result;
+    }
+
+    private List<CompletionItem> strictlyPrefixedBy(String prefix) {
+      if (myIndex != null) return myIndex.strictlyPrefixedBy(prefix);
+
+      List<CompletionItem> result = new ArrayList<CompletionItem>();
+      for (CompletionItem item : myItems) {
+        if (item.isStrictMatchPrefix(prefix)) {
+          result.add(item);
+        }
+      }
+      return result;
+    }
+
+    private List<CompletionItem> matches(String text) {
+      if (myIndex != null) return myIndex.matches(text);
+
+      List<CompletionItem> result = new ArrayList<CompletionItem>();
+      for (CompletionItem item : myItems) {
+        if (item.isMatch(text)) {
+          result.add(item);
+        }
+      }
+      return result;
+    }
+  }
+}
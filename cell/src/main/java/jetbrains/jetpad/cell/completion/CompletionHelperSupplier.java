@@ -0,0 +1,24 @@
+/*
+ * Copyright 2012-2013 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.cell.completion;
+
+/**
+ * Supplier which keeps the helpers it has built. {@link CompletionHelper#completionFor} uses them, so the items and
+ * the index built for them are reused by subsequent queries until the supplier discards them.
+ */
+public interface CompletionHelperSupplier extends CompletionSupplier {
+  CompletionHelper getHelper(CompletionParameters cp);
+}
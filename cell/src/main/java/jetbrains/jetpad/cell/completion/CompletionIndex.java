@@ -0,0 +1,219 @@
+/*
+ * Copyright 2012-2013 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.cell.completion;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Lookup of completion items by text. Items which are matched by a fixed text are kept sorted by it, so items
+ * prefixed by some text form a contiguous range which is found with binary search. Other items, including ones whose
+ * class overrides matching, are checked one by one.
+ * Results are in the order of the original item list.
+ */
+class CompletionIndex {
+  /**
+   * @return the text which the item matches by or null if the item matches in some other way
+   */
+  static String matchingText(CompletionItem item) {
+    while (true) {
+      if (item instanceof SimpleCompletionItem) {
+        if (MatchingOverrides.overridesMatching(item.getClass(), SimpleCompletionItem.class)) return null;
+        return ((SimpleCompletionItem) item).getMatchingText();
+      } else if (item instanceof CompletionItemWrapper) {
+        if (MatchingOverrides.overridesMatching(item.getClass(), CompletionItemWrapper.class)) return null;
+        item = ((CompletionItemWrapper) item).getWrappedItem();
+      } else if (item instanceof WrapperCompletionItem) {
+        if (MatchingOverrides.overridesMatching(item.getClass(), WrapperCompletionItem.class)) return null;
+        item = ((WrapperCompletionItem) item).getItem();
+      } else {
+        return null;
+      }
+    }
+  }
+
+  private final List<CompletionItem> myItems;
+  private final String[] myTexts;
+  private final int[] myPositions;
+  private final int[] myOthers;
+
+  private String myLastPrefix;
+  private int myLastStart;
+  private int myLastEnd;
+
+  CompletionIndex(List<CompletionItem> items) {
+    myItems = new ArrayList<CompletionItem>(items);
+
+    final String[] texts = new String[myItems.size()];
+    List<Integer> indexed = new ArrayList<Integer>();
+    List<Integer> others = new ArrayList<Integer>();
+    for (int i = 0; i < texts.length; i++) {
+      texts[i] = matchingText(myItems.get(i));
+      (texts[i] != null ? indexed : others).add(i);
+    }
+    Collections.sort(indexed, new Comparator<Integer>() {
+      @Override
+      public int compare(Integer i1, Integer i2) {
+        return texts[i1].compareTo(texts[i2]);
+      }
+    });
+
+    myTexts = new String[indexed.size()];
+    myPositions = new int[indexed.size()];
+    for (int i = 0; i < myTexts.length; i++) {
+      myPositions[i] = indexed.get(i);
+      myTexts[i] = texts[myPositions[i]];
+    }
+    myOthers = new int[others.size()];
+    for (int i = 0; i < myOthers.length; i++) {
+      myOthers[i] = others.get(i);
+    }
+
+    myLastPrefix = "";
+    myLastStart = 0;
+    myLastEnd = myTexts.length;
+  }
+
+  List<CompletionItem> getItems() {
+    return Collections.unmodifiableList(myItems);
+  }
+
+  boolean isEmpty() {
+    return myItems.isEmpty();
+  }
+
+  /**
+   * Items for which isMatchPrefix(prefix) holds
+   */
+  List<CompletionItem> prefixedBy(String prefix) {
+    findRange(prefix);
+    int[] positions = new int[myLastEnd - myLastStart + myOthers.length];
+    int count = 0;
+    for (int i = myLastStart; i < myLastEnd; i++) {
+      positions[count++] = myPositions[i];
+    }
+    for (int position : myOthers) {
+      if (myItems.get(position).isMatchPrefix(prefix)) {
+        positions[count++] = position;
+      }
+    }
+    return toItems(positions, count);
+  }
+
+  /**
+   * Items for which isStrictMatchPrefix(prefix) holds
+   */
+  List<CompletionItem> strictlyPrefixedBy(String prefix) {
+    findRange(prefix);
+    int[] positions = new int[myLastEnd - myLastStart + myOthers.length];
+    int count = 0;
+    for (int i = myLastStart; i < myLastEnd; i++) {
+      if (myTexts[i].length() != prefix.length()) {
+        positions[count++] = myPositions[i];
+      }
+    }
+    for (int position : myOthers) {
+      if (myItems.get(position).isStrictMatchPrefix(prefix)) {
+        positions[count++] = position;
+      }
+    }
+    return toItems(positions, count);
+  }
+
+  /**
+   * Items for which isMatch(text) holds
+   */
+  List<CompletionItem> matches(String text) {
+    findRange(text);
+    int[] positions = new int[myLastEnd - myLastStart + myOthers.length];
+    int count = 0;
+    //text itself is less than all other strings which it prefixes, so exact matches are at the start of the range
+    for (int i = myLastStart; i < myLastEnd && myTexts[i].length() == text.length(); i++) {
+      positions[count++] = myPositions[i];
+    }
+    for (int position : myOthers) {
+      if (myItems.get(position).isMatch(text)) {
+        positions[count++] = position;
+      }
+    }
+    return toItems(positions, count);
+  }
+
+  /**
+   * Finds the range of indexed texts prefixed by the prefix. When the prefix extends the previous one,
+   * only the previous range is searched.
+   */
+  private void findRange(String prefix) {
+    if (prefix.equals(myLastPrefix)) return;
+
+    int from = 0;
+    int to = myTexts.length;
+    if (prefix.startsWith(myLastPrefix)) {
+      from = myLastStart;
+      to = myLastEnd;
+    }
+
+    int start = from;
+    int end = to;
+    while (start < end) {
+      int mid = (start + end) >>> 1;
+      if (comparePrefix(myTexts[mid], prefix) < 0) {
+        start = mid + 1;
+      } else {
+        end = mid;
+      }
+    }
+
+    int rangeEnd = to;
+    end = start;
+    while (end < rangeEnd) {
+      int mid = (end + rangeEnd) >>> 1;
+      if (comparePrefix(myTexts[mid], prefix) <= 0) {
+        end = mid + 1;
+      } else {
+        rangeEnd = mid;
+      }
+    }
+
+    myLastPrefix = prefix;
+    myLastStart = start;
+    myLastEnd = end;
+  }
+
+  /**
+   * Compares the beginning of the text of the prefix length with the prefix
+   */
+  private static int comparePrefix(String text, String prefix) {
+    int length = Math.min(text.length(), prefix.length());
+    for (int i = 0; i < length; i++) {
+      int diff = text.charAt(i) - prefix.charAt(i);
+      if (diff != 0) return diff;
+    }
+    return text.length() < prefix.length() ? -1 : 0;
+  }
+
+  private List<CompletionItem> toItems(int[] positions, int count) {
+    Arrays.sort(positions, 0, count);
+    List<CompletionItem> result = new ArrayList<CompletionItem>(count);
+    for (int i = 0; i < count; i++) {
+      result.add(myItems.get(positions[i]));
+    }
+    return result;
+  }
+}
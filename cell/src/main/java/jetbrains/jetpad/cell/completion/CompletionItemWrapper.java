@@ -24,6 +24,10 @@ public class CompletionItemWrapper implements CompletionItem {
     myWrappedItem = wrappedItem;
   }
 
+  CompletionItem getWrappedItem() {
+    return myWrappedItem;
+  }
+
   @Override
   public String visibleText(String text) {
     return myWrappedItem.visibleText(text);
@@ -36,6 +36,7 @@ class CompletionMenu {
 
   private static class CompletionMenuModelMapper extends Mapper<CompletionMenuModel, ScrollCell> {
     private VerticalCell myVerticalCell;
+    private TextCell myLoadingCell;
     private Handler<CompletionItem> myCompleter;
 
     private CompletionMenuModelMapper(CompletionMenuModel source, Handler<CompletionItem> completer) {
@@ -44,9 +45,14 @@ class CompletionMenu {
       myCompleter = completer;
 
       myVerticalCell = new VerticalCell();
-      getTarget().children().add(myVerticalCell);
-
-      myVerticalCell.background().set(Color.VERY_LIGHT_GRAY);
+      myLoadingCell = new TextCell("Loading...");
+      myLoadingCell.textColor().set(Color.GRAY);
+      VerticalCell content = new VerticalCell();
+      content.children().add(myVerticalCell);
+      content.children().add(myLoadingCell);
+      getTarget().children().add(content);
+
+      content.background().set(Color.VERY_LIGHT_GRAY);
       getTarget().maxDimension().set(new Vector(600, 200));
       getTarget().scroll().set(true);
     }
@@ -65,6 +71,7 @@ class CompletionMenu {
             return new CompletionItemMapper(source);
           }
         }));
+      conf.add(Synchronizers.forProperty(getSource().loading, myLoadingCell.visible()));
     }
   }
 
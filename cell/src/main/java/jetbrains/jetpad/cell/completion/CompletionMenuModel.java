@@ -15,72 +15,154 @@
  */
 package jetbrains.jetpad.cell.completion;
 
-import com.google.common.base.Function;
+import jetbrains.jetpad.model.collections.CollectionAdapter;
 import jetbrains.jetpad.model.collections.CollectionItemEvent;
 import jetbrains.jetpad.model.collections.list.ObservableArrayList;
 import jetbrains.jetpad.model.collections.list.ObservableList;
 import jetbrains.jetpad.model.event.EventHandler;
-import jetbrains.jetpad.model.property.*;
-import jetbrains.jetpad.model.transform.Transformers;
+import jetbrains.jetpad.model.property.Property;
+import jetbrains.jetpad.model.property.PropertyChangeEvent;
+import jetbrains.jetpad.model.property.ValueProperty;
 
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 class CompletionMenuModel {
   final Property<String> text = new ValueProperty<String>();
   final ObservableList<CompletionItem> items = new ObservableArrayList<CompletionItem>();
   final Property<CompletionItem> selectedItem = new ValueProperty<CompletionItem>();
+  final Property<Boolean> loading = new ValueProperty<Boolean>(false);
 
-  final ObservableList<CompletionItem> visibleItems;
+  final ObservableList<CompletionItem> visibleItems = new ObservableArrayList<CompletionItem>();
+
+  private CompletionIndex myIndex;
+  private boolean mySelectionMoved;
 
   {
-    visibleItems = Transformers.filter(new Function<CompletionItem, ReadableProperty<Boolean>>() {
+    items.addListener(new CollectionAdapter<CompletionItem>() {
       @Override
-      public ReadableProperty<Boolean> apply(final CompletionItem input) {
-        return new DerivedProperty<Boolean>(text) {
-          @Override
-          public Boolean get() {
-            return input.isMatchPrefix(text.get() == null ? "" : text.get());
-          }
-
-          @Override
-          public String getPropExpr() {
-            return "isMatchPrefix(" + text.getPropExpr() + ", " + input + ")";
-          }
-        };
-      }
-    }).andThen(
-      Transformers.sortBy(new Function<CompletionItem, ReadableProperty<CompletionItem>>() {
-        @Override
-        public ReadableProperty<CompletionItem> apply(final CompletionItem input) {
-          return Properties.constant(input);
+      public void onItemAdded(CollectionItemEvent<CompletionItem> event) {
+        myIndex = null;
+        CompletionItem item = event.getItem();
+        String mt = matchingText();
+        if (item.isMatchPrefix(mt)) {
+          visibleItems.add(insertionIndex(item, comparator(mt)), item);
         }
-      }, new Comparator<CompletionItem>() {
-        @Override
-        public int compare(CompletionItem c1, CompletionItem c2) {
-          String mt = text.get() == null ? "" : text.get();
-          String t1 = c1.visibleText(mt);
-          String t2 = c2.visibleText(mt);
-          if (c1.isMatch(mt) && !c2.isMatch(mt)) {
-            return -1;
-          }
-          if (!c1.isMatch(mt) && c2.isMatch(mt)) {
-            return 1;
-          }
-          return t1.compareTo(t2);
+      }
+
+      @Override
+      public void onItemRemoved(CollectionItemEvent<CompletionItem> event) {
+        myIndex = null;
+        visibleItems.remove(event.getItem());
+      }
+    });
+    text.addHandler(new EventHandler<PropertyChangeEvent<String>>() {
+      @Override
+      public void onEvent(PropertyChangeEvent<String> event) {
+        mySelectionMoved = false;
+        updateVisibleItems();
+      }
+    });
+
+    //items which are loaded in the background shouldn't reset the item selected by the user
+    visibleItems.addListener(new CollectionAdapter<CompletionItem>() {
+      @Override
+      public void onItemAdded(CollectionItemEvent<CompletionItem> event) {
+        if (!mySelectionMoved) {
+          selectFirst();
         }
-      })
-    ).transform(items).getTarget();
+      }
 
-    visibleItems.addHandler(new EventHandler<CollectionItemEvent<CompletionItem>>() {
       @Override
-      public void onEvent(CollectionItemEvent<CompletionItem> event) {
-        if (visibleItems.isEmpty()) {
-          selectedItem.set(null);
-        } else {
-          selectedItem.set(visibleItems.get(0));
+      public void onItemRemoved(CollectionItemEvent<CompletionItem> event) {
+        if (!mySelectionMoved || event.getItem() == selectedItem.get()) {
+          selectFirst();
         }
       }
     });
+    selectedItem.addHandler(new EventHandler<PropertyChangeEvent<CompletionItem>>() {
+      @Override
+      public void onEvent(PropertyChangeEvent<CompletionItem> event) {
+        mySelectionMoved = !visibleItems.isEmpty() && event.getNewValue() != visibleItems.get(0);
+      }
+    });
+  }
+
+  private void selectFirst() {
+    selectedItem.set(visibleItems.isEmpty() ? null : visibleItems.get(0));
+  }
+
+  private String matchingText() {
+    return text.get() == null ? "" : text.get();
+  }
+
+  private Comparator<CompletionItem> comparator(final String mt) {
+    return new Comparator<CompletionItem>() {
+      @Override
+      public int compare(CompletionItem c1, CompletionItem c2) {
+        boolean m1 = c1.isMatch(mt);
+        boolean m2 = c2.isMatch(mt);
+        if (m1 && !m2) {
+          return -1;
+        }
+        if (!m1 && m2) {
+          return 1;
+        }
+        return c1.visibleText(mt).compareTo(c2.visibleText(mt));
+      }
+    };
+  }
+
+  private int insertionIndex(CompletionItem item, Comparator<CompletionItem> comparator) {
+    int start = 0;
+    int end = visibleItems.size();
+    while (start < end) {
+      int mid = (start + end) >>> 1;
+      if (comparator.compare(visibleItems.get(mid), item) <= 0) {
+        start = mid + 1;
+      } else {
+        end = mid;
+      }
+    }
+    return start;
+  }
+
+  private void updateVisibleItems() {
+    if (myIndex == null) {
+      myIndex = new CompletionIndex(items);
+    }
+
+    String mt = matchingText();
+    List<CompletionItem> newItems = myIndex.prefixedBy(mt);
+    Collections.sort(newItems, comparator(mt));
+    syncVisibleItems(newItems);
+  }
+
+  /**
+   * Changes visible items to the new list with as few events as possible, so that only the menu rows
+   * which appeared, disappeared or moved are changed
+   */
+  private void syncVisibleItems(List<CompletionItem> newItems) {
+    Set<CompletionItem> newSet = new HashSet<CompletionItem>(newItems);
+    for (int i = visibleItems.size() - 1; i >= 0; i--) {
+      if (!newSet.contains(visibleItems.get(i))) {
+        visibleItems.remove(i);
+      }
+    }
+
+    Set<CompletionItem> visible = new HashSet<CompletionItem>(visibleItems);
+    for (int i = 0; i < newItems.size(); i++) {
+      CompletionItem item = newItems.get(i);
+      if (i < visibleItems.size() && visibleItems.get(i) == item) continue;
+
+      if (visible.contains(item)) {
+        visibleItems.remove(visibleItems.indexOf(item));
+      }
+      visibleItems.add(i, item);
+    }
   }
 
   void up() {
@@ -29,6 +29,7 @@ import jetbrains.jetpad.event.ModifierKey;
 import jetbrains.jetpad.cell.*;
 import jetbrains.jetpad.base.Value;
 import jetbrains.jetpad.cell.action.CellAction;
+import jetbrains.jetpad.cell.event.CellEventSpec;
 import jetbrains.jetpad.cell.event.CompletionEvent;
 import jetbrains.jetpad.cell.event.FocusEvent;
 import jetbrains.jetpad.cell.text.TextEditing;
@@ -40,12 +41,25 @@ import jetbrains.jetpad.cell.trait.CellTraitPropertySpec;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 
 public class CompletionSupport {
   public static final CellTraitPropertySpec<Runnable> HIDE_COMPLETION = new CellTraitPropertySpec<Runnable>("hideCompletion");
 
+  private static final Set<CellEventSpec<?>> TRAIT_EVENTS = CellEventSpec.setOf(CellEventSpec.COMPLETE);
+  private static final CellTrait TRAIT = createTrait();
+
   public static CellTrait trait() {
+    return TRAIT;
+  }
+
+  private static CellTrait createTrait() {
     return new BaseCellTrait() {
+      @Override
+      public Set<CellEventSpec<?>> getHandledEvents() {
+        return TRAIT_EVENTS;
+      }
+
       @Override
       public Object get(Cell cell, CellTraitPropertySpec<?> spec) {
         if (spec == Completion.COMPLETION_CONTROLLER) {
@@ -65,6 +79,7 @@ public class CompletionSupport {
           @Override
           public boolean canActivate() {
             CompletionSupplier supplier = cell.get(Completion.COMPLETION);
+            if (supplier instanceof AsyncCompletionSupplier) return true;
             return !supplier.get(CompletionParameters.EMPTY).isEmpty();
           }
 
@@ -73,13 +88,18 @@ public class CompletionSupport {
             boolean isActive = isActive();
             if (isActive == active) return;
             if (active) {
-              List<CompletionItem> items = cell.get(Completion.COMPLETION).get(new BaseCompletionParameters() {
+              CompletionParameters cp = new BaseCompletionParameters() {
                 @Override
                 public boolean isMenu() {
                   return true;
                 }
-              });
-              showPopup(cell, cell.frontPopup(), items);
+              };
+              CompletionSupplier supplier = cell.get(Completion.COMPLETION);
+              if (supplier instanceof AsyncCompletionSupplier) {
+                showPopup(cell, cell.frontPopup(), (AsyncCompletionSupplier) supplier, cp);
+              } else {
+                showPopup(cell, cell.frontPopup(), supplier.get(cp));
+              }
             } else {
               cell.focus();
             }
@@ -119,7 +139,24 @@ public class CompletionSupport {
     };
   }
 
-  public static void showCompletion(final TextCell textView, List<CompletionItem> items, Registration removeOnClose, final CellContainer.State prevState) {
+  public static void showCompletion(TextCell textView, List<CompletionItem> items, Registration removeOnClose, CellContainer.State prevState) {
+    showCompletion(textView, items, null, null, removeOnClose, prevState);
+  }
+
+  /**
+   * Shows the menu right away and adds items to it as the supplier loads them. Loading is cancelled when the menu is closed.
+   */
+  public static void showCompletion(TextCell textView, AsyncCompletionSupplier supplier, CompletionParameters cp, Registration removeOnClose, CellContainer.State prevState) {
+    showCompletion(textView, Collections.<CompletionItem>emptyList(), supplier, cp, removeOnClose, prevState);
+  }
+
+  private static void showCompletion(
+      final TextCell textView,
+      List<CompletionItem> items,
+      AsyncCompletionSupplier supplier,
+      CompletionParameters cp,
+      Registration removeOnClose,
+      final CellContainer.State prevState) {
     if (!textView.focused().get()) {
       throw new IllegalArgumentException();
     }
@@ -128,6 +165,9 @@ public class CompletionSupport {
     menuModel.items.addAll(items);
 
     final CompositeRegistration reg = new CompositeRegistration();
+    if (supplier != null) {
+      reg.add(loadItems(supplier, cp, menuModel));
+    }
     final ReadableProperty<String> prefixText = textView.prefixText();
     reg.add(PropertyBinding.bind(prefixText, menuModel.text));
 
@@ -156,7 +196,15 @@ public class CompletionSupport {
       @Override
       public void onKeyPressed(Cell cell, KeyEvent event) {
         CompletionItem selectedItem = menuModel.selectedItem.get();
-        if (selectedItem == null) return;
+        if (selectedItem == null) {
+          //the menu of an async supplier can be empty while items are loading
+          if (event.is(Key.ESCAPE) && menuModel.loading.get()) {
+            reg.remove();
+            prevState.restore();
+            event.consume();
+          }
+          return;
+        }
 
         if (event.is(Key.ENTER)) {
           completer.handle(selectedItem);
@@ -213,10 +261,52 @@ public class CompletionSupport {
     textView.bottomPopup().set(completionCell);
   }
 
+  private static Registration loadItems(AsyncCompletionSupplier supplier, CompletionParameters cp, final CompletionMenuModel menuModel) {
+    final Value<Boolean> cancelled = new Value<Boolean>(false);
+    menuModel.loading.set(true);
+    final Registration loading = supplier.getAsync(cp, new AsyncCompletionSupplier.Callback() {
+      @Override
+      public void onItems(List<CompletionItem> items) {
+        if (cancelled.get()) return;
+        menuModel.items.addAll(items);
+      }
+
+      @Override
+      public void onFinished() {
+        if (cancelled.get()) return;
+        menuModel.loading.set(false);
+      }
+    });
+    return new Registration() {
+      @Override
+      public void remove() {
+        cancelled.set(true);
+        loading.remove();
+      }
+    };
+  }
+
   public static TextCell showPopup(
       Cell cell,
       Property<Cell> targetPopup,
       List<CompletionItem> items) {
+    return showPopup(cell, targetPopup, items, null, null);
+  }
+
+  public static TextCell showPopup(
+      Cell cell,
+      Property<Cell> targetPopup,
+      AsyncCompletionSupplier supplier,
+      CompletionParameters cp) {
+    return showPopup(cell, targetPopup, Collections.<CompletionItem>emptyList(), supplier, cp);
+  }
+
+  private static TextCell showPopup(
+      Cell cell,
+      Property<Cell> targetPopup,
+      List<CompletionItem> items,
+      AsyncCompletionSupplier supplier,
+      CompletionParameters cp) {
     CellContainer container = cell.container();
     final HorizontalCell popup = new HorizontalCell();
     final TextCell textView = new TextCell();
@@ -228,7 +318,7 @@ public class CompletionSupport {
     targetPopup.set(popup);
     final CellContainer.State state = container.saveState();
     textView.focus();
-    showCompletion(textView, items, new Registration() {
+    showCompletion(textView, items, supplier, cp, new Registration() {
       @Override
       public void remove() {
         popup.removeFromParent();
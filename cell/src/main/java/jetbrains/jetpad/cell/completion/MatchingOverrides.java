@@ -0,0 +1,55 @@
+/*
+ * Copyright 2012-2013 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.cell.completion;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Finds item classes which override matching of a base item class, so that their matching text can't be used
+ * to look them up. GWT has no reflection, so its version of this class (in super) treats all items as overriding.
+ */
+class MatchingOverrides {
+  private static final Map<Class<?>, Boolean> ourOverrides = new WeakHashMap<Class<?>, Boolean>();
+
+  static boolean overridesMatching(Class<?> itemClass, Class<?> baseClass) {
+    synchronized (ourOverrides) {
+      Boolean result = ourOverrides.get(itemClass);
+      if (result == null) {
+        result = declaresMatching(itemClass, baseClass);
+        ourOverrides.put(itemClass, result);
+      }
+      return result;
+    }
+  }
+
+  private static boolean declaresMatching(Class<?> itemClass, Class<?> baseClass) {
+    for (Class<?> c = itemClass; c != null && c != baseClass; c = c.getSuperclass()) {
+      for (Method m : c.getDeclaredMethods()) {
+        if (isMatchingMethod(m)) return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean isMatchingMethod(Method m) {
+    String name = m.getName();
+    if (!name.equals("isMatch") && !name.equals("isStrictMatchPrefix") && !name.equals("isMatchPrefix")) return false;
+    Class<?>[] params = m.getParameterTypes();
+    return params.length == 1 && params[0] == String.class;
+  }
+}
@@ -28,6 +28,10 @@ public abstract class SimpleCompletionItem extends BaseCompletionItem {
     myVisibleText = visibleText;
   }
 
+  String getMatchingText() {
+    return myMatchingText;
+  }
+
   @Override
   public String visibleText(String text) {
     return myVisibleText;
@@ -24,6 +24,10 @@ public class WrapperCompletionItem implements CompletionItem {
     myItem = item;
   }
 
+  CompletionItem getItem() {
+    return myItem;
+  }
+
   @Override
   public String visibleText(String text) {
     return myItem.visibleText(text);
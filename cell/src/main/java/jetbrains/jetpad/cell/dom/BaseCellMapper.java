@@ -32,6 +32,8 @@ import jetbrains.jetpad.cell.*;
 import jetbrains.jetpad.values.Color;
 
 import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 abstract class BaseCellMapper<SourceT extends Cell> extends Mapper<SourceT, Element> {
@@ -253,6 +255,19 @@ abstract class BaseCellMapper<SourceT extends Cell> extends Mapper<SourceT, Elem
         }
       }
 
+      @Override
+      public boolean addAll(int index, Collection<? extends Node> elements) {
+        Node next = index < e.getChildCount() ? e.getChild(index) : null;
+        for (Node element : elements) {
+          if (element.getParentElement() != null) throw new IllegalStateException();
+
+          Element wrapperDiv = DOM.createDiv();
+          wrapperDiv.appendChild(element);
+          e.insertBefore(wrapperDiv, next);
+        }
+        return !elements.isEmpty();
+      }
+
       @Override
       public Node remove(int index) {
         Element childWrapper = (Element) e.getChild(index);
@@ -279,6 +294,23 @@ abstract class BaseCellMapper<SourceT extends Cell> extends Mapper<SourceT, Elem
     myTarget.remove(event.getIndex());
   }
 
+  void childrenAdded(int index, List<Cell> children) {
+    List<Mapper<? extends Cell, ? extends Element>> mappers = new ArrayList<Mapper<? extends Cell, ? extends Element>>(children.size());
+    List<Node> targets = new ArrayList<Node>(children.size());
+    for (Cell child : children) {
+      Mapper<? extends Cell, ? extends Element> mapper = createMapper(child);
+      mappers.add(mapper);
+      targets.add(mapper.getTarget());
+    }
+    myChildrenMappers.addAll(index, mappers);
+    myTarget.addAll(index, targets);
+  }
+
+  void childrenRemoved(int index, int count) {
+    myChildrenMappers.subList(index, index + count).clear();
+    myTarget.subList(index, index + count).clear();
+  }
+
   BaseCellMapper<?> createMapper(Cell source) {
     return CellMappers.createMapper(source, myContext);
   }
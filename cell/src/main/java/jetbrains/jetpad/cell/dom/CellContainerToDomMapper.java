@@ -49,6 +49,7 @@ import jetbrains.jetpad.projectional.domUtil.Scrolling;
 import jetbrains.jetpad.projectional.domUtil.TextMetricsCalculator;
 
 import java.util.Collections;
+import java.util.List;
 
 import static com.google.gwt.query.client.GQuery.$;
 
@@ -187,6 +188,20 @@ public class CellContainerToDomMapper extends Mapper<CellContainer, Element> {
             if (mapper == null) return;
             mapper.childRemoved(change);
           }
+
+          @Override
+          public void onChildrenAdded(Cell parent, int index, List<Cell> children) {
+            BaseCellMapper<?> mapper = (BaseCellMapper<?>) rootMapper().getDescendantMapper(parent);
+            if (mapper == null) return;
+            mapper.childrenAdded(index, children);
+          }
+
+          @Override
+          public void onChildrenRemoved(Cell parent, int index, List<Cell> children) {
+            BaseCellMapper<?> mapper = (BaseCellMapper<?>) rootMapper().getDescendantMapper(parent);
+            if (mapper == null) return;
+            mapper.childrenRemoved(index, children.size());
+          }
         });
       }
     }));
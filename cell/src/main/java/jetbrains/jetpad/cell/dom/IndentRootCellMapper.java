@@ -133,14 +133,15 @@ class IndentRootCellMapper extends BaseCellMapper<IndentRootCell> {
   protected void onAttach(MappingContext ctx) {
     super.onAttach(ctx);
 
-    for (Cell child : getSource().children()) {
-      myIndentUpdater.childAdded(child);
+    List<Cell> children = getSource().children();
+    for (int i = 0; i < children.size(); i++) {
+      myIndentUpdater.childAdded(children.get(i), i);
     }
 
     myRegistration = getSource().addListener(new IndentContainerCellListener() {
       @Override
       public void childAdded(CollectionItemEvent<Cell> event) {
-        myIndentUpdater.childAdded(event.getItem());
+        myIndentUpdater.childAdded(event.getItem(), event.getIndex());
       }
 
       @Override
@@ -17,6 +17,11 @@ package jetbrains.jetpad.cell.event;
 
 import jetbrains.jetpad.event.*;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
 public class CellEventSpec<EventT extends Event> {
   public static final CellEventSpec<KeyEvent> KEY_PRESSED = new CellEventSpec<KeyEvent>("keyPressed");
   public static final CellEventSpec<KeyEvent> KEY_RELEASED = new CellEventSpec<KeyEvent>("keyReleased");
@@ -35,6 +40,17 @@ public class CellEventSpec<EventT extends Event> {
 
   public static final CellEventSpec<CompletionEvent> COMPLETE = new CellEventSpec<CompletionEvent>("complete");
 
+  public static final Set<CellEventSpec<?>> ALL = setOf(
+    KEY_PRESSED, KEY_RELEASED, KEY_TYPED,
+    MOUSE_PRESSED, MOUSE_RELEASED, MOUSE_MOVED,
+    FOCUS_GAINED, FOCUS_LOST,
+    COPY, CUT, PASTE,
+    COMPLETE);
+
+  public static Set<CellEventSpec<?>> setOf(CellEventSpec<?>... specs) {
+    return Collections.unmodifiableSet(new HashSet<CellEventSpec<?>>(Arrays.asList(specs)));
+  }
+
   private String myName;
 
   private CellEventSpec(String name) {
@@ -23,12 +23,11 @@ import java.util.*;
 
 public class IndentUpdater<SourceCT extends Composite<SourceCT>, TargetT> {
   private SourceCT myRoot;
-  private Map<SourceCT, TargetT> myNewLineToLine = new HashMap<SourceCT, TargetT>();
-  private Map<Cell, CellWrapper<TargetT>> myWrappers = new HashMap<Cell, CellWrapper<TargetT>>();
+  private Map<SourceCT, PositionIndex.Entry<SourceCT, TargetT>> myEntries = new HashMap<SourceCT, PositionIndex.Entry<SourceCT, TargetT>>();
+  private PositionIndex<SourceCT, TargetT> myIndex = new PositionIndex<SourceCT, TargetT>();
   private TargetT myTarget;
   private IndentUpdaterSource<SourceCT> myIndentUpdaterSource;
   private IndentUpdaterTarget<TargetT> myIndentUpdaterTarget;
-  private SourceCT myJustBecameInvisible;
 
   public IndentUpdater(
       SourceCT root,
@@ -44,18 +43,25 @@ public class IndentUpdater<SourceCT extends Composite<SourceCT>, TargetT> {
   }
 
   public void childAdded(SourceCT child) {
-    childAdded(child, true);
+    childAdded(child, indexOf(child));
   }
 
-  private void childAdded(SourceCT child, boolean setAttached) {
+  /**
+   * @param index position of the child in its parent, so it doesn't have to be searched for
+   */
+  public void childAdded(SourceCT child, int index) {
+    childAdded(child, index, true);
+  }
+
+  private void childAdded(SourceCT child, int index, boolean setAttached) {
     if (setAttached) {
       myIndentUpdaterSource.setAttached(child, true);
     }
-    onChildAdd(child);
+    onChildAdd(child, index);
     if (!myIndentUpdaterSource.isCell(child)) {
       List<SourceCT> children = child.children();
-      for (SourceCT c : children) {
-        childAdded(c, setAttached);
+      for (int i = 0; i < children.size(); i++) {
+        childAdded(children.get(i), i, setAttached);
       }
     }
   }
@@ -81,37 +87,22 @@ public class IndentUpdater<SourceCT extends Composite<SourceCT>, TargetT> {
 
   public void visibilityChanged(SourceCT item, PropertyChangeEvent<Boolean> change) {
     if (change.getNewValue()) {
-      childAdded(item, false);
+      childAdded(item, indexOf(item), false);
     } else {
-      myJustBecameInvisible = item;
-      try {
-        childRemoved(item, false);
-      } finally {
-        myJustBecameInvisible = null;
-      }
+      childRemoved(item, false);
     }
   }
 
-  private void onChildAdd(SourceCT child) {
+  private void onChildAdd(SourceCT child, int index) {
     if (!isVisible(child)) return;
 
-    Position<SourceCT> insertAt = new Position<SourceCT>(this, child);
-    Position<SourceCT> prevNewLinePos = prevNewLine(insertAt.prev());
-    Position<SourceCT> nextNewLinePos = nextNewLine(insertAt.next());
-
     if (myIndentUpdaterSource.isCell(child)) {
       Cell cell = myIndentUpdaterSource.getCell(child);
-      CellWrapper<TargetT> wrapper = myIndentUpdaterTarget.wrap(cell);
-      myWrappers.put(cell, wrapper);
-
-      if (prevNewLinePos == null) {
-        Position<SourceCT> first = new Position<SourceCT>(this, firstLeaf(myRoot));
-        children(children(myTarget).get(0)).add(first.deltaTo(insertAt), wrapper.item());
-      } else {
-        TargetT targetLine = myNewLineToLine.get(prevNewLinePos.get());
-        int indentDelta = indent(prevNewLinePos.get()) > 0 ? 1 : 0;
-        children(targetLine).add(prevNewLinePos.deltaTo(insertAt) - 1 + indentDelta, wrapper.item());
-      }
+      PositionIndex.Entry<SourceCT, TargetT> entry = add(child, index, false);
+      entry.myWrapper = myIndentUpdaterTarget.wrap(cell);
+
+      PositionIndex.Entry<SourceCT, TargetT> prevNewLine = myIndex.prevNewLine(entry);
+      children(line(prevNewLine)).add(indexInLine(prevNewLine, entry), entry.myWrapper.item());
     } else if (myIndentUpdaterSource.isNewLine(child)) {
       TargetT newLine = myIndentUpdaterTarget.newLine();
       int indent = indent(child);
@@ -121,138 +112,110 @@ public class IndentUpdater<SourceCT extends Composite<SourceCT>, TargetT> {
         children(newLine).add(indentItem);
       }
 
-      myNewLineToLine.put(child, newLine);
+      PositionIndex.Entry<SourceCT, TargetT> entry = add(child, index, true);
+      entry.myLine = newLine;
+      entry.myIndented = indent > 0;
 
-      if (prevNewLinePos == null) {
-        children(myTarget).add(1, newLine);
-      } else {
-        TargetT prevLine = myNewLineToLine.get(prevNewLinePos.get());
-        int prevLineIndex = children(myTarget).indexOf(prevLine);
-        children(myTarget).add(prevLineIndex + 1, newLine);
-      }
+      children(myTarget).add(myIndex.line(entry) + 1, newLine);
 
-      Iterator<Position<SourceCT>> positions = nextNewLinePos == null ? toEnd(insertAt.next()) : range(insertAt.next(), nextNewLinePos);
-      while (positions.hasNext()) {
-        SourceCT part = positions.next().get();
-        Cell cell = myIndentUpdaterSource.getCell(part);
-        CellWrapper<TargetT> wrapper = myWrappers.get(cell);
-        TargetT item = wrapper.item();
-        removeFromParent(item);
-        children(newLine).add(item);
+      PositionIndex.Entry<SourceCT, TargetT> current = myIndex.next(entry);
+      while (current != null && !current.myNewLine) {
+        if (!current.myMarker) {
+          TargetT item = current.myWrapper.item();
+          removeFromParent(item);
+          children(newLine).add(item);
+        }
+        current = myIndex.next(current);
       }
+    } else {
+      add(child, index, PositionIndex.Entry.<SourceCT, TargetT>marker(child));
     }
   }
 
   private void onChildRemove(SourceCT child) {
-    if (!isVisible(child)) return;
+    PositionIndex.Entry<SourceCT, TargetT> entry = myEntries.get(child);
+    if (entry == null) return;
 
-    Position<SourceCT> removeAt = new Position<SourceCT>(this, child);
-    Position<SourceCT> prevNewLinePos = prevNewLine(removeAt.prev());
+    if (entry.myMarker) {
+      myEntries.remove(child);
+      myIndex.remove(entry);
+      return;
+    }
 
+    PositionIndex.Entry<SourceCT, TargetT> prevNewLine = myIndex.prevNewLine(entry);
     if (myIndentUpdaterSource.isCell(child)) {
-      if (prevNewLinePos == null) {
-        Position<SourceCT> first = new Position<SourceCT>(this, firstLeaf(myRoot));
-        children(children(myTarget).get(0)).remove(first.deltaTo(removeAt));
-      } else {
-        TargetT line = myNewLineToLine.get(prevNewLinePos.get());
-        children(line).remove(prevNewLinePos.deltaTo(removeAt) - 1 + (indent(child) > 0 ? 1 : 0));
-      }
-      myWrappers.remove(myIndentUpdaterSource.getCell(child)).remove();
-    } else if (myIndentUpdaterSource.isNewLine(child)) {
-      TargetT lineCell = myNewLineToLine.remove(child);
-
-      if (lineCell == null) throw new IllegalStateException();
-
-      if (indent(child) > 0) {
+      children(line(prevNewLine)).remove(indexInLine(prevNewLine, entry));
+      entry.myWrapper.remove();
+    } else {
+      TargetT lineCell = entry.myLine;
+      if (entry.myIndented) {
         children(lineCell).remove(0);
       }
 
-      removeFromParent(lineCell);
-
-      TargetT mergeWith;
-      if (prevNewLinePos == null) {
-        mergeWith = children(myTarget).get(0);
-      } else {
-        mergeWith = myNewLineToLine.get(prevNewLinePos.get());
-      }
+      children(myTarget).remove(myIndex.line(entry) + 1);
 
+      TargetT mergeWith = line(prevNewLine);
       for (TargetT c : new ArrayList<TargetT>(children(lineCell))) {
         removeFromParent(c);
         children(mergeWith).add(c);
       }
     }
-  }
 
-  private void removeFromParent(TargetT c) {
-    children(myIndentUpdaterTarget.parent(c)).remove(c);
+    myEntries.remove(child);
+    myIndex.remove(entry);
   }
 
-  private Position<SourceCT> prevNewLine(Position<SourceCT> from) {
-    Position<SourceCT> current = from;
-    while (current != null) {
-      if (myIndentUpdaterSource.isNewLine(current.get())) {
-        return  current;
-      }
-      current = current.prev();
-    }
-    return null;
+  private PositionIndex.Entry<SourceCT, TargetT> add(SourceCT source, int index, boolean newLine) {
+    return add(source, index, new PositionIndex.Entry<SourceCT, TargetT>(source, newLine));
   }
 
-  private Position<SourceCT> nextNewLine(Position<SourceCT> from) {
-    Position<SourceCT> current = from;
-    while (current != null) {
-      if (myIndentUpdaterSource.isNewLine(current.get())) {
-        return current;
-      }
-      current = current.next();
-    }
-    return null;
+  private PositionIndex.Entry<SourceCT, TargetT> add(SourceCT source, int index, PositionIndex.Entry<SourceCT, TargetT> entry) {
+    myEntries.put(source, entry);
+    return myIndex.insertAfter(prevEntry(source, index), entry);
   }
 
-  private Iterator<Position<SourceCT>> toEnd(final Position<SourceCT> pos) {
-    return new Iterator<Position<SourceCT>>() {
-      private Position<SourceCT> myCurrent = pos;
-
-      @Override
-      public boolean hasNext() {
-        return myCurrent != null;
-      }
+  private TargetT line(PositionIndex.Entry<SourceCT, TargetT> newLine) {
+    return newLine == null ? children(myTarget).get(0) : newLine.myLine;
+  }
 
-      @Override
-      public Position<SourceCT> next() {
-        Position<SourceCT> result = myCurrent;
-        myCurrent = myCurrent.next();
-        return result;
-      }
+  private int indexInLine(PositionIndex.Entry<SourceCT, TargetT> newLine, PositionIndex.Entry<SourceCT, TargetT> entry) {
+    if (newLine == null) return myIndex.position(entry);
+    return myIndex.position(entry) - myIndex.position(newLine) - 1 + (newLine.myIndented ? 1 : 0);
+  }
 
-      @Override
-      public void remove() {
-        throw new UnsupportedOperationException();
-      }
-    };
+  private void removeFromParent(TargetT c) {
+    children(myIndentUpdaterTarget.parent(c)).remove(c);
   }
 
-  private Iterator<Position<SourceCT>> range(final Position<SourceCT> from, final Position<SourceCT> to) {
-    return new Iterator<Position<SourceCT>>() {
-      private Position<SourceCT> myCurrent = from;
+  /**
+   * The entry after which an item should be inserted: the last entry of a preceding shown sibling, or
+   * the marker of the parent if there's none. The parent is shown before its children, so its marker is
+   * always in the index.
+   */
+  private PositionIndex.Entry<SourceCT, TargetT> prevEntry(SourceCT item, int index) {
+    SourceCT parent = item.parent().get();
+    List<SourceCT> siblings = parent.children();
+    for (int i = index - 1; i >= 0; i--) {
+      PositionIndex.Entry<SourceCT, TargetT> result = lastEntry(siblings.get(i));
+      if (result != null) return result;
+    }
+    return parent == myRoot ? null : myEntries.get(parent);
+  }
 
-      @Override
-      public boolean hasNext() {
-        return !myCurrent.equals(to);
-      }
+  private PositionIndex.Entry<SourceCT, TargetT> lastEntry(SourceCT item) {
+    PositionIndex.Entry<SourceCT, TargetT> entry = myEntries.get(item);
+    if (entry == null || !entry.myMarker) return entry;
 
-      @Override
-      public Position<SourceCT> next() {
-        Position<SourceCT> result = myCurrent;
-        myCurrent = myCurrent.next();
-        return result;
-      }
+    List<SourceCT> children = item.children();
+    for (int i = children.size() - 1; i >= 0; i--) {
+      PositionIndex.Entry<SourceCT, TargetT> result = lastEntry(children.get(i));
+      if (result != null) return result;
+    }
+    return entry;
+  }
 
-      @Override
-      public void remove() {
-        throw new UnsupportedOperationException();
-      }
-    };
+  private int indexOf(SourceCT item) {
+    return item.parent().get().children().lastIndexOf(item);
   }
 
   private int indent(SourceCT part) {
@@ -267,31 +230,11 @@ public class IndentUpdater<SourceCT extends Composite<SourceCT>, TargetT> {
     return result;
   }
 
-  private SourceCT firstLeaf(SourceCT item) {
-    if (myIndentUpdaterSource.isCell(item) || item.children().isEmpty()) return item;
-    for (SourceCT child : item.children()) {
-      if (isVisible(child)) return firstLeaf(child);
-    }
-    throw new IllegalStateException();
-  }
-
-  SourceCT root() {
-    return myRoot;
-  }
-
-  boolean isAttached(SourceCT source) {
-    return myIndentUpdaterSource.isAttached(source);
-  }
-
-  boolean isCell(SourceCT source) {
-    return myIndentUpdaterSource.isCell(source);
-  }
-
-  boolean isVisible(SourceCT source) {
+  private boolean isVisible(SourceCT source) {
     SourceCT current = source;
     while (current != myRoot) {
       if (current == null) throw new IllegalStateException();
-      if (!myIndentUpdaterSource.isVisible(current) && current != myJustBecameInvisible) return false;
+      if (!myIndentUpdaterSource.isVisible(current)) return false;
       current = current.parent().get();
     }
     return true;
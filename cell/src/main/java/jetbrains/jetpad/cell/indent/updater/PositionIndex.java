@@ -0,0 +1,243 @@
+/*
+ * Copyright 2012-2013 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.cell.indent.updater;
+
+/**
+ * Cells and new lines shown by an indent updater in the order of the source. It's a treap with
+ * sizes and new line counts in nodes, so positions, lines and neighbour new lines are found in O(log n)
+ * instead of walking the source leaf by leaf.
+ *
+ * Composites are represented by markers which are placed before their content and aren't counted in
+ * positions, so that an insertion point can be found from a marker without searching the source.
+ */
+class PositionIndex<SourceCT, TargetT> {
+  private Entry<SourceCT, TargetT> myRoot;
+  private Entry<SourceCT, TargetT> mySplitLeft;
+  private Entry<SourceCT, TargetT> mySplitRight;
+  private int mySeed = 0x2545F491;
+
+  Entry<SourceCT, TargetT> insertAfter(Entry<SourceCT, TargetT> prev, Entry<SourceCT, TargetT> entry) {
+    entry.myPriority = nextPriority();
+    split(myRoot, prev == null ? 0 : index(prev) + 1);
+    Entry<SourceCT, TargetT> right = mySplitRight;
+    myRoot = merge(merge(mySplitLeft, entry), right);
+    myRoot.myParent = null;
+    return entry;
+  }
+
+  void remove(Entry<SourceCT, TargetT> entry) {
+    Entry<SourceCT, TargetT> parent = entry.myParent;
+    Entry<SourceCT, TargetT> merged = merge(entry.myLeft, entry.myRight);
+    entry.myLeft = entry.myRight = entry.myParent = null;
+
+    if (parent == null) {
+      myRoot = merged;
+      if (merged != null) {
+        merged.myParent = null;
+      }
+      return;
+    }
+
+    if (parent.myLeft == entry) {
+      parent.setLeft(merged);
+    } else {
+      parent.setRight(merged);
+    }
+    for (Entry<SourceCT, TargetT> current = parent.myParent; current != null; current = current.myParent) {
+      current.update();
+    }
+  }
+
+  /**
+   * Number of shown entries, i.e. cells and new lines, before the entry
+   */
+  int position(Entry<SourceCT, TargetT> entry) {
+    int result = shown(entry.myLeft);
+    for (Entry<SourceCT, TargetT> current = entry; current.myParent != null; current = current.myParent) {
+      Entry<SourceCT, TargetT> parent = current.myParent;
+      if (parent.myRight == current) {
+        result += shown(parent.myLeft) + (parent.myMarker ? 0 : 1);
+      }
+    }
+    return result;
+  }
+
+  private int index(Entry<SourceCT, TargetT> entry) {
+    int result = size(entry.myLeft);
+    for (Entry<SourceCT, TargetT> current = entry; current.myParent != null; current = current.myParent) {
+      Entry<SourceCT, TargetT> parent = current.myParent;
+      if (parent.myRight == current) {
+        result += size(parent.myLeft) + 1;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Number of new lines before the entry, i.e. index of the line which contains it
+   */
+  int line(Entry<SourceCT, TargetT> entry) {
+    int result = newLines(entry.myLeft);
+    for (Entry<SourceCT, TargetT> current = entry; current.myParent != null; current = current.myParent) {
+      Entry<SourceCT, TargetT> parent = current.myParent;
+      if (parent.myRight == current) {
+        result += newLines(parent.myLeft) + (parent.myNewLine ? 1 : 0);
+      }
+    }
+    return result;
+  }
+
+  Entry<SourceCT, TargetT> prevNewLine(Entry<SourceCT, TargetT> entry) {
+    int line = line(entry);
+    if (line == 0) return null;
+
+    int index = line - 1;
+    Entry<SourceCT, TargetT> current = myRoot;
+    while (true) {
+      int before = newLines(current.myLeft);
+      if (index < before) {
+        current = current.myLeft;
+        continue;
+      }
+      if (current.myNewLine) {
+        if (index == before) return current;
+        index--;
+      }
+      index -= before;
+      current = current.myRight;
+    }
+  }
+
+  Entry<SourceCT, TargetT> next(Entry<SourceCT, TargetT> entry) {
+    if (entry.myRight != null) {
+      Entry<SourceCT, TargetT> current = entry.myRight;
+      while (current.myLeft != null) {
+        current = current.myLeft;
+      }
+      return current;
+    }
+    Entry<SourceCT, TargetT> current = entry;
+    while (current.myParent != null && current.myParent.myRight == current) {
+      current = current.myParent;
+    }
+    return current.myParent;
+  }
+
+  private Entry<SourceCT, TargetT> merge(Entry<SourceCT, TargetT> left, Entry<SourceCT, TargetT> right) {
+    if (left == null) return right;
+    if (right == null) return left;
+    if (left.myPriority > right.myPriority) {
+      left.setRight(merge(left.myRight, right));
+      return left;
+    } else {
+      right.setLeft(merge(left, right.myLeft));
+      return right;
+    }
+  }
+
+  private void split(Entry<SourceCT, TargetT> entry, int count) {
+    if (entry == null) {
+      mySplitLeft = mySplitRight = null;
+      return;
+    }
+    if (size(entry.myLeft) < count) {
+      split(entry.myRight, count - size(entry.myLeft) - 1);
+      entry.setRight(mySplitLeft);
+      entry.myParent = null;
+      mySplitLeft = entry;
+    } else {
+      split(entry.myLeft, count);
+      entry.setLeft(mySplitRight);
+      entry.myParent = null;
+      mySplitRight = entry;
+    }
+  }
+
+  private int nextPriority() {
+    mySeed ^= mySeed << 13;
+    mySeed ^= mySeed >>> 17;
+    mySeed ^= mySeed << 5;
+    return mySeed;
+  }
+
+  private static int size(Entry<?, ?> entry) {
+    return entry == null ? 0 : entry.mySize;
+  }
+
+  private static int shown(Entry<?, ?> entry) {
+    return entry == null ? 0 : entry.myShown;
+  }
+
+  private static int newLines(Entry<?, ?> entry) {
+    return entry == null ? 0 : entry.myNewLines;
+  }
+
+  static class Entry<SourceCT, TargetT> {
+    final SourceCT mySource;
+    final boolean myNewLine;
+    final boolean myMarker;
+
+    TargetT myLine;
+    boolean myIndented;
+    CellWrapper<TargetT> myWrapper;
+
+    private Entry<SourceCT, TargetT> myLeft;
+    private Entry<SourceCT, TargetT> myRight;
+    private Entry<SourceCT, TargetT> myParent;
+    private int myPriority;
+    private int mySize = 1;
+    private int myShown;
+    private int myNewLines;
+
+    static <SourceCT, TargetT> Entry<SourceCT, TargetT> marker(SourceCT source) {
+      return new Entry<SourceCT, TargetT>(source, false, true);
+    }
+
+    Entry(SourceCT source, boolean newLine) {
+      this(source, newLine, false);
+    }
+
+    private Entry(SourceCT source, boolean newLine, boolean marker) {
+      mySource = source;
+      myNewLine = newLine;
+      myMarker = marker;
+      myShown = marker ? 0 : 1;
+      myNewLines = newLine ? 1 : 0;
+    }
+
+    private void setLeft(Entry<SourceCT, TargetT> left) {
+      myLeft = left;
+      if (left != null) {
+        left.myParent = this;
+      }
+      update();
+    }
+
+    private void setRight(Entry<SourceCT, TargetT> right) {
+      myRight = right;
+      if (right != null) {
+        right.myParent = this;
+      }
+      update();
+    }
+
+    private void update() {
+      mySize = 1 + size(myLeft) + size(myRight);
+      myShown = (myMarker ? 0 : 1) + shown(myLeft) + shown(myRight);
+      myNewLines = (myNewLine ? 1 : 0) + newLines(myLeft) + newLines(myRight);
+    }
+  }
+}
@@ -27,11 +27,14 @@ import jetbrains.jetpad.cell.completion.CompletionParameters;
 import jetbrains.jetpad.cell.completion.CompletionSupport;
 import jetbrains.jetpad.cell.util.CellStateHandler;
 import jetbrains.jetpad.cell.completion.Side;
+import jetbrains.jetpad.cell.event.CellEventSpec;
 import jetbrains.jetpad.cell.trait.BaseCellTrait;
 import jetbrains.jetpad.cell.trait.CellTrait;
 import jetbrains.jetpad.cell.trait.CellTraitPropertySpec;
 import jetbrains.jetpad.values.Color;
 
+import java.util.Set;
+
 public class TextEditing {
   public static final CellTraitPropertySpec<Boolean> FIRST_ALLOWED = new CellTraitPropertySpec<Boolean>("firstAllowed", true);
   public static final CellTraitPropertySpec<Boolean> LAST_ALLOWED = new CellTraitPropertySpec<Boolean>("firstAllowed", true);
@@ -46,11 +49,29 @@ public class TextEditing {
   private static final TextCellStateHandler TEXT_VIEW_STATE_HANDLER = new TextCellStateHandler(false);
   private static final TextCellStateHandler EDITABLE_TEXT_VIEW_STATE_HANDLER = new TextCellStateHandler(true);
 
-  public static CellTrait textNavigation(final boolean firstAllowed, final boolean lastAllowed) {
+  private static final CellTrait[] TEXT_NAVIGATION_BASE = { new TextNavigationTrait() };
+  private static final CellTrait[] TEXT_EDITING_BASE = { new TextEditingTrait() };
+  private static final CellTrait[] VALID_TEXT_EDITING_BASE = { new ValidTextEditingTrait() };
+
+  private static final CellTrait[] TEXT_NAVIGATION = {
+    createTextNavigation(false, false), createTextNavigation(false, true),
+    createTextNavigation(true, false), createTextNavigation(true, true) };
+  private static final CellTrait TEXT_EDITING = createTextEditing();
+
+  public static CellTrait textNavigation(boolean firstAllowed, boolean lastAllowed) {
+    return TEXT_NAVIGATION[(firstAllowed ? 2 : 0) + (lastAllowed ? 1 : 0)];
+  }
+
+  private static CellTrait createTextNavigation(final boolean firstAllowed, final boolean lastAllowed) {
     return new BaseCellTrait() {
       @Override
       protected CellTrait[] getBaseTraits(Cell cell) {
-        return new CellTrait[] { new TextNavigationTrait() };
+        return TEXT_NAVIGATION_BASE;
+      }
+
+      @Override
+      public Set<CellEventSpec<?>> getHandledEvents() {
+        return TextNavigationTrait.NAVIGATION_EVENTS;
       }
 
       @Override
@@ -82,10 +103,19 @@ public class TextEditing {
   }
 
   public static CellTrait textEditing() {
+    return TEXT_EDITING;
+  }
+
+  private static CellTrait createTextEditing() {
     return new BaseCellTrait() {
       @Override
       protected CellTrait[] getBaseTraits(Cell cell) {
-        return new CellTrait[] { new TextEditingTrait() };
+        return TEXT_EDITING_BASE;
+      }
+
+      @Override
+      public Set<CellEventSpec<?>> getHandledEvents() {
+        return TextEditingTrait.EDITING_EVENTS;
       }
 
       @Override
@@ -110,9 +140,16 @@ public class TextEditing {
 
   public static CellTrait validTextEditing(final Predicate<String> validator, final Color validColor, final boolean selectionAvailable) {
     return new BaseCellTrait() {
+      private final CellTrait[] myBaseTraits = { validTextEditing(validator) };
+
       @Override
       protected CellTrait[] getBaseTraits(Cell cell) {
-        return new CellTrait[] { validTextEditing(validator) };
+        return myBaseTraits;
+      }
+
+      @Override
+      public Set<CellEventSpec<?>> getHandledEvents() {
+        return TextEditingTrait.EDITING_EVENTS;
       }
 
       @Override
@@ -132,9 +169,16 @@ public class TextEditing {
 
   public static CellTrait validTextEditing(final Predicate<String> validator, final Color validColor) {
     return new BaseCellTrait() {
+      private final CellTrait[] myBaseTraits = { validTextEditing(validator) };
+
       @Override
       protected CellTrait[] getBaseTraits(Cell cell) {
-        return new CellTrait[] { validTextEditing(validator) };
+        return myBaseTraits;
+      }
+
+      @Override
+      public Set<CellEventSpec<?>> getHandledEvents() {
+        return TextEditingTrait.EDITING_EVENTS;
       }
 
       @Override
@@ -152,7 +196,12 @@ public class TextEditing {
     return new BaseCellTrait() {
       @Override
       protected CellTrait[] getBaseTraits(Cell cell) {
-        return new CellTrait[] { new ValidTextEditingTrait() };
+        return VALID_TEXT_EDITING_BASE;
+      }
+
+      @Override
+      public Set<CellEventSpec<?>> getHandledEvents() {
+        return TextEditingTrait.EDITING_EVENTS;
       }
 
       @Override
@@ -23,15 +23,26 @@ import jetbrains.jetpad.event.TextClipboardContent;
 import jetbrains.jetpad.model.event.Registration;
 import jetbrains.jetpad.cell.*;
 import jetbrains.jetpad.cell.completion.*;
+import jetbrains.jetpad.cell.event.CellEventSpec;
 import jetbrains.jetpad.cell.event.CompletionEvent;
 import jetbrains.jetpad.cell.trait.CellTraitPropertySpec;
 
 import java.util.List;
+import java.util.Set;
 
 public class TextEditingTrait extends TextNavigationTrait {
+  static final Set<CellEventSpec<?>> EDITING_EVENTS = CellEventSpec.setOf(
+    CellEventSpec.KEY_PRESSED, CellEventSpec.KEY_TYPED, CellEventSpec.MOUSE_PRESSED, CellEventSpec.COMPLETE,
+    CellEventSpec.COPY, CellEventSpec.CUT, CellEventSpec.PASTE);
+
   public TextEditingTrait() {
   }
 
+  @Override
+  public Set<CellEventSpec<?>> getHandledEvents() {
+    return EDITING_EVENTS;
+  }
+
   @Override
   public Object get(Cell cell, CellTraitPropertySpec<?> spec) {
     if (spec == Completion.COMPLETION_CONTROLLER) {
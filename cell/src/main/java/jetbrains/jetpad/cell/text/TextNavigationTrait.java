@@ -24,13 +24,19 @@ import jetbrains.jetpad.event.ModifierKey;
 import jetbrains.jetpad.event.MouseEvent;
 import jetbrains.jetpad.cell.*;
 import jetbrains.jetpad.cell.completion.*;
+import jetbrains.jetpad.cell.event.CellEventSpec;
 import jetbrains.jetpad.cell.event.CompletionEvent;
 import jetbrains.jetpad.cell.trait.BaseCellTrait;
 import jetbrains.jetpad.cell.trait.CellTraitPropertySpec;
 
+import java.util.Set;
+
 class TextNavigationTrait extends BaseCellTrait {
   static final CellTraitPropertySpec<Boolean> SELECTION_AVAILABLE = new CellTraitPropertySpec<Boolean>("selectionAvailable", true);
 
+  static final Set<CellEventSpec<?>> NAVIGATION_EVENTS = CellEventSpec.setOf(
+    CellEventSpec.KEY_PRESSED, CellEventSpec.KEY_TYPED, CellEventSpec.MOUSE_PRESSED, CellEventSpec.COMPLETE);
+
   static int getMinPos(TextCell tv) {
     if (isFirstAllowed(tv)) {
       return 0;
@@ -72,6 +78,11 @@ class TextNavigationTrait extends BaseCellTrait {
     return event.is(key, mods);
   }
 
+  @Override
+  public Set<CellEventSpec<?>> getHandledEvents() {
+    return NAVIGATION_EVENTS;
+  }
+
   @Override
   public void onKeyPressed(Cell c, KeyEvent event) {
     TextCell view = (TextCell) c;
@@ -22,7 +22,6 @@ import jetbrains.jetpad.event.KeyEvent;
 import jetbrains.jetpad.event.ModifierKey;
 import jetbrains.jetpad.cell.*;
 import jetbrains.jetpad.cell.action.CellAction;
-import jetbrains.jetpad.cell.completion.Completion;
 import jetbrains.jetpad.cell.completion.CompletionHelper;
 import jetbrains.jetpad.cell.completion.CompletionItem;
 import jetbrains.jetpad.cell.completion.CompletionParameters;
@@ -44,7 +43,7 @@ class ValidTextEditingTrait extends TextEditingTrait {
   public void onKeyPressed(Cell cell, KeyEvent event) {
     TextCell textCell = (TextCell) cell;
     if (event.is(Key.ENTER) && !isEmpty(textCell) && !isValid(textCell)) {
-      CompletionHelper completionHelper = new CompletionHelper(textCell.get(Completion.COMPLETION).get(CompletionParameters.EMPTY));
+      CompletionHelper completionHelper = CompletionHelper.completionFor(textCell, CompletionParameters.EMPTY);
       String prefixText = textCell.prefixText().get();
       if (completionHelper.hasSingleMatch(prefixText, true)) {
         completionHelper.completeFirstMatch(prefixText);
@@ -19,14 +19,26 @@ import jetbrains.jetpad.event.*;
 import jetbrains.jetpad.model.property.PropertyChangeEvent;
 import jetbrains.jetpad.cell.Cell;
 import jetbrains.jetpad.cell.CellPropertySpec;
+import jetbrains.jetpad.cell.event.CellEventSpec;
 import jetbrains.jetpad.cell.event.CompletionEvent;
 import jetbrains.jetpad.cell.event.FocusEvent;
 
+import java.util.Set;
+
 public abstract class BaseCellTrait implements CellTrait {
   protected CellTrait[] getBaseTraits(Cell cell) {
     return CellTrait.EMPTY_ARRAY;
   }
 
+  /**
+   * Subclasses which override event handlers or base traits should only narrow it to events which they
+   * or their base traits handle.
+   */
+  @Override
+  public Set<CellEventSpec<?>> getHandledEvents() {
+    return CellEventSpec.ALL;
+  }
+
   @Override
   public void onPropertyChanged(Cell cell, CellPropertySpec<?> prop, PropertyChangeEvent<?> event) {
     for (CellTrait t : getBaseTraits(cell)) {
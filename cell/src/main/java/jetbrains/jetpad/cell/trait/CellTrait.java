@@ -19,13 +19,22 @@ import jetbrains.jetpad.event.*;
 import jetbrains.jetpad.model.property.PropertyChangeEvent;
 import jetbrains.jetpad.cell.Cell;
 import jetbrains.jetpad.cell.CellPropertySpec;
+import jetbrains.jetpad.cell.event.CellEventSpec;
 import jetbrains.jetpad.cell.event.CompletionEvent;
 import jetbrains.jetpad.cell.event.FocusEvent;
 
+import java.util.Set;
+
 public interface CellTrait {
   public static final Object NULL = new Object();
   public static final CellTrait[] EMPTY_ARRAY = new CellTrait[0];
 
+  /**
+   * Cell events which this trait might handle. Handlers of other cell events aren't called. It's the same set for
+   * all instances of a trait class, so that it can be shared.
+   */
+  Set<CellEventSpec<?>> getHandledEvents();
+
   void onPropertyChanged(Cell cell, CellPropertySpec<?> property, PropertyChangeEvent<?> event);
 
   void onFocusGained(Cell cell, FocusEvent event);
@@ -94,9 +94,11 @@ public class CellFactory {
   public static TextCell keyword(final String text) {
     TextCell result = new TextCell();
     result.addTrait(new BaseCellTrait() {
+      private final CellTrait[] myBaseTraits = { TextEditing.textNavigation(true, true) };
+
       @Override
       protected CellTrait[] getBaseTraits(Cell cell) {
-        return new CellTrait[] { TextEditing.textNavigation(true, true) };
+        return myBaseTraits;
       }
 
       @Override
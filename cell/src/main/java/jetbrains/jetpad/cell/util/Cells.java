@@ -17,17 +17,29 @@ package jetbrains.jetpad.cell.util;
 
 import com.google.common.base.Strings;
 import jetbrains.jetpad.cell.trait.CellTraitEventSpec;
+import jetbrains.jetpad.cell.trait.CellTraitPropertySpec;
 import jetbrains.jetpad.event.Event;
 import jetbrains.jetpad.cell.Cell;
 import jetbrains.jetpad.cell.TextCell;
 import jetbrains.jetpad.cell.position.Positions;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import static jetbrains.jetpad.model.composite.Composites.firstFocusable;
 
 public class Cells {
   public static final CellTraitEventSpec<Event> BECAME_EMPTY = new CellTraitEventSpec<Event>("becameEmpty", false);
+  /**
+   * Dispatched to children of a virtualized vertical cell after they have been mapped to views
+   */
+  public static final CellTraitEventSpec<Event> BECAME_VISIBLE = new CellTraitEventSpec<Event>("becameVisible", false);
+  /**
+   * Whether the cell stands in for content which isn't projected yet. Virtualized vertical cells don't estimate
+   * heights of unmapped children from such cells.
+   */
+  public static final CellTraitPropertySpec<Boolean> PLACEHOLDER = new CellTraitPropertySpec<Boolean>("placeholder", false);
 
   public static Cell getNonPopupAncestor(Cell c) {
     Cell current = c;
@@ -49,6 +61,34 @@ public class Cells {
     }
   }
 
+  /**
+   * Whether c1 precedes c2 in document order. An ancestor precedes its descendants. Cells from different trees
+   * don't precede each other.
+   */
+  public static boolean isBefore(Cell c1, Cell c2) {
+    List<Cell> path1 = pathFromRoot(c1);
+    List<Cell> path2 = pathFromRoot(c2);
+    int common = 0;
+    while (common < path1.size() && common < path2.size() && path1.get(common) == path2.get(common)) {
+      common++;
+    }
+    if (common == 0) return false;
+    if (common == path1.size()) return common < path2.size();
+    if (common == path2.size()) return false;
+
+    List<Cell> siblings = path1.get(common - 1).children();
+    return siblings.indexOf(path1.get(common)) < siblings.indexOf(path2.get(common));
+  }
+
+  private static List<Cell> pathFromRoot(Cell c) {
+    List<Cell> result = new ArrayList<Cell>();
+    for (Cell current = c; current != null; current = current.parent().get()) {
+      result.add(current);
+    }
+    Collections.reverse(result);
+    return result;
+  }
+
   public static boolean isEmpty(Cell cell) {
     if (cell instanceof TextCell) {
       return Strings.isNullOrEmpty(((TextCell) cell).text().get());
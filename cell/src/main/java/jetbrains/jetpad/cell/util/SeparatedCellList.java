@@ -18,6 +18,8 @@ package jetbrains.jetpad.cell.util;
 import jetbrains.jetpad.cell.Cell;
 
 import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 public abstract class SeparatedCellList extends AbstractList<Cell> {
@@ -55,6 +57,38 @@ public abstract class SeparatedCellList extends AbstractList<Cell> {
     }
   }
 
+  @Override
+  public boolean addAll(int index, Collection<? extends Cell> items) {
+    if (items.isEmpty()) return false;
+
+    List<Cell> cells = new ArrayList<Cell>(items);
+    Cell first = cells.get(0);
+    Cell last = cells.get(cells.size() - 1);
+    int size = size();
+
+    List<Cell> baseItems = new ArrayList<Cell>(cells.size() * 2 + 1);
+    if (index > 0) {
+      baseItems.add(createSeparator(get(index - 1), first));
+    }
+    for (int i = 0; i < cells.size(); i++) {
+      if (i > 0) {
+        baseItems.add(createSeparator(cells.get(i - 1), cells.get(i)));
+      }
+      baseItems.add(cells.get(i));
+    }
+    if (index == 0 && size > 0) {
+      baseItems.add(createSeparator(last, get(0)));
+    }
+
+    int baseIndex = index == 0 ? 0 : index * 2 - 1;
+    myBaseList.addAll(baseIndex, baseItems);
+    if (index > 0 && index < size) {
+      int separatorIndex = baseIndex + baseItems.size();
+      myBaseList.set(separatorIndex, createSeparator(last, myBaseList.get(separatorIndex + 1)));
+    }
+    return true;
+  }
+
   @Override
   public Cell remove(int index) {
     if (index == 0) {
@@ -73,6 +107,11 @@ public abstract class SeparatedCellList extends AbstractList<Cell> {
     }
   }
 
+  @Override
+  public void clear() {
+    myBaseList.clear();
+  }
+
   @Override
   public Cell set(int index, Cell element) {
     Cell result = remove(index);
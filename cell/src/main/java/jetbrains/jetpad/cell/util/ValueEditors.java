@@ -56,9 +56,11 @@ public class ValueEditors {
     }
 
     textView.addTrait(new BaseCellTrait() {
+      private final CellTrait[] myBaseTraits = { TextEditing.validTextEditing(new MyEnumValidator(), color) };
+
       @Override
       protected CellTrait[] getBaseTraits(Cell cell) {
-        return new CellTrait[] { TextEditing.validTextEditing(new MyEnumValidator(), color) };
+        return myBaseTraits;
       }
 
       @Override
@@ -124,9 +126,11 @@ public class ValueEditors {
   public static Property<Boolean> booleanProperty(final TextCell textView, final boolean completion) {
     final Color color = textView.textColor().get();
     textView.addTrait(new BaseCellTrait() {
+      private final CellTrait[] myBaseTraits = { TextEditing.validTextEditing(Validators.bool(), color) };
+
       @Override
       protected CellTrait[] getBaseTraits(Cell cell) {
-        return new CellTrait[] { TextEditing.validTextEditing(Validators.bool(), color) };
+        return myBaseTraits;
       }
 
       @Override
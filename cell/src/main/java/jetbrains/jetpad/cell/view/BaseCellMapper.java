@@ -26,6 +26,9 @@ import jetbrains.jetpad.model.property.PropertyChangeEvent;
 import jetbrains.jetpad.cell.*;
 import jetbrains.jetpad.projectional.view.View;
 
+import java.util.ArrayList;
+import java.util.List;
+
 class BaseCellMapper<SourceT extends Cell, TargetT extends View> extends Mapper<SourceT, TargetT> {
   private CellToViewContext myContext;
 
@@ -54,10 +57,7 @@ class BaseCellMapper<SourceT extends Cell, TargetT extends View> extends Mapper<
 
     refreshProperties();
 
-    ObservableList<Cell> children = getSource().children();
-    for (int i = 0; i < children.size(); i++) {
-      childAdded(i, children.get(i));
-    }
+    childrenAdded(0, getSource().children());
 
     updatePopup(new PropertyChangeEvent<Cell>(null, getSource().frontPopup().get()));
     updatePopup(new PropertyChangeEvent<Cell>(null, getSource().bottomPopup().get()));
@@ -171,6 +171,25 @@ class BaseCellMapper<SourceT extends Cell, TargetT extends View> extends Mapper<
     myChildMappers.remove(index);
     getTarget().children().remove(index);
   }
+
+  void childrenAdded(int index, List<Cell> children) {
+    if (managesChildren() || children.isEmpty()) return;
+    List<BaseCellMapper<?, ?>> mappers = new ArrayList<BaseCellMapper<?, ?>>(children.size());
+    List<View> views = new ArrayList<View>(children.size());
+    for (Cell child : children) {
+      BaseCellMapper<?, ?> mapper = createMapper(child);
+      mappers.add(mapper);
+      views.add(mapper.getTarget());
+    }
+    myChildMappers.addAll(index, mappers);
+    getTarget().children().addAll(index, views);
+  }
+
+  void childrenRemoved(int index, int count) {
+    if (managesChildren()) return;
+    myChildMappers.subList(index, index + count).clear();
+    getTarget().children().subList(index, index + count).clear();
+  }
   
   protected BaseCellMapper<?, ?> createMapper(Cell cell) {
     return CellMappers.create(cell, myContext);
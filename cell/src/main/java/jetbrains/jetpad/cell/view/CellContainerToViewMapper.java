@@ -34,6 +34,7 @@ import jetbrains.jetpad.cell.*;
 import jetbrains.jetpad.projectional.view.*;
 
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 public class CellContainerToViewMapper extends Mapper<CellContainer, View> {
@@ -117,10 +118,12 @@ public class CellContainerToViewMapper extends Mapper<CellContainer, View> {
               myContext.containerFocused().set(event.getNewValue());
               for (TextCell cell : myWithCaret) {
                 BaseCellMapper<?, ?> mapper = (BaseCellMapper<?, ?>) rootMapper().getDescendantMapper(cell);
+                if (mapper == null) continue;
                 mapper.refreshProperties();
               }
               for (Cell cell : myHighlighted) {
                 BaseCellMapper<?, ?> mapper = (BaseCellMapper<?, ?>) rootMapper().getDescendantMapper(cell);
+                if (mapper == null) continue;
                 mapper.refreshProperties();
               }
             }
@@ -137,13 +140,13 @@ public class CellContainerToViewMapper extends Mapper<CellContainer, View> {
     return new CellContainerPeer() {
       @Override
       public int getCaretAt(TextCell tv, int x) {
-        TextView textView = (TextView) rootMapper.getDescendantMapper(tv).getTarget();
+        TextView textView = (TextView) mappedDescendantMapper(tv).getTarget();
         return textView.getCaretAt(x);
       }
 
       @Override
       public int getCaretOffset(TextCell tv, int caret) {
-        Mapper<? super TextCell, ?> mapper = rootMapper.getDescendantMapper(tv);
+        Mapper<? super TextCell, ?> mapper = mappedDescendantMapper(tv);
 
         if (mapper == null) {
           throw new UnsupportedOperationException();
@@ -158,6 +161,15 @@ public class CellContainerToViewMapper extends Mapper<CellContainer, View> {
         getTarget().container().root().validate();
         BaseCellMapper<?, ?> descendantMapper = (BaseCellMapper<?, ?>) rootMapper.getDescendantMapper(cell);
         if (descendantMapper == null) {
+          Cell current = cell;
+          for (Cell parent = cell.parent().get(); parent != null; current = parent, parent = parent.parent().get()) {
+            Mapper<?, ?> parentMapper = rootMapper.getDescendantMapper(parent);
+            if (parentMapper instanceof VirtualizedVerticalCellMapper) {
+              return ((VirtualizedVerticalCellMapper) parentMapper).estimatedBounds(current);
+            }
+            if (parentMapper != null) break;
+          }
+
           Rectangle result = null;
           for (Cell child : cell.children()) {
             if (result == null) {
@@ -177,13 +189,37 @@ public class CellContainerToViewMapper extends Mapper<CellContainer, View> {
 
       @Override
       public void scrollTo(Cell cell) {
-        BaseCellMapper<?, ?> mapper = (BaseCellMapper<?, ?>) rootMapper.getDescendantMapper(cell);
+        BaseCellMapper<?, ?> mapper = (BaseCellMapper<?, ?>) mappedDescendantMapper(cell);
         if (mapper == null) return;
         mapper.getTarget().scrollTo();
       }
     };
   }
 
+  /**
+   * Mapper of a cell, making virtualized ancestors map it if needed
+   */
+  private Mapper<? super Cell, ?> mappedDescendantMapper(Cell cell) {
+    RootCellMapper rootMapper = rootMapper();
+    Mapper<? super Cell, ?> result = rootMapper.getDescendantMapper(cell);
+    while (result == null) {
+      Cell child = cell;
+      Cell parent = cell.parent().get();
+      Mapper<?, ?> parentMapper = null;
+      while (parent != null) {
+        parentMapper = rootMapper.getDescendantMapper(parent);
+        if (parentMapper != null) break;
+        child = parent;
+        parent = parent.parent().get();
+      }
+      if (!(parentMapper instanceof VirtualizedVerticalCellMapper)) return null;
+
+      ((VirtualizedVerticalCellMapper) parentMapper).mapChild(child);
+      result = rootMapper.getDescendantMapper(cell);
+    }
+    return result;
+  }
+
   private RootCellMapper rootMapper() {
     return (RootCellMapper) getDescendantMapper(getSource().root);
   }
@@ -322,6 +358,30 @@ public class CellContainerToViewMapper extends Mapper<CellContainer, View> {
         updateCachesOnRemove(change.getItem());
       }
 
+      @Override
+      public void onChildrenAdded(Cell parent, int index, List<Cell> children) {
+        BaseCellMapper<?, ?> parentMapper = (BaseCellMapper<?, ?>) rootMapper().getDescendantMapper(parent);
+        if (parentMapper == null) return;
+
+        parentMapper.childrenAdded(index, children);
+
+        for (Cell child : children) {
+          updateCachesOnAdd(child);
+        }
+      }
+
+      @Override
+      public void onChildrenRemoved(Cell parent, int index, List<Cell> children) {
+        BaseCellMapper<?, ?> parentMapper = (BaseCellMapper<?, ?>) rootMapper().getDescendantMapper(parent);
+        if (parentMapper == null) return;
+
+        parentMapper.childrenRemoved(index, children.size());
+
+        for (Cell child : children) {
+          updateCachesOnRemove(child);
+        }
+      }
+
       private void updateCachesOnAdd(Cell cell) {
         if (cell instanceof TextCell) {
           TextCell text = (TextCell) cell;
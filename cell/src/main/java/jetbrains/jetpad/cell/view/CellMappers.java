@@ -25,7 +25,11 @@ class CellMappers {
     }
 
     if (cell instanceof VerticalCell) {
-      return new VerticalCellMapper((VerticalCell) cell, ctx);
+      VerticalCell vertical = (VerticalCell) cell;
+      if (vertical.virtualized().get()) {
+        return new VirtualizedVerticalCellMapper(vertical, ctx);
+      }
+      return new VerticalCellMapper(vertical, ctx);
     }
 
     if (cell instanceof ScrollCell) {
@@ -0,0 +1,319 @@
+/*
+ * Copyright 2012-2013 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.cell.view;
+
+import jetbrains.jetpad.geometry.Rectangle;
+import jetbrains.jetpad.geometry.Vector;
+import jetbrains.jetpad.mapper.MappingContext;
+import jetbrains.jetpad.model.collections.list.ObservableList;
+import jetbrains.jetpad.model.event.EventHandler;
+import jetbrains.jetpad.model.event.Registration;
+import jetbrains.jetpad.model.property.PropertyChangeEvent;
+import jetbrains.jetpad.cell.Cell;
+import jetbrains.jetpad.cell.VerticalCell;
+import jetbrains.jetpad.cell.util.Cells;
+import jetbrains.jetpad.event.Event;
+import jetbrains.jetpad.projectional.view.RectView;
+import jetbrains.jetpad.projectional.view.ScrollView;
+import jetbrains.jetpad.projectional.view.View;
+import jetbrains.jetpad.projectional.view.ViewContainer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Maps only a contiguous window of children which are near the visible area. Unmapped children before and after
+ * the window are replaced with spacers whose height is estimated from the average height of mapped children.
+ * The window is moved only when it doesn't cover the visible area with half of the overscan, so that
+ * the difference between estimated and real heights doesn't make it jump back and forth.
+ * Children which were added to the window receive {@link Cells#BECAME_VISIBLE} when the container is valid.
+ */
+class VirtualizedVerticalCellMapper extends VerticalCellMapper {
+  static final int OVERSCAN = 500;
+  static final int INITIAL_CHILDREN = 50;
+  static final int DEFAULT_CHILD_HEIGHT = 20;
+
+  private ObservableList<BaseCellMapper<?, ?>> myWindow;
+  private int myFirst;
+  private int myChildHeight = DEFAULT_CHILD_HEIGHT;
+  private RectView myTopSpacer = new RectView();
+  private RectView myBottomSpacer = new RectView();
+  private List<Cell> myShown = new ArrayList<Cell>();
+  private boolean myUpdateScheduled;
+  private Registration myBoundsReg;
+  private Registration myVisibleRectReg;
+
+  VirtualizedVerticalCellMapper(VerticalCell source, CellToViewContext ctx) {
+    super(source, ctx);
+    myWindow = createChildList();
+  }
+
+  @Override
+  boolean managesChildren() {
+    return true;
+  }
+
+  @Override
+  protected void onAttach(MappingContext ctx) {
+    getTarget().children().add(myTopSpacer);
+    getTarget().children().add(myBottomSpacer);
+
+    super.onAttach(ctx);
+
+    myBoundsReg = getTarget().bounds().addHandler(new EventHandler<PropertyChangeEvent<Rectangle>>() {
+      @Override
+      public void onEvent(PropertyChangeEvent<Rectangle> event) {
+        scheduleUpdate();
+      }
+    });
+  }
+
+  @Override
+  protected void onDetach() {
+    myBoundsReg.remove();
+    if (myVisibleRectReg != null) {
+      myVisibleRectReg.remove();
+      myVisibleRectReg = null;
+    }
+    myWindow.clear();
+    myShown.clear();
+    myFirst = 0;
+
+    super.onDetach();
+  }
+
+  int windowStart() {
+    return myFirst;
+  }
+
+  int windowEnd() {
+    return myFirst + myWindow.size();
+  }
+
+  @Override
+  void childAdded(int index, Cell child) {
+    childrenAdded(index, Collections.singletonList(child));
+  }
+
+  @Override
+  void childRemoved(int index, Cell child) {
+    childrenRemoved(index, 1);
+  }
+
+  @Override
+  void childrenAdded(int index, List<Cell> children) {
+    if (index < myFirst) {
+      myFirst += children.size();
+    } else if (index <= windowEnd()) {
+      int count = Math.min(children.size(), INITIAL_CHILDREN);
+      if (count < children.size()) {
+        while (windowEnd() > index) {
+          removeFromWindow(myWindow.size() - 1);
+        }
+      }
+      for (int i = 0; i < count; i++) {
+        addToWindow(index - myFirst + i, children.get(i));
+      }
+    }
+    updateSpacers();
+    scheduleUpdate();
+  }
+
+  @Override
+  void childrenRemoved(int index, int count) {
+    int start = Math.max(index, myFirst);
+    int end = Math.min(index + count, windowEnd());
+    for (int i = end - 1; i >= start; i--) {
+      removeFromWindow(i - myFirst);
+    }
+    myFirst -= Math.min(count, Math.max(0, myFirst - index));
+    updateSpacers();
+    scheduleUpdate();
+  }
+
+  /**
+   * Moves the window so that the child is mapped
+   */
+  void mapChild(Cell child) {
+    int index = getSource().children().indexOf(child);
+    if (index == -1) throw new IllegalArgumentException();
+    if (index >= myFirst && index < windowEnd()) return;
+
+    int size = Math.max(1, Math.min(INITIAL_CHILDREN, myWindow.size()));
+    setWindow(Math.max(0, index - size / 2), Math.min(getSource().children().size(), index + (size + 1) / 2));
+    updateSpacers();
+    scheduleUpdate();
+  }
+
+  /**
+   * Bounds of an unmapped child as if all children had average height
+   */
+  Rectangle estimatedBounds(Cell child) {
+    int index = getSource().children().indexOf(child);
+    Rectangle bounds = getTarget().bounds().get();
+    int top;
+    if (index < myFirst) {
+      top = bounds.origin.y + index * myChildHeight;
+    } else {
+      top = myBottomSpacer.bounds().get().origin.y + (index - windowEnd()) * myChildHeight;
+    }
+    return new Rectangle(bounds.origin.x, top, bounds.dimension.x, myChildHeight);
+  }
+
+  private void scheduleUpdate() {
+    final ViewContainer container = getTarget().container();
+    if (myUpdateScheduled || container == null) return;
+
+    if (myVisibleRectReg == null) {
+      myVisibleRectReg = container.addVisibleRectListener(new Runnable() {
+        @Override
+        public void run() {
+          scheduleUpdate();
+        }
+      });
+    }
+
+    myUpdateScheduled = true;
+    container.whenValid(new Runnable() {
+      @Override
+      public void run() {
+        myUpdateScheduled = false;
+        if (isAttached() && getTarget().container() == container) {
+          updateWindow();
+          dispatchShown();
+        }
+      }
+    });
+  }
+
+  private void updateWindow() {
+    Rectangle viewport = viewport();
+    if (viewport == null || !viewport.intersects(getTarget().bounds().get()) || getSource().children().isEmpty()) {
+      if (!myWindow.isEmpty()) {
+        setWindow(myFirst, myFirst);
+        updateSpacers();
+      }
+      return;
+    }
+
+    int top = viewport.origin.y;
+    int bottom = viewport.origin.y + viewport.dimension.y;
+    int first = indexAt(top - OVERSCAN);
+    int last = indexAt(bottom + OVERSCAN) + 1;
+    if (myFirst <= indexAt(top - OVERSCAN / 2) && windowEnd() > indexAt(bottom + OVERSCAN / 2) && myWindow.size() <= 2 * (last - first)) return;
+
+    int height = 0;
+    int measured = 0;
+    for (BaseCellMapper<?, ?> mapper : myWindow) {
+      if (mapper.getSource().get(Cells.PLACEHOLDER)) continue;
+      height += mapper.getTarget().bounds().get().dimension.y;
+      measured++;
+    }
+    if (measured > 0) {
+      myChildHeight = Math.max(1, height / measured);
+    }
+
+    setWindow(first, last);
+    updateSpacers();
+  }
+
+  private int indexAt(int y) {
+    int last = getSource().children().size() - 1;
+    int spacerY = Math.max(0, y - getTarget().bounds().get().origin.y);
+    if (myWindow.isEmpty()) {
+      return Math.min(last, spacerY / myChildHeight);
+    }
+    if (y < myWindow.get(0).getTarget().bounds().get().origin.y) {
+      return Math.min(spacerY / myChildHeight, Math.max(0, myFirst - 1));
+    }
+
+    for (int i = 0; i < myWindow.size(); i++) {
+      Rectangle childBounds = myWindow.get(i).getTarget().bounds().get();
+      if (y < childBounds.origin.y + childBounds.dimension.y) return myFirst + i;
+    }
+
+    int belowY = y - myBottomSpacer.bounds().get().origin.y;
+    return Math.min(last, windowEnd() + Math.max(0, belowY) / myChildHeight);
+  }
+
+  private Rectangle viewport() {
+    Rectangle result = getTarget().container().visibleRect();
+    for (View view = getTarget().parent().get(); view != null && result != null; view = view.parent().get()) {
+      if (view instanceof ScrollView && ((ScrollView) view).scroll().get()) {
+        result = intersect(result, view.bounds().get());
+      }
+    }
+    return result;
+  }
+
+  private Rectangle intersect(Rectangle r1, Rectangle r2) {
+    int left = Math.max(r1.origin.x, r2.origin.x);
+    int top = Math.max(r1.origin.y, r2.origin.y);
+    int right = Math.min(r1.origin.x + r1.dimension.x, r2.origin.x + r2.dimension.x);
+    int bottom = Math.min(r1.origin.y + r1.dimension.y, r2.origin.y + r2.dimension.y);
+    if (left > right || top > bottom) return null;
+    return new Rectangle(left, top, right - left, bottom - top);
+  }
+
+  private void setWindow(int first, int last) {
+    List<Cell> children = getSource().children();
+    while (!myWindow.isEmpty() && myFirst < first) {
+      removeFromWindow(0);
+      myFirst++;
+    }
+    while (!myWindow.isEmpty() && windowEnd() > last) {
+      removeFromWindow(myWindow.size() - 1);
+    }
+    if (myWindow.isEmpty()) {
+      myFirst = first;
+    }
+    while (myFirst > first) {
+      myFirst--;
+      addToWindow(0, children.get(myFirst));
+    }
+    while (windowEnd() < last) {
+      addToWindow(myWindow.size(), children.get(windowEnd()));
+    }
+  }
+
+  private void addToWindow(int index, Cell child) {
+    BaseCellMapper<?, ?> mapper = createMapper(child);
+    myWindow.add(index, mapper);
+    getTarget().children().add(index + 1, mapper.getTarget());
+    myShown.add(child);
+  }
+
+  private void removeFromWindow(int index) {
+    myShown.remove(myWindow.remove(index).getSource());
+    getTarget().children().remove(index + 1);
+  }
+
+  private void dispatchShown() {
+    if (myShown.isEmpty()) return;
+    List<Cell> shown = new ArrayList<Cell>(myShown);
+    myShown.clear();
+    for (Cell cell : shown) {
+      cell.dispatch(new Event(), Cells.BECAME_VISIBLE);
+    }
+  }
+
+  private void updateSpacers() {
+    int below = getSource().children().size() - windowEnd();
+    myTopSpacer.dimension().set(new Vector(0, myFirst * myChildHeight));
+    myBottomSpacer.dimension().set(new Vector(0, below * myChildHeight));
+  }
+}
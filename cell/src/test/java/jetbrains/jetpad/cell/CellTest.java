@@ -15,15 +15,29 @@
  */
 package jetbrains.jetpad.cell;
 
+import jetbrains.jetpad.model.collections.CollectionItemEvent;
 import jetbrains.jetpad.model.event.EventHandler;
 import jetbrains.jetpad.model.property.Property;
 import jetbrains.jetpad.base.Value;
+import jetbrains.jetpad.event.Key;
+import jetbrains.jetpad.event.KeyEvent;
+import jetbrains.jetpad.event.ModifierKey;
 import jetbrains.jetpad.model.property.PropertyChangeEvent;
+import jetbrains.jetpad.cell.event.CellEventSpec;
 import jetbrains.jetpad.cell.event.FocusEvent;
 import jetbrains.jetpad.cell.trait.BaseCellTrait;
+import jetbrains.jetpad.cell.view.MapperCell2View;
+import jetbrains.jetpad.projectional.view.TextView;
+import jetbrains.jetpad.projectional.view.View;
+import jetbrains.jetpad.projectional.view.ViewContainer;
 import org.junit.Test;
+import org.mockito.InOrder;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
 
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
@@ -195,4 +209,216 @@ public class CellTest {
     parent.children().addAll(Arrays.asList(child, child));
   }
 
-}
\ No newline at end of file
+  @Test
+  public void propertiesStoredIndependently() {
+    TextCell cell = new TextCell();
+    CellPropertySpec<Boolean> flag = new CellPropertySpec<Boolean>("flag", true);
+    CellPropertySpec<String> name = new CellPropertySpec<String>("name");
+
+    cell.set(flag, false);
+    cell.set(name, "a");
+    cell.focusable().set(true);
+    cell.text().set("text");
+
+    assertFalse(cell.get(flag));
+    assertEquals("a", cell.get(name));
+    assertTrue(cell.focusable().get());
+    assertEquals("text", cell.text().get());
+
+    cell.set(flag, null);
+    cell.set(name, null);
+
+    assertNull(cell.get(flag));
+    assertNull(cell.get(name));
+    assertTrue(cell.focusable().get());
+    assertEquals("text", cell.text().get());
+
+    cell.set(flag, true);
+    assertTrue(cell.get(flag));
+  }
+
+  @Test
+  public void propertyChangesCoalescedInCommand() {
+    final TextCell cell = new TextCell();
+    container.root.children().add(cell);
+    CellContainerListener listener = mock(CellContainerListener.class);
+    container.addListener(listener);
+
+    container.executeCommand(new Runnable() {
+      @Override
+      public void run() {
+        cell.text().set("a");
+        cell.text().set("b");
+        cell.selected().set(true);
+        cell.selected().set(false);
+      }
+    });
+
+    verify(listener).onViewPropertyChanged(cell, TextCell.TEXT, new PropertyChangeEvent<Object>("", "b"));
+    verify(listener, never()).onViewPropertyChanged(same(cell), same(Cell.SELECTED), any(PropertyChangeEvent.class));
+  }
+
+  @Test
+  public void eventsNotHandledByTraitAreSkipped() {
+    TextCell cell = new TextCell();
+    container.root.children().add(cell);
+    final Value<Integer> handled = new Value<Integer>(0);
+    cell.addTrait(new BaseCellTrait() {
+      @Override
+      public Set<CellEventSpec<?>> getHandledEvents() {
+        return CellEventSpec.setOf(CellEventSpec.KEY_PRESSED);
+      }
+
+      @Override
+      public void onKeyPressed(Cell cell, KeyEvent event) {
+        handled.set(handled.get() + 1);
+      }
+
+      @Override
+      public void onKeyTyped(Cell cell, KeyEvent event) {
+        fail();
+      }
+    });
+
+    cell.dispatch(new KeyEvent(Key.A, 'a', Collections.<ModifierKey>emptySet()), CellEventSpec.KEY_PRESSED);
+    cell.dispatch(new KeyEvent(Key.A, 'a', Collections.<ModifierKey>emptySet()), CellEventSpec.KEY_TYPED);
+
+    assertEquals(1, (int) handled.get());
+  }
+
+  @Test
+  public void focusMovedAfterFocusGainedHandled() {
+    final TextCell first = new TextCell();
+    first.focusable().set(true);
+    final TextCell second = new TextCell();
+    second.focusable().set(true);
+    container.root.children().addAll(Arrays.<Cell>asList(first, second));
+    first.addTrait(new BaseCellTrait() {
+      @Override
+      public void onFocusGained(Cell cell, FocusEvent event) {
+        super.onFocusGained(cell, event);
+        container.afterFocusChange(new Runnable() {
+          @Override
+          public void run() {
+            second.focus();
+          }
+        });
+      }
+    });
+
+    first.focus();
+
+    assertSame(second, container.focusedCell.get());
+    assertFalse(first.focused().get());
+    assertTrue(second.focused().get());
+  }
+
+  @Test
+  public void addAllFiresSingleContainerEvent() {
+    CellContainerListener listener = mock(CellContainerListener.class);
+    container.addListener(listener);
+    TextCell c1 = new TextCell();
+    TextCell c2 = new TextCell();
+
+    container.root.children().addAll(Arrays.<Cell>asList(c1, c2));
+
+    assertSame(container, c2.container());
+    verify(listener).onChildrenAdded(container.root, 0, Arrays.<Cell>asList(c1, c2));
+    verify(listener, never()).onChildAdded(same(container.root), any(CollectionItemEvent.class));
+  }
+
+  @Test
+  public void clearFiresSingleContainerEvent() {
+    TextCell c1 = new TextCell();
+    TextCell c2 = new TextCell();
+    container.root.children().addAll(Arrays.<Cell>asList(c1, c2));
+    CellContainerListener listener = mock(CellContainerListener.class);
+    container.addListener(listener);
+
+    container.root.children().clear();
+
+    assertNull(c1.container());
+    assertTrue(container.root.children().isEmpty());
+    verify(listener).onChildrenRemoved(container.root, 0, Arrays.<Cell>asList(c1, c2));
+    verify(listener, never()).onChildRemoved(same(container.root), any(CollectionItemEvent.class));
+  }
+
+  @Test
+  public void coalescedPropertyChangesPrecedeStructuralChanges() {
+    final TextCell cell = new TextCell();
+    final TextCell child = new TextCell();
+    container.root.children().add(cell);
+    CellContainerListener listener = mock(CellContainerListener.class);
+    container.addListener(listener);
+
+    container.executeCommand(new Runnable() {
+      @Override
+      public void run() {
+        cell.text().set("a");
+        container.root.children().add(child);
+      }
+    });
+
+    InOrder inOrder = inOrder(listener);
+    inOrder.verify(listener).onViewPropertyChanged(cell, TextCell.TEXT, new PropertyChangeEvent<Object>("", "a"));
+    inOrder.verify(listener).onChildAdded(same(container.root), any(CollectionItemEvent.class));
+  }
+
+  @Test
+  public void propertyChangesOfDetachedCellsDropped() {
+    final TextCell parent = new TextCell();
+    final TextCell cell = new TextCell();
+    container.root.children().add(parent);
+    container.root.children().add(cell);
+    CellContainerListener listener = mock(CellContainerListener.class);
+    container.addListener(listener);
+
+    container.executeCommand(new Runnable() {
+      @Override
+      public void run() {
+        cell.text().set("a");
+        parent.text().set("b");
+        parent.children().add(new TextCell());
+        cell.text().set("c");
+        cell.removeFromParent();
+      }
+    });
+
+    verify(listener).onViewPropertyChanged(cell, TextCell.TEXT, new PropertyChangeEvent<Object>("", "a"));
+    verify(listener, never()).onViewPropertyChanged(cell, TextCell.TEXT, new PropertyChangeEvent<Object>("a", "c"));
+  }
+
+  @Test
+  public void viewsUpdatedIfCommandThrows() {
+    final TextCell cell = new TextCell("a");
+    container.root.children().add(cell);
+    ViewContainer viewContainer = new ViewContainer();
+    MapperCell2View.map(container, viewContainer);
+
+    try {
+      container.executeCommand(new Runnable() {
+        @Override
+        public void run() {
+          cell.text().set("b");
+          throw new IllegalStateException();
+        }
+      });
+      fail();
+    } catch (IllegalStateException e) {
+      //expected
+    }
+
+    assertEquals(Arrays.asList("b"), texts(viewContainer.contentRoot()));
+  }
+
+  private List<String> texts(View view) {
+    List<String> result = new ArrayList<String>();
+    if (view instanceof TextView) {
+      result.add(((TextView) view).text().get());
+    }
+    for (View child : view.children()) {
+      result.addAll(texts(child));
+    }
+    return result;
+  }
+}
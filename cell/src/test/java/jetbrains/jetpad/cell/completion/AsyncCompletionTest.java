@@ -0,0 +1,106 @@
+/*
+ * Copyright 2012-2013 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.cell.completion;
+
+import jetbrains.jetpad.cell.*;
+import jetbrains.jetpad.cell.trait.BaseCellTrait;
+import jetbrains.jetpad.cell.trait.CellTraitPropertySpec;
+import jetbrains.jetpad.model.event.Registration;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class AsyncCompletionTest extends CompletionTestCase {
+  private HorizontalCell target = new HorizontalCell();
+  private AsyncCompletionSupplier.Callback callback;
+  private boolean cancelled;
+
+  @Before
+  public void init() {
+    target.addTrait(new BaseCellTrait() {
+      @Override
+      public Object get(Cell cell, CellTraitPropertySpec<?> spec) {
+        if (spec == Completion.COMPLETION) {
+          return new AsyncCompletionSupplier() {
+            @Override
+            public List<CompletionItem> get(CompletionParameters cp) {
+              return Collections.emptyList();
+            }
+
+            @Override
+            public Registration getAsync(CompletionParameters cp, Callback c) {
+              callback = c;
+              return new Registration() {
+                @Override
+                public void remove() {
+                  cancelled = true;
+                }
+              };
+            }
+          };
+        }
+        return super.get(cell, spec);
+      }
+    });
+    target.addTrait(CompletionSupport.trait());
+
+    target.focusable().set(true);
+    myCellContainer.root.children().add(target);
+
+    target.focus();
+  }
+
+  @Test
+  public void itemsArriveAfterMenuIsShown() {
+    complete();
+    assertNotNull(target.frontPopup().get());
+
+    callback.onItems(Arrays.<CompletionItem>asList(new SetTextToCompletionItem("b")));
+    callback.onItems(Arrays.<CompletionItem>asList(new SetTextToCompletionItem("a")));
+    callback.onFinished();
+    enter();
+
+    assertCompleted("a");
+  }
+
+  @Test
+  public void selectionSurvivesLoading() {
+    complete();
+    callback.onItems(Arrays.<CompletionItem>asList(new SetTextToCompletionItem("b"), new SetTextToCompletionItem("c")));
+    down();
+
+    callback.onItems(Arrays.<CompletionItem>asList(new SetTextToCompletionItem("a")));
+    enter();
+
+    assertCompleted("c");
+  }
+
+  @Test
+  public void closingCancelsLoading() {
+    complete();
+    escape();
+
+    assertTrue(cancelled);
+    assertNull(target.frontPopup().get());
+    callback.onItems(Arrays.<CompletionItem>asList(new SetTextToCompletionItem("a")));
+    assertNotCompleted();
+  }
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright 2012-2013 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.cell.completion;
+
+import com.google.common.base.Function;
+import jetbrains.jetpad.cell.action.CellAction;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class CompletionHelperTest {
+  @Test
+  public void prefixLookups() {
+    CompletionItem a = item("a");
+    CompletionItem ab = item("ab");
+    CompletionItem abc = item("abc");
+    CompletionItem b = item("b");
+    CompletionHelper helper = new CompletionHelper(Arrays.asList(abc, b, ab, a));
+
+    assertEquals(Arrays.asList(abc, ab, a), helper.prefixedBy("a"));
+    assertEquals(Arrays.asList(abc), helper.strictlyPrefixedBy("ab"));
+    assertEquals(Arrays.asList(ab), helper.matches("ab"));
+    assertEquals(Arrays.asList(abc, b, ab, a), helper.prefixedBy(""));
+    assertTrue(helper.prefixedBy("abcd").isEmpty());
+    assertTrue(helper.matches("c").isEmpty());
+  }
+
+  @Test
+  public void narrowingAndWidening() {
+    CompletionItem abc = item("abc");
+    CompletionItem abd = item("abd");
+    CompletionItem ac = item("ac");
+    CompletionHelper helper = new CompletionHelper(Arrays.asList(abc, abd, ac));
+
+    assertEquals(Arrays.asList(abc, abd, ac), helper.prefixedBy("a"));
+    assertEquals(Arrays.asList(abc, abd), helper.prefixedBy("ab"));
+    assertEquals(Arrays.asList(abd), helper.prefixedBy("abd"));
+    assertEquals(Arrays.asList(ac), helper.prefixedBy("ac"));
+  }
+
+  @Test
+  public void lowPriorityItemsAreBeaten() {
+    CompletionItem keyword = item("if");
+    CompletionItem variable = new LowPriorityItem("if");
+    CompletionHelper helper = new CompletionHelper(Arrays.asList(variable, keyword));
+
+    assertEquals(Arrays.asList(keyword), helper.matches("if"));
+    assertTrue(helper.hasSingleMatch("if", false));
+  }
+
+  @Test
+  public void wrappedAndCustomItems() {
+    CompletionItem number = new NumberItem();
+    CompletionItem wrapped = new CompletionItemWrapper(item("12a"));
+    CompletionHelper helper = new CompletionHelper(Arrays.asList(wrapped, number));
+
+    assertEquals(Arrays.asList(wrapped, number), helper.prefixedBy("12"));
+    assertEquals(Arrays.asList(number), helper.matches("12"));
+    assertEquals(Arrays.asList(wrapped), helper.strictlyPrefixedBy("12"));
+  }
+
+  @Test
+  public void overriddenMatchingIsUsed() {
+    CompletionItem caseInsensitive = new SimpleCompletionItem("If") {
+      @Override
+      public boolean isMatch(String text) {
+        return "if".equalsIgnoreCase(text);
+      }
+
+      @Override
+      public CellAction complete(String text) {
+        return CellAction.EMPTY;
+      }
+    };
+    CompletionItem alias = new CompletionItemWrapper(item("while")) {
+      @Override
+      public boolean isMatch(String text) {
+        return super.isMatch(text) || text.equals("loop");
+      }
+    };
+    CompletionHelper helper = new CompletionHelper(Arrays.asList(caseInsensitive, alias, item("else")));
+
+    for (int i = 0; i < 3; i++) {
+      assertEquals(Arrays.asList(caseInsensitive), helper.matches("if"));
+      assertEquals(Arrays.asList(alias), helper.matches("loop"));
+      assertEquals(Arrays.asList(alias), helper.matches("while"));
+    }
+  }
+
+  @Test
+  public void resultsWrappedAfterMatching() {
+    CompletionItem a = item("a");
+    CompletionItem ab = item("ab");
+    CompletionItem b = item("b");
+    final List<CompletionItem> wrapped = new ArrayList<CompletionItem>();
+    CompletionHelper helper = new CompletionHelper(Arrays.asList(a, ab, b)).wrapResults(new Function<CompletionItem, CompletionItem>() {
+      @Override
+      public CompletionItem apply(CompletionItem item) {
+        wrapped.add(item);
+        return new WrapperCompletionItem(item);
+      }
+    });
+
+    List<CompletionItem> matches = helper.matches("ab");
+    assertEquals(Arrays.asList(ab), wrapped);
+    assertEquals(1, matches.size());
+    assertSame(ab, ((WrapperCompletionItem) matches.get(0)).getItem());
+
+    wrapped.clear();
+    assertEquals(2, helper.prefixedBy("a").size());
+    assertEquals(Arrays.asList(a, ab), wrapped);
+    assertTrue(helper.hasSingleMatch("b", false));
+  }
+
+  @Test
+  public void sameResultsAsLinearScan() {
+    Random random = new Random(17);
+    List<CompletionItem> items = new ArrayList<CompletionItem>();
+    for (int i = 0; i < 500; i++) {
+      String text = randomText(random);
+      items.add(random.nextInt(5) == 0 ? new LowPriorityItem(text) : item(text));
+    }
+    items.add(new NumberItem());
+    CompletionHelper helper = new CompletionHelper(items);
+
+    for (int i = 0; i < 500; i++) {
+      String text = randomText(random);
+      for (int length = 0; length <= text.length(); length++) {
+        String prefix = text.substring(0, length);
+        assertEquals(linearScan(items, prefix, 0), helper.prefixedBy(prefix));
+        assertEquals(linearScan(items, prefix, 1), helper.strictlyPrefixedBy(prefix));
+        assertEquals(withoutLowPriority(linearScan(items, prefix, 2)), helper.matches(prefix));
+      }
+    }
+  }
+
+  private String randomText(Random random) {
+    StringBuilder result = new StringBuilder();
+    int length = 1 + random.nextInt(4);
+    for (int i = 0; i < length; i++) {
+      result.append("abc1".charAt(random.nextInt(4)));
+    }
+    return result.toString();
+  }
+
+  private List<CompletionItem> linearScan(List<CompletionItem> items, String text, int kind) {
+    List<CompletionItem> result = new ArrayList<CompletionItem>();
+    for (CompletionItem item : items) {
+      boolean matches = kind == 0 ? item.isMatchPrefix(text) : (kind == 1 ? item.isStrictMatchPrefix(text) : item.isMatch(text));
+      if (matches) {
+        result.add(item);
+      }
+    }
+    return result;
+  }
+
+  private List<CompletionItem> withoutLowPriority(List<CompletionItem> items) {
+    List<CompletionItem> result = new ArrayList<CompletionItem>();
+    for (CompletionItem item : items) {
+      if (!item.isLowPriority()) {
+        result.add(item);
+      }
+    }
+    return result.isEmpty() ? items : result;
+  }
+
+  private CompletionItem item(String text) {
+    return new SimpleCompletionItem(text) {
+      @Override
+      public CellAction complete(String text) {
+        return CellAction.EMPTY;
+      }
+    };
+  }
+
+  private class LowPriorityItem extends SimpleCompletionItem {
+    private LowPriorityItem(String text) {
+      super(text);
+    }
+
+    @Override
+    public boolean isLowPriority() {
+      return true;
+    }
+
+    @Override
+    public CellAction complete(String text) {
+      return CellAction.EMPTY;
+    }
+  }
+
+  private class NumberItem extends BaseCompletionItem {
+    @Override
+    public String visibleText(String text) {
+      return "number";
+    }
+
+    @Override
+    public boolean isStrictMatchPrefix(String text) {
+      return false;
+    }
+
+    @Override
+    public boolean isMatch(String text) {
+      return text.length() > 0 && text.matches("[0-9]+");
+    }
+
+    @Override
+    public CellAction complete(String text) {
+      return CellAction.EMPTY;
+    }
+  }
+}
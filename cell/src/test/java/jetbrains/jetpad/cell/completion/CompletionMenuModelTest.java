@@ -0,0 +1,94 @@
+/*
+ * Copyright 2012-2013 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.cell.completion;
+
+import jetbrains.jetpad.cell.action.CellAction;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class CompletionMenuModelTest {
+  private CompletionMenuModel model = new CompletionMenuModel();
+
+  @Test
+  public void visibleItemsFollowText() {
+    CompletionItem ab = item("ab");
+    CompletionItem a = item("a");
+    CompletionItem b = item("b");
+    model.items.addAll(Arrays.asList(ab, a, b));
+
+    assertEquals(Arrays.asList(a, ab, b), model.visibleItems);
+    assertSame(a, model.selectedItem.get());
+
+    model.text.set("a");
+    assertEquals(Arrays.asList(a, ab), model.visibleItems);
+
+    model.text.set("ab");
+    assertEquals(Arrays.asList(ab), model.visibleItems);
+    assertSame(ab, model.selectedItem.get());
+
+    model.text.set("c");
+    assertTrue(model.visibleItems.isEmpty());
+    assertNull(model.selectedItem.get());
+
+    model.text.set("");
+    assertEquals(Arrays.asList(a, ab, b), model.visibleItems);
+  }
+
+  @Test
+  public void exactMatchGoesFirst() {
+    CompletionItem abc = item("abc", "a long item");
+    CompletionItem ab = item("ab", "b short item");
+    model.items.addAll(Arrays.asList(abc, ab));
+
+    model.text.set("ab");
+    assertEquals(Arrays.asList(ab, abc), model.visibleItems);
+  }
+
+  @Test
+  public void itemsChangedAfterTextSet() {
+    model.text.set("a");
+    CompletionItem b = item("b");
+    CompletionItem ac = item("ac");
+    CompletionItem ab = item("ab");
+    model.items.add(b);
+    model.items.add(ac);
+    model.items.add(ab);
+
+    assertEquals(Arrays.asList(ab, ac), model.visibleItems);
+
+    model.items.remove(ab);
+    assertEquals(Arrays.asList(ac), model.visibleItems);
+
+    model.text.set("");
+    assertEquals(Arrays.asList(ac, b), model.visibleItems);
+  }
+
+  private CompletionItem item(String text) {
+    return item(text, text);
+  }
+
+  private CompletionItem item(String text, String visibleText) {
+    return new SimpleCompletionItem(text, visibleText) {
+      @Override
+      public CellAction complete(String text) {
+        return CellAction.EMPTY;
+      }
+    };
+  }
+}
@@ -235,6 +235,62 @@ public class IndentCellTest {
     assertCell("[['1'], ['a', 'd']]");
   }
 
+  @Test
+  public void insertAfterEmptyList() {
+    children.addAll(Arrays.asList(text("a"), list(), text("b")));
+
+    children.add(2, text("z"));
+
+    assertCell("[['a', 'z', 'b']]");
+  }
+
+  @Test
+  public void deleteNonIndentedLeafInIndentedLine() {
+    children.addAll(Arrays.asList(text("a"), list(true, newLine(), text("b")), text("c")));
+
+    children.remove(2);
+
+    assertCell("[['a'], ['  ', 'b']]");
+  }
+
+  @Test
+  public void manyLines() {
+    for (int i = 0; i < 100; i++) {
+      children.addAll(Arrays.asList(text("" + i), newLine()));
+    }
+    children.add(102, text("z"));
+    children.remove(1);
+
+    StringBuilder expected = new StringBuilder("[['0', '1'], ");
+    for (int i = 2; i < 100; i++) {
+      expected.append(i == 51 ? "['z', '51'], " : "['" + i + "'], ");
+    }
+    expected.append("[]]");
+    assertCell(expected.toString());
+  }
+
+  @Test
+  public void insertIntoDeeplyNestedEmptyList() {
+    IndentPart inner = list();
+    children.addAll(Arrays.asList(text("a"), list(list(), list(inner)), text("b")));
+
+    inner.children().add(text("z"));
+
+    assertCell("[['a', 'z', 'b']]");
+  }
+
+  @Test
+  public void nestedListVisibilityChange() {
+    IndentPart l = list(list(text("b")), text("c"));
+    children.addAll(Arrays.asList(text("a"), l, text("d")));
+
+    l.setVisible(false);
+    assertCell("[['a', 'd']]");
+
+    l.setVisible(true);
+    assertCell("[['a', 'b', 'c', 'd']]");
+  }
+
   private void assertCell(String presentation) {
     assertEquals(presentation, CellUtil.toString(indentCell));
   }
@@ -114,9 +114,9 @@ public class IndentCell extends VerticalCell {
     };
   }
 
-  void childAdded(IndentPart child) {
+  void childAdded(IndentPart child, int index) {
     if (isCellDescendant(child)) return;
-    myUpdater.childAdded(child);
+    myUpdater.childAdded(child, index);
   }
 
   void childRemoved(IndentPart child) {
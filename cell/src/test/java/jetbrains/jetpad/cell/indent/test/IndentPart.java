@@ -34,7 +34,7 @@ public class IndentPart extends HasParent<IndentPart, IndentPart> implements Com
       super.afterItemAdded(index, item, success);
       if (!success || indentCell() == null) return;
 
-      indentCell().childAdded(item);
+      indentCell().childAdded(item, index);
     }
 
     @Override
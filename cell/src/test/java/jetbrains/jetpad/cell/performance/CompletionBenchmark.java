@@ -0,0 +1,157 @@
+/*
+ * Copyright 2012-2013 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.cell.performance;
+
+import jetbrains.jetpad.cell.action.CellAction;
+import jetbrains.jetpad.cell.completion.CompletionHelper;
+import jetbrains.jetpad.cell.completion.CompletionItem;
+import jetbrains.jetpad.cell.completion.SimpleCompletionItem;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class CompletionBenchmark {
+  private static final int ITERATIONS = 20;
+
+  public static void main(String[] args) {
+    //warm up
+    measure(10000);
+    measureOneShot(10000);
+
+    for (int count : new int[] { 10000, 50000, 200000 }) {
+      long[] result = measure(count);
+      System.out.println(count + " items: index " + result[0] + " us per keystroke, linear scan " + result[1] + " us per keystroke");
+      long[] oneShot = measureOneShot(count);
+      System.out.println(count + " items: one-shot helper " + oneShot[0] + " us per lookup, linear scan " + oneShot[1] + " us per lookup");
+    }
+  }
+
+  /**
+   * A helper created for a single lookup, as text editing traits do with CompletionHelper.completionFor
+   */
+  private static long[] measureOneShot(int count) {
+    Random random = new Random(7);
+    List<CompletionItem> items = createItems(random, count);
+    String typed = ((SimpleCompletionItem) items.get(count / 2)).visibleText("");
+
+    long start = System.nanoTime();
+    int helperResult = 0;
+    for (int i = 0; i < ITERATIONS; i++) {
+      helperResult += new CompletionHelper(items).matches(typed).size();
+    }
+    long helperTime = (System.nanoTime() - start) / ITERATIONS / 1000;
+
+    start = System.nanoTime();
+    int scanResult = 0;
+    for (int i = 0; i < ITERATIONS; i++) {
+      scanResult += scan(items, typed, 2).size();
+    }
+    long scanTime = (System.nanoTime() - start) / ITERATIONS / 1000;
+
+    if (helperResult != scanResult) throw new IllegalStateException();
+    return new long[] { helperTime, scanTime };
+  }
+
+  private static List<CompletionItem> createItems(Random random, int count) {
+    List<CompletionItem> items = new ArrayList<CompletionItem>();
+    for (int i = 0; i < count; i++) {
+      items.add(new Item(symbol(random)));
+    }
+    return items;
+  }
+
+  private static long[] measure(int count) {
+    Random random = new Random(7);
+    List<CompletionItem> items = createItems(random, count);
+    String typed = ((SimpleCompletionItem) items.get(count / 2)).visibleText("");
+    CompletionHelper helper = new CompletionHelper(items);
+
+    long start = System.nanoTime();
+    int indexResult = 0;
+    for (int i = 0; i < ITERATIONS; i++) {
+      for (int length = 1; length <= typed.length(); length++) {
+        indexResult += keystroke(helper, typed.substring(0, length));
+      }
+    }
+    long indexTime = (System.nanoTime() - start) / ITERATIONS / typed.length() / 1000;
+
+    start = System.nanoTime();
+    int scanResult = 0;
+    for (int i = 0; i < ITERATIONS; i++) {
+      for (int length = 1; length <= typed.length(); length++) {
+        scanResult += linearKeystroke(items, typed.substring(0, length));
+      }
+    }
+    long scanTime = (System.nanoTime() - start) / ITERATIONS / typed.length() / 1000;
+
+    if (indexResult != scanResult) throw new IllegalStateException();
+    return new long[] { indexTime, scanTime };
+  }
+
+  private static String symbol(Random random) {
+    StringBuilder result = new StringBuilder();
+    int length = 4 + random.nextInt(8);
+    for (int i = 0; i < length; i++) {
+      result.append((char) ('a' + random.nextInt(26)));
+    }
+    return result.toString();
+  }
+
+  /**
+   * Lookups which text editing traits make when a character is typed
+   */
+  private static int keystroke(CompletionHelper helper, String text) {
+    int result = helper.hasSingleMatch(text, false) ? 1 : 0;
+    result += helper.prefixedBy(text).size();
+    result += helper.isBoundary(text, text.length() - 1) ? 1 : 0;
+    return result;
+  }
+
+  private static int linearKeystroke(List<CompletionItem> items, String text) {
+    int matches = scan(items, text, 2).size();
+    int strictlyPrefixed = scan(items, text, 1).size();
+    int result = matches == 1 && strictlyPrefixed == 0 ? 1 : 0;
+    result += scan(items, text, 0).size();
+    if (text.length() > 1) {
+      String prefix = text.substring(0, text.length() - 1);
+      result += scan(items, prefix, 2).size() == 1 && scan(items, text, 0).isEmpty() ? 1 : 0;
+    }
+    return result;
+  }
+
+  private static List<CompletionItem> scan(List<CompletionItem> items, String text, int kind) {
+    List<CompletionItem> result = new ArrayList<CompletionItem>();
+    for (CompletionItem item : items) {
+      boolean matches = kind == 0 ? item.isMatchPrefix(text) : (kind == 1 ? item.isStrictMatchPrefix(text) : item.isMatch(text));
+      if (matches) {
+        result.add(item);
+      }
+    }
+    return result;
+  }
+
+  private static class Item extends SimpleCompletionItem {
+    private Item(String text) {
+      super(text);
+    }
+
+    @Override
+    public CellAction complete(String text) {
+      return CellAction.EMPTY;
+    }
+  }
+}
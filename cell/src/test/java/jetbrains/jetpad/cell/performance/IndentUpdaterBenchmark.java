@@ -0,0 +1,53 @@
+/*
+ * Copyright 2012-2013 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.cell.performance;
+
+import jetbrains.jetpad.cell.TextCell;
+import jetbrains.jetpad.cell.indent.test.CellPart;
+import jetbrains.jetpad.cell.indent.test.IndentCell;
+import jetbrains.jetpad.cell.indent.test.IndentPart;
+import jetbrains.jetpad.cell.indent.test.NewLinePart;
+
+import java.util.List;
+
+public class IndentUpdaterBenchmark {
+  private static final int TOKENS_PER_LINE = 4;
+
+  public static void main(String[] args) {
+    //warm up
+    measure(2000, false);
+    measure(2000, true);
+
+    for (int lines : new int[] { 2000, 4000, 8000, 16000 }) {
+      System.out.println(lines + " lines: append " + measure(lines, false) + " ms, insert in the middle " + measure(lines, true) + " ms");
+    }
+  }
+
+  private static long measure(int lines, boolean middle) {
+    IndentCell cell = new IndentCell();
+    List<IndentPart> children = cell.root().children;
+
+    long start = System.nanoTime();
+    for (int i = 0; i < lines; i++) {
+      int index = middle ? (children.size() / 2) / (TOKENS_PER_LINE + 1) * (TOKENS_PER_LINE + 1) : children.size();
+      for (int j = 0; j < TOKENS_PER_LINE; j++) {
+        children.add(index++, new CellPart(new TextCell("token" + j)));
+      }
+      children.add(index, new NewLinePart());
+    }
+    return (System.nanoTime() - start) / 1000000;
+  }
+}
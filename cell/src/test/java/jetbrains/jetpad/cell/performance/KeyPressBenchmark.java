@@ -0,0 +1,112 @@
+/*
+ * Copyright 2012-2013 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.cell.performance;
+
+import jetbrains.jetpad.cell.Cell;
+import jetbrains.jetpad.cell.CellContainer;
+import jetbrains.jetpad.cell.HorizontalCell;
+import jetbrains.jetpad.cell.TextCell;
+import jetbrains.jetpad.cell.text.TextEditing;
+import jetbrains.jetpad.cell.trait.BaseCellTrait;
+import jetbrains.jetpad.event.Key;
+import jetbrains.jetpad.event.KeyEvent;
+import jetbrains.jetpad.event.KeyMap;
+import jetbrains.jetpad.event.ModifierKey;
+
+import java.util.Collections;
+
+/**
+ * Latency of a key press which bubbles from a focused text cell through deeply nested projections
+ * where every level has a trait which handles several keys, like list synchronizers do.
+ */
+public class KeyPressBenchmark {
+  private static final int PRESSES = 20000;
+  private static final int RUNS = 5;
+  private static final KeyMap<Boolean> BINDINGS = new KeyMap<Boolean>()
+    .bind(true, Key.ENTER)
+    .bind(true, Key.INSERT)
+    .bind(true, Key.ENTER, ModifierKey.SHIFT)
+    .bind(true, Key.DELETE)
+    .bind(true, Key.BACKSPACE)
+    .bind(true, Key.DELETE, ModifierKey.CONTROL)
+    .bind(true, Key.BACKSPACE, ModifierKey.CONTROL)
+    .bind(true, Key.UP, ModifierKey.ALT);
+
+  public static void main(String[] args) {
+    //warm up
+    measure(100, false);
+    measure(100, true);
+
+    for (int depth : new int[] { 10, 100, 1000 }) {
+      long chains = Long.MAX_VALUE;
+      long keyMaps = Long.MAX_VALUE;
+      for (int i = 0; i < RUNS; i++) {
+        chains = Math.min(chains, measure(depth, false));
+        keyMaps = Math.min(keyMaps, measure(depth, true));
+      }
+      System.out.println("depth " + depth + ": is() chains " + chains + " ns per key press, key maps " + keyMaps + " ns per key press");
+    }
+  }
+
+  private static long measure(int depth, boolean keyMap) {
+    CellContainer container = new CellContainer();
+    Cell parent = container.root;
+    for (int i = 0; i < depth; i++) {
+      HorizontalCell level = new HorizontalCell();
+      level.addTrait(keyMap ? keyMapTrait() : chainTrait());
+      parent.children().add(level);
+      parent = level;
+    }
+    TextCell leaf = new TextCell("text");
+    leaf.addTrait(TextEditing.textEditing());
+    parent.children().add(leaf);
+    leaf.focus();
+
+    long start = System.nanoTime();
+    for (int i = 0; i < PRESSES; i++) {
+      container.keyPressed(new KeyEvent(Key.F2, (char) 0, Collections.<ModifierKey>emptySet()));
+    }
+    return (System.nanoTime() - start) / PRESSES;
+  }
+
+  private static BaseCellTrait chainTrait() {
+    return new BaseCellTrait() {
+      @Override
+      public void onKeyPressed(Cell cell, KeyEvent event) {
+        if (event.is(Key.ENTER) || event.is(Key.INSERT) || event.is(Key.ENTER, ModifierKey.SHIFT)
+            || event.is(Key.DELETE) || event.is(Key.BACKSPACE) || event.is(Key.DELETE, ModifierKey.CONTROL)
+            || event.is(Key.BACKSPACE, ModifierKey.CONTROL) || event.is(Key.UP, ModifierKey.ALT)) {
+          event.consume();
+          return;
+        }
+        super.onKeyPressed(cell, event);
+      }
+    };
+  }
+
+  private static BaseCellTrait keyMapTrait() {
+    return new BaseCellTrait() {
+      @Override
+      public void onKeyPressed(Cell cell, KeyEvent event) {
+        if (BINDINGS.get(event) != null) {
+          event.consume();
+          return;
+        }
+        super.onKeyPressed(cell, event);
+      }
+    };
+  }
+}
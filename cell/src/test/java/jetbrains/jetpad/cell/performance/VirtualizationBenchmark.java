@@ -0,0 +1,79 @@
+/*
+ * Copyright 2012-2013 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.cell.performance;
+
+import jetbrains.jetpad.cell.CellContainer;
+import jetbrains.jetpad.cell.HorizontalCell;
+import jetbrains.jetpad.cell.TextCell;
+import jetbrains.jetpad.cell.VerticalCell;
+import jetbrains.jetpad.cell.view.MapperCell2View;
+import jetbrains.jetpad.geometry.Rectangle;
+import jetbrains.jetpad.projectional.view.View;
+import jetbrains.jetpad.projectional.view.ViewContainer;
+import jetbrains.jetpad.projectional.view.spi.NullViewContainerPeer;
+
+public class VirtualizationBenchmark {
+  private static final int TOKENS_PER_LINE = 5;
+
+  public static void main(String[] args) {
+    //warm up
+    measure(10000, false);
+    measure(10000, true);
+
+    for (int lines : new int[] { 10000, 100000 }) {
+      System.out.println(lines + " lines, eager: " + measure(lines, false));
+      System.out.println(lines + " lines, virtualized: " + measure(lines, true));
+    }
+  }
+
+  private static String measure(int lines, boolean virtualized) {
+    CellContainer cellContainer = new CellContainer();
+    VerticalCell document = new VerticalCell();
+    document.virtualized().set(virtualized);
+    for (int i = 0; i < lines; i++) {
+      HorizontalCell line = new HorizontalCell();
+      for (int j = 0; j < TOKENS_PER_LINE; j++) {
+        line.children().add(new TextCell("token" + j));
+      }
+      document.children().add(line);
+    }
+    cellContainer.root.children().add(document);
+
+    ViewContainer viewContainer = new ViewContainer();
+    viewContainer.setPeer(new NullViewContainerPeer() {
+      @Override
+      public Rectangle visibleRect() {
+        return new Rectangle(0, 0, 800, 600);
+      }
+    });
+
+    long start = System.nanoTime();
+    MapperCell2View.map(cellContainer, viewContainer);
+    for (int i = 0; i < 3; i++) {
+      viewContainer.root().validate();
+    }
+    long time = (System.nanoTime() - start) / 1000000;
+    return time + " ms to open, " + count(viewContainer.root()) + " views";
+  }
+
+  private static int count(View view) {
+    int result = 1;
+    for (View child : view.children()) {
+      result += count(child);
+    }
+    return result;
+  }
+}
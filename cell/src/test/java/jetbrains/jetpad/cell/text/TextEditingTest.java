@@ -66,6 +66,19 @@ public class TextEditingTest extends EditingTestCase {
     assertTrue(textView.caretVisible().get());
   }
 
+  @Test
+  public void traitsShared() {
+    assertSame(TextEditing.textEditing(), TextEditing.textEditing());
+    assertSame(TextEditing.textNavigation(true, false), TextEditing.textNavigation(true, false));
+    assertNotSame(TextEditing.textNavigation(true, false), TextEditing.textNavigation(false, true));
+  }
+
+  @Test
+  public void sharedNavigationTraitsKeepTheirParameters() {
+    assertFalse(navTextView1.get(TextEditing.FIRST_ALLOWED));
+    assertTrue(navTextView2.get(TextEditing.FIRST_ALLOWED));
+  }
+
   @Test
   public void textChangeUpdatesCaretPosition() {
     textView.caretPosition().set(3);
@@ -65,6 +65,40 @@ public class SeparatedCellListTest {
     assertList("x, x+a, a, a+y, y");
   }
 
+  @Test
+  public void addAllToEmpty() {
+    separatedList.addAll(cells("x", "y", "z"));
+
+    assertList("x, x+y, y, y+z, z");
+  }
+
+  @Test
+  public void addAllInStart() {
+    init("x", "y");
+
+    separatedList.addAll(0, cells("a", "b"));
+
+    assertList("a, a+b, b, b+x, x, x+y, y");
+  }
+
+  @Test
+  public void addAllInMiddle() {
+    init("x", "y");
+
+    separatedList.addAll(1, cells("a", "b"));
+
+    assertList("x, x+a, a, a+b, b, b+y, y");
+  }
+
+  @Test
+  public void addAllInEnd() {
+    init("x", "y");
+
+    separatedList.addAll(2, cells("a", "b"));
+
+    assertList("x, x+y, y, y+a, a, a+b, b");
+  }
+
   @Test
   public void removeFromStart() {
     init("x", "y");
@@ -92,6 +126,14 @@ public class SeparatedCellListTest {
     assertList("x, x+z, z");
   }
 
+  private List<Cell> cells(String... items) {
+    List<Cell> result = new ArrayList<Cell>();
+    for (String i : items) {
+      result.add(new TextCell(i));
+    }
+    return result;
+  }
+
   private void init(String... items) {
     for (String i : items) {
       separatedList.add(new TextCell(i));
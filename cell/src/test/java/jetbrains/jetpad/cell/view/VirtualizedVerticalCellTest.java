@@ -0,0 +1,182 @@
+/*
+ * Copyright 2012-2013 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.cell.view;
+
+import jetbrains.jetpad.cell.CellContainer;
+import jetbrains.jetpad.cell.TextCell;
+import jetbrains.jetpad.cell.VerticalCell;
+import jetbrains.jetpad.geometry.Rectangle;
+import jetbrains.jetpad.projectional.view.TextView;
+import jetbrains.jetpad.projectional.view.View;
+import jetbrains.jetpad.projectional.view.ViewContainer;
+import jetbrains.jetpad.projectional.view.spi.NullViewContainerPeer;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class VirtualizedVerticalCellTest {
+  private static final int LINES = 10000;
+  private static final int LINE_HEIGHT = 10;
+
+  private ViewContainer viewContainer = new ViewContainer();
+  private CellContainer cellContainer = new CellContainer();
+  private VerticalCell vertical = new VerticalCell();
+  private Rectangle viewport = new Rectangle(0, 0, 400, 300);
+
+  @Before
+  public void init() {
+    viewContainer.setPeer(new NullViewContainerPeer() {
+      @Override
+      public Rectangle visibleRect() {
+        return viewport;
+      }
+    });
+
+    vertical.virtualized().set(true);
+    for (int i = 0; i < LINES; i++) {
+      vertical.children().add(new TextCell("line" + i));
+    }
+    cellContainer.root.children().add(vertical);
+    MapperCell2View.map(cellContainer, viewContainer);
+    validate();
+  }
+
+  @Test
+  public void onlyChildrenNearViewportMapped() {
+    List<String> mapped = mappedTexts();
+
+    assertTrue(mapped.size() < 200);
+    assertTrue(mapped.contains("line0"));
+    assertTrue(mapped.contains("line29"));
+  }
+
+  @Test
+  public void mappedChildrenInOrder() {
+    assertConsecutive();
+  }
+
+  @Test
+  public void scrollingMapsVisibleChildren() {
+    scrollTo(5000 * LINE_HEIGHT);
+
+    List<String> mapped = mappedTexts();
+    assertTrue(mapped.size() < 200);
+    assertFalse(mapped.contains("line0"));
+    assertTrue(mapped.contains("line5000"));
+    assertTrue(mapped.contains("line5029"));
+    assertConsecutive();
+  }
+
+  @Test
+  public void unmappedChildrenHaveEstimatedBounds() {
+    Rectangle near = vertical.children().get(100).getBounds();
+    Rectangle far = vertical.children().get(9000).getBounds();
+
+    assertEquals(100 * LINE_HEIGHT, near.origin.y);
+    assertEquals(9000 * LINE_HEIGHT, far.origin.y);
+    assertEquals(LINE_HEIGHT, far.dimension.y);
+  }
+
+  @Test
+  public void documentHeightEstimated() {
+    assertEquals(LINES * LINE_HEIGHT, viewContainer.contentRoot().bounds().get().dimension.y);
+  }
+
+  @Test
+  public void scrollToMapsChild() {
+    vertical.children().get(8000).scrollTo();
+
+    assertTrue(mappedTexts().contains("line8000"));
+    assertConsecutive();
+  }
+
+  @Test
+  public void insertionBeforeWindow() {
+    scrollTo(5000 * LINE_HEIGHT);
+
+    vertical.children().add(0, new TextCell("new"));
+    validate();
+
+    assertFalse(mappedTexts().contains("new"));
+    assertConsecutive();
+  }
+
+  @Test
+  public void insertionInWindow() {
+    vertical.children().add(10, new TextCell("new"));
+    validate();
+
+    assertTrue(mappedTexts().contains("new"));
+    assertConsecutive();
+  }
+
+  @Test
+  public void removalAroundWindow() {
+    scrollTo(5000 * LINE_HEIGHT);
+
+    vertical.children().subList(4000, 5010).clear();
+    validate();
+
+    assertConsecutive();
+    assertTrue(mappedTexts().contains("line6010"));
+  }
+
+  private void scrollTo(int y) {
+    viewport = new Rectangle(0, y, 400, 300);
+    viewContainer.visibleRectChanged();
+    validate();
+  }
+
+  private void validate() {
+    for (int i = 0; i < 5; i++) {
+      viewContainer.root().validate();
+    }
+  }
+
+  private void assertConsecutive() {
+    List<String> mapped = mappedTexts();
+    assertFalse(mapped.isEmpty());
+    int first = -1;
+    for (int i = 0; i < vertical.children().size(); i++) {
+      if (((TextCell) vertical.children().get(i)).text().get().equals(mapped.get(0))) {
+        first = i;
+        break;
+      }
+    }
+    for (int i = 0; i < mapped.size(); i++) {
+      assertEquals(((TextCell) vertical.children().get(first + i)).text().get(), mapped.get(i));
+    }
+  }
+
+  private List<String> mappedTexts() {
+    List<String> result = new ArrayList<String>();
+    collectTexts(viewContainer.contentRoot(), result);
+    return result;
+  }
+
+  private void collectTexts(View view, List<String> result) {
+    if (view instanceof TextView) {
+      result.add(((TextView) view).text().get());
+    }
+    for (View child : view.children()) {
+      collectTexts(child, result);
+    }
+  }
+}
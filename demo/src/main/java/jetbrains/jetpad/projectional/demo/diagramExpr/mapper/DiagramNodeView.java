@@ -41,6 +41,11 @@ class DiagramNodeView extends VerticalView {
     return prop(PADDING);
   }
 
+  @Override
+  protected boolean hasLocalLayout() {
+    return false;
+  }
+
   @Override
   protected void doValidate(ValidationContext ctx) {
     super.doValidate(ctx);
@@ -64,6 +64,10 @@ public class AvoidObstacles {
     return rect.add(shift);
   }
 
+  public Rectangle findNewPosition(Rectangle rect, SpatialIndex<Rectangle> obstacles) {
+    return findNewPosition(rect, obstacles.find(rect));
+  }
+
   public int findShift(Vector v, List<Vector> obs) {
     Comparator<Vector> comparator = new Comparator<Vector>() {
       @Override
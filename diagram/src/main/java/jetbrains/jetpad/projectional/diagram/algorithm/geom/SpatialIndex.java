@@ -0,0 +1,144 @@
+/*
+ * Copyright 2012-2013 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.projectional.diagram.algorithm.geom;
+
+import jetbrains.jetpad.geometry.Rectangle;
+import jetbrains.jetpad.geometry.Segment;
+import jetbrains.jetpad.geometry.Vector;
+
+import java.util.*;
+
+/**
+ * Uniform grid of square cells over items with rectangular bounds. An item is put into every cell its bounds touch,
+ * so a query looks only at items near the queried area, and the cost of a validation stays linear in the number
+ * of blocks and connections instead of depending on the product of them.
+ */
+public class SpatialIndex<ItemT> {
+  private int myCellSize;
+  private Map<Vector, List<Entry<ItemT>>> myCells = new HashMap<Vector, List<Entry<ItemT>>>();
+  private int mySize;
+
+  public SpatialIndex(int cellSize) {
+    if (cellSize <= 0) {
+      throw new IllegalArgumentException("cellSize = " + cellSize);
+    }
+    myCellSize = cellSize;
+  }
+
+  public void add(Rectangle bounds, ItemT item) {
+    Entry<ItemT> entry = new Entry<ItemT>(bounds, item, mySize++);
+    int left = cell(bounds.origin.x);
+    int right = cell(bounds.origin.x + bounds.dimension.x);
+    int top = cell(bounds.origin.y);
+    int bottom = cell(bounds.origin.y + bounds.dimension.y);
+    for (int x = left; x <= right; x++) {
+      for (int y = top; y <= bottom; y++) {
+        Vector key = new Vector(x, y);
+        List<Entry<ItemT>> entries = myCells.get(key);
+        if (entries == null) {
+          entries = new ArrayList<Entry<ItemT>>(1);
+          myCells.put(key, entries);
+        }
+        entries.add(entry);
+      }
+    }
+  }
+
+  public void add(Segment segment, ItemT item) {
+    add(getBounds(segment), item);
+  }
+
+  public boolean isEmpty() {
+    return mySize == 0;
+  }
+
+  /**
+   * Items whose bounds intersect the area or touch its border, in the order of addition
+   */
+  public List<ItemT> find(Rectangle area) {
+    int left = cell(area.origin.x);
+    int right = cell(area.origin.x + area.dimension.x);
+    int top = cell(area.origin.y);
+    int bottom = cell(area.origin.y + area.dimension.y);
+
+    Set<Entry<ItemT>> found = new HashSet<Entry<ItemT>>();
+    List<Entry<ItemT>> result = new ArrayList<Entry<ItemT>>();
+    if ((long) (right - left + 1) * (bottom - top + 1) > myCells.size()) {
+      for (List<Entry<ItemT>> entries: myCells.values()) {
+        collect(entries, area, found, result);
+      }
+    } else {
+      for (int x = left; x <= right; x++) {
+        for (int y = top; y <= bottom; y++) {
+          List<Entry<ItemT>> entries = myCells.get(new Vector(x, y));
+          if (entries != null) {
+            collect(entries, area, found, result);
+          }
+        }
+      }
+    }
+
+    Collections.sort(result, new Comparator<Entry<ItemT>>() {
+      @Override
+      public int compare(Entry<ItemT> e1, Entry<ItemT> e2) {
+        return e1.index - e2.index;
+      }
+    });
+    List<ItemT> items = new ArrayList<ItemT>(result.size());
+    for (Entry<ItemT> entry: result) {
+      items.add(entry.item);
+    }
+    return items;
+  }
+
+  public List<ItemT> find(Segment segment) {
+    return find(getBounds(segment));
+  }
+
+  private void collect(List<Entry<ItemT>> entries, Rectangle area, Set<Entry<ItemT>> found, List<Entry<ItemT>> result) {
+    for (Entry<ItemT> entry: entries) {
+      if (entry.bounds.intersects(area) && found.add(entry)) {
+        result.add(entry);
+      }
+    }
+  }
+
+  private int cell(int coord) {
+    if (coord >= 0) {
+      return coord / myCellSize;
+    } else {
+      return -((-(coord + 1)) / myCellSize) - 1;
+    }
+  }
+
+  private Rectangle getBounds(Segment s) {
+    Vector min = s.start.min(s.end);
+    Vector max = s.start.max(s.end);
+    return new Rectangle(min, max.sub(min));
+  }
+
+  private static class Entry<ItemT> {
+    final Rectangle bounds;
+    final ItemT item;
+    final int index;
+
+    private Entry(Rectangle bounds, ItemT item, int index) {
+      this.bounds = bounds;
+      this.item = item;
+      this.index = index;
+    }
+  }
+}
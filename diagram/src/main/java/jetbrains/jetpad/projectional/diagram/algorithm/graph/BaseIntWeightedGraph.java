@@ -0,0 +1,41 @@
+/*
+ * Copyright 2012-2013 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.projectional.diagram.algorithm.graph;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public abstract class BaseIntWeightedGraph implements IntWeightedGraph {
+  @Override
+  public Iterable<Integer> getEdges(Integer node) {
+    int count = getEdgeCount(node);
+    List<Integer> result = new ArrayList<Integer>(count);
+    for (int i = 0; i < count; i++) {
+      result.add(getEdge(node, i));
+    }
+    return result;
+  }
+
+  @Override
+  public Iterable<Integer> getEdgeWeights(Integer node) {
+    int count = getEdgeCount(node);
+    List<Integer> result = new ArrayList<Integer>(count);
+    for (int i = 0; i < count; i++) {
+      result.add(getEdgeWeight(node, i));
+    }
+    return result;
+  }
+}
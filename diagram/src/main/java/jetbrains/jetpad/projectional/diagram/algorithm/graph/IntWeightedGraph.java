@@ -0,0 +1,26 @@
+/*
+ * Copyright 2012-2013 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.projectional.diagram.algorithm.graph;
+
+/**
+ * Weighted graph with int nodes which can be traversed without boxing. getEdgeCount is called before
+ * edges of a node are accessed, so implementations may build them lazily.
+ */
+public interface IntWeightedGraph extends WeightedGraph<Integer> {
+  int getEdgeCount(int node);
+  int getEdge(int node, int index);
+  int getEdgeWeight(int node, int index);
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2012-2013 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.projectional.diagram.algorithm.orthogonal;
+
+import java.util.*;
+
+/**
+ * Items with integer intervals sorted by start. A query looks only at items starting within the longest
+ * interval from the queried range, which is logarithmic when intervals are of comparable length, as
+ * diagram blocks are.
+ */
+class IntervalIndex<ItemT> {
+  private SortedMap<Integer, List<Entry<ItemT>>> myByStart = new TreeMap<Integer, List<Entry<ItemT>>>();
+  private SortedMap<Integer, Integer> myLengths = new TreeMap<Integer, Integer>();
+
+  void add(int start, int end, ItemT item) {
+    List<Entry<ItemT>> entries = myByStart.get(start);
+    if (entries == null) {
+      entries = new ArrayList<Entry<ItemT>>(1);
+      myByStart.put(start, entries);
+    }
+    entries.add(new Entry<ItemT>(end, item));
+
+    int length = end - start;
+    Integer count = myLengths.get(length);
+    myLengths.put(length, count == null ? 1 : count + 1);
+  }
+
+  boolean remove(int start, int end, ItemT item) {
+    List<Entry<ItemT>> entries = myByStart.get(start);
+    if (entries == null) return false;
+    for (Iterator<Entry<ItemT>> i = entries.iterator(); i.hasNext(); ) {
+      Entry<ItemT> entry = i.next();
+      if (entry.end == end && entry.item.equals(item)) {
+        i.remove();
+        if (entries.isEmpty()) {
+          myByStart.remove(start);
+        }
+
+        int length = end - start;
+        int count = myLengths.get(length);
+        if (count == 1) {
+          myLengths.remove(length);
+        } else {
+          myLengths.put(length, count - 1);
+        }
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Items with start < to and end > from, ordered by start
+   */
+  List<ItemT> overlapping(int from, int to) {
+    if (myLengths.isEmpty()) return Collections.emptyList();
+
+    int lowestStart = from - myLengths.lastKey() + 1;
+    if (lowestStart >= to) return Collections.emptyList();
+
+    List<ItemT> result = new ArrayList<ItemT>();
+    for (List<Entry<ItemT>> entries : myByStart.subMap(lowestStart, to).values()) {
+      for (Entry<ItemT> entry : entries) {
+        if (entry.end > from) {
+          result.add(entry.item);
+        }
+      }
+    }
+    return result;
+  }
+
+  private static class Entry<ItemT> {
+    final int end;
+    final ItemT item;
+
+    private Entry(int end, ItemT item) {
+      this.end = end;
+      this.item = item;
+    }
+  }
+}
@@ -17,7 +17,8 @@ package jetbrains.jetpad.projectional.diagram.algorithm.orthogonal;
 
 import jetbrains.jetpad.geometry.*;
 import jetbrains.jetpad.geometry.Vector;
-import jetbrains.jetpad.projectional.diagram.algorithm.graph.WeightedGraph;
+import jetbrains.jetpad.projectional.diagram.algorithm.graph.BaseIntWeightedGraph;
+import jetbrains.jetpad.projectional.diagram.algorithm.path.PathHeuristic;
 import jetbrains.jetpad.projectional.diagram.algorithm.path.ShortestPath;
 import jetbrains.jetpad.projectional.diagram.algorithm.util.FreeSegmentsUtil;
 import jetbrains.jetpad.projectional.diagram.algorithm.util.IntGeomUtil;
@@ -31,14 +32,14 @@ public class OrthogonalRouteWithObstacles {
 
   private int myMinDistToForbiddenSegment = 0;
 
-  private List<Rectangle> myObstacles;
-  private Map<MyLine, List<Segment>> mySegmentsMap = new LinkedHashMap<MyLine, List<Segment>>();
-  private List<Segment> myForbiddenSegments = new ArrayList<Segment>();
+  private IntervalIndex<Rectangle> myObstaclesByX = new IntervalIndex<Rectangle>();
+  private IntervalIndex<Rectangle> myObstaclesByY = new IntervalIndex<Rectangle>();
+  private IntervalIndex<Segment> myVerticalForbiddenSegments = new IntervalIndex<Segment>();
+  private IntervalIndex<Segment> myHorizontalForbiddenSegments = new IntervalIndex<Segment>();
 
-  private Vector myStart;
-  private Vector myEnd;
-  private List<Segment> myEndpointSegments;
-  private Set<MyLine> myEndpointLines;
+  private SortedMap<Integer, List<Segment>> myVerticalLines = new TreeMap<Integer, List<Segment>>();
+  private SortedMap<Integer, List<Segment>> myHorizontalLines = new TreeMap<Integer, List<Segment>>();
+  private Map<MyLine, Integer> myLineRefCounts = new HashMap<MyLine, Integer>();
 
   private long myBuildInitTime = 0;
   private long myBuildLazyTime = 0;
@@ -76,10 +77,12 @@ public class OrthogonalRouteWithObstacles {
   }
 
   public OrthogonalRouteWithObstacles(List<Rectangle> obstacles) {
-    myObstacles = Collections.unmodifiableList(obstacles);
-    initObstaclesSegments();
+    initObstaclesSegments(obstacles);
   }
 
+  /**
+   * Doesn't modify the routing space, so routes can be found concurrently while nothing is added or removed
+   */
   public List<Vector> findRoute(Vector start, Vector end) {
     //it should be tested here, because later we do not recognize equal points
     if (start.equals(end)) {
@@ -87,11 +90,19 @@ public class OrthogonalRouteWithObstacles {
       path.add(start);
       return path;
     }
-    initRouting(start, end);
+    GraphBuilder builder = new GraphBuilder(start, end);
     if (DEBUG) {
       validateLines();
     }
-    return findPath();
+    List<Vector> path = findPath(builder);
+    addRoutingTimes(builder);
+    return path;
+  }
+
+  private synchronized void addRoutingTimes(GraphBuilder builder) {
+    myInitRoutingTime += builder.initRoutingTime;
+    myBuildInitTime += builder.buildInitTime;
+    myBuildLazyTime += builder.buildLazyTime;
   }
 
   public void addAdditionalLines(List<Segment> additionalLines) {
@@ -108,109 +119,202 @@ public class OrthogonalRouteWithObstacles {
     myAdditionalLinesTime += System.currentTimeMillis() - time;
   }
 
+  public void removeAdditionalLines(List<Segment> additionalLines) {
+    long time = System.currentTimeMillis();
+
+    for (Segment s: additionalLines) {
+      if (s.start.x == s.end.x) {
+        removeLine(s.start.x, true);
+      } else {
+        removeLine(s.start.y, false);
+      }
+    }
+
+    myAdditionalLinesTime += System.currentTimeMillis() - time;
+  }
+
   public void addForbiddenSegments(List<Segment> forbiddenSegments) {
     long time = System.currentTimeMillis();
 
     for (Segment fs: forbiddenSegments) {
       removeForbiddenSegment(fs);
+      if (isVertical(fs)) {
+        myVerticalForbiddenSegments.add(fs.start.x, fs.start.x, fs);
+      } else {
+        myHorizontalForbiddenSegments.add(fs.start.y, fs.start.y, fs);
+      }
     }
-    myForbiddenSegments.addAll(forbiddenSegments);
 
     myForbiddenSegmentsTime += System.currentTimeMillis() - time;
   }
 
-  public void setMinDistToForbiddenSegment(int minDistToForbiddenSegment) {
-    myMinDistToForbiddenSegment = minDistToForbiddenSegment;
-  }
+  public void removeForbiddenSegments(List<Segment> forbiddenSegments) {
+    long time = System.currentTimeMillis();
 
-  private void validateLines() {
-    for (MyLine l: mySegmentsMap.keySet()) {
-      for (Segment s: mySegmentsMap.get(l)) {
-        if (l.ver) {
-          if (s.start.x != s.end.x || s.start.x != l.coord || s.start.y > s.end.y) throw new RuntimeException();
-        } else {
-          if (s.start.y != s.end.y || s.start.y != l.coord || s.start.x > s.end.x) throw new RuntimeException();
+    Set<Integer> verticalCoords = new TreeSet<Integer>();
+    Set<Integer> horizontalCoords = new TreeSet<Integer>();
+    for (Segment fs: forbiddenSegments) {
+      if (isVertical(fs)) {
+        if (myVerticalForbiddenSegments.remove(fs.start.x, fs.start.x, fs)) {
+          verticalCoords.addAll(linesNear(true, fs.start.x).keySet());
+        }
+      } else {
+        if (myHorizontalForbiddenSegments.remove(fs.start.y, fs.start.y, fs)) {
+          horizontalCoords.addAll(linesNear(false, fs.start.y).keySet());
         }
       }
     }
+    for (int coord: verticalCoords) {
+      myVerticalLines.put(coord, getFreeLineSegments(new MyLine(true, coord)));
+    }
+    for (int coord: horizontalCoords) {
+      myHorizontalLines.put(coord, getFreeLineSegments(new MyLine(false, coord)));
+    }
+
+    myForbiddenSegmentsTime += System.currentTimeMillis() - time;
   }
 
-  private void initRouting(Vector start, Vector end) {
+  public void addObstacle(Rectangle r) {
     long time = System.currentTimeMillis();
 
-    myStart = start;
-    myEnd = end;
-    myEndpointSegments = new ArrayList<Segment>();
-    myEndpointLines = new HashSet<MyLine>();
+    myObstaclesByX.add(r.origin.x, r.origin.x + r.dimension.x, r);
+    myObstaclesByY.add(r.origin.y, r.origin.y + r.dimension.y, r);
+    Vector yVector = new Vector(r.origin.y, r.origin.y + r.dimension.y);
+    for (Map.Entry<Integer, List<Segment>> entry: linesInside(true, r.origin.x, r.origin.x + r.dimension.x).entrySet()) {
+      entry.setValue(removeFromLine(true, entry.getKey(), entry.getValue(), yVector));
+    }
+    Vector xVector = new Vector(r.origin.x, r.origin.x + r.dimension.x);
+    for (Map.Entry<Integer, List<Segment>> entry: linesInside(false, r.origin.y, r.origin.y + r.dimension.y).entrySet()) {
+      entry.setValue(removeFromLine(false, entry.getKey(), entry.getValue(), xVector));
+    }
+    addObstacleLines(r);
+
+    myInitTime += System.currentTimeMillis() - time;
+  }
 
-    addEndpointLine(myStart.x, true);
-    addEndpointLine(myStart.y, false);
-    addEndpointLine(myEnd.x, true);
-    addEndpointLine(myEnd.y, false);
+  public void removeObstacle(Rectangle r) {
+    long time = System.currentTimeMillis();
+
+    if (!myObstaclesByX.remove(r.origin.x, r.origin.x + r.dimension.x, r)) return;
+    myObstaclesByY.remove(r.origin.y, r.origin.y + r.dimension.y, r);
+    removeLine(r.origin.x, true);
+    removeLine(r.origin.y, false);
+    removeLine(r.origin.x + r.dimension.x, true);
+    removeLine(r.origin.y + r.dimension.y, false);
+    for (Map.Entry<Integer, List<Segment>> entry: linesInside(true, r.origin.x, r.origin.x + r.dimension.x).entrySet()) {
+      entry.setValue(getFreeLineSegments(new MyLine(true, entry.getKey())));
+    }
+    for (Map.Entry<Integer, List<Segment>> entry: linesInside(false, r.origin.y, r.origin.y + r.dimension.y).entrySet()) {
+      entry.setValue(getFreeLineSegments(new MyLine(false, entry.getKey())));
+    }
 
-    myInitRoutingTime += System.currentTimeMillis() - time;
+    myInitTime += System.currentTimeMillis() - time;
   }
 
-  private void addEndpointLine(int coord, boolean ver) {
-    MyLine line = new MyLine(ver, coord);
-    if (myEndpointLines.contains(line)) return;
-    myEndpointLines.add(line);
+  public void setMinDistToForbiddenSegment(int minDistToForbiddenSegment) {
+    myMinDistToForbiddenSegment = minDistToForbiddenSegment;
+  }
 
-    List<Vector> freeSegments = getFreeSegments(line);
+  /**
+   * Obstacles which intersect the area or touch its border
+   */
+  public List<Rectangle> getObstacles(Rectangle area) {
+    List<Rectangle> result = new ArrayList<Rectangle>();
+    int top = area.origin.y;
+    int bottom = area.origin.y + area.dimension.y;
+    for (Rectangle r: myObstaclesByX.overlapping(area.origin.x - 1, area.origin.x + area.dimension.x + 1)) {
+      if (r.origin.y <= bottom && r.origin.y + r.dimension.y >= top) {
+        result.add(r);
+      }
+    }
+    return result;
+  }
 
-    ArrayList<Segment> segments = new ArrayList<Segment>(freeSegments.size());
-    if (ver) {
-      for (Vector seg: freeSegments) {
-        segments.add(new Segment(new Vector(coord, seg.x), new Vector(coord, seg.y)));
+  /**
+   * Whether a segment of the path runs along a forbidden segment closer than the min distance to it,
+   * so the path couldn't be found in the current routing space
+   */
+  public boolean runsAlongForbiddenSegment(List<Vector> path) {
+    for (int i = 1; i < path.size(); i++) {
+      Segment s = new Segment(path.get(i - 1), path.get(i));
+      boolean ver = isVertical(s);
+      int coord = ver ? s.start.x : s.start.y;
+      Vector range = ver ? getYVector(s) : getXVector(s);
+      IntervalIndex<Segment> forbiddenSegments = ver ? myVerticalForbiddenSegments : myHorizontalForbiddenSegments;
+      for (Segment fs: forbiddenSegments.overlapping(coord - myMinDistToForbiddenSegment - 1, coord + myMinDistToForbiddenSegment + 1)) {
+        Vector fsRange = ver ? getYVector(fs) : getXVector(fs);
+        if (range.x < fsRange.y && range.y > fsRange.x) {
+          return true;
+        }
       }
-    } else {
-      for (Vector seg: freeSegments) {
-        segments.add(new Segment(new Vector(seg.x, coord), new Vector(seg.y, coord)));
+    }
+    return false;
+  }
+
+  private void validateLines() {
+    for (MyLine l: allLines()) {
+      for (Segment s: segments(l)) {
+        if (l.ver) {
+          if (s.start.x != s.end.x || s.start.x != l.coord || s.start.y > s.end.y) throw new RuntimeException();
+        } else {
+          if (s.start.y != s.end.y || s.start.y != l.coord || s.start.x > s.end.x) throw new RuntimeException();
+        }
       }
     }
-    myEndpointSegments.addAll(segments);
   }
 
   private void removeForbiddenSegment(Segment fs) {
-    for (MyLine line: mySegmentsMap.keySet()) {
-      if (isVertical(fs) && line.ver && fitsMinDist(fs.start.x, line.coord)) {
-        List<Segment> newSegments = new ArrayList<Segment>();
-        for (Segment s: mySegmentsMap.get(line)) {
-          Vector vs = getYVector(s);
-          ArrayList<Vector> list = new ArrayList<Vector>();
-          list.add(vs);
-          Vector vfs = getYVector(fs);
-          for (Vector v: FreeSegmentsUtil.removeSegment(list, vfs)) {
-            newSegments.add(new Segment(new Vector(s.start.x, v.x), new Vector(s.start.x, v.y)));
-          }
-        }
-        mySegmentsMap.put(line, newSegments);
-      } else if (!isVertical(fs) && !line.ver && fitsMinDist(fs.start.y, line.coord)) {
-        List<Segment> newSegments = new ArrayList<Segment>();
-        for (Segment s: mySegmentsMap.get(line)) {
-          Vector vs = getXVector(s);
-          ArrayList<Vector> list = new ArrayList<Vector>();
-          list.add(vs);
-          Vector vfs = getXVector(fs);
-          for (Vector v: FreeSegmentsUtil.removeSegment(list, vfs)) {
-            newSegments.add(new Segment(new Vector(v.x, s.start.y), new Vector(v.y, s.start.y)));
-          }
-        }
-        mySegmentsMap.put(line, newSegments);
+    boolean ver = isVertical(fs);
+    Vector vfs = ver ? getYVector(fs) : getXVector(fs);
+    for (Map.Entry<Integer, List<Segment>> entry: linesNear(ver, ver ? fs.start.x : fs.start.y).entrySet()) {
+      entry.setValue(removeFromLine(ver, entry.getKey(), entry.getValue(), vfs));
+    }
+  }
+
+  private List<Segment> removeFromLine(boolean ver, int coord, List<Segment> lineSegments, Vector occupied) {
+    List<Segment> newSegments = new ArrayList<Segment>();
+    for (Segment s: lineSegments) {
+      ArrayList<Vector> list = new ArrayList<Vector>();
+      list.add(ver ? getYVector(s) : getXVector(s));
+      for (Vector v: FreeSegmentsUtil.removeSegment(list, occupied)) {
+        newSegments.add(createSegment(ver, coord, v));
       }
     }
+    return newSegments;
   }
 
-  private boolean intersects(MyLine line, Segment forbiddenSegment) {
-    if (line.ver) {
-      return isVertical(forbiddenSegment) && fitsMinDist(forbiddenSegment.start.x, line.coord);
-    } else {
-      return !isVertical(forbiddenSegment) && fitsMinDist(forbiddenSegment.start.y, line.coord);
+  private SortedMap<Integer, List<Segment>> lines(boolean ver) {
+    return ver ? myVerticalLines : myHorizontalLines;
+  }
+
+  private List<Segment> segments(MyLine line) {
+    return lines(line.ver).get(line.coord);
+  }
+
+  private List<MyLine> allLines() {
+    List<MyLine> result = new ArrayList<MyLine>(myVerticalLines.size() + myHorizontalLines.size());
+    for (int coord: myVerticalLines.keySet()) {
+      result.add(new MyLine(true, coord));
+    }
+    for (int coord: myHorizontalLines.keySet()) {
+      result.add(new MyLine(false, coord));
     }
+    return result;
+  }
+
+  /**
+   * Lines closer to coord than the min distance to forbidden segments
+   */
+  private SortedMap<Integer, List<Segment>> linesNear(boolean ver, int coord) {
+    return lines(ver).subMap(coord - myMinDistToForbiddenSegment, coord + myMinDistToForbiddenSegment + 1);
   }
 
-  private boolean fitsMinDist(int x1, int x2) {
-    return Math.abs(x1 - x2) <= myMinDistToForbiddenSegment;
+  /**
+   * Lines strictly between from and to
+   */
+  private SortedMap<Integer, List<Segment>> linesInside(boolean ver, int from, int to) {
+    if (to - from < 2) return new TreeMap<Integer, List<Segment>>();
+    return lines(ver).subMap(from + 1, to);
   }
 
   private Vector getXVector(Segment s) {
@@ -225,24 +329,27 @@ public class OrthogonalRouteWithObstacles {
     return s.start.x == s.end.x;
   }
 
-  private List<Vector> findPath() {
-    final GraphBuilder builder = new GraphBuilder();
+  private List<Vector> findPath(final GraphBuilder builder) {
     final Set<MyLine> addedLines = new HashSet<MyLine>();
     builder.buildGraph();
-    List<Integer> numPath = new ShortestPath().getPathMinWeight(new WeightedGraph<Integer>() {
+    int[] numPath = new ShortestPath().getPathMinWeight(new BaseIntWeightedGraph() {
       @Override
-      public Iterable<Integer> getEdgeWeights(Integer node) {
+      public int getEdgeCount(int node) {
         addLine(node);
-        return builder.segmentsGraphLen.get(node);
+        return builder.edgeCounts[node];
       }
 
       @Override
-      public Iterable<Integer> getEdges(Integer node) {
-        addLine(node);
-        return builder.segmentsGraph.get(node);
+      public int getEdge(int node, int index) {
+        return builder.edges[node][index];
+      }
+
+      @Override
+      public int getEdgeWeight(int node, int index) {
+        return builder.edgeLengths[node][index];
       }
 
-      private void addLine(Integer node) {
+      private void addLine(int node) {
         if (!LAZY_GRAPH_BUILD) return;
 
         long time = System.currentTimeMillis();
@@ -253,75 +360,116 @@ public class OrthogonalRouteWithObstacles {
           addedLines.add(line);
         }
 
-        myBuildLazyTime += System.currentTimeMillis() - time;
+        builder.buildLazyTime += System.currentTimeMillis() - time;
       }
-    }, 0, 1);
+    }, 0, 1, new PathHeuristic() {
+      @Override
+      public int edges(int node) {
+        Vector point = builder.points.get(node);
+        Vector end = builder.end;
+        if (point.equals(end)) return 0;
+        return point.x == end.x || point.y == end.y ? 1 : 2;
+      }
+
+      @Override
+      public int length(int node) {
+        Vector point = builder.points.get(node);
+        Vector end = builder.end;
+        return Math.abs(point.x - end.x) + Math.abs(point.y - end.y);
+      }
+    });
 
     if (numPath == null) return null;
-    List<Vector> path = new ArrayList<Vector>(numPath.size());
-    for (Integer num: numPath) {
+    List<Vector> path = new ArrayList<Vector>(numPath.length);
+    for (int num: numPath) {
       path.add(builder.points.get(num));
     }
     return path;
   }
 
-  private void initObstaclesSegments() {
+  private void initObstaclesSegments(List<Rectangle> obstacles) {
     long time = System.currentTimeMillis();
 
-    if (!mySegmentsMap.isEmpty()) {
+    if (!myLineRefCounts.isEmpty()) {
       throw new IllegalStateException();
     }
-    for (Rectangle r: myObstacles) {
-      addLine(r.origin.x, true);
-      addLine(r.origin.y, false);
-      addLine(r.origin.x + r.dimension.x, true);
-      addLine(r.origin.y + r.dimension.y, false);
+    for (Rectangle r: obstacles) {
+      myObstaclesByX.add(r.origin.x, r.origin.x + r.dimension.x, r);
+      myObstaclesByY.add(r.origin.y, r.origin.y + r.dimension.y, r);
+    }
+    for (Rectangle r: obstacles) {
+      addObstacleLines(r);
     }
 
     myInitTime += System.currentTimeMillis() - time;
   }
 
+  private void addObstacleLines(Rectangle r) {
+    addLine(r.origin.x, true);
+    addLine(r.origin.y, false);
+    addLine(r.origin.x + r.dimension.x, true);
+    addLine(r.origin.y + r.dimension.y, false);
+  }
+
   private void addLine(int c, boolean vertical) {
     MyLine line = new MyLine(vertical, c);
-    if (mySegmentsMap.containsKey(line)) return;
+    Integer refCount = myLineRefCounts.get(line);
+    myLineRefCounts.put(line, refCount == null ? 1 : refCount + 1);
+    if (refCount != null) return;
 
+    lines(vertical).put(c, getFreeLineSegments(line));
+  }
+
+  private void removeLine(int c, boolean vertical) {
+    MyLine line = new MyLine(vertical, c);
+    Integer refCount = myLineRefCounts.get(line);
+    if (refCount == null) return;
+    if (refCount > 1) {
+      myLineRefCounts.put(line, refCount - 1);
+    } else {
+      myLineRefCounts.remove(line);
+      lines(vertical).remove(c);
+    }
+  }
+
+  private List<Segment> getFreeLineSegments(MyLine line) {
     List<Vector> freeSegments = getFreeSegments(line);
+    List<Segment> segments = new ArrayList<Segment>(freeSegments.size());
+    for (Vector seg: freeSegments) {
+      segments.add(createSegment(line.ver, line.coord, seg));
+    }
+    return segments;
+  }
 
-    ArrayList<Segment> segments = new ArrayList<Segment>(freeSegments.size());
-    if (vertical) {
-      for (Vector seg: freeSegments) {
-        segments.add(new Segment(new Vector(c, seg.x), new Vector(c, seg.y)));
-      }
+  private Segment createSegment(boolean ver, int coord, Vector range) {
+    if (ver) {
+      return new Segment(new Vector(coord, range.x), new Vector(coord, range.y));
     } else {
-      for (Vector seg: freeSegments) {
-        segments.add(new Segment(new Vector(seg.x, c), new Vector(seg.y, c)));
-      }
+      return new Segment(new Vector(range.x, coord), new Vector(range.y, coord));
     }
-    mySegmentsMap.put(line, segments);
   }
 
   private List<Vector> getFreeSegments(MyLine line) {
     List<Vector> freeSegments = new ArrayList<Vector>();
     freeSegments.add(new Vector(-INF, INF));
-    for (Rectangle r: myObstacles) {
-      if (line.ver) {
-        if (r.origin.x < line.coord && line.coord < r.origin.x + r.dimension.x) {
-          freeSegments = FreeSegmentsUtil.removeSegment(freeSegments, new Vector(r.origin.y, r.origin.y + r.dimension.y));
-        }
-      } else {
-        if (r.origin.y < line.coord && line.coord < r.origin.y + r.dimension.y) {
-          freeSegments = FreeSegmentsUtil.removeSegment(freeSegments, new Vector(r.origin.x, r.origin.x + r.dimension.x));
-        }
+    if (line.ver) {
+      for (Rectangle r: myObstaclesByX.overlapping(line.coord, line.coord)) {
+        freeSegments = FreeSegmentsUtil.removeSegment(freeSegments, new Vector(r.origin.y, r.origin.y + r.dimension.y));
+      }
+    } else {
+      for (Rectangle r: myObstaclesByY.overlapping(line.coord, line.coord)) {
+        freeSegments = FreeSegmentsUtil.removeSegment(freeSegments, new Vector(r.origin.x, r.origin.x + r.dimension.x));
       }
     }
 
-    for (Segment fs: myForbiddenSegments) {
-      if (intersects(line, fs)) {
-        if (line.ver) {
-          freeSegments = FreeSegmentsUtil.removeSegment(freeSegments, getYVector(fs));
-        } else {
-          freeSegments = FreeSegmentsUtil.removeSegment(freeSegments, getXVector(fs));
-        }
+    IntervalIndex<Segment> forbiddenSegments = line.ver ? myVerticalForbiddenSegments : myHorizontalForbiddenSegments;
+    int from = line.coord - myMinDistToForbiddenSegment - 1;
+    int to = line.coord + myMinDistToForbiddenSegment + 1;
+    for (Segment fs: forbiddenSegments.overlapping(from, to)) {
+      if (line.ver) {
+        freeSegments = FreeSegmentsUtil.removeSegment(freeSegments, getYVector(fs));
+      } else {
+        freeSegments = FreeSegmentsUtil.removeSegment(freeSegments, getXVector(fs));
       }
     }
     return freeSegments;
@@ -329,8 +477,7 @@ public class OrthogonalRouteWithObstacles {
 
   //test method
   void setObstacles(List<Rectangle> obstacles) {
-    myObstacles = Collections.unmodifiableList(obstacles);
-    initObstaclesSegments();
+    initObstaclesSegments(obstacles);
   }
 
   private class MyLine {
@@ -364,50 +511,88 @@ public class OrthogonalRouteWithObstacles {
   }
 
   private class GraphBuilder {
-    private List<List<Integer>> segmentsGraph = new ArrayList<List<Integer>>();
-    private List<List<Integer>> segmentsGraphLen = new ArrayList<List<Integer>>();
+    private final Vector start;
+    private final Vector end;
+    private List<Segment> endpointSegments = new ArrayList<Segment>();
+    private Set<MyLine> endpointLines = new HashSet<MyLine>();
+
+    private long initRoutingTime;
+    private long buildInitTime;
+    private long buildLazyTime;
+
+    private int[][] edges = new int[16][];
+    private int[][] edgeLengths = new int[16][];
+    private int[] edgeCounts = new int[16];
     Map<Vector, Integer> pointToNum = new HashMap<Vector, Integer>();
     List<Vector> points = new ArrayList<Vector>();
 
     Map<Vector, MyLine> pointsToLine = new HashMap<Vector, MyLine>();
 
+    private GraphBuilder(Vector start, Vector end) {
+      long time = System.currentTimeMillis();
+
+      this.start = start;
+      this.end = end;
+      addEndpointLine(start.x, true);
+      addEndpointLine(start.y, false);
+      addEndpointLine(end.x, true);
+      addEndpointLine(end.y, false);
+
+      initRoutingTime += System.currentTimeMillis() - time;
+    }
+
+    private void addEndpointLine(int coord, boolean ver) {
+      MyLine line = new MyLine(ver, coord);
+      if (endpointLines.contains(line)) return;
+      endpointLines.add(line);
+
+      endpointSegments.addAll(getFreeLineSegments(line));
+    }
+
     private void buildGraph() {
       long time = System.currentTimeMillis();
 
-      put(myStart);
-      put(myEnd);
-      for (Segment seg: myEndpointSegments) {
+      put(start);
+      put(end);
+      for (Segment seg: endpointSegments) {
         Set<Vector> p = new LinkedHashSet<Vector>();
-        if (seg.contains(myStart)) {
-          p.add(myStart);
+        if (seg.contains(start)) {
+          p.add(start);
         }
-        if (seg.contains(myEnd)) {
-          p.add(myEnd);
+        if (seg.contains(end)) {
+          p.add(end);
         }
         addSegmentToGraph(seg, p);
       }
       if (!LAZY_GRAPH_BUILD) {
-        for (MyLine line: mySegmentsMap.keySet()) {
+        for (MyLine line: allLines()) {
           addLineToGraph(line);
         }
       }
 
-      myBuildInitTime += System.currentTimeMillis() - time;
+      buildInitTime += System.currentTimeMillis() - time;
     }
 
     private void addLineToGraph(MyLine line) {
+      List<Segment> lineSegments = segments(line);
       Map<Segment, List<Vector>> mySegmentPoints = new HashMap<Segment, List<Vector>>();
-      for (Segment lineSeg: mySegmentsMap.get(line)) {
+      for (Segment lineSeg: lineSegments) {
         ArrayList<Vector> points = new ArrayList<Vector>();
         mySegmentPoints.put(lineSeg, points);
-        for (Segment s: myEndpointSegments) {
+        for (Segment s: endpointSegments) {
           addVertex(lineSeg, points, s, null);
         }
       }
-      for (MyLine otherLine: mySegmentsMap.keySet()) {
-        if (otherLine.ver == line.ver) continue;
-        Segment lineSeg = getIntersectingSegment(line, otherLine.coord);
-        if (lineSeg != null && getIntersectingSegment(otherLine, line.coord) != null) {
+      SortedMap<Integer, List<Segment>> otherLines = lines(!line.ver);
+      for (Segment lineSeg: lineSegments) {
+        int from = line.ver ? lineSeg.start.y : lineSeg.start.x;
+        int to = line.ver ? lineSeg.end.y : lineSeg.end.x;
+        for (int otherCoord: otherLines.subMap(from, to + 1).keySet()) {
+          //adjacent segments may share an end, it belongs to the one found by binary search
+          if (getIntersectingSegment(line, otherCoord) != lineSeg) continue;
+          MyLine otherLine = new MyLine(!line.ver, otherCoord);
+          if (getIntersectingSegment(otherLine, line.coord) == null) continue;
+
           Vector intersectingPoint;
           if (line.ver) {
             intersectingPoint = new Vector(line.coord, otherLine.coord);
@@ -427,7 +612,7 @@ public class OrthogonalRouteWithObstacles {
     }
 
     private Segment getIntersectingSegment(MyLine line, int otherCoord) {
-      List<Segment> segments = mySegmentsMap.get(line);
+      List<Segment> segments = segments(line);
       int left = 0;
       int right = segments.size();
 
@@ -457,20 +642,15 @@ public class OrthogonalRouteWithObstacles {
     }
 
     private void addSegmentToGraph(Segment seg, Set<Vector> points) {
-      for (Segment s: myEndpointSegments) {
+      for (Segment s: endpointSegments) {
         addVertex(seg, points, s, null);
       }
       boolean ver = seg.start.x == seg.end.x;
       int coord = ver ? seg.start.x : seg.start.y;
-      for (MyLine l: mySegmentsMap.keySet()) {
-        if (l.ver == ver) continue;
-        boolean segIntersectsLine;
-        if (ver) {
-          segIntersectsLine = seg.start.y <= l.coord && l.coord <= seg.end.y;
-        } else {
-          segIntersectsLine = seg.start.x <= l.coord && l.coord <= seg.end.x;
-        }
-        if (!segIntersectsLine) continue;
+      int from = ver ? seg.start.y : seg.start.x;
+      int to = ver ? seg.end.y : seg.end.x;
+      for (int lineCoord: lines(!ver).subMap(from, to + 1).keySet()) {
+        MyLine l = new MyLine(!ver, lineCoord);
         Segment s = getIntersectingSegment(l, coord);
         if (s != null) {
          Vector intersectingPoint;
@@ -490,24 +670,41 @@ public class OrthogonalRouteWithObstacles {
     }
 
     private void connectList(List<Vector> points) {
-      for (int i = 0; i < points.size(); i++) {
-        for (int j = i + 1; j < points.size(); j++) {
-          int numI = pointToNum.get(points.get(i));
-          int numJ = pointToNum.get(points.get(j));
-
-          if (points.get(i).x != points.get(j).x && points.get(i).y != points.get(j).y) {
+      int size = points.size();
+      int[] nums = new int[size];
+      for (int i = 0; i < size; i++) {
+        nums[i] = pointToNum.get(points.get(i));
+      }
+      for (int i = 0; i < size; i++) {
+        Vector pi = points.get(i);
+        for (int j = i + 1; j < size; j++) {
+          Vector pj = points.get(j);
+          if (pi.x != pj.x && pi.y != pj.y) {
             throw new IllegalStateException();
           }
 
-          segmentsGraph.get(numI).add(numJ);
-          segmentsGraph.get(numJ).add(numI);
-          int len = (int) points.get(i).sub(points.get(j)).length();
-          segmentsGraphLen.get(numI).add(len);
-          segmentsGraphLen.get(numJ).add(len);
+          int len = Math.abs(pi.x - pj.x) + Math.abs(pi.y - pj.y);
+          addEdge(nums[i], nums[j], len);
+          addEdge(nums[j], nums[i], len);
         }
       }
     }
 
+    private void addEdge(int from, int to, int len) {
+      int count = edgeCounts[from];
+      if (count == edges[from].length) {
+        int[] newEdges = new int[2 * count];
+        int[] newEdgeLengths = new int[2 * count];
+        System.arraycopy(edges[from], 0, newEdges, 0, count);
+        System.arraycopy(edgeLengths[from], 0, newEdgeLengths, 0, count);
+        edges[from] = newEdges;
+        edgeLengths[from] = newEdgeLengths;
+      }
+      edges[from][count] = to;
+      edgeLengths[from][count] = len;
+      edgeCounts[from] = count + 1;
+    }
+
     private void addVertex(Segment seg, Collection<Vector> points, Segment s, MyLine line) {
       if (seg == s || !IntGeomUtil.intersects(seg, s)) return;
       Vector v = IntGeomUtil.findAxisIntersection(seg, s);
@@ -520,10 +717,22 @@ public class OrthogonalRouteWithObstacles {
 
     private void put(Vector v) {
       if (pointToNum.containsKey(v)) return;
-      pointToNum.put(v, pointToNum.size());
+      int num = points.size();
+      pointToNum.put(v, num);
       points.add(v);
-      segmentsGraph.add(new ArrayList<Integer>());
-      segmentsGraphLen.add(new ArrayList<Integer>());
+      if (num == edgeCounts.length) {
+        int[][] newEdges = new int[2 * num][];
+        int[][] newEdgeLengths = new int[2 * num][];
+        int[] newEdgeCounts = new int[2 * num];
+        System.arraycopy(edges, 0, newEdges, 0, num);
+        System.arraycopy(edgeLengths, 0, newEdgeLengths, 0, num);
+        System.arraycopy(edgeCounts, 0, newEdgeCounts, 0, num);
+        edges = newEdges;
+        edgeLengths = newEdgeLengths;
+        edgeCounts = newEdgeCounts;
+      }
+      edges[num] = new int[4];
+      edgeLengths[num] = new int[4];
     }
   }
 }
\ No newline at end of file
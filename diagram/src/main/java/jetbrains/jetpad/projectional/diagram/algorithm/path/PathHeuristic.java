@@ -0,0 +1,38 @@
+/*
+ * Copyright 2012-2013 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.projectional.diagram.algorithm.path;
+
+/**
+ * Lower bounds of the number of edges and of the length of a path from a node to the target. Bounds
+ * must be consistent: for an edge from u to v of weight w, edges(u) <= edges(v) + 1, and if these are equal,
+ * length(u) <= length(v) + w.
+ */
+public interface PathHeuristic {
+  PathHeuristic NONE = new PathHeuristic() {
+    @Override
+    public int edges(int node) {
+      return 0;
+    }
+
+    @Override
+    public int length(int node) {
+      return 0;
+    }
+  };
+
+  int edges(int node);
+  int length(int node);
+}
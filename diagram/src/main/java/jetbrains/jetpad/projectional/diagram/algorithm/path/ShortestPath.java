@@ -15,7 +15,9 @@
  */
 package jetbrains.jetpad.projectional.diagram.algorithm.path;
 
+import jetbrains.jetpad.projectional.diagram.algorithm.graph.BaseIntWeightedGraph;
 import jetbrains.jetpad.projectional.diagram.algorithm.graph.Graph;
+import jetbrains.jetpad.projectional.diagram.algorithm.graph.IntWeightedGraph;
 import jetbrains.jetpad.projectional.diagram.algorithm.graph.WeightedGraph;
 
 import java.util.*;
@@ -39,41 +41,33 @@ public class ShortestPath {
     return restorePath(from, to, prev);
   }
 
+  /**
+   * Path with the minimal number of edges, and the minimal length among such paths
+   */
   public<NodeT> List<NodeT> getPathMinWeight(WeightedGraph<NodeT> graph, NodeT from, NodeT to) {
-    Queue<NodeT> q = new LinkedList<NodeT>();
-    Map<NodeT, NodeT> prev = new HashMap<NodeT, NodeT>();
-    Map<NodeT, Integer> num = new HashMap<NodeT, Integer>();
-    Map<NodeT, Integer> dist = new HashMap<NodeT, Integer>();
-    q.add(from);
-    prev.put(from, from);
-    num.put(from, 0);
-    dist.put(from, 0);
-    while (!q.isEmpty()) {
-      NodeT cur = q.poll();
-      if (cur == to) break;
-      int curNum = num.get(cur);
-      int curDist = dist.get(cur);
-      Iterator<NodeT> graphItr = graph.getEdges(cur).iterator();
-      Iterator<Integer> lenItr = graph.getEdgeWeights(cur).iterator();
-      while (graphItr.hasNext()) {
-        NodeT next = graphItr.next();
-        int l = lenItr.next();
-        if (!prev.containsKey(next)) {
-          prev.put(next, cur);
-          num.put(next, curNum + 1);
-          q.add(next);
-          q.add(next);
-        }
-
-        if (num.get(next) == curNum + 1 && (!dist.containsKey(next) || curDist + l < dist.get(next))) {
-          dist.put(next, curDist + l);
-          prev.put(next, cur);
-        }
-      }
+    IndexedGraph<NodeT> indexed = new IndexedGraph<NodeT>(graph);
+    int fromId = indexed.id(from);
+    int toId = indexed.id(to);
+    int[] path = getPathMinWeight(indexed, fromId, toId, PathHeuristic.NONE);
+    if (path == null) {
+      return null;
     }
-    return restorePath(from, to, prev);
+    List<NodeT> result = new ArrayList<NodeT>(path.length);
+    for (int node : path) {
+      result.add(indexed.node(node));
+    }
+    return result;
   }
 
+  /**
+   * Same as {@link #getPathMinWeight(WeightedGraph, Object, Object)}, but nodes are taken from a priority queue
+   * ordered by number of edges and length plus their heuristic estimates, so a good heuristic
+   * visits only nodes close to the optimal path.
+   * @return nodes of the path including from and to, or null if to isn't reachable
+   */
+  public int[] getPathMinWeight(IntWeightedGraph graph, int from, int to, PathHeuristic heuristic) {
+    return new Search(graph, to, heuristic).run(from);
+  }
 
   private<NodeT> List<NodeT> restorePath(NodeT from, NodeT to, Map<NodeT, NodeT> prev) {
     if (!prev.containsKey(to)) {
@@ -89,4 +83,225 @@ public class ShortestPath {
     Collections.reverse(path);
     return path;
   }
+
+  private static class Search {
+    private static final int UNSEEN = -1;
+    private static final int CLOSED = -2;
+
+    private final IntWeightedGraph myGraph;
+    private final int myTarget;
+    private final PathHeuristic myHeuristic;
+
+    private int[] myEdges = new int[0];
+    private int[] myDist = new int[0];
+    private int[] myEstimatedEdges = new int[0];
+    private int[] myEstimatedDist = new int[0];
+    private int[] myPrev = new int[0];
+    private int[] myHeapPos = new int[0];
+
+    private int[] myHeap = new int[16];
+    private int myHeapSize;
+
+    private Search(IntWeightedGraph graph, int target, PathHeuristic heuristic) {
+      myGraph = graph;
+      myTarget = target;
+      myHeuristic = heuristic;
+    }
+
+    private int[] run(int from) {
+      ensureCapacity(Math.max(from, myTarget));
+      reach(from, from, 0, 0);
+      while (myHeapSize > 0) {
+        int cur = poll();
+        if (cur == myTarget) {
+          return restorePath(from);
+        }
+
+        int nextEdges = myEdges[cur] + 1;
+        int count = myGraph.getEdgeCount(cur);
+        for (int i = 0; i < count; i++) {
+          int next = myGraph.getEdge(cur, i);
+          ensureCapacity(next);
+          if (myHeapPos[next] == CLOSED) continue;
+
+          int nextDist = myDist[cur] + myGraph.getEdgeWeight(cur, i);
+          if (myHeapPos[next] == UNSEEN) {
+            reach(next, cur, nextEdges, nextDist);
+          } else if (nextEdges < myEdges[next] || (nextEdges == myEdges[next] && nextDist < myDist[next])) {
+            myEdges[next] = nextEdges;
+            myDist[next] = nextDist;
+            myPrev[next] = cur;
+            siftUp(myHeapPos[next]);
+          }
+        }
+      }
+      return null;
+    }
+
+    private void reach(int node, int prev, int edges, int dist) {
+      myEdges[node] = edges;
+      myDist[node] = dist;
+      myPrev[node] = prev;
+      myEstimatedEdges[node] = myHeuristic.edges(node);
+      myEstimatedDist[node] = myHeuristic.length(node);
+      if (myHeapSize == myHeap.length) {
+        myHeap = copyOf(myHeap, 2 * myHeap.length);
+      }
+      myHeap[myHeapSize] = node;
+      myHeapPos[node] = myHeapSize;
+      siftUp(myHeapSize++);
+    }
+
+    private int[] restorePath(int from) {
+      int length = 1;
+      for (int cur = myTarget; cur != from; cur = myPrev[cur]) {
+        length++;
+      }
+      int[] path = new int[length];
+      int cur = myTarget;
+      for (int i = length - 1; i >= 0; i--) {
+        path[i] = cur;
+        cur = myPrev[cur];
+      }
+      return path;
+    }
+
+    private void ensureCapacity(int node) {
+      int size = myHeapPos.length;
+      if (node < size) return;
+
+      int newSize = Math.max(node + 1, 2 * size);
+      myEdges = copyOf(myEdges, newSize);
+      myDist = copyOf(myDist, newSize);
+      myEstimatedEdges = copyOf(myEstimatedEdges, newSize);
+      myEstimatedDist = copyOf(myEstimatedDist, newSize);
+      myPrev = copyOf(myPrev, newSize);
+      myHeapPos = copyOf(myHeapPos, newSize);
+      Arrays.fill(myHeapPos, size, newSize, UNSEEN);
+    }
+
+    private int[] copyOf(int[] array, int newSize) {
+      int[] result = new int[newSize];
+      System.arraycopy(array, 0, result, 0, array.length);
+      return result;
+    }
+
+    private boolean less(int node1, int node2) {
+      int edges1 = myEdges[node1] + myEstimatedEdges[node1];
+      int edges2 = myEdges[node2] + myEstimatedEdges[node2];
+      if (edges1 != edges2) {
+        return edges1 < edges2;
+      }
+      int dist1 = myDist[node1] + myEstimatedDist[node1];
+      int dist2 = myDist[node2] + myEstimatedDist[node2];
+      if (dist1 != dist2) {
+        return dist1 < dist2;
+      }
+      return node1 < node2;
+    }
+
+    private int poll() {
+      int result = myHeap[0];
+      myHeapPos[result] = CLOSED;
+      myHeapSize--;
+      if (myHeapSize > 0) {
+        myHeap[0] = myHeap[myHeapSize];
+        myHeapPos[myHeap[0]] = 0;
+        siftDown(0);
+      }
+      return result;
+    }
+
+    private void siftUp(int pos) {
+      int node = myHeap[pos];
+      while (pos > 0) {
+        int parentPos = (pos - 1) / 2;
+        int parent = myHeap[parentPos];
+        if (!less(node, parent)) break;
+        myHeap[pos] = parent;
+        myHeapPos[parent] = pos;
+        pos = parentPos;
+      }
+      myHeap[pos] = node;
+      myHeapPos[node] = pos;
+    }
+
+    private void siftDown(int pos) {
+      int node = myHeap[pos];
+      while (true) {
+        int childPos = 2 * pos + 1;
+        if (childPos >= myHeapSize) break;
+        if (childPos + 1 < myHeapSize && less(myHeap[childPos + 1], myHeap[childPos])) {
+          childPos++;
+        }
+        int child = myHeap[childPos];
+        if (!less(child, node)) break;
+        myHeap[pos] = child;
+        myHeapPos[child] = pos;
+        pos = childPos;
+      }
+      myHeap[pos] = node;
+      myHeapPos[node] = pos;
+    }
+  }
+
+  private static class IndexedGraph<NodeT> extends BaseIntWeightedGraph {
+    private final WeightedGraph<NodeT> myGraph;
+    private final Map<NodeT, Integer> myIds = new HashMap<NodeT, Integer>();
+    private final List<NodeT> myNodes = new ArrayList<NodeT>();
+    private final List<int[]> myEdges = new ArrayList<int[]>();
+    private final List<int[]> myWeights = new ArrayList<int[]>();
+
+    private IndexedGraph(WeightedGraph<NodeT> graph) {
+      myGraph = graph;
+    }
+
+    private int id(NodeT node) {
+      Integer id = myIds.get(node);
+      if (id == null) {
+        id = myNodes.size();
+        myIds.put(node, id);
+        myNodes.add(node);
+        myEdges.add(null);
+        myWeights.add(null);
+      }
+      return id;
+    }
+
+    private NodeT node(int id) {
+      return myNodes.get(id);
+    }
+
+    @Override
+    public int getEdgeCount(int node) {
+      int[] edges = myEdges.get(node);
+      if (edges == null) {
+        NodeT source = myNodes.get(node);
+        List<Integer> targets = new ArrayList<Integer>();
+        for (NodeT target : myGraph.getEdges(source)) {
+          targets.add(id(target));
+        }
+        edges = new int[targets.size()];
+        int[] weights = new int[targets.size()];
+        Iterator<Integer> weightItr = myGraph.getEdgeWeights(source).iterator();
+        for (int i = 0; i < edges.length; i++) {
+          edges[i] = targets.get(i);
+          weights[i] = weightItr.next();
+        }
+        myEdges.set(node, edges);
+        myWeights.set(node, weights);
+      }
+      return edges.length;
+    }
+
+    @Override
+    public int getEdge(int node, int index) {
+      return myEdges.get(node)[index];
+    }
+
+    @Override
+    public int getEdgeWeight(int node, int index) {
+      return myWeights.get(node)[index];
+    }
+  }
 }
\ No newline at end of file
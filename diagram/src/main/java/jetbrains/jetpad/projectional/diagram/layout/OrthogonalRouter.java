@@ -19,6 +19,7 @@ import jetbrains.jetpad.geometry.Rectangle;
 import jetbrains.jetpad.geometry.Segment;
 import jetbrains.jetpad.geometry.Vector;
 import jetbrains.jetpad.model.collections.list.ObservableList;
+import jetbrains.jetpad.projectional.diagram.algorithm.geom.SpatialIndex;
 import jetbrains.jetpad.projectional.diagram.algorithm.orthogonal.OrthogonalRouteWithObstacles;
 import jetbrains.jetpad.projectional.diagram.algorithm.util.IntGeomUtil;
 import jetbrains.jetpad.projectional.diagram.base.GridDirection;
@@ -32,15 +33,39 @@ public class OrthogonalRouter implements ConnectionRouter {
 
   private static final int DIST_FROM_OBSTACLE = 20;
   private static final int DIST_BETWEEN_EDGES = 10;
+  private static final int INDEX_CELL_SIZE = 100;
+
+  //routing space is kept between validations and updated with changes of obstacles and valid routes
+  private DiagramView myDiagramView;
+  private OrthogonalRouteWithObstacles myRouter;
+  private Map<View, Rectangle> myObstacles = new HashMap<View, Rectangle>();
+  private Map<Connection, List<Segment>> myRoutes = new HashMap<Connection, List<Segment>>();
+  //an invalid connection gets its previous route back unless its endpoints or obstacles near the route changed
+  private Map<Connection, CachedRoute> myCache = new HashMap<Connection, CachedRoute>();
+
+  private RoutingTaskRunner myTaskRunner;
+
+  public OrthogonalRouter() {
+  }
+
+  /**
+   * Routes connections from different inputs independently with the runner and merges the routes
+   * in the order of inputs, re-routing an input's connections which come too close to routes merged before.
+   * Results don't depend on the runner, but may differ from the ones of sequential routing.
+   */
+  public OrthogonalRouter(RoutingTaskRunner taskRunner) {
+    myTaskRunner = taskRunner;
+  }
 
   @Override
   public void findRoutes(DiagramView diagramView) {
-    Set<Rectangle> invalidChildrenRects = new HashSet<Rectangle>();
+    SpatialIndex<Rectangle> invalidChildrenRects = new SpatialIndex<Rectangle>(INDEX_CELL_SIZE);
     for (View child : getItems(diagramView)) {
       boolean valid = child.valid().get();
       child.validate();
       if (!valid) {
-        invalidChildrenRects.add(getLayoutBounds(child.bounds().get()));
+        Rectangle rect = getLayoutBounds(child.bounds().get());
+        invalidChildrenRects.add(rect, rect);
       }
     }
 
@@ -77,36 +102,29 @@ public class OrthogonalRouter implements ConnectionRouter {
   }
 
   private void reroute(DiagramView diagramView) {
-    List<Segment> forbiddenSegments = new ArrayList<Segment>();
-    List<Segment> additionalLines = new ArrayList<Segment>();
-    for (Connection c: diagramView.connections) {
-      if (isValid(c)) {
-        getAdditionalInfo(forbiddenSegments, additionalLines, ((PolyLineConnection) c).getSegments());
-      }
-    }
-
-    List<Rectangle> obstacleRects = new ArrayList<Rectangle>();
-    for(View f: getItems(diagramView)) {
-      obstacleRects.add(getLayoutBounds(f.bounds().get()));
-    }
     long totalTime = System.currentTimeMillis();
 
-    OrthogonalRouteWithObstacles router = new OrthogonalRouteWithObstacles(obstacleRects);
-    router.setMinDistToForbiddenSegment(DIST_BETWEEN_EDGES - 1);
-    router.addForbiddenSegments(forbiddenSegments);
-    router.addAdditionalLines(additionalLines);
+    OrthogonalRouteWithObstacles router = updateRoutingSpace(diagramView);
 
     Map<View,List<Connection>> connMap = ConnectionUtil.getInputToConnectionsMap(diagramView);
-    for (View input: connMap.keySet()) {
-      List<Segment> inputForbiddenSegments = new ArrayList<Segment>();
-      List<Segment> inputAdditionalLines = new ArrayList<Segment>();
-      for (Connection c: connMap.get(input)) {
-        if (isValid(c)) continue;
-        List<Vector> path = routeConnection((PolyLineConnection) c, router);
-        getAdditionalInfo(inputForbiddenSegments, inputAdditionalLines, IntGeomUtil.getSegments(path));
+    if (myTaskRunner == null) {
+      for (View input: connMap.keySet()) {
+        List<Segment> inputForbiddenSegments = new ArrayList<Segment>();
+        List<Segment> inputAdditionalLines = new ArrayList<Segment>();
+        for (Connection c: connMap.get(input)) {
+          if (isValid(c)) continue;
+          PolyLineConnection connection = (PolyLineConnection) c;
+          CachedRoute cached = getCachedRoute(connection, router);
+          List<Vector> path = cached != null ? completeRoute(connection, cached.getPath()) : routeConnection(connection, router);
+          List<Segment> route = IntGeomUtil.getSegments(path);
+          getAdditionalInfo(inputForbiddenSegments, inputAdditionalLines, route);
+          myRoutes.put(c, route);
+        }
+        router.addForbiddenSegments(inputForbiddenSegments);
+        router.addAdditionalLines(inputAdditionalLines);
       }
-      router.addForbiddenSegments(inputForbiddenSegments);
-      router.addAdditionalLines(inputAdditionalLines);
+    } else {
+      rerouteConcurrently(connMap, router);
     }
 
     if (SHOW_INFO) {
@@ -120,6 +138,150 @@ public class OrthogonalRouter implements ConnectionRouter {
     }
   }
 
+  private void rerouteConcurrently(Map<View, List<Connection>> connMap, final OrthogonalRouteWithObstacles router) {
+    List<List<PolyLineConnection>> groups = new ArrayList<List<PolyLineConnection>>();
+    List<List<Vector>> endpoints = new ArrayList<List<Vector>>();
+    List<List<CachedRoute>> cachedRoutes = new ArrayList<List<CachedRoute>>();
+    List<List<List<Vector>>> paths = new ArrayList<List<List<Vector>>>();
+    List<Runnable> tasks = new ArrayList<Runnable>();
+    for (List<Connection> connections: connMap.values()) {
+      List<PolyLineConnection> group = new ArrayList<PolyLineConnection>();
+      final List<Vector> groupEndpoints = new ArrayList<Vector>();
+      final List<CachedRoute> groupCachedRoutes = new ArrayList<CachedRoute>();
+      for (Connection c: connections) {
+        if (isValid(c)) continue;
+        PolyLineConnection connection = (PolyLineConnection) c;
+        group.add(connection);
+        groupEndpoints.add(getRouteStart(connection));
+        groupEndpoints.add(getRouteEnd(connection));
+        groupCachedRoutes.add(getCachedRoute(connection, router));
+      }
+      if (group.isEmpty()) continue;
+
+      //tasks only read the routing space and find paths which aren't cached, connections are updated during the merge
+      final List<List<Vector>> groupPaths = new ArrayList<List<Vector>>();
+      for (CachedRoute cached: groupCachedRoutes) {
+        groupPaths.add(cached != null ? cached.getPath() : null);
+      }
+      groups.add(group);
+      endpoints.add(groupEndpoints);
+      cachedRoutes.add(groupCachedRoutes);
+      paths.add(groupPaths);
+      if (!groupCachedRoutes.contains(null)) continue;
+      tasks.add(new Runnable() {
+        @Override
+        public void run() {
+          for (int j = 0; j < groupPaths.size(); j++) {
+            if (groupCachedRoutes.get(j) == null) {
+              groupPaths.set(j, router.findRoute(groupEndpoints.get(2 * j), groupEndpoints.get(2 * j + 1)));
+            }
+          }
+        }
+      });
+    }
+    myTaskRunner.runAll(tasks);
+
+    MergedRoutes merged = new MergedRoutes();
+    for (int i = 0; i < groups.size(); i++) {
+      List<PolyLineConnection> group = groups.get(i);
+      List<List<Vector>> groupPaths = paths.get(i);
+      boolean collides = false;
+      for (List<Vector> path: groupPaths) {
+        if (path != null && merged.tooClose(IntGeomUtil.getSegments(path))) {
+          collides = true;
+          break;
+        }
+      }
+
+      List<Segment> inputForbiddenSegments = new ArrayList<Segment>();
+      List<Segment> inputAdditionalLines = new ArrayList<Segment>();
+      for (int j = 0; j < group.size(); j++) {
+        PolyLineConnection c = group.get(j);
+        List<Vector> path;
+        if (collides) {
+          path = routeConnection(c, router);
+        } else {
+          path = groupPaths.get(j);
+          if (cachedRoutes.get(i).get(j) == null) {
+            cacheRoute(c, endpoints.get(i).get(2 * j), endpoints.get(i).get(2 * j + 1), path, router);
+          }
+          path = completeRoute(c, path);
+        }
+        List<Segment> route = IntGeomUtil.getSegments(path);
+        getAdditionalInfo(inputForbiddenSegments, inputAdditionalLines, route);
+        myRoutes.put(c, route);
+      }
+      router.addForbiddenSegments(inputForbiddenSegments);
+      router.addAdditionalLines(inputAdditionalLines);
+      merged.add(inputForbiddenSegments);
+    }
+  }
+
+  private OrthogonalRouteWithObstacles updateRoutingSpace(DiagramView diagramView) {
+    if (myDiagramView != diagramView) {
+      myDiagramView = diagramView;
+      myRouter = new OrthogonalRouteWithObstacles();
+      myRouter.setMinDistToForbiddenSegment(DIST_BETWEEN_EDGES - 1);
+      myObstacles.clear();
+      myRoutes.clear();
+      myCache.clear();
+    }
+
+    Map<View, Rectangle> obstacles = new HashMap<View, Rectangle>();
+    for (View f: getItems(diagramView)) {
+      Rectangle rect = getLayoutBounds(f.bounds().get());
+      Rectangle oldRect = myObstacles.remove(f);
+      if (!rect.equals(oldRect)) {
+        if (oldRect != null) {
+          myRouter.removeObstacle(oldRect);
+        }
+        myRouter.addObstacle(rect);
+      }
+      obstacles.put(f, rect);
+    }
+    for (Rectangle removed: myObstacles.values()) {
+      myRouter.removeObstacle(removed);
+    }
+    myObstacles = obstacles;
+
+    List<Segment> forbiddenSegments = new ArrayList<Segment>();
+    List<Segment> additionalLines = new ArrayList<Segment>();
+    List<Segment> removedForbiddenSegments = new ArrayList<Segment>();
+    List<Segment> removedAdditionalLines = new ArrayList<Segment>();
+    Map<Connection, List<Segment>> routes = new HashMap<Connection, List<Segment>>();
+    Map<Connection, CachedRoute> cache = new HashMap<Connection, CachedRoute>();
+    for (Connection c: diagramView.connections) {
+      CachedRoute cachedRoute = myCache.get(c);
+      if (cachedRoute != null) {
+        cache.put(c, cachedRoute);
+      }
+      List<Segment> oldRoute = myRoutes.remove(c);
+      List<Segment> route = isValid(c) ? new ArrayList<Segment>(((PolyLineConnection) c).getSegments()) : null;
+      if (route != null && route.equals(oldRoute)) {
+        routes.put(c, oldRoute);
+        continue;
+      }
+      if (oldRoute != null) {
+        getAdditionalInfo(removedForbiddenSegments, removedAdditionalLines, oldRoute);
+      }
+      if (route != null) {
+        getAdditionalInfo(forbiddenSegments, additionalLines, route);
+        routes.put(c, route);
+      }
+    }
+    for (List<Segment> removed: myRoutes.values()) {
+      getAdditionalInfo(removedForbiddenSegments, removedAdditionalLines, removed);
+    }
+    myRoutes = routes;
+    myCache = cache;
+
+    myRouter.removeForbiddenSegments(removedForbiddenSegments);
+    myRouter.removeAdditionalLines(removedAdditionalLines);
+    myRouter.addForbiddenSegments(forbiddenSegments);
+    myRouter.addAdditionalLines(additionalLines);
+    return myRouter;
+  }
+
   private void getAdditionalInfo(List<Segment> forbiddenSegments, List<Segment> additionalLines, List<Segment> path) {
     for (Segment s: path) {
       forbiddenSegments.add(createForbiddenSegment(s));
@@ -153,12 +315,68 @@ public class OrthogonalRouter implements ConnectionRouter {
   }
 
   protected List<Vector> routeConnection(PolyLineConnection connection, OrthogonalRouteWithObstacles router) {
+    Vector start = getRouteStart(connection);
+    Vector end = getRouteEnd(connection);
+    List<Vector> path = router.findRoute(start, end);
+    cacheRoute(connection, start, end, path, router);
+    return completeRoute(connection, path);
+  }
+
+  private CachedRoute getCachedRoute(PolyLineConnection connection, OrthogonalRouteWithObstacles router) {
+    CachedRoute cached = myCache.get(connection);
+    if (cached == null) return null;
+    if (!cached.myFrom.equals(connection.getFrom()) || !cached.myTo.equals(connection.getTo())) return null;
+    if (!cached.myStart.equals(getRouteStart(connection)) || !cached.myEnd.equals(getRouteEnd(connection))) return null;
+    if (cached.myObstaclesHash != getObstaclesHash(cached.myPath, router)) return null;
+    if (router.runsAlongForbiddenSegment(cached.myPath)) return null;
+    return cached;
+  }
+
+  private void cacheRoute(PolyLineConnection connection, Vector start, Vector end, List<Vector> path, OrthogonalRouteWithObstacles router) {
+    //a failure might be caused by anything in the routing space, so there's no cheap check that it's still valid
+    if (path == null) {
+      myCache.remove(connection);
+      return;
+    }
+    CachedRoute cached = new CachedRoute(connection.getFrom(), connection.getTo(), start, end, new ArrayList<Vector>(path));
+    cached.myObstaclesHash = getObstaclesHash(cached.myPath, router);
+    myCache.put(connection, cached);
+  }
+
+  /**
+   * Doesn't depend on the order of obstacles, so it changes only when an obstacle enters, leaves or moves
+   * within the bounding box of the points
+   */
+  private int getObstaclesHash(List<Vector> points, OrthogonalRouteWithObstacles router) {
+    int left = Integer.MAX_VALUE;
+    int top = Integer.MAX_VALUE;
+    int right = Integer.MIN_VALUE;
+    int bottom = Integer.MIN_VALUE;
+    for (Vector v: points) {
+      left = Math.min(left, v.x);
+      top = Math.min(top, v.y);
+      right = Math.max(right, v.x);
+      bottom = Math.max(bottom, v.y);
+    }
+
+    int hash = 0;
+    for (Rectangle r: router.getObstacles(new Rectangle(left, top, right - left, bottom - top))) {
+      hash += r.hashCode();
+    }
+    return hash;
+  }
+
+  private Vector getRouteStart(PolyLineConnection connection) {
     Vector startShift = getEndpointShift(connection.fromView().get(), new Vector(DIST_FROM_OBSTACLE, 0));
+    return connection.getFrom().add(startShift);
+  }
+
+  private Vector getRouteEnd(PolyLineConnection connection) {
     Vector endShift = getEndpointShift(connection.toView().get(), new Vector(-DIST_FROM_OBSTACLE, 0));
-    Vector start = connection.getFrom().add(startShift);
-    Vector e = connection.getTo().add(endShift);
+    return connection.getTo().add(endShift);
+  }
 
-    List<Vector> path = router.findRoute(start, e);
+  private List<Vector> completeRoute(PolyLineConnection connection, List<Vector> path) {
     if (path == null) {
       return simpleLayout(connection);
     }
@@ -212,9 +430,10 @@ public class OrthogonalRouter implements ConnectionRouter {
     return Arrays.asList(points);
   }
 
-  private boolean intersects(PolyLineConnection connection, Set<Rectangle> obstacles) {
+  private boolean intersects(PolyLineConnection connection, SpatialIndex<Rectangle> obstacles) {
+    if (obstacles.isEmpty()) return false;
     for (Segment s: connection.getSegments()) {
-      for (Rectangle rect: obstacles) {
+      for (Rectangle rect: obstacles.find(s)) {
         for (Segment bound: rect.getBoundSegments()) {
           if (IntGeomUtil.intersects(s, bound)) {
             return true;
@@ -224,4 +443,75 @@ public class OrthogonalRouter implements ConnectionRouter {
     }
     return false;
   }
+
+  /**
+   * Path found by the router between the shifted endpoints of a connection. Failed searches aren't cached.
+   */
+  private static class CachedRoute {
+    private final Vector myFrom;
+    private final Vector myTo;
+    private final Vector myStart;
+    private final Vector myEnd;
+    private final List<Vector> myPath;
+    private int myObstaclesHash;
+
+    private CachedRoute(Vector from, Vector to, Vector start, Vector end, List<Vector> path) {
+      myFrom = from;
+      myTo = to;
+      myStart = start;
+      myEnd = end;
+      myPath = path;
+    }
+
+    private List<Vector> getPath() {
+      return new ArrayList<Vector>(myPath);
+    }
+  }
+
+  /**
+   * Forbidden segments of routes merged during concurrent rerouting
+   */
+  private static class MergedRoutes {
+    private Map<Integer, List<Segment>> myVertical = new HashMap<Integer, List<Segment>>();
+    private Map<Integer, List<Segment>> myHorizontal = new HashMap<Integer, List<Segment>>();
+
+    private void add(List<Segment> forbiddenSegments) {
+      for (Segment fs: forbiddenSegments) {
+        boolean ver = fs.start.x == fs.end.x;
+        Map<Integer, List<Segment>> segments = ver ? myVertical : myHorizontal;
+        int coord = ver ? fs.start.x : fs.start.y;
+        List<Segment> list = segments.get(coord);
+        if (list == null) {
+          list = new ArrayList<Segment>(1);
+          segments.put(coord, list);
+        }
+        list.add(fs);
+      }
+    }
+
+    /**
+     * Whether a segment runs along a forbidden one closer than sequential routing allows
+     */
+    private boolean tooClose(List<Segment> route) {
+      for (Segment s: route) {
+        boolean ver = s.start.x == s.end.x;
+        Map<Integer, List<Segment>> segments = ver ? myVertical : myHorizontal;
+        int coord = ver ? s.start.x : s.start.y;
+        int from = ver ? Math.min(s.start.y, s.end.y) : Math.min(s.start.x, s.end.x);
+        int to = ver ? Math.max(s.start.y, s.end.y) : Math.max(s.start.x, s.end.x);
+        for (int c = coord - DIST_BETWEEN_EDGES + 1; c < coord + DIST_BETWEEN_EDGES; c++) {
+          List<Segment> list = segments.get(c);
+          if (list == null) continue;
+          for (Segment fs: list) {
+            int fsFrom = ver ? fs.start.y : fs.start.x;
+            int fsTo = ver ? fs.end.y : fs.end.x;
+            if (from < fsTo && to > fsFrom) {
+              return true;
+            }
+          }
+        }
+      }
+      return false;
+    }
+  }
 }
\ No newline at end of file
@@ -19,6 +19,7 @@ import jetbrains.jetpad.geometry.Rectangle;
 import jetbrains.jetpad.geometry.Vector;
 import jetbrains.jetpad.model.collections.list.ObservableList;
 import jetbrains.jetpad.projectional.diagram.algorithm.geom.AvoidObstacles;
+import jetbrains.jetpad.projectional.diagram.algorithm.geom.SpatialIndex;
 import jetbrains.jetpad.projectional.diagram.layout.ConnectionRouter;
 import jetbrains.jetpad.projectional.diagram.view.decoration.DecorationContainer;
 import jetbrains.jetpad.projectional.view.View;
@@ -30,6 +31,7 @@ public class ConnectionRoutingView extends DiagramView implements DecorationCont
   private static final int MIN_DIST = 30;
   private static final Vector ORIGIN_SHIFT = new Vector(MIN_DIST, MIN_DIST);
   private static final Vector DIMENSION_GROW = new Vector(2 * MIN_DIST + 1, 2 * MIN_DIST + 1);
+  private static final int INDEX_CELL_SIZE = 100;
 
   private GroupView myDecorationGroup = new GroupView();
 
@@ -80,8 +82,9 @@ public class ConnectionRoutingView extends DiagramView implements DecorationCont
     if (moved == null) {
       return;
     }
-    List<Rectangle> viewRects = new ArrayList<Rectangle>();
-    viewRects.add(getRect(moved));
+    SpatialIndex<Rectangle> viewRects = new SpatialIndex<Rectangle>(INDEX_CELL_SIZE);
+    Rectangle movedRect = getRect(moved);
+    viewRects.add(movedRect, movedRect);
     List<View> childrenByDist = new ArrayList<View>(getNodes());
     childrenByDist.remove(moved);
 
@@ -123,16 +126,17 @@ public class ConnectionRoutingView extends DiagramView implements DecorationCont
     }
   }
 
-  private void updateView(List<Rectangle> viewRects, View f, Vector newOrigin) {
+  private void updateView(SpatialIndex<Rectangle> viewRects, View f, Vector newOrigin) {
     if (!newOrigin.equals(f.bounds().get().origin)) {
       f.moveTo(newOrigin);
       f.invalidate();
     }
-    viewRects.add(getRect(f));
+    Rectangle rect = getRect(f);
+    viewRects.add(rect, rect);
   }
 
-  private boolean posFree(Rectangle rect, List<Rectangle> obstacles) {
-    for (Rectangle obstacle: obstacles) {
+  private boolean posFree(Rectangle rect, SpatialIndex<Rectangle> obstacles) {
+    for (Rectangle obstacle: obstacles.find(rect)) {
       if (rect.innerIntersects(obstacle)) {
         return false;
       }
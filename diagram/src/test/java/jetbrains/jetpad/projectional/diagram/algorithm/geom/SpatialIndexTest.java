@@ -0,0 +1,88 @@
+/*
+ * Copyright 2012-2013 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.projectional.diagram.algorithm.geom;
+
+import jetbrains.jetpad.geometry.Rectangle;
+import jetbrains.jetpad.geometry.Segment;
+import jetbrains.jetpad.geometry.Vector;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SpatialIndexTest {
+  private SpatialIndex<String> index = new SpatialIndex<String>(10);
+
+  @Test
+  public void empty() {
+    assertTrue(index.isEmpty());
+    assertEquals(Collections.<String>emptyList(), index.find(new Rectangle(0, 0, 100, 100)));
+  }
+
+  @Test
+  public void farItemsSkipped() {
+    index.add(new Rectangle(0, 0, 5, 5), "near");
+    index.add(new Rectangle(100, 100, 5, 5), "far");
+    assertEquals(Arrays.asList("near"), index.find(new Rectangle(3, 3, 10, 10)));
+  }
+
+  @Test
+  public void touchingItemFound() {
+    index.add(new Rectangle(0, 0, 5, 5), "a");
+    assertEquals(Arrays.asList("a"), index.find(new Rectangle(5, 5, 10, 10)));
+    assertEquals(Collections.<String>emptyList(), index.find(new Rectangle(6, 0, 10, 10)));
+  }
+
+  @Test
+  public void itemInManyCellsFoundOnce() {
+    index.add(new Rectangle(0, 0, 100, 100), "big");
+    assertEquals(Arrays.asList("big"), index.find(new Rectangle(10, 10, 50, 50)));
+  }
+
+  @Test
+  public void orderOfAddition() {
+    index.add(new Rectangle(50, 50, 5, 5), "c");
+    index.add(new Rectangle(0, 0, 5, 5), "a");
+    index.add(new Rectangle(20, 20, 5, 5), "b");
+    assertEquals(Arrays.asList("c", "a", "b"), index.find(new Rectangle(0, 0, 60, 60)));
+  }
+
+  @Test
+  public void negativeCoordinates() {
+    index.add(new Rectangle(-15, -15, 5, 5), "a");
+    assertEquals(Arrays.asList("a"), index.find(new Rectangle(-12, -12, 1, 1)));
+    assertEquals(Collections.<String>emptyList(), index.find(new Rectangle(-5, -5, 4, 4)));
+  }
+
+  @Test
+  public void segments() {
+    index.add(new Segment(new Vector(100, 0), new Vector(0, 0)), "horizontal");
+    index.add(new Segment(new Vector(50, -50), new Vector(50, -10)), "vertical");
+    assertEquals(Arrays.asList("horizontal"), index.find(new Segment(new Vector(70, 0), new Vector(70, 30))));
+    assertEquals(Arrays.asList("horizontal", "vertical"), index.find(new Rectangle(40, -20, 20, 20)));
+  }
+
+  @Test
+  public void hugeArea() {
+    index.add(new Rectangle(0, 0, 5, 5), "a");
+    index.add(new Rectangle(1000, 1000, 5, 5), "b");
+    Rectangle all = new Rectangle(Integer.MIN_VALUE / 2, Integer.MIN_VALUE / 2, Integer.MAX_VALUE, Integer.MAX_VALUE);
+    assertEquals(Arrays.asList("a", "b"), index.find(all));
+  }
+}
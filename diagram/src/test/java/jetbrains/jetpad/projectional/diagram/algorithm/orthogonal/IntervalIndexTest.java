@@ -0,0 +1,68 @@
+/*
+ * Copyright 2012-2013 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.projectional.diagram.algorithm.orthogonal;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class IntervalIndexTest {
+  IntervalIndex<String> index = new IntervalIndex<String>();
+
+  @Test
+  public void empty() {
+    assertEquals(Collections.<String>emptyList(), index.overlapping(0, 10));
+  }
+
+  @Test
+  public void openIntervalsContainingPoint() {
+    index.add(0, 10, "a");
+    index.add(5, 8, "b");
+    index.add(10, 20, "c");
+    index.add(100, 200, "d");
+
+    assertEquals(Arrays.asList("a", "b"), index.overlapping(6, 6));
+    assertEquals(Collections.<String>emptyList(), index.overlapping(10, 10));
+    assertEquals(Arrays.asList("c", "d"), index.overlapping(15, 150));
+  }
+
+  @Test
+  public void pointsInRange() {
+    index.add(3, 3, "a");
+    index.add(7, 7, "b");
+
+    assertEquals(Arrays.asList("a"), index.overlapping(2, 4));
+    assertEquals(Arrays.asList("a", "b"), index.overlapping(2, 8));
+    assertEquals(Collections.<String>emptyList(), index.overlapping(3, 7));
+  }
+
+  @Test
+  public void remove() {
+    index.add(0, 100, "a");
+    index.add(0, 10, "b");
+
+    assertFalse(index.remove(0, 10, "a"));
+    assertTrue(index.remove(0, 100, "a"));
+
+    assertEquals(Arrays.asList("b"), index.overlapping(5, 5));
+    assertEquals(Collections.<String>emptyList(), index.overlapping(50, 50));
+  }
+}
@@ -166,6 +166,41 @@ public class OrthogonalRouteWithObstaclesTest {
     assertEquals(e, r.get(3));
   }
 
+  @Test
+  public void removedObstacle() {
+    Vector s = new Vector(100, 0);
+    Vector e = new Vector(200, 0);
+    Rectangle rect = new Rectangle(110, -1, 80, 80);
+    o.addObstacle(rect);
+    assertTrue(o.findRoute(s, e).size() == 4);
+
+    o.removeObstacle(rect);
+    List<Vector> r = o.findRoute(s, e);
+
+    assertTrue(r.size() == 2);
+    assertEquals(s, r.get(0));
+    assertEquals(e, r.get(1));
+  }
+
+  @Test
+  public void removedForbiddenSegment() {
+    Vector s = new Vector(100, 0);
+    Vector e = new Vector(200, 0);
+    Rectangle rect = new Rectangle(110, -1, 80, 2);
+    o.addObstacle(rect);
+    List<Segment> forbidden = new ArrayList<Segment>();
+    forbidden.add(new Segment(new Vector(300, -1), new Vector(-100, -1)));
+    o.addForbiddenSegments(forbidden);
+    o.removeForbiddenSegments(forbidden);
+    List<Vector> r = o.findRoute(s, e);
+
+    assertTrue(r.size() == 4);
+    assertEquals(s, r.get(0));
+    assertEquals(new Vector(100, -1), r.get(1));
+    assertEquals(new Vector(200, -1), r.get(2));
+    assertEquals(e, r.get(3));
+  }
+
   @Test
   public void startEqualsEnd() {
     Vector s = new Vector(0, 0);
@@ -15,6 +15,8 @@
  */
 package jetbrains.jetpad.projectional.diagram.algorithm.path;
 
+import jetbrains.jetpad.projectional.diagram.algorithm.graph.BaseIntWeightedGraph;
+import jetbrains.jetpad.projectional.diagram.algorithm.graph.IntWeightedGraph;
 import jetbrains.jetpad.projectional.diagram.algorithm.graph.WeightedGraph;
 import junit.framework.Assert;
 import org.junit.Test;
@@ -23,7 +25,9 @@ import java.util.ArrayList;
 import java.util.List;
 
 import static junit.framework.Assert.assertNull;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 public class ShortestPathTest {
@@ -90,6 +94,98 @@ public class ShortestPathTest {
     Assert.assertTrue(getPathLen(path) == 14);
   }
 
+  @Test
+  public void twoWaysIntGraph() {
+    createGraph(5);
+    connect(0, 1, 1);
+    connect(1, 2, 4);
+    connect(0, 3, 2);
+    connect(3, 2, 2);
+    connect(2, 4, 10);
+    int[] path = new ShortestPath().getPathMinWeight(intGraph(), 0, 4, PathHeuristic.NONE);
+    assertArrayEquals(new int[] {0, 3, 2, 4}, path);
+  }
+
+  @Test
+  public void fewerEdgesPreferredToShorterLength() {
+    createGraph(4);
+    connect(0, 1, 1);
+    connect(1, 2, 1);
+    connect(2, 3, 1);
+    connect(0, 3, 100);
+    int[] path = new ShortestPath().getPathMinWeight(intGraph(), 0, 3, PathHeuristic.NONE);
+    assertArrayEquals(new int[] {0, 3}, path);
+  }
+
+  @Test
+  public void noPathIntGraph() {
+    createGraph(3);
+    connect(0, 1, 1);
+    assertNull(new ShortestPath().getPathMinWeight(intGraph(), 0, 2, PathHeuristic.NONE));
+  }
+
+  @Test
+  public void heuristicSkipsFarNodes() {
+    createGraph(6);
+    connect(0, 1, 1);
+    connect(1, 5, 1);
+    connect(0, 2, 1);
+    connect(2, 3, 1);
+    connect(3, 4, 1);
+    final List<Integer> visited = new ArrayList<Integer>();
+    IntWeightedGraph countingGraph = new BaseIntWeightedGraph() {
+      @Override
+      public int getEdgeCount(int node) {
+        visited.add(node);
+        return graph.get(node).size();
+      }
+
+      @Override
+      public int getEdge(int node, int index) {
+        return graph.get(node).get(index);
+      }
+
+      @Override
+      public int getEdgeWeight(int node, int index) {
+        return len.get(node).get(index);
+      }
+    };
+
+    int[] path = new ShortestPath().getPathMinWeight(countingGraph, 0, 5, new PathHeuristic() {
+      @Override
+      public int edges(int node) {
+        return node == 5 ? 0 : node == 1 ? 1 : 2;
+      }
+
+      @Override
+      public int length(int node) {
+        return 0;
+      }
+    });
+
+    assertArrayEquals(new int[] {0, 1, 5}, path);
+    assertFalse(visited.contains(3));
+  }
+
+  private IntWeightedGraph intGraph() {
+    return new BaseIntWeightedGraph() {
+      @Override
+      public int getEdgeCount(int node) {
+        return graph.get(node).size();
+      }
+
+      @Override
+      public int getEdge(int node, int index) {
+        return graph.get(node).get(index);
+      }
+
+      @Override
+      public int getEdgeWeight(int node, int index) {
+        return len.get(node).get(index);
+      }
+    };
+  }
+
   private void assertSame(List<Integer> path, Integer... points) {
     assertTrue(path.size() == points.length);
     for (int i = 0; i < path.size(); i++) {
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2012-2013 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.projectional.diagram.layout;
+
+import jetbrains.jetpad.geometry.Segment;
+import jetbrains.jetpad.geometry.Vector;
+import jetbrains.jetpad.projectional.diagram.algorithm.orthogonal.OrthogonalRouteWithObstacles;
+import jetbrains.jetpad.projectional.diagram.performance.ExecutorRoutingTaskRunner;
+import jetbrains.jetpad.projectional.diagram.performance.GridViewGenerator;
+import jetbrains.jetpad.projectional.diagram.view.Connection;
+import jetbrains.jetpad.projectional.diagram.view.DiagramView;
+import jetbrains.jetpad.projectional.diagram.view.PolyLineConnection;
+import jetbrains.jetpad.projectional.view.RectView;
+import jetbrains.jetpad.projectional.view.View;
+import jetbrains.jetpad.projectional.view.ViewContainer;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class OrthogonalRouterTest {
+  private static final int GRID_SIZE = 6;
+
+  @Test
+  public void sequentialRoutingReproducible() {
+    assertEquals(route(new OrthogonalRouter()), route(new OrthogonalRouter()));
+  }
+
+  @Test
+  public void concurrentRoutingDoesntDependOnRunner() {
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<List<Segment>> sequential = route(new OrthogonalRouter(RoutingTaskRunner.SEQUENTIAL));
+      List<List<Segment>> concurrent = route(new OrthogonalRouter(new ExecutorRoutingTaskRunner(executor)));
+      assertEquals(sequential, concurrent);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void unchangedRoutesReused() {
+    DiagramView diagram = createDiagram();
+    CountingRouter router = new CountingRouter();
+    router.findRoutes(diagram);
+    List<List<Segment>> routes = getRoutes(diagram);
+
+    invalidateConnections(diagram);
+    router.myRouted = 0;
+    router.findRoutes(diagram);
+
+    assertEquals(0, router.myRouted);
+    assertEquals(routes, getRoutes(diagram));
+  }
+
+  @Test
+  public void movedBlockReroutesOnlyNearConnections() {
+    DiagramView diagram = createDiagram();
+    CountingRouter router = new CountingRouter();
+    router.findRoutes(diagram);
+
+    View block = diagram.itemsView.children().get(0);
+    block.move(new Vector(0, 5));
+    invalidateConnections(diagram);
+    router.myRouted = 0;
+    router.findRoutes(diagram);
+
+    assertTrue(router.myRouted >= 3);
+    assertTrue(router.myRouted < diagram.connections.size() / 2);
+  }
+
+  @Test
+  public void connectionRoutedAfterEnclosingObstaclesRemoved() {
+    DiagramView diagram = createDiagram(2);
+    List<View> walls = Arrays.<View>asList(
+        wall(50, 70, 121, 1), wall(50, 190, 121, 1), wall(50, 70, 1, 121), wall(170, 70, 1, 121));
+    diagram.itemsView.children().addAll(walls);
+    OrthogonalRouter router = new OrthogonalRouter();
+    router.findRoutes(diagram);
+
+    diagram.itemsView.children().removeAll(walls);
+    invalidateConnections(diagram);
+    router.findRoutes(diagram);
+
+    OrthogonalRouter expected = new OrthogonalRouter();
+    DiagramView expectedDiagram = createDiagram(2);
+    expected.findRoutes(expectedDiagram);
+    assertEquals(getRoutes(expectedDiagram), getRoutes(diagram));
+  }
+
+  private List<List<Segment>> route(OrthogonalRouter router) {
+    DiagramView diagram = createDiagram();
+    router.findRoutes(diagram);
+    return getRoutes(diagram);
+  }
+
+  private DiagramView createDiagram() {
+    return createDiagram(GRID_SIZE);
+  }
+
+  private DiagramView createDiagram(int gridSize) {
+    ViewContainer container = new ViewContainer();
+    DiagramView diagram = new DiagramView();
+    container.contentRoot().children().add(diagram);
+    new GridViewGenerator(diagram, gridSize).generateGridView();
+    return diagram;
+  }
+
+  private View wall(int x, int y, int width, int height) {
+    RectView wall = new RectView();
+    wall.moveTo(new Vector(x, y));
+    wall.dimension().set(new Vector(width, height));
+    return wall;
+  }
+
+  private void invalidateConnections(DiagramView diagram) {
+    for (Connection c : diagram.connections) {
+      c.view().invalidate();
+    }
+  }
+
+  private List<List<Segment>> getRoutes(DiagramView diagram) {
+    List<List<Segment>> result = new ArrayList<List<Segment>>();
+    for (Connection c : diagram.connections) {
+      result.add(new ArrayList<Segment>(((PolyLineConnection) c).getSegments()));
+    }
+    return result;
+  }
+
+  private static class CountingRouter extends OrthogonalRouter {
+    private int myRouted;
+
+    @Override
+    protected List<Vector> routeConnection(PolyLineConnection connection, OrthogonalRouteWithObstacles router) {
+      myRouted++;
+      return super.routeConnection(connection, router);
+    }
+  }
+}
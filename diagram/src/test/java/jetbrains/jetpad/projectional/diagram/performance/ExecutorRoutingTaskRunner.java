@@ -0,0 +1,48 @@
+/*
+ * Copyright 2012-2013 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.projectional.diagram.performance;
+
+import jetbrains.jetpad.projectional.diagram.layout.RoutingTaskRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+public class ExecutorRoutingTaskRunner implements RoutingTaskRunner {
+  private final ExecutorService myExecutor;
+
+  public ExecutorRoutingTaskRunner(ExecutorService executor) {
+    myExecutor = executor;
+  }
+
+  @Override
+  public void runAll(List<Runnable> tasks) {
+    List<Callable<Object>> callables = new ArrayList<Callable<Object>>(tasks.size());
+    for (Runnable task : tasks) {
+      callables.add(Executors.callable(task));
+    }
+    try {
+      for (Future<Object> future : myExecutor.invokeAll(callables)) {
+        future.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      throw new RuntimeException(e.getCause());
+    }
+  }
+}
@@ -18,8 +18,8 @@ package jetbrains.jetpad.projectional.diagram.performance;
 import jetbrains.jetpad.geometry.Vector;
 import jetbrains.jetpad.projectional.diagram.view.DiagramView;
 import jetbrains.jetpad.projectional.diagram.view.PolyLineConnection;
+import jetbrains.jetpad.projectional.view.GroupView;
 import jetbrains.jetpad.projectional.view.RectView;
-import jetbrains.jetpad.projectional.view.View;
 
 public class GridViewGenerator {
   private DiagramView myView;
@@ -33,7 +33,7 @@ public class GridViewGenerator {
   }
 
   public void generateGridView() {
-    myChildOffset = myView.children().size();
+    myChildOffset = myView.itemsView.children().size();
     Vector hShift = new Vector(100, 0);
     Vector vShift = new Vector(0, 100);
     Vector origin = new Vector(0, 0);
@@ -62,13 +62,13 @@ public class GridViewGenerator {
 
   private Block createBlock(Vector origin, Vector dimension) {
     Block block = new Block(origin, dimension);
-    myView.children().add(block);
+    myView.itemsView.children().add(block);
     return block;
   }
 
   private Block getBlock(int vIndex, int hIndex) {
     if (vIndex < 0 || vIndex >= myGridSize || hIndex < 0 || hIndex >= myGridSize) return null;
-    return (Block) myView.children().get(vIndex * myGridSize + hIndex + myChildOffset);
+    return (Block) myView.itemsView.children().get(vIndex * myGridSize + hIndex + myChildOffset);
   }
 
   private void addConnection(Block from, Block to, int index) {
@@ -79,7 +79,7 @@ public class GridViewGenerator {
     myView.connections.add(connection);
   }
 
-  private static class Block extends View {
+  private static class Block extends GroupView {
     private RectView block = new RectView();
     private RectView[] input = new RectView[]{new RectView(), new RectView(), new RectView()};
     private RectView[] output = new RectView[]{new RectView(), new RectView(), new RectView()};
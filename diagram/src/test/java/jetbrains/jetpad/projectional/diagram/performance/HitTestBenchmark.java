@@ -0,0 +1,58 @@
+/*
+ * Copyright 2012-2013 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.projectional.diagram.performance;
+
+import jetbrains.jetpad.geometry.Vector;
+import jetbrains.jetpad.projectional.diagram.view.DiagramView;
+import jetbrains.jetpad.projectional.view.View;
+import jetbrains.jetpad.projectional.view.ViewContainer;
+
+import java.util.Random;
+
+public class HitTestBenchmark {
+  private static final int QUERIES = 200000;
+
+  public static void main(String[] args) {
+    measure(20);
+    for (int gridSize : new int[] {10, 30, 60, 100}) {
+      System.out.println(gridSize * gridSize + " blocks: " + measure(gridSize) + " ns per viewAt");
+    }
+  }
+
+  private static long measure(int gridSize) {
+    ViewContainer container = new ViewContainer();
+    DiagramView diagram = new DiagramView();
+    container.contentRoot().children().add(diagram);
+    new GridViewGenerator(diagram, gridSize).generateGridView();
+    container.root().validate();
+
+    Random random = new Random(0);
+    int extent = gridSize * 100;
+    int hits = 0;
+    long start = System.nanoTime();
+    for (int i = 0; i < QUERIES; i++) {
+      View view = container.root().viewAt(new Vector(random.nextInt(extent), random.nextInt(extent)));
+      if (view != container.root()) {
+        hits++;
+      }
+    }
+    long result = (System.nanoTime() - start) / QUERIES;
+    if (hits == 0) {
+      throw new IllegalStateException();
+    }
+    return result;
+  }
+}
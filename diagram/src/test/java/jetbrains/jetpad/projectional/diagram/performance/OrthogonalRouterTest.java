@@ -19,39 +19,104 @@ import jetbrains.jetpad.base.Value;
 import jetbrains.jetpad.geometry.Vector;
 import jetbrains.jetpad.projectional.diagram.algorithm.orthogonal.OrthogonalRouteWithObstacles;
 import jetbrains.jetpad.projectional.diagram.layout.OrthogonalRouter;
+import jetbrains.jetpad.projectional.diagram.layout.RoutingTaskRunner;
+import jetbrains.jetpad.projectional.diagram.view.Connection;
 import jetbrains.jetpad.projectional.diagram.view.DiagramView;
 import jetbrains.jetpad.projectional.diagram.view.PolyLineConnection;
+import jetbrains.jetpad.projectional.view.View;
 import jetbrains.jetpad.projectional.view.ViewContainer;
 import jetbrains.jetpad.projectional.view.awt.AwtDemo;
 
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class OrthogonalRouterTest {
+  private static final int RUNS = 5;
+  private static final int DRAG_STEPS = 20;
+  private static final int DRAG_SHIFT = 5;
+
   public static void main(String[] args) {
-    final Value<Integer> connectionsNum = new Value<Integer>(0);
-    OrthogonalRouter router = new OrthogonalRouter() {
-      @Override
-      public void findRoutes(DiagramView view) {
-        connectionsNum.set(0);
-        super.findRoutes(view);
-      }
-
-      @Override
-      protected List<Vector> routeConnection(PolyLineConnection connection, OrthogonalRouteWithObstacles router) {
-        connectionsNum.set(connectionsNum.get() + 1);
-        return super.routeConnection(connection, router);
-      }
-    };
+    List<String> options = Arrays.asList(args);
+    ExecutorService executor = null;
+    CountingRouter router;
+    if (options.contains("-concurrent")) {
+      executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+      router = new CountingRouter(new ExecutorRoutingTaskRunner(executor));
+    } else {
+      router = new CountingRouter();
+    }
+    Value<Integer> connectionsNum = router.myConnectionsNum;
+
+    int gridSize = args.length > 0 && !args[0].startsWith("-") ? Integer.parseInt(args[0]) : 20;
     final ViewContainer vc = new ViewContainer();
     DiagramView v = new DiagramView();
-    vc.root().children().add(v);
+    vc.contentRoot().children().add(v);
+    new GridViewGenerator(v, gridSize).generateGridView();
 
-    new GridViewGenerator(v, 6).generateGridView();
     long time = System.currentTimeMillis();
     router.findRoutes(v);
-    System.out.println("reroute " + connectionsNum + " connections");
-    long total = System.currentTimeMillis() - time;
-    System.out.println("time: " + total);
-    AwtDemo.show(vc);
+    //in concurrent mode only connections re-routed during the merge are counted
+    System.out.println(gridSize + "x" + gridSize + " grid: route " + connectionsNum.get() + " connections in " + (System.currentTimeMillis() - time) + " ms");
+
+    long best = Long.MAX_VALUE;
+    for (int i = 0; i < RUNS; i++) {
+      time = System.currentTimeMillis();
+      router.findRoutes(v);
+      best = Math.min(best, System.currentTimeMillis() - time);
+    }
+    System.out.println("nothing moved: reroute " + connectionsNum.get() + " connections, best of " + RUNS + " runs: " + best + " ms");
+
+    validateConnections(v);
+    View block = v.itemsView.children().get(gridSize * (gridSize / 2) + gridSize / 2);
+    int rerouted = 0;
+    long dragTime = 0;
+    for (int i = 0; i < DRAG_STEPS; i++) {
+      block.move(new Vector(i % 2 == 0 ? DRAG_SHIFT : -DRAG_SHIFT, 0));
+      block.invalidate();
+      time = System.currentTimeMillis();
+      router.findRoutes(v);
+      dragTime += System.currentTimeMillis() - time;
+      rerouted += connectionsNum.get();
+      validateConnections(v);
+    }
+    System.out.println("drag one block: reroute " + rerouted / DRAG_STEPS + " connections in " + dragTime / DRAG_STEPS + " ms per step");
+
+    if (executor != null) {
+      executor.shutdown();
+    }
+    if (options.contains("-show")) {
+      AwtDemo.show(vc);
+    }
+  }
+
+  private static class CountingRouter extends OrthogonalRouter {
+    private final Value<Integer> myConnectionsNum = new Value<Integer>(0);
+
+    private CountingRouter() {
+    }
+
+    private CountingRouter(RoutingTaskRunner taskRunner) {
+      super(taskRunner);
+    }
+
+    @Override
+    public void findRoutes(DiagramView view) {
+      myConnectionsNum.set(0);
+      super.findRoutes(view);
+    }
+
+    @Override
+    protected List<Vector> routeConnection(PolyLineConnection connection, OrthogonalRouteWithObstacles router) {
+      myConnectionsNum.set(myConnectionsNum.get() + 1);
+      return super.routeConnection(connection, router);
+    }
+  }
+
+  private static void validateConnections(DiagramView view) {
+    for (Connection c : view.connections) {
+      c.view().validate();
+    }
   }
-}
\ No newline at end of file
+}
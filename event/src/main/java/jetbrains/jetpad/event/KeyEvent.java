@@ -20,7 +20,9 @@ import java.util.*;
 public class KeyEvent extends Event {
   private Key myKey;
   private Set<ModifierKey> myModifiers;
+  private int myModifierMask;
   private char myKeyChar;
+  private KeyStroke myKeyStroke;
 
   public KeyEvent(Key key) {
     this(key, (char) 0, Collections.<ModifierKey>emptyList());
@@ -29,6 +31,7 @@ public class KeyEvent extends Event {
   public KeyEvent(Key key, char ch, Collection<ModifierKey> modifiers) {
     myKey = key;
     myModifiers = new HashSet<ModifierKey>(modifiers);
+    myModifierMask = KeyStroke.mask(myModifiers);
     myKeyChar = ch;
   }
 
@@ -44,9 +47,16 @@ public class KeyEvent extends Event {
     return Collections.unmodifiableSet(myModifiers);
   }
 
+  public KeyStroke keyStroke() {
+    if (myKeyStroke == null) {
+      myKeyStroke = new KeyStroke(myKey, myModifierMask);
+    }
+    return myKeyStroke;
+  }
+
   public boolean is(Key key, ModifierKey... modifiers) {
     if (key != myKey) return false;
-    return myModifiers.equals(new HashSet<ModifierKey>(Arrays.asList(modifiers)));
+    return myModifierMask == KeyStroke.mask(modifiers);
   }
 
   public boolean has(ModifierKey key) {
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2012-2013 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.event;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Hashed index of key bindings. Resolving an event takes a single lookup instead of a chain of
+ * {@link KeyEvent#is} checks.
+ */
+public class KeyMap<ValueT> {
+  private Map<KeyStroke, ValueT> myBindings = new HashMap<KeyStroke, ValueT>();
+
+  public KeyMap<ValueT> bind(ValueT value, Key key, ModifierKey... modifiers) {
+    myBindings.put(new KeyStroke(key, modifiers), value);
+    return this;
+  }
+
+  public ValueT get(KeyEvent event) {
+    return myBindings.get(event.keyStroke());
+  }
+
+  public ValueT get(KeyStroke stroke) {
+    return myBindings.get(stroke);
+  }
+}
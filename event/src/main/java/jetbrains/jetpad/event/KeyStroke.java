@@ -0,0 +1,82 @@
+/*
+ * Copyright 2012-2013 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.event;
+
+import java.util.Collection;
+
+/**
+ * Key together with a set of modifiers. Modifiers are stored as a bit mask, so strokes are cheap to compare and hash.
+ */
+public final class KeyStroke {
+  static int mask(ModifierKey... modifiers) {
+    int result = 0;
+    for (ModifierKey m : modifiers) {
+      result |= 1 << m.ordinal();
+    }
+    return result;
+  }
+
+  static int mask(Collection<ModifierKey> modifiers) {
+    int result = 0;
+    for (ModifierKey m : modifiers) {
+      result |= 1 << m.ordinal();
+    }
+    return result;
+  }
+
+  private final Key myKey;
+  private final int myModifiers;
+
+  public KeyStroke(Key key, ModifierKey... modifiers) {
+    this(key, mask(modifiers));
+  }
+
+  KeyStroke(Key key, int modifiers) {
+    myKey = key;
+    myModifiers = modifiers;
+  }
+
+  public Key key() {
+    return myKey;
+  }
+
+  public boolean has(ModifierKey modifier) {
+    return (myModifiers & (1 << modifier.ordinal())) != 0;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (!(obj instanceof KeyStroke)) return false;
+    KeyStroke other = (KeyStroke) obj;
+    return myKey == other.myKey && myModifiers == other.myModifiers;
+  }
+
+  @Override
+  public int hashCode() {
+    return (myKey == null ? 0 : myKey.hashCode()) * 31 + myModifiers;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder result = new StringBuilder();
+    for (ModifierKey m : ModifierKey.values()) {
+      if (has(m)) {
+        result.append(m).append('+');
+      }
+    }
+    return result.append(myKey).toString();
+  }
+}
@@ -44,7 +44,7 @@ public final class Grammar {
     checkName(name);
 
     try {
-      Terminal result = new Terminal(this, name);
+      Terminal result = new Terminal(this, name, myTerminals.size());
       myTerminals.add(result);
       mySymbols.put(name, result);
       return result;
@@ -56,7 +56,7 @@ public final class Grammar {
   public NonTerminal newNonTerminal(String name) {
     checkName(name);
 
-    NonTerminal result = new NonTerminal(this, name);
+    NonTerminal result = new NonTerminal(this, name, myNonTerminals.size());
     myNonTerminals.add(result);
     mySymbols.put(name, result);
 
@@ -121,6 +121,46 @@ public final class Grammar {
     return Collections.unmodifiableSet(myRules);
   }
 
+  /**
+   * Hash of everything which affects the generated parser table: symbols, rules, their priorities and
+   * associativities. Identical grammars have equal fingerprints, rule handlers aren't taken into account.
+   */
+  public String getFingerprint() {
+    StringBuilder description = new StringBuilder();
+    for (Terminal t : myTerminals) {
+      description.append(t).append('\n');
+    }
+    description.append('\n');
+    for (NonTerminal nt : myNonTerminals) {
+      description.append(nt).append('\n');
+    }
+    description.append('\n');
+    for (Rule rule : myRules) {
+      description.append(rule.getHead().getIndex()).append(':');
+      for (Symbol s : rule.getSymbols()) {
+        description.append(s instanceof Terminal ? 't' : 'n').append(s.getIndex()).append(' ');
+      }
+      description.append(rule.getPriority()).append(' ').append(rule.getAssociativity()).append('\n');
+    }
+
+    int h1 = 0;
+    int h2 = 7;
+    for (int i = 0; i < description.length(); i++) {
+      char c = description.charAt(i);
+      h1 = 31 * h1 + c;
+      h2 = 131 * h2 + (c ^ 0x5a);
+    }
+    return hex(description.length()) + hex(h1) + hex(h2);
+  }
+
+  private static String hex(int value) {
+    String result = Integer.toHexString(value);
+    while (result.length() < 8) {
+      result = "0" + result;
+    }
+    return result;
+  }
+
   private void invalidateGrammarData() {
     myGrammarData = null;
   }
@@ -20,8 +20,8 @@ import java.util.*;
 public class NonTerminal extends Symbol {
   private Set<Rule> myRules = new LinkedHashSet<Rule>();
 
-  NonTerminal(Grammar grammar, String name) {
-    super(grammar, name);
+  NonTerminal(Grammar grammar, String name, int index) {
+    super(grammar, name, index);
   }
 
   void addRule(Rule rule) {
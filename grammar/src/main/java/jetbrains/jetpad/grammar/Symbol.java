@@ -18,16 +18,25 @@ package jetbrains.jetpad.grammar;
 public abstract class Symbol {
   private String myName;
   private Grammar myGrammar;
+  private int myIndex;
 
-  protected Symbol(Grammar grammar, String name) {
+  protected Symbol(Grammar grammar, String name, int index) {
     myName = name;
     myGrammar = grammar;
+    myIndex = index;
   }
 
   public Grammar getGrammar() {
     return myGrammar;
   }
 
+  /**
+   * Position of the symbol among terminals or among non-terminals of its grammar
+   */
+  public int getIndex() {
+    return myIndex;
+  }
+
   @Override
   public String toString() {
     return myName;
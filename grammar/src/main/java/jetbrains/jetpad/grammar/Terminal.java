@@ -16,7 +16,7 @@
 package jetbrains.jetpad.grammar;
 
 public class Terminal extends Symbol {
-  Terminal(Grammar grammar, String name) {
-    super(grammar, name);
+  Terminal(Grammar grammar, String name, int index) {
+    super(grammar, name, index);
   }
 }
\ No newline at end of file
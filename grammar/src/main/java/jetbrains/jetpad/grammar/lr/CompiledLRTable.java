@@ -0,0 +1,146 @@
+/*
+ * Copyright 2012-2013 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.grammar.lr;
+
+import jetbrains.jetpad.grammar.Grammar;
+import jetbrains.jetpad.grammar.NonTerminal;
+import jetbrains.jetpad.grammar.Rule;
+import jetbrains.jetpad.grammar.Terminal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dense form of an LR table which is used by the parser. States and symbols are replaced with their indices
+ * and an action is encoded in an int: two lower bits are the kind and the rest is a state or a rule index.
+ */
+final class CompiledLRTable {
+  static final int ERROR = 0;
+  static final int SHIFT = 1;
+  static final int REDUCE = 2;
+  static final int ACCEPT = 3;
+
+  private final int[][] myActions;
+  private final int[][] myNextStates;
+  private final Rule[] myRules;
+  private final int[] myRuleLengths;
+  private final int[] myRuleHeads;
+  private final int myInitialState;
+  private final Terminal myEnd;
+
+  CompiledLRTable(LRTable table) {
+    Grammar grammar = table.getGrammar();
+    int terminalCount = grammar.getTerminals().size();
+    int nonTerminalCount = grammar.getNonTerminals().size();
+    int stateCount = table.getStates().size();
+
+    myActions = new int[stateCount][];
+    myNextStates = new int[stateCount][];
+
+    List<Rule> rules = new ArrayList<Rule>();
+    Map<Rule, Integer> ruleIndices = new HashMap<Rule, Integer>();
+    for (LRState state : table.getStates()) {
+      int[] actions = new int[terminalCount];
+      for (Map.Entry<Terminal, LRAction> entry : state.getActions().entrySet()) {
+        LRAction action = entry.getValue();
+        int encoded;
+        if (action instanceof LRAction.Shift) {
+          encoded = encode(SHIFT, ((LRAction.Shift) action).getState().getIndex());
+        } else if (action instanceof LRAction.Reduce) {
+          Rule rule = ((LRAction.Reduce) action).getRule();
+          Integer index = ruleIndices.get(rule);
+          if (index == null) {
+            index = rules.size();
+            rules.add(rule);
+            ruleIndices.put(rule, index);
+          }
+          encoded = encode(REDUCE, index);
+        } else if (action instanceof LRAction.Accept) {
+          encoded = ACCEPT;
+        } else {
+          encoded = ERROR;
+        }
+        actions[entry.getKey().getIndex()] = encoded;
+      }
+      myActions[state.getIndex()] = actions;
+
+      int[] nextStates = new int[nonTerminalCount];
+      Arrays.fill(nextStates, -1);
+      for (Map.Entry<NonTerminal, LRState> entry : state.getNextStates().entrySet()) {
+        nextStates[entry.getKey().getIndex()] = entry.getValue().getIndex();
+      }
+      myNextStates[state.getIndex()] = nextStates;
+    }
+
+    myRules = rules.toArray(new Rule[rules.size()]);
+    myRuleLengths = new int[myRules.length];
+    myRuleHeads = new int[myRules.length];
+    for (int i = 0; i < myRules.length; i++) {
+      myRuleLengths[i] = myRules[i].getSymbols().size();
+      myRuleHeads[i] = myRules[i].getHead().getIndex();
+    }
+
+    myInitialState = table.getInitialState().getIndex();
+    myEnd = grammar.getEnd();
+  }
+
+  private static int encode(int kind, int value) {
+    return (value << 2) | kind;
+  }
+
+  static int kind(int action) {
+    return action & 3;
+  }
+
+  static int value(int action) {
+    return action >> 2;
+  }
+
+  int initialState() {
+    return myInitialState;
+  }
+
+  Terminal end() {
+    return myEnd;
+  }
+
+  int action(int state, Terminal terminal) {
+    int[] actions = myActions[state];
+    int index = terminal.getIndex();
+    return index < actions.length ? actions[index] : ERROR;
+  }
+
+  int nextState(int state, int nonTerminal) {
+    int[] nextStates = myNextStates[state];
+    if (nonTerminal >= nextStates.length || nextStates[nonTerminal] == -1) throw new IllegalStateException();
+    return nextStates[nonTerminal];
+  }
+
+  Rule rule(int index) {
+    return myRules[index];
+  }
+
+  int ruleLength(int index) {
+    return myRuleLengths[index];
+  }
+
+  int ruleHead(int index) {
+    return myRuleHeads[index];
+  }
+}
@@ -0,0 +1,258 @@
+/*
+ * Copyright 2012-2013 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.grammar.lr;
+
+import jetbrains.jetpad.grammar.ParserParameters;
+import jetbrains.jetpad.grammar.RuleHandler;
+import jetbrains.jetpad.grammar.Terminal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * LR parser which remembers the tree of its last successful parse and reparses an edited input by reusing
+ * the subtrees which lie entirely in the unchanged prefix and suffix of the input.
+ *
+ * A subtree is reused when the parser reaches its start in the same state in which it was originally started.
+ * Since LR actions depend only on the current state and the input, the full parse would build the very same
+ * subtree there, so only the damaged region between the reused subtrees is shifted and reduced again.
+ *
+ * Handlers are called only after the whole input is accepted, and only for the rules which were reduced by this
+ * parse, so a failed parse leaves the values of the previous one intact.
+ */
+public class IncrementalLRParser {
+  private LRTable myTable;
+  private ParserParameters myParameters;
+
+  private Node myRoot;
+  private int myInputSize;
+  private int myGeneration;
+
+  public IncrementalLRParser(LRTable table) {
+    this(table, ParserParameters.EMPTY);
+  }
+
+  public IncrementalLRParser(LRTable table, ParserParameters params) {
+    myTable = table;
+    myParameters = params;
+  }
+
+  public Object parse(List<Lexeme> input) {
+    myRoot = null;
+    return parse(input, 0, 0);
+  }
+
+  /**
+   * @param unchangedPrefix number of lexemes at the start of the input which are the same as in the last
+   *                        successful parse
+   * @param unchangedSuffix number of lexemes at the end of the input which are the same as in the last
+   *                        successful parse
+   */
+  public Object parse(List<Lexeme> input, int unchangedPrefix, int unchangedSuffix) {
+    CompiledLRTable table = myTable.compiled();
+    int size = input.size();
+    int generation = myGeneration + 1;
+
+    //old subtrees and lexemes covering the input, top of the stack is the next one; null stands for a changed lexeme
+    List<Node> pending = new ArrayList<Node>();
+    if (myRoot != null) {
+      int prefix = Math.max(0, Math.min(unchangedPrefix, Math.min(size, myInputSize)));
+      int suffix = Math.max(0, Math.min(unchangedSuffix, Math.min(size, myInputSize) - prefix));
+      collectSuffix(myRoot, myInputSize - suffix, pending);
+      for (int i = size - suffix - 1; i >= prefix; i--) {
+        pending.add(null);
+      }
+      collectPrefix(myRoot, prefix, pending);
+    }
+
+    List<Node> reduced = new ArrayList<Node>();
+    ParseStack stack = new ParseStack();
+    stack.push(table.initialState(), -1, null);
+
+    int pos = 0;
+    while (true) {
+      Node item = pending.isEmpty() ? null : pending.get(pending.size() - 1);
+      if (item != null && item.rule != -1) {
+        if (item.beforeState == stack.state()) {
+          pending.remove(pending.size() - 1);
+          stack.push(table.nextState(stack.state(), table.ruleHead(item.rule)), pos, item);
+          pos += item.length;
+          continue;
+        }
+        if (item.length == 0) {
+          pending.remove(pending.size() - 1);
+          continue;
+        }
+      }
+
+      Lexeme lexeme = pos < size ? input.get(pos) : null;
+      Terminal current = lexeme != null ? lexeme.getTerminal() : table.end();
+      int action = table.action(stack.state(), current);
+      switch (CompiledLRTable.kind(action)) {
+        case CompiledLRTable.SHIFT:
+          if (!pending.isEmpty()) {
+            pending.remove(pending.size() - 1);
+            if (item != null && item.rule != -1) {
+              for (int i = item.children.length - 1; i >= 0; i--) {
+                pending.add(item.children[i]);
+              }
+              continue;
+            }
+          }
+          stack.push(CompiledLRTable.value(action), pos, new Node(-1, stack.state(), 1, null, generation, lexeme));
+          pos++;
+          break;
+
+        case CompiledLRTable.REDUCE:
+          int rule = CompiledLRTable.value(action);
+          int length = table.ruleLength(rule);
+          int startOffset = length == 0 ? pos : stack.start(length - 1);
+          Object[] popped = stack.pop(length);
+          Node[] children = new Node[length];
+          System.arraycopy(popped, 0, children, 0, length);
+
+          Node node = new Node(rule, stack.state(), pos - startOffset, children, generation, null);
+          node.start = startOffset;
+          reduced.add(node);
+          stack.push(table.nextState(stack.state(), table.ruleHead(rule)), startOffset, node);
+          break;
+
+        case CompiledLRTable.ACCEPT:
+          Node root = (Node) stack.value();
+          evaluate(table, reduced, generation);
+          myRoot = root;
+          myInputSize = size;
+          myGeneration = generation;
+          return root.value;
+
+        default:
+          return null;
+      }
+    }
+  }
+
+  /**
+   * Called for the value of each reused subtree before it's passed to the handler of a newly reduced rule
+   */
+  protected void onReuse(Object value) {
+  }
+
+  private void evaluate(CompiledLRTable table, List<Node> reduced, int generation) {
+    for (Node node : reduced) {
+      Object[] values = new Object[node.children.length];
+      for (int i = 0; i < values.length; i++) {
+        Node child = node.children[i];
+        if (child.generation != generation) {
+          onReuse(child.value);
+        }
+        values[i] = child.value;
+      }
+
+      RuleHandler handler = table.rule(node.rule).getHandler();
+      if (handler != null) {
+        node.value = handler.handle(new LRParser.MyRuleContext(myParameters, node.start, node.start + node.length, values));
+      } else {
+        node.value = new ArrayList<Object>(Arrays.asList(values));
+      }
+    }
+  }
+
+  /**
+   * Adds the maximal subtrees which end before the lexeme at prefix, so that their lookahead is unchanged too,
+   * and the lexemes which aren't covered by them, in the reverse order
+   */
+  private void collectPrefix(Node root, int prefix, List<Node> result) {
+    List<Node> items = new ArrayList<Node>();
+    Node current = root;
+    int start = 0;
+    while (current != null && start < prefix) {
+      Node next = null;
+      int nextStart = start;
+      int childStart = start;
+      for (Node child : current.children) {
+        int childEnd = childStart + child.length;
+        if (childEnd < prefix || (child.rule == -1 && childEnd <= prefix)) {
+          items.add(child);
+        } else if (childStart < prefix) {
+          next = child;
+          nextStart = childStart;
+          break;
+        } else {
+          break;
+        }
+        childStart = childEnd;
+      }
+      if (next != null && next.rule == -1) {
+        items.add(next);
+        next = null;
+      }
+      current = next;
+      start = nextStart;
+    }
+    for (int i = items.size() - 1; i >= 0; i--) {
+      result.add(items.get(i));
+    }
+  }
+
+  /**
+   * Adds the maximal subtrees which start at suffixStart or later and the lexemes which aren't covered by them
+   */
+  private void collectSuffix(Node root, int suffixStart, List<Node> result) {
+    Node current = root;
+    int end = root.length;
+    while (current != null && end > suffixStart) {
+      Node next = null;
+      int nextEnd = end;
+      int childEnd = end;
+      for (int i = current.children.length - 1; i >= 0; i--) {
+        Node child = current.children[i];
+        int childStart = childEnd - child.length;
+        if (childStart >= suffixStart) {
+          result.add(child);
+        } else if (childEnd > suffixStart) {
+          next = child;
+          nextEnd = childEnd;
+          break;
+        } else {
+          break;
+        }
+        childEnd = childStart;
+      }
+      current = next;
+      end = nextEnd;
+    }
+  }
+
+  private static class Node {
+    private final int rule;
+    private final int beforeState;
+    private final int length;
+    private final Node[] children;
+    private final int generation;
+    private int start;
+    private Object value;
+
+    private Node(int rule, int beforeState, int length, Node[] children, int generation, Lexeme lexeme) {
+      this.rule = rule;
+      this.beforeState = beforeState;
+      this.length = length;
+      this.children = children;
+      this.generation = generation;
+      value = lexeme;
+    }
+  }
+}
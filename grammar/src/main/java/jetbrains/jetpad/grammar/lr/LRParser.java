@@ -56,70 +56,60 @@ public class LRParser {
   }
 
   public Object parse(List<Lexeme> input, Function<Rule, RuleHandler> handlerProvider) {
-    Stack<ParseStackItem> stack = new Stack<ParseStackItem>();
-    stack.push(new ParseStackItem(myTable.getInitialState(), -1, -1, null, null));
+    CompiledLRTable table = myTable.compiled();
+    ParseStack stack = new ParseStack();
+    stack.push(table.initialState(), -1, null);
+
     int pos = 0;
+    int size = input.size();
     while (true) {
-      Lexeme lexeme = pos < input.size() ? input.get(pos) : null;
-      Terminal current = lexeme != null ? lexeme.getTerminal() : myTable.getGrammar().getEnd();
-      LRState state = stack.peek().state;
-      LRAction action = state.getAction(current);
-      if (action instanceof LRAction.Shift) {
-        LRAction.Shift shift = (LRAction.Shift) action;
-        stack.push(new ParseStackItem(shift.getState(), pos, pos + 1, current, lexeme));
-        pos++;
-      } else if (action instanceof LRAction.Reduce) {
-        LRAction.Reduce reduce = (LRAction.Reduce) action;
-
-        List<Object> handlerInput = new ArrayList<Object>();
-        int startOffset = pos;
-        List<Symbol> symbols = reduce.getRule().getSymbols();
-        for (int i = 0; i < symbols.size(); i++) {
-          ParseStackItem top = stack.pop();
-          if (i == symbols.size() - 1) {
-            startOffset = top.start;
+      Lexeme lexeme = pos < size ? input.get(pos) : null;
+      Terminal current = lexeme != null ? lexeme.getTerminal() : table.end();
+      int action = table.action(stack.state(), current);
+      switch (CompiledLRTable.kind(action)) {
+        case CompiledLRTable.SHIFT:
+          stack.push(CompiledLRTable.value(action), pos, lexeme);
+          pos++;
+          break;
+
+        case CompiledLRTable.REDUCE:
+          int rule = CompiledLRTable.value(action);
+          int length = table.ruleLength(rule);
+          int startOffset = length == 0 ? pos : stack.start(length - 1);
+          Object[] handlerInput = stack.pop(length);
+
+          int nextState = table.nextState(stack.state(), table.ruleHead(rule));
+          RuleHandler handler = handlerProvider.apply(table.rule(rule));
+          Object result;
+          if (handler != null) {
+            result = handler.handle(new MyRuleContext(myParameters, startOffset, pos, handlerInput));
+          } else {
+            result = new ArrayList<Object>(Arrays.asList(handlerInput));
           }
-          handlerInput.add(top.result);
-        }
-        Collections.reverse(handlerInput);
-
-        LRState nextState = stack.peek().state.getNextState(reduce.getRule().getHead());
-        RuleContext ruleContext = new MyRuleContext(Range.closed(startOffset, pos), handlerInput);
-        RuleHandler handler = handlerProvider.apply(reduce.getRule());
-        Object result = handler != null ? handler.handle(ruleContext) : handlerInput;
-
-        stack.push(new ParseStackItem(nextState, startOffset, pos, reduce.getRule().getHead(), result));
-      } else if (action instanceof LRAction.Accept) {
-        return stack.peek().result;
-      } else {
-        return null;
-      }
-    }
-  }
 
-  private class ParseStackItem {
-    final LRState state;
-    final int start;
-    final int end;
-    final Symbol symbol;
-    final Object result;
-
-    ParseStackItem(LRState state, int start, int end, Symbol symbol, Object result) {
-      this.state = state;
-      this.start = start;
-      this.end = end;
-      this.symbol = symbol;
-      this.result = result;
+          stack.push(nextState, startOffset, result);
+          break;
+
+        case CompiledLRTable.ACCEPT:
+          return stack.value();
+
+        default:
+          return null;
+      }
     }
   }
 
-  private class MyRuleContext implements RuleContext {
-    private List<Object> myValues;
-    private Range<Integer> myRange;
+  static class MyRuleContext implements RuleContext {
+    private ParserParameters myParameters;
+    private Object[] myValues;
+    private int myStart;
+    private int myEnd;
 
-    private MyRuleContext(Range<Integer> range, List<Object> values) {
+    MyRuleContext(ParserParameters params, int start, int end, Object[] values) {
+      myParameters = params;
       myValues = values;
-      myRange = range;
+      myStart = start;
+      myEnd = end;
     }
 
     @Override
@@ -134,17 +124,18 @@ public class LRParser {
 
     @Override
     public Object get(int index) {
-      return myValues.get(index);
+      if (index < 0 || index >= myValues.length) throw new IndexOutOfBoundsException();
+      return myValues[index];
     }
 
     @Override
     public int getValueCount() {
-      return myValues.size();
+      return myValues.length;
     }
 
     @Override
     public Range<Integer> getRange() {
-      return myRange;
+      return Range.closed(myStart, myEnd);
     }
   }
 }
\ No newline at end of file
@@ -22,14 +22,30 @@ import java.util.HashMap;
 import java.util.Map;
 
 public class LRState {
+  private LRTable myTable;
+  private int myIndex;
   private String myName;
   private Map<Terminal, LRAction> myActions = new HashMap<Terminal, LRAction>();
   private Map<NonTerminal, LRState> myNextStates = new HashMap<NonTerminal, LRState>();
 
-  LRState(String name) {
+  LRState(LRTable table, int index, String name) {
+    myTable = table;
+    myIndex = index;
     myName = name;
   }
 
+  int getIndex() {
+    return myIndex;
+  }
+
+  Map<Terminal, LRAction> getActions() {
+    return myActions;
+  }
+
+  Map<NonTerminal, LRState> getNextStates() {
+    return myNextStates;
+  }
+
   public LRAction getAction(Terminal terminal) {
     LRAction action = myActions.get(terminal);
     if (action != null) return action;
@@ -47,11 +63,13 @@ public class LRState {
   public void addAction(Terminal terminal, LRAction action) {
     if (myActions.containsKey(terminal)) throw new IllegalStateException();
     myActions.put(terminal, action);
+    myTable.changed();
   }
 
   public void addNextState(NonTerminal nonTerminal, LRState state) {
     if (myNextStates.containsKey(nonTerminal)) throw new IllegalStateException();
     myNextStates.put(nonTerminal, state);
+    myTable.changed();
   }
 
   @Override
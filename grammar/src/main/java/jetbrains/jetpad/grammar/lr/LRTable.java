@@ -18,13 +18,14 @@ package jetbrains.jetpad.grammar.lr;
 import jetbrains.jetpad.grammar.Grammar;
 
 import java.util.Collections;
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Set;
 
 public final class LRTable {
   private Grammar myGrammar;
   private LRState myInitialState;
-  private Set<LRState> myStates = new HashSet<LRState>();
+  private Set<LRState> myStates = new LinkedHashSet<LRState>();
+  private CompiledLRTable myCompiled;
 
   public LRTable(Grammar grammar) {
     myGrammar = grammar;
@@ -44,8 +45,20 @@ public final class LRTable {
   }
 
   public LRState newState(String name) {
-    LRState result = new LRState(name);
+    LRState result = new LRState(this, myStates.size(), name);
     myStates.add(result);
+    changed();
     return result;
   }
+
+  CompiledLRTable compiled() {
+    if (myCompiled == null) {
+      myCompiled = new CompiledLRTable(this);
+    }
+    return myCompiled;
+  }
+
+  void changed() {
+    myCompiled = null;
+  }
 }
\ No newline at end of file
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2012-2013 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.grammar.lr;
+
+import jetbrains.jetpad.grammar.Grammar;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Saved forms of LR tables keyed by grammar fingerprint. It's owned by whoever creates grammars and is shared
+ * between them only explicitly. The cache is bounded: least recently used tables are dropped when it's full.
+ * It's safe to use from several threads.
+ */
+public final class LRTableCache {
+  public static final int DEFAULT_MAX_SIZE = 32;
+
+  private final Map<String, String> myTables;
+
+  public LRTableCache() {
+    this(DEFAULT_MAX_SIZE);
+  }
+
+  public LRTableCache(final int maxSize) {
+    if (maxSize <= 0) throw new IllegalArgumentException("maxSize = " + maxSize);
+    myTables = new LinkedHashMap<String, String>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+        return size() > maxSize;
+      }
+    };
+  }
+
+  /**
+   * @return the table for the grammar or null if there's no table with its fingerprint in the cache
+   */
+  public LRTable get(Grammar grammar) {
+    String saved;
+    synchronized (myTables) {
+      saved = myTables.get(grammar.getFingerprint());
+    }
+    return saved == null ? null : LRTables.load(grammar, saved);
+  }
+
+  public void put(LRTable table) {
+    String saved = LRTables.save(table);
+    synchronized (myTables) {
+      myTables.put(table.getGrammar().getFingerprint(), saved);
+    }
+  }
+
+  /**
+   * Adds a table saved with {@link LRTables#save(LRTable)}, e.g. at build time
+   *
+   * @throws IllegalArgumentException if the table was saved for a different grammar
+   */
+  public void put(Grammar grammar, String table) {
+    LRTables.load(grammar, table);
+    synchronized (myTables) {
+      myTables.put(grammar.getFingerprint(), table);
+    }
+  }
+
+  public int size() {
+    synchronized (myTables) {
+      return myTables.size();
+    }
+  }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2012-2013 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.grammar.lr;
+
+import jetbrains.jetpad.grammar.Grammar;
+import jetbrains.jetpad.grammar.NonTerminal;
+import jetbrains.jetpad.grammar.Rule;
+import jetbrains.jetpad.grammar.Terminal;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact text form of LR tables. It can be produced at build time, stored as a resource or a string constant,
+ * and loaded at startup instead of generating the table. The form consists of printable ASCII characters only.
+ */
+public final class LRTables {
+  private static final int VERSION = 1;
+  private static final char SEPARATOR = '#';
+
+  //a number is written as a sequence of 5 bit digits, the last digit of a number is in one range and others in another
+  private static final char LAST_DIGIT = '(';
+  private static final char DIGIT = ']';
+  private static final int DIGIT_BITS = 5;
+  private static final int DIGIT_MASK = (1 << DIGIT_BITS) - 1;
+
+  public static String save(LRTable table) {
+    Grammar grammar = table.getGrammar();
+    Map<Rule, Integer> ruleIndices = new HashMap<Rule, Integer>();
+    for (Rule rule : grammar.getRules()) {
+      ruleIndices.put(rule, ruleIndices.size());
+    }
+
+    StringBuilder result = new StringBuilder();
+    result.append(grammar.getFingerprint()).append(SEPARATOR);
+    write(result, VERSION);
+    write(result, grammar.getTerminals().size());
+    write(result, grammar.getNonTerminals().size());
+    write(result, ruleIndices.size());
+    write(result, table.getStates().size());
+    write(result, table.getInitialState().getIndex());
+
+    for (LRState state : table.getStates()) {
+      Map<Terminal, LRAction> actions = state.getActions();
+      write(result, actions.size());
+      for (Terminal t : grammar.getTerminals()) {
+        LRAction action = actions.get(t);
+        if (action == null) continue;
+        write(result, t.getIndex());
+        if (action instanceof LRAction.Shift) {
+          write(result, encode(CompiledLRTable.SHIFT, ((LRAction.Shift) action).getState().getIndex()));
+        } else if (action instanceof LRAction.Reduce) {
+          write(result, encode(CompiledLRTable.REDUCE, ruleIndices.get(((LRAction.Reduce) action).getRule())));
+        } else if (action instanceof LRAction.Accept) {
+          write(result, CompiledLRTable.ACCEPT);
+        } else {
+          write(result, CompiledLRTable.ERROR);
+        }
+      }
+
+      Map<NonTerminal, LRState> nextStates = state.getNextStates();
+      write(result, nextStates.size());
+      for (NonTerminal nt : grammar.getNonTerminals()) {
+        LRState next = nextStates.get(nt);
+        if (next == null) continue;
+        write(result, nt.getIndex());
+        write(result, next.getIndex());
+      }
+    }
+    return result.toString();
+  }
+
+  /**
+   * @throws IllegalArgumentException if the data was saved for a different grammar or is malformed
+   */
+  public static LRTable load(Grammar grammar, String data) {
+    int separator = data.indexOf(SEPARATOR);
+    if (separator == -1 || !data.substring(0, separator).equals(grammar.getFingerprint())) {
+      throw new IllegalArgumentException("Table was saved for a different grammar");
+    }
+
+    List<Terminal> terminals = new ArrayList<Terminal>(grammar.getTerminals());
+    List<NonTerminal> nonTerminals = new ArrayList<NonTerminal>(grammar.getNonTerminals());
+    List<Rule> rules = new ArrayList<Rule>(grammar.getRules());
+
+    Reader reader = new Reader(data, separator + 1);
+    if (reader.read() != VERSION) throw new IllegalArgumentException("Unsupported version");
+    if (reader.read() != terminals.size() || reader.read() != nonTerminals.size() || reader.read() != rules.size()) {
+      throw new IllegalArgumentException("Table doesn't match the grammar");
+    }
+    int stateCount = reader.read();
+    if (stateCount == 0 || reader.read() != 0) throw new IllegalArgumentException();
+
+    LRTable result = new LRTable(grammar);
+    List<LRState> states = new ArrayList<LRState>(stateCount);
+    states.add(result.getInitialState());
+    for (int i = 1; i < stateCount; i++) {
+      states.add(result.newState("S" + i));
+    }
+
+    for (LRState state : states) {
+      int actionCount = reader.read();
+      for (int i = 0; i < actionCount; i++) {
+        Terminal terminal = get(terminals, reader.read());
+        int action = reader.read();
+        int value = CompiledLRTable.value(action);
+        switch (CompiledLRTable.kind(action)) {
+          case CompiledLRTable.SHIFT:
+            state.addAction(terminal, LRAction.shift(get(states, value)));
+            break;
+          case CompiledLRTable.REDUCE:
+            state.addAction(terminal, LRAction.reduce(get(rules, value)));
+            break;
+          case CompiledLRTable.ACCEPT:
+            state.addAction(terminal, LRAction.accept());
+            break;
+          default:
+            state.addAction(terminal, LRAction.error());
+        }
+      }
+
+      int nextCount = reader.read();
+      for (int i = 0; i < nextCount; i++) {
+        NonTerminal nonTerminal = get(nonTerminals, reader.read());
+        state.addNextState(nonTerminal, get(states, reader.read()));
+      }
+    }
+
+    if (!reader.atEnd()) throw new IllegalArgumentException("Unexpected data at the end");
+    return result;
+  }
+
+  private static int encode(int kind, int value) {
+    return (value << 2) | kind;
+  }
+
+  private static void write(StringBuilder builder, int value) {
+    if (value < 0) throw new IllegalArgumentException();
+    int shift = 0;
+    while ((value >>> shift) > DIGIT_MASK) {
+      shift += DIGIT_BITS;
+    }
+    for (; shift > 0; shift -= DIGIT_BITS) {
+      builder.append((char) (DIGIT + ((value >>> shift) & DIGIT_MASK)));
+    }
+    builder.append((char) (LAST_DIGIT + (value & DIGIT_MASK)));
+  }
+
+  private static <ItemT> ItemT get(List<ItemT> items, int index) {
+    if (index >= items.size()) throw new IllegalArgumentException("Index out of range: " + index);
+    return items.get(index);
+  }
+
+  private static class Reader {
+    private final String myData;
+    private int myPosition;
+
+    Reader(String data, int position) {
+      myData = data;
+      myPosition = position;
+    }
+
+    int read() {
+      int result = 0;
+      while (true) {
+        if (myPosition >= myData.length()) throw new IllegalArgumentException("Unexpected end of data");
+        char c = myData.charAt(myPosition++);
+        if (c >= LAST_DIGIT && c <= LAST_DIGIT + DIGIT_MASK) {
+          return (result << DIGIT_BITS) | (c - LAST_DIGIT);
+        }
+        if (c < DIGIT || c > DIGIT + DIGIT_MASK) throw new IllegalArgumentException("Unexpected character: " + c);
+        result = (result << DIGIT_BITS) | (c - DIGIT);
+      }
+    }
+
+    boolean atEnd() {
+      return myPosition == myData.length();
+    }
+  }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2012-2013 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.grammar.lr;
+
+/**
+ * States, start offsets and values of an LR parse stack in parallel arrays, so shifts don't allocate
+ */
+class ParseStack {
+  private static final int INITIAL_SIZE = 32;
+
+  private int[] myStates = new int[INITIAL_SIZE];
+  private int[] myStarts = new int[INITIAL_SIZE];
+  private Object[] myValues = new Object[INITIAL_SIZE];
+  private int mySize;
+
+  void push(int state, int start, Object value) {
+    if (mySize == myStates.length) {
+      int[] states = new int[2 * mySize];
+      int[] starts = new int[2 * mySize];
+      Object[] values = new Object[2 * mySize];
+      System.arraycopy(myStates, 0, states, 0, mySize);
+      System.arraycopy(myStarts, 0, starts, 0, mySize);
+      System.arraycopy(myValues, 0, values, 0, mySize);
+      myStates = states;
+      myStarts = starts;
+      myValues = values;
+    }
+    myStates[mySize] = state;
+    myStarts[mySize] = start;
+    myValues[mySize] = value;
+    mySize++;
+  }
+
+  Object[] pop(int count) {
+    Object[] result = new Object[count];
+    mySize -= count;
+    System.arraycopy(myValues, mySize, result, 0, count);
+    for (int i = mySize; i < mySize + count; i++) {
+      myValues[i] = null;
+    }
+    return result;
+  }
+
+  int state() {
+    return myStates[mySize - 1];
+  }
+
+  Object value() {
+    return myValues[mySize - 1];
+  }
+
+  int size() {
+    return mySize;
+  }
+
+  /**
+   * @param index 0 for the bottom of the stack
+   */
+  Object value(int index) {
+    return myValues[index];
+  }
+
+  /**
+   * @param depth 0 for the top of the stack
+   */
+  int start(int depth) {
+    return myStarts[mySize - 1 - depth];
+  }
+}
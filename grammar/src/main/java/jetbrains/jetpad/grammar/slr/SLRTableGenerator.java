@@ -20,6 +20,7 @@ import jetbrains.jetpad.grammar.*;
 import jetbrains.jetpad.grammar.lr.LRAction;
 import jetbrains.jetpad.grammar.lr.LRState;
 import jetbrains.jetpad.grammar.lr.LRTable;
+import jetbrains.jetpad.grammar.lr.LRTableCache;
 
 import java.util.*;
 
@@ -32,6 +33,19 @@ public class SLRTableGenerator {
     myGrammar = grammar;
   }
 
+  /**
+   * Generates the table only if the cache doesn't have one for an identical grammar: loading the saved form
+   * of the table is much faster than generation
+   */
+  public LRTable generateCachedTable(LRTableCache cache) {
+    LRTable result = cache.get(myGrammar);
+    if (result != null) return result;
+
+    result = generateTable();
+    cache.put(result);
+    return result;
+  }
+
   public LRTable generateTable() {
     checkGrammar();
 
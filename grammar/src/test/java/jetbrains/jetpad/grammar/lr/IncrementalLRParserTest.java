@@ -0,0 +1,296 @@
+/*
+ * Copyright 2012-2013 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.grammar.lr;
+
+import jetbrains.jetpad.grammar.*;
+import jetbrains.jetpad.grammar.slr.SLRTableGenerator;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class IncrementalLRParserTest {
+  private final Grammar grammar = new Grammar();
+  private final NonTerminal expr = grammar.newNonTerminal("E");
+  private final NonTerminal args = grammar.newNonTerminal("A");
+  private final Terminal id = grammar.newTerminal("id");
+  private final Terminal plus = grammar.newTerminal("+");
+  private final Terminal mul = grammar.newTerminal("*");
+  private final Terminal minus = grammar.newTerminal("-");
+  private final Terminal lp = grammar.newTerminal("(");
+  private final Terminal rp = grammar.newTerminal(")");
+  private final Terminal[] terminals = { id, plus, mul, minus, lp, rp };
+
+  private int myReductions;
+
+  {
+    grammar.newRule(grammar.getStart(), expr);
+    grammar.newRule(expr, id, args).setHandler(new CountingHandler() {
+      @Override
+      Object doHandle(RuleContext ctx) {
+        return ((Lexeme) ctx.get(0)).getValue() + "" + ctx.get(1);
+      }
+    });
+    grammar.newRule(args).setHandler(new CountingHandler() {
+      @Override
+      Object doHandle(RuleContext ctx) {
+        return "";
+      }
+    });
+    grammar.newRule(args, lp, expr, rp).setHandler(new CountingHandler() {
+      @Override
+      Object doHandle(RuleContext ctx) {
+        return "(" + ctx.get(1) + ")";
+      }
+    });
+    grammar.newRule(expr, lp, expr, rp).setHandler(new CountingHandler() {
+      @Override
+      Object doHandle(RuleContext ctx) {
+        return "[" + ctx.get(1) + "]";
+      }
+    });
+    grammar.newRule(expr, minus, expr).setPriority(2).setHandler(new CountingHandler() {
+      @Override
+      Object doHandle(RuleContext ctx) {
+        return "-" + ctx.get(1);
+      }
+    });
+    grammar.newRule(expr, expr, plus, expr).setAssociativity(Associativity.LEFT).setPriority(0).setHandler(new BinOpHandler());
+    grammar.newRule(expr, expr, mul, expr).setAssociativity(Associativity.LEFT).setPriority(1).setHandler(new BinOpHandler());
+  }
+
+  private final LRTable table = new SLRTableGenerator(grammar).generateTable();
+
+  @Test
+  public void fullParse() {
+    IncrementalLRParser parser = new IncrementalLRParser(table);
+
+    assertEquals("((a + (b * c(d))) + -e)", parser.parse(lexemes("a + b * c ( d ) + - e")));
+  }
+
+  @Test
+  public void changeAtEndReducesOnlyDamagedRegion() {
+    IncrementalLRParser parser = new IncrementalLRParser(table);
+    List<Lexeme> input = sum(100);
+    parser.parse(input);
+
+    input.set(input.size() - 1, new Lexeme(id, "z"));
+    myReductions = 0;
+    Object result = parser.parse(input, input.size() - 1, 0);
+
+    assertTrue("" + myReductions, myReductions <= 4);
+    assertEquals(new LRParser(table).parse(input), result);
+  }
+
+  @Test
+  public void changeInTheMiddleReusesSuffix() {
+    IncrementalLRParser parser = new IncrementalLRParser(table);
+    List<Lexeme> input = lexemes("a * b + c * ( d + e + f + g + h )");
+    parser.parse(input);
+
+    input.set(0, new Lexeme(id, "z"));
+    myReductions = 0;
+    Object result = parser.parse(input, 0, input.size() - 1);
+
+    assertEquals("((z * b) + (c * [((((d + e) + f) + g) + h)]))", result);
+    assertTrue("" + myReductions, myReductions <= 6);
+  }
+
+  @Test
+  public void failedParseKeepsPreviousTree() {
+    IncrementalLRParser parser = new IncrementalLRParser(table);
+    List<Lexeme> input = lexemes("a + b");
+    parser.parse(input);
+
+    List<Lexeme> broken = new ArrayList<Lexeme>(input);
+    broken.add(new Lexeme(plus, "+"));
+    assertNull(parser.parse(broken, input.size(), 0));
+
+    broken.add(new Lexeme(id, "c"));
+    assertEquals("((a + b) + c)", parser.parse(broken, input.size(), 0));
+  }
+
+  @Test
+  public void reusedValuesReported() {
+    final List<Object> reused = new ArrayList<Object>();
+    IncrementalLRParser parser = new IncrementalLRParser(table) {
+      @Override
+      protected void onReuse(Object value) {
+        reused.add(value);
+      }
+    };
+    List<Lexeme> input = lexemes("a * b + c");
+    parser.parse(input);
+
+    input.set(input.size() - 1, new Lexeme(id, "z"));
+    parser.parse(input, input.size() - 1, 0);
+
+    assertEquals(Arrays.<Object>asList("(a * b)"), reused);
+  }
+
+  @Test
+  public void randomEditsParseAsFullReparse() {
+    Random random = new Random(239);
+    for (int run = 0; run < 200; run++) {
+      IncrementalLRParser parser = new IncrementalLRParser(table);
+      List<Lexeme> parsed = null;
+      List<Lexeme> input = new ArrayList<Lexeme>();
+      randomExpr(random, 4, input);
+
+      for (int edit = 0; edit < 30; edit++) {
+        Object expected = new LRParser(table).parse(input);
+        Object actual;
+        if (parsed == null) {
+          actual = parser.parse(input);
+        } else {
+          int prefix = commonPrefix(parsed, input);
+          int suffix = commonSuffix(parsed, input);
+          if (random.nextBoolean()) {
+            prefix = random.nextInt(prefix + 1);
+            suffix = random.nextInt(suffix + 1);
+          }
+          actual = parser.parse(input, prefix, suffix);
+        }
+        assertEquals(input.toString(), expected, actual);
+        if (actual != null) {
+          parsed = new ArrayList<Lexeme>(input);
+        }
+
+        input = new ArrayList<Lexeme>(input);
+        List<Lexeme> replacement = new ArrayList<Lexeme>();
+        int start = random.nextInt(input.size() + 1);
+        int end = start;
+        switch (random.nextInt(4)) {
+          case 0:
+            randomTokens(random, random.nextInt(4), replacement);
+            end += random.nextInt(Math.min(3, input.size() - start) + 1);
+            break;
+          case 1:
+            replacement.add(randomLexeme(random, random.nextBoolean() ? plus : mul));
+            randomExpr(random, 2, replacement);
+            break;
+          default:
+            if (start < input.size() && input.get(start).getTerminal() == id) {
+              end++;
+              randomExpr(random, 2, replacement);
+            }
+        }
+        input.subList(start, end).clear();
+        input.addAll(start, replacement);
+      }
+    }
+  }
+
+  private void randomExpr(Random random, int depth, List<Lexeme> result) {
+    switch (depth == 0 ? 0 : random.nextInt(6)) {
+      case 0:
+        result.add(randomLexeme(random, id));
+        break;
+      case 1:
+        result.add(randomLexeme(random, id));
+        result.add(randomLexeme(random, lp));
+        randomExpr(random, depth - 1, result);
+        result.add(randomLexeme(random, rp));
+        break;
+      case 2:
+        result.add(randomLexeme(random, lp));
+        randomExpr(random, depth - 1, result);
+        result.add(randomLexeme(random, rp));
+        break;
+      case 3:
+        result.add(randomLexeme(random, minus));
+        randomExpr(random, depth - 1, result);
+        break;
+      default:
+        randomExpr(random, depth - 1, result);
+        result.add(randomLexeme(random, random.nextBoolean() ? plus : mul));
+        randomExpr(random, depth - 1, result);
+    }
+  }
+
+  private void randomTokens(Random random, int length, List<Lexeme> result) {
+    for (int i = 0; i < length; i++) {
+      result.add(randomLexeme(random, terminals[random.nextInt(terminals.length)]));
+    }
+  }
+
+  private Lexeme randomLexeme(Random random, Terminal t) {
+    return new Lexeme(t, t == id ? "" + (char) ('a' + random.nextInt(26)) : t.toString());
+  }
+
+  private int commonPrefix(List<Lexeme> l1, List<Lexeme> l2) {
+    int result = 0;
+    while (result < l1.size() && result < l2.size() && l1.get(result) == l2.get(result)) {
+      result++;
+    }
+    return result;
+  }
+
+  private int commonSuffix(List<Lexeme> l1, List<Lexeme> l2) {
+    int result = 0;
+    int max = Math.min(l1.size(), l2.size()) - commonPrefix(l1, l2);
+    while (result < max && l1.get(l1.size() - 1 - result) == l2.get(l2.size() - 1 - result)) {
+      result++;
+    }
+    return result;
+  }
+
+  private List<Lexeme> sum(int operands) {
+    List<Lexeme> result = new ArrayList<Lexeme>();
+    for (int i = 0; i < operands; i++) {
+      if (i > 0) {
+        result.add(new Lexeme(plus, "+"));
+      }
+      result.add(new Lexeme(id, "x" + i));
+    }
+    return result;
+  }
+
+  private List<Lexeme> lexemes(String text) {
+    List<Lexeme> result = new ArrayList<Lexeme>();
+    for (String s : text.split(" ")) {
+      Terminal terminal = id;
+      for (Terminal t : terminals) {
+        if (t.toString().equals(s)) {
+          terminal = t;
+        }
+      }
+      result.add(new Lexeme(terminal, s));
+    }
+    return result;
+  }
+
+  private abstract class CountingHandler implements RuleHandler {
+    @Override
+    public Object handle(RuleContext ctx) {
+      myReductions++;
+      return doHandle(ctx);
+    }
+
+    abstract Object doHandle(RuleContext ctx);
+  }
+
+  private class BinOpHandler extends CountingHandler {
+    @Override
+    Object doHandle(RuleContext ctx) {
+      return "(" + ctx.get(0) + " " + ((Lexeme) ctx.get(1)).getValue() + " " + ctx.get(2) + ")";
+    }
+  }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2012-2013 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.grammar.performance;
+
+import com.google.common.collect.Range;
+import jetbrains.jetpad.grammar.*;
+import jetbrains.jetpad.grammar.lr.LRAction;
+import jetbrains.jetpad.grammar.lr.LRParser;
+import jetbrains.jetpad.grammar.lr.LRState;
+import jetbrains.jetpad.grammar.lr.LRTable;
+import jetbrains.jetpad.grammar.lr.Lexeme;
+import jetbrains.jetpad.grammar.slr.SLRTableGenerator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Stack;
+
+public class LRParserBenchmark {
+  private static final int ITERATIONS = 200;
+
+  public static void main(String[] args) {
+    Grammar grammar = new Grammar();
+    NonTerminal expr = grammar.newNonTerminal("E");
+    Terminal id = grammar.newTerminal("id");
+    Terminal plus = grammar.newTerminal("+");
+    Terminal mul = grammar.newTerminal("*");
+    Terminal lp = grammar.newTerminal("(");
+    Terminal rp = grammar.newTerminal(")");
+
+    RuleHandler first = new RuleHandler() {
+      @Override
+      public Object handle(RuleContext ctx) {
+        return ctx.get(0);
+      }
+    };
+    RuleHandler range = new RuleHandler() {
+      @Override
+      public Object handle(RuleContext ctx) {
+        return ctx.getRange();
+      }
+    };
+    grammar.newRule(grammar.getStart(), expr).setHandler(first);
+    grammar.newRule(expr, id).setHandler(range);
+    grammar.newRule(expr, lp, expr, rp).setHandler(range);
+    grammar.newRule(expr, expr, plus, expr).setAssociativity(Associativity.LEFT).setPriority(0).setHandler(range);
+    grammar.newRule(expr, expr, mul, expr).setAssociativity(Associativity.LEFT).setPriority(1).setHandler(range);
+
+    LRTable table = new SLRTableGenerator(grammar).generateTable();
+
+    //warm up
+    measure(table, expression(1000, id, plus, mul, lp, rp));
+
+    for (int length : new int[] { 100, 1000, 10000 }) {
+      List<Lexeme> input = expression(length, id, plus, mul, lp, rp);
+      long[] result = measure(table, input);
+      System.out.println(input.size() + " lexemes: table parser " + result[0] + " us, map based parser " + result[1] + " us");
+    }
+  }
+
+  private static List<Lexeme> expression(int operands, Terminal id, Terminal plus, Terminal mul, Terminal lp, Terminal rp) {
+    List<Lexeme> result = new ArrayList<Lexeme>();
+    for (int i = 0; i < operands; i++) {
+      if (i > 0) {
+        result.add(i % 3 == 0 ? new Lexeme(mul, "*") : new Lexeme(plus, "+"));
+      }
+      if (i % 10 == 5) {
+        result.add(new Lexeme(lp, "("));
+        result.add(new Lexeme(id, "x"));
+        result.add(new Lexeme(plus, "+"));
+        result.add(new Lexeme(id, "y"));
+        result.add(new Lexeme(rp, ")"));
+      } else {
+        result.add(new Lexeme(id, "x"));
+      }
+    }
+    return result;
+  }
+
+  private static long[] measure(LRTable table, List<Lexeme> input) {
+    LRParser parser = new LRParser(table);
+    Object expected = parser.parse(input);
+    if (expected == null || !expected.equals(mapBasedParse(table, input))) throw new IllegalStateException();
+
+    long start = System.nanoTime();
+    for (int i = 0; i < ITERATIONS; i++) {
+      parser.parse(input);
+    }
+    long tableTime = (System.nanoTime() - start) / ITERATIONS / 1000;
+
+    start = System.nanoTime();
+    for (int i = 0; i < ITERATIONS; i++) {
+      mapBasedParse(table, input);
+    }
+    long mapTime = (System.nanoTime() - start) / ITERATIONS / 1000;
+
+    return new long[] { tableTime, mapTime };
+  }
+
+  /**
+   * The parsing loop as it was before the table was compiled: lookups in states' maps and an object per stack item
+   */
+  private static Object mapBasedParse(LRTable table, List<Lexeme> input) {
+    Stack<StackItem> stack = new Stack<StackItem>();
+    stack.push(new StackItem(table.getInitialState(), -1, null));
+    int pos = 0;
+    while (true) {
+      Lexeme lexeme = pos < input.size() ? input.get(pos) : null;
+      Terminal current = lexeme != null ? lexeme.getTerminal() : table.getGrammar().getEnd();
+      LRAction action = stack.peek().state.getAction(current);
+      if (action instanceof LRAction.Shift) {
+        stack.push(new StackItem(((LRAction.Shift) action).getState(), pos, lexeme));
+        pos++;
+      } else if (action instanceof LRAction.Reduce) {
+        Rule rule = ((LRAction.Reduce) action).getRule();
+        final List<Object> values = new ArrayList<Object>();
+        int startOffset = pos;
+        for (int i = 0; i < rule.getSymbols().size(); i++) {
+          StackItem top = stack.pop();
+          startOffset = top.start;
+          values.add(top.value);
+        }
+        Collections.reverse(values);
+
+        LRState nextState = stack.peek().state.getNextState(rule.getHead());
+        final Range<Integer> range = Range.closed(startOffset, pos);
+        Object result = rule.getHandler().handle(new RuleContext() {
+          @Override
+          public ParserParameters getParams() {
+            return ParserParameters.EMPTY;
+          }
+
+          @Override
+          public Object get(int index) {
+            return values.get(index);
+          }
+
+          @Override
+          public int getValueCount() {
+            return values.size();
+          }
+
+          @Override
+          public <ValueT> ValueT get(ParserParameter<ValueT> key) {
+            return ParserParameters.EMPTY.get(key);
+          }
+
+          @Override
+          public Range<Integer> getRange() {
+            return range;
+          }
+        });
+        stack.push(new StackItem(nextState, startOffset, result));
+      } else if (action instanceof LRAction.Accept) {
+        return stack.peek().value;
+      } else {
+        return null;
+      }
+    }
+  }
+
+  private static class StackItem {
+    final LRState state;
+    final int start;
+    final Object value;
+
+    StackItem(LRState state, int start, Object value) {
+      this.state = state;
+      this.start = start;
+      this.value = value;
+    }
+  }
+}
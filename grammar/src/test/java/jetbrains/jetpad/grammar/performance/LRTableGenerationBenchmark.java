@@ -0,0 +1,75 @@
+/*
+ * Copyright 2012-2013 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.grammar.performance;
+
+import jetbrains.jetpad.grammar.*;
+import jetbrains.jetpad.grammar.lr.LRTable;
+import jetbrains.jetpad.grammar.lr.LRTables;
+import jetbrains.jetpad.grammar.slr.SLRTableGenerator;
+
+public class LRTableGenerationBenchmark {
+  private static final int ITERATIONS = 20;
+
+  public static void main(String[] args) {
+    //warm up
+    measure(20);
+
+    for (int operators : new int[] { 10, 20, 40 }) {
+      long[] result = measure(operators);
+      System.out.println(operators + " operators: generation " + result[0] + " us, loading " + result[1] + " us, " +
+        "table size " + result[2] + " chars");
+    }
+  }
+
+  private static long[] measure(int operators) {
+    LRTable table = new SLRTableGenerator(grammar(operators)).generateTable();
+    String saved = LRTables.save(table);
+
+    long start = System.nanoTime();
+    for (int i = 0; i < ITERATIONS; i++) {
+      new SLRTableGenerator(grammar(operators)).generateTable();
+    }
+    long generationTime = (System.nanoTime() - start) / ITERATIONS / 1000;
+
+    start = System.nanoTime();
+    for (int i = 0; i < ITERATIONS; i++) {
+      LRTables.load(grammar(operators), saved);
+    }
+    long loadTime = (System.nanoTime() - start) / ITERATIONS / 1000;
+
+    return new long[] { generationTime, loadTime, saved.length() };
+  }
+
+  /**
+   * An expression language similar to the ones created with hybrid editors' simple parser specifications
+   */
+  private static Grammar grammar(int operators) {
+    Grammar grammar = new Grammar();
+    NonTerminal expr = grammar.newNonTerminal("E");
+    grammar.newRule(grammar.getStart(), expr);
+    grammar.newRule(expr, grammar.newTerminal("id"));
+    grammar.newRule(expr, grammar.newTerminal("int"));
+    grammar.newRule(expr, grammar.newTerminal("("), expr, grammar.newTerminal(")"));
+    for (int i = 0; i < operators; i++) {
+      Terminal op = grammar.newTerminal("op" + i);
+      grammar.newRule(expr, expr, op, expr).setPriority(i / 2).setAssociativity(i % 3 == 0 ? Associativity.RIGHT : Associativity.LEFT);
+      if (i % 4 == 0) {
+        grammar.newRule(expr, grammar.newTerminal("prefix" + i), expr).setPriority(operators);
+      }
+    }
+    return grammar;
+  }
+}
@@ -19,6 +19,8 @@ import com.google.common.collect.Range;
 import jetbrains.jetpad.grammar.*;
 import jetbrains.jetpad.grammar.lr.LRParser;
 import jetbrains.jetpad.grammar.lr.LRTable;
+import jetbrains.jetpad.grammar.lr.LRTableCache;
+import jetbrains.jetpad.grammar.lr.LRTables;
 import jetbrains.jetpad.grammar.lr.Lexeme;
 import org.junit.Test;
 
@@ -154,6 +156,76 @@ public class SLRParserGenerationTest {
     assertEquals(Range.closed(2, 3), parse.right.getRange());
   }
 
+  @Test
+  public void savedTableParsesTheSame() {
+    SimplePrecedenceGrammarWithDifferentPriorities g = new SimplePrecedenceGrammarWithDifferentPriorities();
+    g.plusRule.setAssociativity(Associativity.LEFT).setPriority(0);
+    g.mulRule.setAssociativity(Associativity.LEFT).setPriority(1);
+
+    LRTable table = new SLRTableGenerator(g.grammar).generateTable();
+    LRTable loaded = LRTables.load(g.grammar, LRTables.save(table));
+
+    assertEquals(table.getStates().size(), loaded.getStates().size());
+    assertEquals(LRTables.save(table), LRTables.save(loaded));
+
+    Object parse = new LRParser(loaded).parse(asTokens(g.id, g.mul, g.id, g.plus, g.id, g.mul, g.id));
+    assertEquals("((id * id) + (id * id))", parse.toString());
+  }
+
+  @Test
+  public void identicalGrammarsHaveEqualFingerprints() {
+    SimplePrecedenceGrammar g1 = new SimplePrecedenceGrammar();
+    SimplePrecedenceGrammar g2 = new SimplePrecedenceGrammar();
+
+    assertEquals(g1.grammar.getFingerprint(), g2.grammar.getFingerprint());
+
+    g2.plusRule.setAssociativity(Associativity.LEFT);
+    assertFalse(g1.grammar.getFingerprint().equals(g2.grammar.getFingerprint()));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void savedTableOfDifferentGrammarRejected() {
+    SimplePrecedenceGrammar g1 = new SimplePrecedenceGrammar();
+    g1.plusRule.setAssociativity(Associativity.LEFT).setPriority(0);
+    SimplePrecedenceGrammar g2 = new SimplePrecedenceGrammar();
+    g2.plusRule.setAssociativity(Associativity.RIGHT).setPriority(0);
+
+    LRTables.load(g2.grammar, LRTables.save(new SLRTableGenerator(g1.grammar).generateTable()));
+  }
+
+  @Test
+  public void cachedTableUsesOwnRules() {
+    SimplePrecedenceGrammar g1 = new SimplePrecedenceGrammar();
+    g1.plusRule.setAssociativity(Associativity.RIGHT).setPriority(0);
+    SimplePrecedenceGrammar g2 = new SimplePrecedenceGrammar();
+    g2.plusRule.setAssociativity(Associativity.RIGHT).setPriority(0);
+
+    LRTableCache cache = new LRTableCache();
+    new SLRTableGenerator(g1.grammar).generateCachedTable(cache);
+    LRTable table = new SLRTableGenerator(g2.grammar).generateCachedTable(cache);
+
+    assertEquals(1, cache.size());
+    assertSame(g2.grammar, table.getGrammar());
+    Object parse = new LRParser(table).parse(asTokens(g2.id, g2.plus, g2.id, g2.plus, g2.id));
+    assertEquals("(id + (id + id))", parse.toString());
+  }
+
+  @Test
+  public void tableCacheIsBounded() {
+    SimplePrecedenceGrammar left = new SimplePrecedenceGrammar();
+    left.plusRule.setAssociativity(Associativity.LEFT).setPriority(0);
+    SimplePrecedenceGrammar right = new SimplePrecedenceGrammar();
+    right.plusRule.setAssociativity(Associativity.RIGHT).setPriority(0);
+    LRTableCache cache = new LRTableCache(1);
+
+    new SLRTableGenerator(left.grammar).generateCachedTable(cache);
+    new SLRTableGenerator(right.grammar).generateCachedTable(cache);
+
+    assertEquals(1, cache.size());
+    assertNull(cache.get(left.grammar));
+    assertNotNull(cache.get(right.grammar));
+  }
+
   private class SimplePrecedenceGrammar {
     final Grammar grammar = new Grammar();
 
@@ -38,7 +38,6 @@ import jetbrains.jetpad.cell.*;
 import jetbrains.jetpad.cell.action.CellAction;
 import jetbrains.jetpad.cell.action.CellActions;
 import jetbrains.jetpad.cell.completion.Completion;
-import jetbrains.jetpad.cell.completion.CompletionSupport;
 import jetbrains.jetpad.cell.position.Positions;
 import jetbrains.jetpad.projectional.cell.*;
 import jetbrains.jetpad.cell.text.TextEditing;
@@ -69,11 +68,13 @@ public class HybridSynchronizer<SourceT> implements Synchronizer {
   private Property<SourceT> myProperty;
   private HybridPositionSpec<SourceT> myPositionSpec;
   private TokenListEditor<SourceT> myTokenListEditor;
+  private TokenCompletion myTokenCompletion;
   private Registration myRegistration;
   private Cell myTarget;
   private List<Cell> myTargetList;
   private Set<Mapper<?, ? extends Cell>> myValueMappers;
   private Map<Cell, Mapper<?, ? extends Cell>> myValueCellToMapper = new HashMap<Cell, Mapper<?, ? extends Cell>>();
+  private boolean myReplacingTokens;
   private TextCell myPlaceholder;
   private MapperFactory<Object, ? extends Cell> myMapperFactory;
   private SelectionSupport<Cell> mySelectionSupport;
@@ -260,11 +261,16 @@ public class HybridSynchronizer<SourceT> implements Synchronizer {
       }
 
       private void paste(ClipboardContent content) {
-        List<Token> tokens = content.get(TOKENS_CONTENT);
+        final List<Token> tokens = content.get(TOKENS_CONTENT);
         Cell currentCell = mySelectionSupport.currentCell();
         int currentCellIndex = myTargetList.indexOf(currentCell);
-        int targetIndex = Positions.isHomePosition(currentCell) ? currentCellIndex : currentCellIndex + 1;
-        tokens().addAll(targetIndex, tokens);
+        final int targetIndex = Positions.isHomePosition(currentCell) ? currentCellIndex : currentCellIndex + 1;
+        myTokenListEditor.changeTokens(new Runnable() {
+          @Override
+          public void run() {
+            tokens().addAll(targetIndex, tokens);
+          }
+        });
         tokenOperations().select(targetIndex + tokens.size() - 1, LAST).execute();
       }
 
@@ -322,6 +328,8 @@ public class HybridSynchronizer<SourceT> implements Synchronizer {
     return new CollectionListener<Token>() {
       @Override
       public void onItemAdded(CollectionItemEvent<Token> event) {
+        if (myReplacingTokens) return;
+
         if (myPlaceholder != null) {
           removePlaceholder();
         }
@@ -362,6 +370,8 @@ public class HybridSynchronizer<SourceT> implements Synchronizer {
 
       @Override
       public void onItemRemoved(CollectionItemEvent<Token> event) {
+        if (myReplacingTokens) return;
+
         final int index = event.getIndex();
         Cell removedCell = myTargetList.remove(index);
 
@@ -419,6 +429,54 @@ public class HybridSynchronizer<SourceT> implements Synchronizer {
     };
   }
 
+  private TokenListEditor.ReplaceListener createReplaceListener() {
+    return new TokenListEditor.ReplaceListener() {
+      @Override
+      public void onReplaceStarted() {
+        myReplacingTokens = true;
+      }
+
+      @Override
+      public void onReplaceFinished() {
+        myReplacingTokens = false;
+        updateTokenCells();
+      }
+    };
+  }
+
+  /**
+   * Replaces all the token cells at once, so that the target gets a single batch of removed and a single batch
+   * of added cells.
+   */
+  private void updateTokenCells() {
+    for (Mapper<?, ? extends Cell> valueMapper : myValueCellToMapper.values()) {
+      myValueMappers.remove(valueMapper);
+    }
+    myValueCellToMapper.clear();
+    myTargetList.clear();
+    myPlaceholder = null;
+
+    List<Token> tokens = tokens();
+    if (tokens.isEmpty()) {
+      addPlaceholder();
+      return;
+    }
+
+    List<Cell> cells = new ArrayList<Cell>(tokens.size());
+    for (int i = 0; i < tokens.size(); i++) {
+      Cell tokenCell = createTokenCell(tokens.get(i));
+      if (tokenCell instanceof TextTokenCell) {
+        TextTokenCell textTokenCell = (TextTokenCell) tokenCell;
+        textTokenCell.setFirst(i == 0);
+        if (i + 1 < tokens.size()) {
+          textTokenCell.setNextToken(tokens.get(i + 1));
+        }
+      }
+      cells.add(tokenCell);
+    }
+    myTargetList.addAll(cells);
+  }
+
   public void setMapperFactory(MapperFactory<Object, ? extends Cell> mapperFactory) {
     myMapperFactory = mapperFactory;
   }
@@ -446,12 +504,12 @@ public class HybridSynchronizer<SourceT> implements Synchronizer {
       target.addTrait(new TokenCellTraits.TokenCellTrait(true) {
         @Override
         protected CellTrait[] getBaseTraits(Cell cell) {
-          return new CellTrait[] { CompletionSupport.trait() };
+          return TokenCellTraits.COMPLETION_BASE;
         }
       });
 
-      firstFocusable(target).addTrait(new TokenCellTraits.LeftLeafTokenCellTrait());
-      lastFocusable(target).addTrait(new TokenCellTraits.RightLeafTokenCellTrait());
+      firstFocusable(target).addTrait(TokenCellTraits.LEFT_LEAF);
+      lastFocusable(target).addTrait(TokenCellTraits.RIGHT_LEAF);
 
       return target;
     }
@@ -474,9 +532,11 @@ public class HybridSynchronizer<SourceT> implements Synchronizer {
   private TextCell createPlaceholder() {
     TextCell result = new TextCell();
     result.addTrait(new BaseCellTrait() {
+      private final CellTrait[] myBaseTraits = { TextEditing.validTextEditing(Predicates.equalTo("")) };
+
       @Override
       protected CellTrait[] getBaseTraits(Cell cell) {
-        return new CellTrait[] { TextEditing.validTextEditing(Predicates.equalTo("")) };
+        return myBaseTraits;
       }
 
       @Override
@@ -525,12 +585,17 @@ public class HybridSynchronizer<SourceT> implements Synchronizer {
     ObservableList<Cell> selection = mySelectionSupport.selection();
     if (selection.isEmpty()) throw new IllegalStateException();
 
-    int firstIndex = myTargetList.indexOf(selection.get(0));
-    int lastIndex = firstIndex + selection.size();
+    final int firstIndex = myTargetList.indexOf(selection.get(0));
+    final int lastIndex = firstIndex + selection.size();
 
     mySelectionSupport.clearSelection();
 
-    tokens().subList(firstIndex, lastIndex).clear();
+    myTokenListEditor.changeTokens(new Runnable() {
+      @Override
+      public void run() {
+        tokens().subList(firstIndex, lastIndex).clear();
+      }
+    });
 
     if (tokens().isEmpty()) {
       lastItemDeleted().execute();
@@ -581,7 +646,10 @@ public class HybridSynchronizer<SourceT> implements Synchronizer {
   }
 
   TokenCompletion tokenCompletion() {
-    return new TokenCompletion(this);
+    if (myTokenCompletion == null) {
+      myTokenCompletion = new TokenCompletion(this);
+    }
+    return myTokenCompletion;
   }
 
   TokenListEditor<SourceT> tokenListEditor() {
@@ -603,13 +671,12 @@ public class HybridSynchronizer<SourceT> implements Synchronizer {
           myTarget.background().set(value ? null : Color.LIGHT_PINK);
         }
       }),
-      myTokenListEditor.tokens.addListener(tokensListener)
+      myTokenListEditor.tokens.addListener(tokensListener),
+      myTokenListEditor.addReplaceListener(createReplaceListener())
     );
 
-    ObservableList<Token> tokens = myTokenListEditor.tokens;
-    for (int i = 0; i < tokens.size(); i++) {
-      Token t = tokens.get(i);
-      tokensListener.onItemAdded(new CollectionItemEvent<Token>(t, i, true));
+    if (!tokens().isEmpty()) {
+      updateTokenCells();
     }
   }
 
@@ -67,13 +67,15 @@ class TextTokenCell extends TextCell {
 
   private CellTrait createTrait() {
     return new TokenCellTraits.TokenCellTrait(false) {
+      private final CellTrait[] myBaseTraits = {
+        TokenCellTraits.LEFT_LEAF,
+        TokenCellTraits.RIGHT_LEAF,
+        TextEditing.validTextEditing(myToken instanceof ErrorToken ? Predicates.<String>alwaysFalse() : Predicates.equalTo(myToken.text()), tokenTextColor(), false)
+      };
+
       @Override
       protected CellTrait[] getBaseTraits(Cell cell) {
-        return new CellTrait[] {
-          new TokenCellTraits.LeftLeafTokenCellTrait(),
-          new TokenCellTraits.RightLeafTokenCellTrait(),
-          TextEditing.validTextEditing(myToken instanceof ErrorToken ? Predicates.<String>alwaysFalse() : Predicates.equalTo(myToken.text()), tokenTextColor(), false)
-        };
+        return myBaseTraits;
       }
 
       @Override
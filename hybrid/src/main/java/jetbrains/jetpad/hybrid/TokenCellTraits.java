@@ -21,9 +21,11 @@ import jetbrains.jetpad.event.Key;
 import jetbrains.jetpad.event.KeyEvent;
 import jetbrains.jetpad.cell.action.CellAction;
 import jetbrains.jetpad.cell.completion.Completion;
+import jetbrains.jetpad.cell.completion.CompletionSupport;
 import jetbrains.jetpad.cell.position.Positions;
 import jetbrains.jetpad.cell.text.TextEditing;
 import jetbrains.jetpad.cell.trait.BaseCellTrait;
+import jetbrains.jetpad.cell.trait.CellTrait;
 import jetbrains.jetpad.cell.trait.CellTraitEventSpec;
 import jetbrains.jetpad.cell.trait.CellTraitPropertySpec;
 import jetbrains.jetpad.cell.util.Cells;
@@ -34,6 +36,10 @@ import jetbrains.jetpad.projectional.cell.*;
 import java.util.List;
 
 class TokenCellTraits {
+  static final CellTrait LEFT_LEAF = new LeftLeafTokenCellTrait();
+  static final CellTrait RIGHT_LEAF = new RightLeafTokenCellTrait();
+  static final CellTrait[] COMPLETION_BASE = { CompletionSupport.trait() };
+
   static class BaseTokenCellTrait extends BaseCellTrait {
     protected HybridSynchronizer<?> hybridSync(Cell cell) {
       HybridSynchronizer<?> sync = cell.get(HybridSynchronizer.HYBRID_SYNCHRONIZER);
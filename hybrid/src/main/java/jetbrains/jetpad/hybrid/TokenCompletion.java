@@ -20,6 +20,9 @@ import com.google.common.base.Objects;
 import jetbrains.jetpad.base.Value;
 import jetbrains.jetpad.cell.action.CellActions;
 import jetbrains.jetpad.mapper.Mapper;
+import jetbrains.jetpad.model.collections.CollectionItemEvent;
+import jetbrains.jetpad.model.event.EventHandler;
+import jetbrains.jetpad.model.event.Registration;
 import jetbrains.jetpad.cell.TextCell;
 import jetbrains.jetpad.cell.action.CellAction;
 import jetbrains.jetpad.cell.completion.*;
@@ -29,7 +32,9 @@ import jetbrains.jetpad.cell.Cell;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static jetbrains.jetpad.hybrid.SelectionPosition.*;
 import static jetbrains.jetpad.cell.action.CellActions.seq;
@@ -37,8 +42,20 @@ import static jetbrains.jetpad.cell.action.CellActions.seq;
 class TokenCompletion {
   private HybridSynchronizer<?> mySync;
 
+  //completion results don't change until tokens change, while text editing traits query them several times per keystroke
+  private Map<CacheKey, CompletionHelper> myCache = new HashMap<CacheKey, CompletionHelper>();
+  private CompletionHelper myTypedCompletion;
+  private Function<Token, CellAction> myTypedHandler;
+
   TokenCompletion(HybridSynchronizer<?> sync) {
     mySync = sync;
+    tokenListEditor().tokens.addHandler(new EventHandler<CollectionItemEvent<Token>>() {
+      @Override
+      public void onEvent(CollectionItemEvent<Token> event) {
+        myCache.clear();
+        myTypedCompletion = null;
+      }
+    });
   }
 
   private HybridPositionSpec<?> positionSpec() {
@@ -53,15 +70,38 @@ class TokenCompletion {
     return mySync.tokenOperations();
   }
 
-  CompletionHelper completion(Function<Token, CellAction> handler) {
-    return new CompletionHelper(positionSpec().getTokenCompletion(handler).get(CompletionParameters.EMPTY));
+  /**
+   * Items are created and indexed once until tokens change. They pass tokens to the handler of the item which
+   * is being completed, so the handler is attached only to the matched items.
+   */
+  CompletionHelper completion(final Function<Token, CellAction> handler) {
+    if (myTypedCompletion == null) {
+      myTypedCompletion = new CompletionHelper(positionSpec().getTokenCompletion(new Function<Token, CellAction>() {
+        @Override
+        public CellAction apply(Token token) {
+          return myTypedHandler.apply(token);
+        }
+      }).get(CompletionParameters.EMPTY));
+    }
+    return myTypedCompletion.wrapResults(new Function<CompletionItem, CompletionItem>() {
+      @Override
+      public CompletionItem apply(CompletionItem item) {
+        return new HandlerCompletionItem(item, handler);
+      }
+    });
   }
 
   CompletionSupplier placeholderCompletion() {
-    return tokenCompletion(new PlaceholderCompletionContext(), new BaseCompleter() {
+    return tokenCompletion("placeholder", null, new PlaceholderCompletionContext(), new BaseCompleter() {
       @Override
       public CellAction complete(int selectionIndex, Token... tokens) {
-        tokenListEditor().tokens.addAll(Arrays.asList(tokens));
+        final List<Token> newTokens = Arrays.asList(tokens);
+        tokenListEditor().changeTokens(new Runnable() {
+          @Override
+          public void run() {
+            tokenListEditor().tokens.addAll(newTokens);
+          }
+        });
         tokenListEditor().updateToPrintedTokens();
 
         return tokenOperations().selectOnCreation(selectionIndex, LAST);
@@ -71,7 +111,7 @@ class TokenCompletion {
 
   CompletionSupplier tokenCompletion(final Cell tokenCell) {
     final int index = mySync.tokenCells().indexOf(tokenCell);
-    return tokenCompletion(new TokenCompletionContext(index), new BaseCompleter() {
+    return tokenCompletion("token", tokenCell, new TokenCompletionContext(index), new BaseCompleter() {
       @Override
       public CellAction complete(int selectionIndex, Token... tokens) {
         final int caretPosition;
@@ -96,11 +136,17 @@ class TokenCompletion {
         CompletionController controller = tokenCell.get(Completion.COMPLETION_CONTROLLER);
         final boolean wasCompletionActive = controller != null && controller.isActive();
 
-        tokenListEditor().tokens.remove(index);
-        int i = index;
-        for (Token t : tokens) {
-          tokenListEditor().tokens.add(i++, t);
-        }
+        final Token[] newTokens = tokens;
+        tokenListEditor().changeTokens(new Runnable() {
+          @Override
+          public void run() {
+            tokenListEditor().tokens.remove(index);
+            int i = index;
+            for (Token t : newTokens) {
+              tokenListEditor().tokens.add(i++, t);
+            }
+          }
+        });
 
         tokenListEditor().updateToPrintedTokens();
 
@@ -130,19 +176,31 @@ class TokenCompletion {
     });
   }
 
-  CompletionSupplier sideTransform(Cell tokenCell, final int delta) {
+  CompletionSupplier sideTransform(final Cell tokenCell, final int delta) {
     final int index = mySync.tokenCells().indexOf(tokenCell);
 
-    return new CompletionSupplier() {
+    class SideTransformSupplier implements CompletionHelperSupplier {
       @Override
-      public List<CompletionItem> get(final CompletionParameters cp) {
+      public List<CompletionItem> get(CompletionParameters cp) {
+        return supplier(cp).get(cp);
+      }
+
+      @Override
+      public CompletionHelper getHelper(CompletionParameters cp) {
+        return supplier(cp).getHelper(cp);
+      }
+
+      private TokenCompletionSupplier supplier(final CompletionParameters cp) {
         BaseCompleter completer = new BaseCompleter() {
           @Override
           public CellAction complete(int selectionIndex, Token... tokens) {
-            int i = index + delta;
-            for (Token t : tokens) {
-              tokenListEditor().tokens.add(i++, t);
-            }
+            final List<Token> newTokens = Arrays.asList(tokens);
+            tokenListEditor().changeTokens(new Runnable() {
+              @Override
+              public void run() {
+                tokenListEditor().tokens.addAll(index + delta, newTokens);
+              }
+            });
             tokenListEditor().updateToPrintedTokens();
             CellAction result = tokenOperations().selectOnCreation(index + delta + selectionIndex, LAST);
             if (cp.isEndRightTransform()) {
@@ -152,32 +210,29 @@ class TokenCompletion {
           }
         };
 
+        String kind = "side" + delta;
         if (cp.isEndRightTransform()) {
-          return tokenCompletion(new TokenCompletionContext(index + 1), completer).get(cp);
+          return tokenCompletion(kind, tokenCell, new TokenCompletionContext(index + 1), completer);
         }
 
-        return tokenCompletion(new TokenCompletionContext(index + delta), completer).get(cp);
+        return tokenCompletion(kind, tokenCell, new TokenCompletionContext(index + delta), completer);
       }
-    };
+    }
+
+    return new SideTransformSupplier();
   }
 
-  private CompletionSupplier tokenCompletion(final CompletionContext ctx, final Completer completer) {
-    return new CompletionSupplier() {
+  private TokenCompletionSupplier tokenCompletion(String kind, Cell cell, CompletionContext ctx, Completer completer) {
+    return new TokenCompletionSupplier(kind, cell, ctx, completer);
+  }
+
+  private List<CompletionItem> tokenCompletionItems(final Completer completer, CompletionParameters cp) {
+    return new ArrayList<CompletionItem>(positionSpec().getTokenCompletion(new Function<Token, CellAction>() {
       @Override
-      public List<CompletionItem> get(CompletionParameters cp) {
-        List<CompletionItem> result = new ArrayList<CompletionItem>();
-        result.addAll(positionSpec().getTokenCompletion(new Function<Token, CellAction>() {
-          @Override
-          public CellAction apply(Token input) {
-            return completer.complete(input);
-          }
-        }).get(cp));
-        if (cp.isMenu()) {
-          result.addAll(positionSpec().getAdditionalCompletion(ctx, completer).get(cp));
-        }
-        return result;
+      public CellAction apply(Token input) {
+        return completer.complete(input);
       }
-    };
+    }).get(cp));
   }
 
   Token completeToken(String text) {
@@ -209,6 +264,122 @@ class TokenCompletion {
     };
   }
 
+  /**
+   * Additional completion is requested only for the menu, since it can be expensive and is never used while typing.
+   * The result is async in case the additional completion turns out to be async.
+   */
+  private class TokenCompletionSupplier implements AsyncCompletionSupplier, CompletionHelperSupplier {
+    private final String myKind;
+    private final Cell myCell;
+    private final CompletionContext myContext;
+    private final Completer myCompleter;
+
+    private TokenCompletionSupplier(String kind, Cell cell, CompletionContext ctx, Completer completer) {
+      myKind = kind;
+      myCell = cell;
+      myContext = ctx;
+      myCompleter = completer;
+    }
+
+    @Override
+    public List<CompletionItem> get(CompletionParameters cp) {
+      List<CompletionItem> result;
+      if (cp.isMenu()) {
+        result = tokenCompletionItems(myCompleter, cp);
+        result.addAll(positionSpec().getAdditionalCompletion(myContext, myCompleter).get(cp));
+      } else {
+        result = new ArrayList<CompletionItem>(getHelper(cp).getItems());
+      }
+      return result;
+    }
+
+    /**
+     * Cached helpers complete with the completer of the request which created them. It's the same as the completer
+     * of any later request with an equal key since completers depend only on the completion site and the parameters.
+     */
+    @Override
+    public CompletionHelper getHelper(CompletionParameters cp) {
+      if (cp.isMenu()) return new CompletionHelper(get(cp));
+
+      CacheKey key = new CacheKey(myKind, myCell, myContext, cp);
+      CompletionHelper result = myCache.get(key);
+      if (result == null) {
+        result = new CompletionHelper(tokenCompletionItems(myCompleter, cp));
+        myCache.put(key, result);
+      }
+      return result;
+    }
+
+    @Override
+    public Registration getAsync(CompletionParameters cp, Callback callback) {
+      if (!cp.isMenu()) {
+        callback.onItems(get(cp));
+        callback.onFinished();
+        return Registration.EMPTY;
+      }
+
+      callback.onItems(tokenCompletionItems(myCompleter, cp));
+      CompletionSupplier additional = positionSpec().getAdditionalCompletion(myContext, myCompleter);
+      if (additional instanceof AsyncCompletionSupplier) {
+        return ((AsyncCompletionSupplier) additional).getAsync(cp, callback);
+      }
+      callback.onItems(additional.get(cp));
+      callback.onFinished();
+      return Registration.EMPTY;
+    }
+  }
+
+  private class HandlerCompletionItem extends WrapperCompletionItem {
+    private final Function<Token, CellAction> myHandler;
+
+    private HandlerCompletionItem(CompletionItem item, Function<Token, CellAction> handler) {
+      super(item);
+      myHandler = handler;
+    }
+
+    @Override
+    public CellAction complete(String text) {
+      Function<Token, CellAction> oldHandler = myTypedHandler;
+      myTypedHandler = myHandler;
+      try {
+        return super.complete(text);
+      } finally {
+        myTypedHandler = oldHandler;
+      }
+    }
+  }
+
+  private static class CacheKey {
+    private final String myKind;
+    private final Cell myCell;
+    private final int myTargetIndex;
+    private final boolean myMenu;
+    private final boolean myEndRightTransform;
+
+    private CacheKey(String kind, Cell cell, CompletionContext ctx, CompletionParameters cp) {
+      myKind = kind;
+      myCell = cell;
+      myTargetIndex = ctx.targetIndex();
+      myMenu = cp.isMenu();
+      myEndRightTransform = cp.isEndRightTransform();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (!(o instanceof CacheKey)) return false;
+
+      CacheKey other = (CacheKey) o;
+      return myKind.equals(other.myKind) && myCell == other.myCell && myTargetIndex == other.myTargetIndex
+        && myMenu == other.myMenu && myEndRightTransform == other.myEndRightTransform;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(myKind, myCell, myTargetIndex, myMenu, myEndRightTransform);
+    }
+  }
+
   private class PlaceholderCompletionContext implements CompletionContext {
     @Override
     public int targetIndex() {
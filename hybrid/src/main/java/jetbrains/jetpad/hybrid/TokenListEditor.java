@@ -16,15 +16,20 @@
 package jetbrains.jetpad.hybrid;
 
 import com.google.common.base.Objects;
+import jetbrains.jetpad.model.collections.CollectionAdapter;
 import jetbrains.jetpad.model.collections.CollectionItemEvent;
 import jetbrains.jetpad.model.collections.list.ObservableArrayList;
 import jetbrains.jetpad.model.collections.list.ObservableList;
 import jetbrains.jetpad.model.event.EventHandler;
+import jetbrains.jetpad.model.event.ListenerCaller;
+import jetbrains.jetpad.model.event.Listeners;
 import jetbrains.jetpad.model.event.Registration;
 import jetbrains.jetpad.model.property.Property;
 import jetbrains.jetpad.model.property.PropertyChangeEvent;
 import jetbrains.jetpad.model.property.ReadableProperty;
 import jetbrains.jetpad.model.property.ValueProperty;
+import jetbrains.jetpad.hybrid.parser.IncrementalParser;
+import jetbrains.jetpad.hybrid.parser.Parser;
 import jetbrains.jetpad.hybrid.parser.ParsingContext;
 import jetbrains.jetpad.hybrid.parser.Token;
 import jetbrains.jetpad.hybrid.parser.ValueToken;
@@ -42,7 +47,25 @@ class TokenListEditor<SourceT> {
   private boolean mySyncing;
   private List<Token> myPrintedTokens;
   private boolean myRestoringState;
-  private Registration myChangeReg = Registration.EMPTY;
+  private int myChangeDepth;
+  private boolean myTokensChanged;
+  private PrettyPrinterContext<SourceT> myPrinted;
+  private Parser<SourceT> myParser;
+  private IncrementalParser.Session<SourceT> mySession;
+  private int myUnchangedPrefix;
+  private int myUnchangedSuffix;
+  private Listeners<ReplaceListener> myReplaceListeners = new Listeners<ReplaceListener>();
+  private EventHandler<Object> myChangeHandler = new EventHandler<Object>() {
+    @Override
+    public void onEvent(Object event) {
+      sync(new Runnable() {
+        @Override
+        public void run() {
+          update();
+        }
+      });
+    }
+  };
 
   final ObservableList<Token> tokens = new ObservableArrayList<Token>();
   final Property<SourceT> value = new ValueProperty<SourceT>();
@@ -51,12 +74,29 @@ class TokenListEditor<SourceT> {
   TokenListEditor(HybridPositionSpec<SourceT> spec) {
     mySpec = spec;
 
+    tokens.addListener(new CollectionAdapter<Token>() {
+      @Override
+      public void onItemAdded(CollectionItemEvent<Token> event) {
+        myUnchangedPrefix = Math.min(myUnchangedPrefix, event.getIndex());
+        myUnchangedSuffix = Math.min(myUnchangedSuffix, tokens.size() - 1 - event.getIndex());
+      }
+
+      @Override
+      public void onItemRemoved(CollectionItemEvent<Token> event) {
+        myUnchangedPrefix = Math.min(myUnchangedPrefix, event.getIndex());
+        myUnchangedSuffix = Math.min(myUnchangedSuffix, tokens.size() - event.getIndex());
+      }
+    });
     tokens.addHandler(new EventHandler<CollectionItemEvent<Token>>() {
       @Override
       public void onEvent(CollectionItemEvent<Token> event) {
         sync(new Runnable() {
           @Override
           public void run() {
+            if (myChangeDepth > 0) {
+              myTokensChanged = true;
+              return;
+            }
             reparse();
           }
         });
@@ -114,14 +154,15 @@ class TokenListEditor<SourceT> {
       myValid.set(true);
       myParseNode = null;
       myPrintedTokens = new ArrayList<Token>();
-      myChangeReg.remove();
-      myChangeReg = Registration.EMPTY;
+      disposePrinted();
+      mySession = null;
     } else {
-      SourceT result = mySpec.getParser().parse(new ParsingContext(tokens));
+      SourceT result = parse();
       if (result != null) {
+        myUnchangedPrefix = myUnchangedSuffix = tokens.size();
         value.set(result);
         myValid.set(true);
-        reprint();
+        reprint(true);
         if (myPrintedTokens.size() != tokens.size()) {
           throw new IllegalStateException();
         }
@@ -133,45 +174,126 @@ class TokenListEditor<SourceT> {
     }
   }
 
+  /**
+   * Incremental parsers reparse only the tokens changed since their last successful parse, which are tracked
+   * as the unchanged prefix and suffix of the token list
+   */
+  private SourceT parse() {
+    Parser<SourceT> parser = mySpec.getParser();
+    if (!(parser instanceof IncrementalParser)) {
+      myParser = null;
+      mySession = null;
+      return parser.parse(new ParsingContext(tokens));
+    }
+
+    if (parser != myParser || mySession == null) {
+      myParser = parser;
+      mySession = ((IncrementalParser<SourceT>) parser).newSession();
+      return mySession.parse(tokens);
+    }
+    return mySession.parse(tokens, myUnchangedPrefix, myUnchangedSuffix);
+  }
+
   private void update() {
-    PrettyPrinterContext ctx = reprint();
+    mySession = null;
+    PrettyPrinterContext<SourceT> ctx = reprint(false);
     myValid.set(true);
-    tokens.clear();
-    tokens.addAll(ctx.tokens());
+    replaceTokens(ctx.tokens());
   }
 
-  private PrettyPrinterContext reprint() {
-    PrettyPrinterContext ctx = new PrettyPrinterContext(mySpec.getPrettyPrinter());
-    ctx.print(value.get());
-    myParseNode = ctx.result();
-    myPrintedTokens = ctx.tokens();
+  /**
+   * Replacing listeners are notified around changes which replace all the tokens, e.g. after a reprint. Item events
+   * are fired in between as usual, listeners can ignore them and handle the new tokens at once.
+   */
+  Registration addReplaceListener(ReplaceListener l) {
+    return myReplaceListeners.add(l);
+  }
 
-    myChangeReg.remove();
-    myChangeReg = ctx.changeSource().addHandler(new EventHandler() {
+  private void replaceTokens(List<Token> newTokens) {
+    myReplaceListeners.fire(new ListenerCaller<ReplaceListener>() {
       @Override
-      public void onEvent(Object event) {
-        sync(new Runnable() {
-          @Override
-          public void run() {
-            update();
-          }
-        });
+      public void call(ReplaceListener l) {
+        l.onReplaceStarted();
       }
     });
+    try {
+      tokens.clear();
+      tokens.addAll(newTokens);
+    } finally {
+      myReplaceListeners.fire(new ListenerCaller<ReplaceListener>() {
+        @Override
+        public void call(ReplaceListener l) {
+          l.onReplaceFinished();
+        }
+      });
+    }
+  }
+
+  /**
+   * @param reuse whether the nodes of the previous print can be reused. That's the case only when the value was
+   *              produced by a parser, since any model change is followed by a full reprint in {@link #update()}.
+   */
+  private PrettyPrinterContext<SourceT> reprint(boolean reuse) {
+    PrettyPrinterContext<SourceT> ctx;
+    if (reuse && myPrinted != null) {
+      ctx = new PrettyPrinterContext<SourceT>(mySpec.getPrettyPrinter(), myPrinted);
+    } else {
+      disposePrinted();
+      ctx = new PrettyPrinterContext<SourceT>(mySpec.getPrettyPrinter());
+    }
+    ctx.print(value.get());
+    ctx.addChangeHandler(myChangeHandler);
+    myPrinted = ctx;
+    myParseNode = ctx.result();
+    myPrintedTokens = ctx.tokens();
     return ctx;
   }
 
+  private void disposePrinted() {
+    if (myPrinted == null) return;
+    myPrinted.dispose();
+    myPrinted = null;
+  }
+
   void updateToPrintedTokens() {
     if (myPrintedTokens == null) return;
 
-    List<Token> newTokens = myPrintedTokens;
-    for (int i = 0; i < newTokens.size(); i++) {
-      Token newToken = newTokens.get(i);
-      Token token = tokens.get(i);
-      if (newToken instanceof ValueToken) continue;
-      if (!Objects.equal(newToken, token)) {
-        tokens.set(i, newToken);
+    final List<Token> newTokens = myPrintedTokens;
+    changeTokens(new Runnable() {
+      @Override
+      public void run() {
+        for (int i = 0; i < newTokens.size(); i++) {
+          Token newToken = newTokens.get(i);
+          Token token = tokens.get(i);
+          if (newToken instanceof ValueToken) continue;
+          if (!Objects.equal(newToken, token)) {
+            tokens.set(i, newToken);
+          }
+        }
       }
+    });
+  }
+
+  /**
+   * Runs several changes of tokens and reparses once after the last of them instead of after each one.
+   * Intermediate token lists are often unparsable or produce values which are immediately thrown away.
+   */
+  void changeTokens(Runnable change) {
+    myChangeDepth++;
+    try {
+      change.run();
+    } finally {
+      myChangeDepth--;
+    }
+
+    if (myChangeDepth == 0 && myTokensChanged) {
+      myTokensChanged = false;
+      sync(new Runnable() {
+        @Override
+        public void run() {
+          reparse();
+        }
+      });
     }
   }
 
@@ -180,8 +302,7 @@ class TokenListEditor<SourceT> {
     myRestoringState = true;
     try {
       if (state != null) {
-        tokens.clear();
-        tokens.addAll(state);
+        replaceTokens(state);
       } else if (!myValid.get()) {
         update();
       }
@@ -193,4 +314,8 @@ class TokenListEditor<SourceT> {
     }
   }
 
-}
\ No newline at end of file
+  interface ReplaceListener {
+    void onReplaceStarted();
+    void onReplaceFinished();
+  }
+}
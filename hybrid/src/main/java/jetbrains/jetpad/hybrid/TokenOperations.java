@@ -48,6 +48,10 @@ class TokenOperations<SourceT> {
     return mySync.tokens();
   }
 
+  private void changeTokens(Runnable change) {
+    mySync.tokenListEditor().changeTokens(change);
+  }
+
   CellAction selectOnCreation(int index, SelectionPosition pos) {
     Cell cell = tokenViews().get(index);
 
@@ -157,9 +161,14 @@ class TokenOperations<SourceT> {
       newTokenText = prevText + token.text();
       tokenHandler = new TokenHandler() {
         @Override
-        public void handle(Token item) {
-          tokens().remove(index);
-          tokens().set(index - 1, item);
+        public void handle(final Token item) {
+          changeTokens(new Runnable() {
+            @Override
+            public void run() {
+              tokens().remove(index);
+              tokens().set(index - 1, item);
+            }
+          });
         }
       };
       completer = new Function<Token, CellAction>() {
@@ -180,9 +189,14 @@ class TokenOperations<SourceT> {
       newTokenText = currentText + nextText;
       tokenHandler = new TokenHandler() {
         @Override
-        public void handle(Token item) {
-          tokens().remove(index + 1);
-          tokens().set(index, item);
+        public void handle(final Token item) {
+          changeTokens(new Runnable() {
+            @Override
+            public void run() {
+              tokens().remove(index + 1);
+              tokens().set(index, item);
+            }
+          });
         }
       };
       completer = new Function<Token, CellAction>() {
@@ -224,10 +238,17 @@ class TokenOperations<SourceT> {
         Token firstToken = tc.completeToken(firstTokenText);
         Token secondToken = tc.completeToken(secondTokenText);
 
-        int index = tokenViews().indexOf(textView);
-
-        tokens().set(index, firstToken != null ? firstToken : new ErrorToken(firstTokenText));
-        tokens().add(index + 1, secondToken != null ? secondToken : new ErrorToken(secondTokenText));
+        final int index = tokenViews().indexOf(textView);
+        final Token first = firstToken != null ? firstToken : new ErrorToken(firstTokenText);
+        final Token second = secondToken != null ? secondToken : new ErrorToken(secondTokenText);
+
+        changeTokens(new Runnable() {
+          @Override
+          public void run() {
+            tokens().set(index, first);
+            tokens().add(index + 1, second);
+          }
+        });
         select(index + 1, FIRST).execute();
         return true;
       }
@@ -240,15 +261,20 @@ class TokenOperations<SourceT> {
       }
     });
     if (completion.isBoundary(text, caret - 1) && completion.isBoundary(text.substring(caret - 1), 1)) {
-      Token first = tc.completeToken(text.substring(0, caret - 1));
-      Token second = tc.completeToken(text.substring(caret - 1, caret));
-      Token third = tc.completeToken(text.substring(caret));
-
-      int index = tokenViews().indexOf(textView);
-      tokens().remove(index);
-      tokens().add(index, first);
-      tokens().add(index + 1, second);
-      tokens().add(index + 2, third);
+      final Token first = tc.completeToken(text.substring(0, caret - 1));
+      final Token second = tc.completeToken(text.substring(caret - 1, caret));
+      final Token third = tc.completeToken(text.substring(caret));
+
+      final int index = tokenViews().indexOf(textView);
+      changeTokens(new Runnable() {
+        @Override
+        public void run() {
+          tokens().remove(index);
+          tokens().add(index, first);
+          tokens().add(index + 1, second);
+          tokens().add(index + 2, third);
+        }
+      });
       select(index + 1, LAST).execute();
       return true;
     }
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2012-2013 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.hybrid.parser;
+
+import java.util.List;
+
+/**
+ * Parser which can reparse an edited token list reusing the results of its previous parse
+ */
+public interface IncrementalParser<ResultT> extends Parser<ResultT> {
+  Session<ResultT> newSession();
+
+  interface Session<ResultT> {
+    /**
+     * Parses tokens from scratch
+     */
+    ResultT parse(List<Token> tokens);
+
+    /**
+     * Parses tokens which differ from the tokens of the last successful parse of this session only between
+     * unchangedPrefix and tokens.size() - unchangedSuffix. Results of the last successful parse which are reused
+     * are detached from their former parents. A failed parse doesn't change them.
+     */
+    ResultT parse(List<Token> tokens, int unchangedPrefix, int unchangedSuffix);
+  }
+}
@@ -28,22 +28,42 @@ import jetbrains.jetpad.hybrid.parser.IdentifierToken;
 import jetbrains.jetpad.hybrid.parser.IntValueToken;
 import jetbrains.jetpad.hybrid.parser.Token;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-import java.util.Stack;
+import java.util.*;
 
 public class PrettyPrinterContext<NodeT>  {
   private PrettyPrinter myPrettyPrinter;
 
   private List<Token> myTokens = new ArrayList<Token>();
   private Stack<List<BaseParseNode>> myStack = new Stack<List<BaseParseNode>>();
+  private Stack<List<EventSource<?>>> myChangeSources = new Stack<List<EventSource<?>>>();
   private boolean myPrinted;
-  private List<EventSource<?>> myChangeSources = new ArrayList<EventSource<?>>();
+
+  private Map<Object, BaseParseNode> myNodes;
+  private BaseParseNode myPreviousResult;
+  private List<BaseParseNode> myNewNodes = new ArrayList<BaseParseNode>();
 
   public PrettyPrinterContext(PrettyPrinter pp) {
+    this(pp, null);
+  }
+
+  /**
+   * Creates a context which takes the nodes printed by the previous one over, so that values which are printed again
+   * aren't passed to the pretty printer and keep their nodes and change handlers. It relies on the values being unchanged
+   * since they were printed, and the previous context can't be used afterwards.
+   */
+  public PrettyPrinterContext(PrettyPrinter pp, PrettyPrinterContext<NodeT> previous) {
     myPrettyPrinter = pp;
     myStack.add(new ArrayList<BaseParseNode>());
+    myChangeSources.add(new ArrayList<EventSource<?>>());
+    if (previous != null) {
+      previous.ensurePrinted();
+      if (previous.myNodes == null) throw new IllegalStateException();
+      myNodes = previous.myNodes;
+      myPreviousResult = previous.myStack.peek().get(0);
+      previous.myNodes = null;
+    } else {
+      myNodes = new HashMap<Object, BaseParseNode>();
+    }
   }
 
   public void print(final NodeT obj) {
@@ -57,21 +77,25 @@ public class PrettyPrinterContext<NodeT>  {
     });
 
     myPrinted = true;
+    if (myPreviousResult != null) {
+      release(myPreviousResult);
+      myPreviousResult = null;
+    }
   }
 
   public void append(Token token) {
     myTokens.add(token);
-    myStack.peek().add(new TokenParseNode(token, myTokens.size() - 1));
+    myStack.peek().add(new TokenParseNode(token, myTokens.size() - 1, this));
   }
 
   public <ValueT> void append(Property<ValueT> prop, Function<ValueT, Token> f) {
-    myChangeSources.add(prop);
+    myChangeSources.peek().add(prop);
 
     append(f.apply(prop.get()));
   }
 
   public void append(Property<? extends NodeT> prop) {
-    myChangeSources.add(prop);
+    myChangeSources.peek().add(prop);
 
     final NodeT value = prop.get();
     if (value == null) return;
@@ -84,7 +108,7 @@ public class PrettyPrinterContext<NodeT>  {
   }
 
   public void append(ObservableList<? extends NodeT> list) {
-    myChangeSources.add(list);
+    myChangeSources.peek().add(list);
 
     for (final NodeT e : list) {
       print(e, new Runnable() {
@@ -97,7 +121,7 @@ public class PrettyPrinterContext<NodeT>  {
   }
 
   public void append(final ObservableList<? extends NodeT> list, Token separator) {
-    myChangeSources.add(list);
+    myChangeSources.peek().add(list);
 
     for (int i = 0; i < list.size(); i++) {
       if (i != 0) {
@@ -141,14 +165,76 @@ public class PrettyPrinterContext<NodeT>  {
   }
 
   private void print(NodeT obj, Runnable r) {
+    BaseParseNode reused = reuse(obj);
+    if (reused != null) {
+      myStack.peek().add(reused);
+      return;
+    }
+
     myStack.push(new ArrayList<BaseParseNode>());
+    myChangeSources.push(new ArrayList<EventSource<?>>());
     r.run();
     List<BaseParseNode> nodes = myStack.pop();
 
+    BaseParseNode node;
     if (nodes.isEmpty()) {
-      myStack.peek().add(new EmptyParseNode(obj, myTokens.size()));
+      node = new EmptyParseNode(obj, myTokens.size(), this);
     } else {
-      myStack.peek().add(new CompositeParseNode(obj, nodes));
+      node = new CompositeParseNode(obj, nodes, this);
+    }
+    node.myChangeSources = myChangeSources.pop();
+    myNodes.put(obj, node);
+    myNewNodes.add(node);
+    myStack.peek().add(node);
+  }
+
+  private BaseParseNode reuse(Object obj) {
+    if (myPreviousResult == null) return null;
+    BaseParseNode node = myNodes.get(obj);
+    if (node == null) return null;
+
+    List<BaseParseNode> subtree = new ArrayList<BaseParseNode>();
+    Stack<BaseParseNode> toVisit = new Stack<BaseParseNode>();
+    toVisit.push(node);
+    while (!toVisit.isEmpty()) {
+      BaseParseNode current = toVisit.pop();
+      if (current.myOwner == this) return null;
+      subtree.add(current);
+      List<ParseNode> children = current.children();
+      for (int i = children.size() - 1; i >= 0; i--) {
+        toVisit.push((BaseParseNode) children.get(i));
+      }
+    }
+
+    int delta = myTokens.size() - node.range().lowerEndpoint();
+    for (BaseParseNode n : subtree) {
+      n.myOwner = this;
+      n.shift(delta);
+      if (n instanceof TokenParseNode) {
+        myTokens.add(((TokenParseNode) n).myToken);
+      }
+    }
+    node.myParent = null;
+    return node;
+  }
+
+  /**
+   * Unregisters and forgets the nodes of the previous result which weren't reused
+   */
+  private void release(BaseParseNode root) {
+    List<BaseParseNode> nodes = new ArrayList<BaseParseNode>();
+    nodes.add(root);
+    for (int i = 0; i < nodes.size(); i++) {
+      BaseParseNode node = nodes.get(i);
+      if (node.myOwner == this) continue;
+      node.myRegistration.remove();
+      node.myRegistration = Registration.EMPTY;
+      if (myNodes.get(node.value()) == node) {
+        myNodes.remove(node.value());
+      }
+      for (ParseNode child : node.children()) {
+        nodes.add((BaseParseNode) child);
+      }
     }
   }
 
@@ -164,36 +250,90 @@ public class PrettyPrinterContext<NodeT>  {
   }
 
   public EventSource<Object> changeSource() {
+    ensurePrinted();
     return new EventSource<Object>() {
       @Override
       public Registration addHandler(EventHandler<? super Object> handler) {
         CompositeRegistration reg = new CompositeRegistration();
-        for (EventSource<?> s : myChangeSources) {
-          reg.add(s.addHandler(handler));
+        for (BaseParseNode node : nodes()) {
+          for (EventSource<?> s : node.myChangeSources) {
+            reg.add(s.addHandler(handler));
+          }
         }
         return reg;
       }
     };
   }
 
+  /**
+   * Adds the handler to the change sources of the nodes printed by this context. Nodes taken over from the previous
+   * context keep their handlers, so the same handler should be added to all the contexts in a chain.
+   */
+  public void addChangeHandler(EventHandler<? super Object> handler) {
+    ensurePrinted();
+    for (BaseParseNode node : myNewNodes) {
+      if (node.myChangeSources.isEmpty()) continue;
+      CompositeRegistration reg = new CompositeRegistration();
+      for (EventSource<?> s : node.myChangeSources) {
+        reg.add(s.addHandler(handler));
+      }
+      node.myRegistration.remove();
+      node.myRegistration = reg;
+    }
+  }
+
+  /**
+   * Removes the change handlers of all the printed nodes
+   */
+  public void dispose() {
+    ensurePrinted();
+    for (BaseParseNode node : nodes()) {
+      node.myRegistration.remove();
+      node.myRegistration = Registration.EMPTY;
+    }
+    myNodes = null;
+  }
+
+  private List<BaseParseNode> nodes() {
+    List<BaseParseNode> result = new ArrayList<BaseParseNode>();
+    result.addAll(myStack.peek());
+    for (int i = 0; i < result.size(); i++) {
+      for (ParseNode child : result.get(i).children()) {
+        result.add((BaseParseNode) child);
+      }
+    }
+    return result;
+  }
+
   private void ensurePrinted() {
     if (!myPrinted) throw new IllegalStateException();
   }
 
   private static abstract class BaseParseNode implements ParseNode {
     private BaseParseNode myParent;
+    private PrettyPrinterContext<?> myOwner;
+    private List<EventSource<?>> myChangeSources = Collections.emptyList();
+    private Registration myRegistration = Registration.EMPTY;
+
+    private BaseParseNode(PrettyPrinterContext<?> owner) {
+      myOwner = owner;
+    }
 
     @Override
     public ParseNode parent() {
       return myParent;
     }
+
+    void shift(int delta) {
+    }
   }
 
   private static class CompositeParseNode extends BaseParseNode {
     private Object myValue;
     private List<ParseNode> myChildren = new ArrayList<ParseNode>();
 
-    private CompositeParseNode(Object value, List<BaseParseNode> children) {
+    private CompositeParseNode(Object value, List<BaseParseNode> children, PrettyPrinterContext<?> owner) {
+      super(owner);
       myValue = value;
       if (children.isEmpty()) throw new IllegalArgumentException();
       for (BaseParseNode n : children) {
@@ -229,7 +369,8 @@ public class PrettyPrinterContext<NodeT>  {
     private int myOffset;
     private Object myValue;
 
-    private EmptyParseNode(Object value, int offset) {
+    private EmptyParseNode(Object value, int offset, PrettyPrinterContext<?> owner) {
+      super(owner);
       myOffset = offset;
       myValue = value;
     }
@@ -249,6 +390,11 @@ public class PrettyPrinterContext<NodeT>  {
       return Range.closed(myOffset, myOffset);
     }
 
+    @Override
+    void shift(int delta) {
+      myOffset += delta;
+    }
+
     @Override
     public String toString() {
       return "empty";
@@ -259,7 +405,8 @@ public class PrettyPrinterContext<NodeT>  {
     private Token myToken;
     private int myOffset;
 
-    private TokenParseNode(Token token, int offset) {
+    private TokenParseNode(Token token, int offset, PrettyPrinterContext<?> owner) {
+      super(owner);
       myToken = token;
       myOffset = offset;
     }
@@ -279,9 +426,14 @@ public class PrettyPrinterContext<NodeT>  {
       return Range.closed(myOffset, myOffset + 1);
     }
 
+    @Override
+    void shift(int delta) {
+      myOffset += delta;
+    }
+
     @Override
     public String toString() {
       return "" + myToken;
     }
   }
-}
\ No newline at end of file
+}
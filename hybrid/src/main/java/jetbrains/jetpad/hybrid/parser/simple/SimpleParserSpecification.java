@@ -19,11 +19,15 @@ import com.google.common.base.Function;
 import com.google.common.base.Predicate;
 import jetbrains.jetpad.base.Handler;
 import jetbrains.jetpad.grammar.*;
+import jetbrains.jetpad.grammar.lr.IncrementalLRParser;
 import jetbrains.jetpad.grammar.lr.LRParser;
 import jetbrains.jetpad.grammar.lr.LRTable;
+import jetbrains.jetpad.grammar.lr.LRTableCache;
+import jetbrains.jetpad.grammar.lr.LRTables;
 import jetbrains.jetpad.grammar.lr.Lexeme;
 import jetbrains.jetpad.grammar.slr.SLRTableGenerator;
 import jetbrains.jetpad.hybrid.parser.*;
+import jetbrains.jetpad.model.children.HasParent;
 
 import java.util.*;
 
@@ -37,6 +41,7 @@ public class SimpleParserSpecification<ExprT> {
   private Terminal myBool = myGrammar.newTerminal("bool");
   private Terminal myError = myGrammar.newTerminal("error");
   private Map<Predicate<Object>, Terminal> myValueTerminals = new HashMap<Predicate<Object>, Terminal>();
+  private LRTableCache myTableCache;
 
   public SimpleParserSpecification() {
     myGrammar.newRule(myGrammar.getStart(), myExpr);
@@ -153,7 +158,36 @@ public class SimpleParserSpecification<ExprT> {
 
   private LRTable buildTable() {
     SLRTableGenerator generator = new SLRTableGenerator(myGrammar);
-    return generator.generateTable();
+    if (myTableCache == null) {
+      return generator.generateTable();
+    }
+    return generator.generateCachedTable(myTableCache);
+  }
+
+  /**
+   * Parser table in a form which can be stored at build time and passed to {@link #preloadTable(String)} at startup
+   */
+  public String saveTable() {
+    return LRTables.save(buildTable());
+  }
+
+  /**
+   * Tables of identical grammars are generated only once for specifications sharing the cache
+   */
+  public SimpleParserSpecification<ExprT> useTableCache(LRTableCache cache) {
+    myTableCache = cache;
+    return this;
+  }
+
+  /**
+   * Should be called when the grammar is complete. Fails if the table was saved for a different grammar.
+   */
+  public SimpleParserSpecification<ExprT> preloadTable(String table) {
+    if (myTableCache == null) {
+      myTableCache = new LRTableCache(1);
+    }
+    myTableCache.put(myGrammar, table);
+    return this;
   }
 
   public Function<ParserParameters, Parser<ExprT>> buildParameterizedParser() {
@@ -161,12 +195,17 @@ public class SimpleParserSpecification<ExprT> {
     return new Function<ParserParameters, Parser<ExprT>>() {
       @Override
       public Parser<ExprT> apply(final ParserParameters parserParameters) {
-        return new Parser<ExprT>() {
+        return new IncrementalParser<ExprT>() {
           @Override
           public ExprT parse(ParsingContext ctx) {
             LRParser parser = new LRParser(table, parserParameters);
             return (ExprT) parser.parse(toLexemes(ctx));
           }
+
+          @Override
+          public Session<ExprT> newSession() {
+            return new IncrementalSession(table, parserParameters);
+          }
         };
       }
     };
@@ -186,6 +225,58 @@ public class SimpleParserSpecification<ExprT> {
     return buildParameterizedParser().apply(ParserParameters.EMPTY);
   }
 
+  private class IncrementalSession implements IncrementalParser.Session<ExprT> {
+    private IncrementalLRParser myParser;
+    private List<Lexeme> myLexemes;
+
+    private IncrementalSession(LRTable table, ParserParameters params) {
+      myParser = new IncrementalLRParser(table, params) {
+        @Override
+        protected void onReuse(Object value) {
+          detach(value);
+        }
+      };
+    }
+
+    @Override
+    public ExprT parse(List<Token> tokens) {
+      List<Lexeme> lexemes = toLexemes(new ParsingContext(tokens));
+      ExprT result = (ExprT) myParser.parse(lexemes);
+      myLexemes = result != null ? lexemes : null;
+      return result;
+    }
+
+    @Override
+    public ExprT parse(List<Token> tokens, int unchangedPrefix, int unchangedSuffix) {
+      if (myLexemes == null) return parse(tokens);
+
+      int prefix = Math.min(unchangedPrefix, Math.min(tokens.size(), myLexemes.size() - 1));
+      int suffix = Math.min(unchangedSuffix, Math.min(tokens.size(), myLexemes.size() - 1) - prefix);
+      List<Lexeme> lexemes = new ArrayList<Lexeme>(tokens.size() + 1);
+      lexemes.addAll(myLexemes.subList(0, prefix));
+      for (Token token : tokens.subList(prefix, tokens.size() - suffix)) {
+        lexemes.add(getLexeme(token));
+      }
+      lexemes.addAll(myLexemes.subList(myLexemes.size() - 1 - suffix, myLexemes.size()));
+
+      ExprT result = (ExprT) myParser.parse(lexemes, prefix, suffix + 1);
+      if (result != null) {
+        myLexemes = lexemes;
+      }
+      return result;
+    }
+
+    private void detach(Object value) {
+      if (value instanceof HasParent) {
+        ((HasParent<?, ?>) value).removeFromParent();
+      } else if (value instanceof Iterable) {
+        for (Object o : (Iterable<?>) value) {
+          detach(o);
+        }
+      }
+    }
+  }
+
   public interface SimpleGrammarContext {
     Grammar grammar();
 
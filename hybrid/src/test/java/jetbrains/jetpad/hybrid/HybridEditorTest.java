@@ -15,14 +15,21 @@
  */
 package jetbrains.jetpad.hybrid;
 
+import com.google.common.base.Function;
 import com.google.common.collect.Range;
+import jetbrains.jetpad.base.Value;
 import jetbrains.jetpad.cell.Cell;
+import jetbrains.jetpad.cell.CellContainerAdapter;
 import jetbrains.jetpad.cell.EditingTestCase;
 import jetbrains.jetpad.cell.HorizontalCell;
 import jetbrains.jetpad.cell.TextCell;
+import jetbrains.jetpad.cell.action.CellAction;
 import jetbrains.jetpad.cell.action.CellActions;
 import jetbrains.jetpad.cell.completion.Completion;
 import jetbrains.jetpad.cell.completion.CompletionController;
+import jetbrains.jetpad.cell.completion.CompletionHelper;
+import jetbrains.jetpad.cell.completion.CompletionParameters;
+import jetbrains.jetpad.cell.completion.CompletionSupplier;
 import jetbrains.jetpad.cell.position.Positions;
 import jetbrains.jetpad.cell.util.CellStateHandler;
 import jetbrains.jetpad.projectional.util.RootController;
@@ -34,11 +41,14 @@ import jetbrains.jetpad.hybrid.testapp.mapper.ExprContainerMapper;
 import jetbrains.jetpad.hybrid.testapp.mapper.Tokens;
 import jetbrains.jetpad.hybrid.testapp.model.*;
 import jetbrains.jetpad.mapper.Mapper;
+import jetbrains.jetpad.model.collections.CollectionItemEvent;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 import static jetbrains.jetpad.hybrid.SelectionPosition.FIRST;
 import static jetbrains.jetpad.hybrid.SelectionPosition.LAST;
@@ -731,10 +741,95 @@ public class HybridEditorTest extends EditingTestCase {
     Assert.assertEquals(1, (int) ((TextCell) sync.tokenCells().get(0)).caretPosition().get());
   }
 
+  @Test
+  public void reprintAddsTokenCellsAtOnce() {
+    final List<Integer> added = new ArrayList<Integer>();
+    myCellContainer.addListener(new CellContainerAdapter() {
+      @Override
+      public void onChildAdded(Cell parent, CollectionItemEvent<Cell> change) {
+        added.add(1);
+      }
+
+      @Override
+      public void onChildrenAdded(Cell parent, int index, List<Cell> children) {
+        added.add(children.size());
+      }
+    });
+
+    PlusExpr plus = new PlusExpr();
+    plus.left.set(new NumberExpr());
+    plus.right.set(new NumberExpr());
+    container.expr.set(plus);
+
+    assertEquals(3, sync.tokenCells().size());
+    assertEquals(Arrays.asList(5), added);
+  }
+
   private void assertTokens(Token... tokens) {
     assertEquals(Arrays.asList(tokens), sync.tokens());
   }
 
+  @Test
+  public void repeatedTokenCompletionReplacesToken() {
+    setTokens(Tokens.ID, Tokens.PLUS);
+    sync.tokenCompletion().tokenCompletion(sync.tokenCells().get(1)).get(CompletionParameters.EMPTY);
+
+    completeFirstMatch(sync.tokenCompletion().tokenCompletion(sync.tokenCells().get(1)), "*");
+
+    assertTokens(Tokens.ID, Tokens.MUL);
+  }
+
+  @Test
+  public void tokenCompletionAfterTokensChangeReplacesTokenAtNewIndex() {
+    setTokens(Tokens.ID, Tokens.PLUS);
+    sync.tokenCompletion().tokenCompletion(sync.tokenCells().get(1)).get(CompletionParameters.EMPTY);
+
+    sync.tokens().add(0, Tokens.ID);
+    completeFirstMatch(sync.tokenCompletion().tokenCompletion(sync.tokenCells().get(2)), "*");
+
+    assertTokens(Tokens.ID, Tokens.ID, Tokens.MUL);
+  }
+
+  @Test
+  public void sideTransformAfterTokenCompletionInsertsToken() {
+    setTokens(Tokens.ID);
+    Cell cell = sync.tokenCells().get(0);
+    sync.tokenCompletion().tokenCompletion(cell).get(CompletionParameters.EMPTY);
+    sync.tokenCompletion().sideTransform(cell, 0).get(CompletionParameters.EMPTY);
+
+    completeFirstMatch(sync.tokenCompletion().sideTransform(cell, 1), "+");
+
+    assertTokens(Tokens.ID, Tokens.PLUS);
+  }
+
+  @Test
+  public void completionItemsCompleteWithOwnHandler() {
+    setTokens(Tokens.ID);
+    final Value<Token> first = new Value<Token>();
+    final Value<Token> second = new Value<Token>();
+
+    CompletionHelper completion = sync.tokenCompletion().completion(tokenHandler(first));
+    sync.tokenCompletion().completion(tokenHandler(second));
+    completion.completeFirstMatch("*");
+
+    Assert.assertSame(Tokens.MUL, first.get());
+    Assert.assertNull(second.get());
+  }
+
+  private void completeFirstMatch(CompletionSupplier supplier, String text) {
+    new CompletionHelper(supplier.get(CompletionParameters.EMPTY)).completeFirstMatch(text);
+  }
+
+  private Function<Token, CellAction> tokenHandler(final Value<Token> result) {
+    return new Function<Token, CellAction>() {
+      @Override
+      public CellAction apply(Token token) {
+        result.set(token);
+        return CellAction.EMPTY;
+      }
+    };
+  }
+
   private void setTokens(Token... tokens) {
     sync.tokens().clear();
     sync.tokens().addAll(Arrays.asList(tokens));
@@ -15,16 +15,27 @@
  */
 package jetbrains.jetpad.hybrid;
 
+import jetbrains.jetpad.base.Handler;
+import jetbrains.jetpad.grammar.*;
+import jetbrains.jetpad.grammar.lr.Lexeme;
+import jetbrains.jetpad.hybrid.parser.simple.BinaryExpressionFactory;
+import jetbrains.jetpad.hybrid.parser.simple.SimpleParserSpecification;
+import jetbrains.jetpad.hybrid.parser.simple.UnaryExpressionFactory;
 import jetbrains.jetpad.hybrid.testapp.mapper.ExprHybridPositionSpec;
 import jetbrains.jetpad.hybrid.testapp.mapper.Tokens;
-import jetbrains.jetpad.hybrid.testapp.model.Expr;
-import jetbrains.jetpad.hybrid.testapp.model.NumberExpr;
-import jetbrains.jetpad.hybrid.testapp.model.PlusExpr;
-import jetbrains.jetpad.hybrid.parser.IntValueToken;
+import jetbrains.jetpad.hybrid.testapp.model.*;
+import jetbrains.jetpad.hybrid.parser.*;
+import jetbrains.jetpad.hybrid.parser.prettyprint.ParseNode;
+import jetbrains.jetpad.hybrid.parser.prettyprint.PrettyPrinterContext;
+import jetbrains.jetpad.model.event.EventHandler;
+import jetbrains.jetpad.model.property.PropertyChangeEvent;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
 
 import static org.junit.Assert.*;
 
@@ -42,6 +53,30 @@ public class TokenListEditorTest {
     assertTrue(editor.valid.get());
   }
 
+  @Test
+  public void reprintReplacesTokensAtOnce() {
+    final List<String> events = new ArrayList<String>();
+    editor.addReplaceListener(new TokenListEditor.ReplaceListener() {
+      @Override
+      public void onReplaceStarted() {
+        events.add("started " + editor.tokens.size());
+      }
+
+      @Override
+      public void onReplaceFinished() {
+        events.add("finished " + editor.tokens.size());
+      }
+    });
+    editor.tokens.add(Tokens.PLUS);
+
+    PlusExpr plus = new PlusExpr();
+    plus.left.set(new NumberExpr());
+    plus.right.set(new NumberExpr());
+    editor.value.set(plus);
+
+    assertEquals(Arrays.asList("started 1", "finished 3"), events);
+  }
+
   @Test
   public void errorParsing() {
     editor.tokens.add(Tokens.PLUS);
@@ -57,4 +92,326 @@ public class TokenListEditorTest {
     assertNotNull(editor.value.get());
     assertTrue(editor.valid.get());
   }
-}
\ No newline at end of file
+
+  @Test
+  public void changeTokensReparsesOnce() {
+    final List<Expr> values = new ArrayList<Expr>();
+    editor.value.addHandler(new EventHandler<PropertyChangeEvent<Expr>>() {
+      @Override
+      public void onEvent(PropertyChangeEvent<Expr> event) {
+        values.add(event.getNewValue());
+      }
+    });
+
+    editor.changeTokens(new Runnable() {
+      @Override
+      public void run() {
+        editor.tokens.add(new IntValueToken(2));
+        editor.tokens.add(Tokens.PLUS);
+        editor.tokens.add(new IntValueToken(3));
+      }
+    });
+
+    assertEquals(1, values.size());
+    assertTrue(values.get(0) instanceof PlusExpr);
+    assertTrue(editor.valid.get());
+  }
+
+  @Test
+  public void changeTokensGivesSameResultAsFullParse() {
+    editor.tokens.addAll(Arrays.asList(new IntValueToken(1), Tokens.PLUS, new IntValueToken(2)));
+    editor.changeTokens(new Runnable() {
+      @Override
+      public void run() {
+        editor.tokens.remove(2);
+        editor.tokens.add(Tokens.PLUS);
+        editor.tokens.add(new IntValueToken(3));
+        editor.tokens.add(2, new IntValueToken(4));
+      }
+    });
+
+    TokenListEditor<Expr> fresh = new TokenListEditor<Expr>(new ExprHybridPositionSpec());
+    fresh.tokens.addAll(new ArrayList<Token>(editor.tokens));
+
+    assertEquals(fresh.valid.get(), editor.valid.get());
+    assertEquals(print(fresh.value.get()), print(editor.value.get()));
+  }
+
+  @Test
+  public void changeTokensToInvalid() {
+    editor.tokens.add(new IntValueToken(1));
+    Expr lastValid = editor.value.get();
+    editor.changeTokens(new Runnable() {
+      @Override
+      public void run() {
+        editor.tokens.add(Tokens.PLUS);
+      }
+    });
+
+    assertSame(lastValid, editor.value.get());
+    assertFalse(editor.valid.get());
+    assertNull(editor.parseNode());
+  }
+
+  @Test
+  public void incrementalReparseReusesUnchangedValues() {
+    final TokenListEditor<Expr> editor = new TokenListEditor<Expr>(new IncrementalExprSpec());
+    setTokens(editor, new IntValueToken(1), Tokens.PLUS, new IntValueToken(2), Tokens.MUL, new IntValueToken(3));
+    PlusExpr oldPlus = (PlusExpr) editor.value.get();
+    NumberExpr one = (NumberExpr) oldPlus.left.get();
+    ParseNode oneNode = editor.parseNode().children().get(0);
+
+    editor.changeTokens(new Runnable() {
+      @Override
+      public void run() {
+        editor.tokens.set(4, new IntValueToken(4));
+      }
+    });
+
+    PlusExpr plus = (PlusExpr) editor.value.get();
+    assertNotSame(oldPlus, plus);
+    assertSame(one, plus.left.get());
+    assertSame(oneNode, editor.parseNode().children().get(0));
+    assertEquals(Arrays.asList(new IntValueToken(1), Tokens.PLUS, new IntValueToken(2), Tokens.MUL, new IntValueToken(4)), editor.tokens);
+  }
+
+  @Test
+  public void reusedValuesKeepChangeHandlers() {
+    TokenListEditor<Expr> editor = new TokenListEditor<Expr>(new IncrementalExprSpec());
+    setTokens(editor, new IntValueToken(1), Tokens.PLUS, new IntValueToken(2));
+    PlusExpr oldPlus = (PlusExpr) editor.value.get();
+    NumberExpr one = (NumberExpr) oldPlus.left.get();
+
+    editor.tokens.add(Tokens.MUL);
+    editor.tokens.add(new IntValueToken(3));
+    one.value.set(5);
+
+    assertEquals(Arrays.asList(new IntValueToken(5), Tokens.PLUS, new IntValueToken(2), Tokens.MUL, new IntValueToken(3)), editor.tokens);
+
+    oldPlus.right.set(new NumberExpr());
+    assertEquals(5, editor.tokens.size());
+  }
+
+  @Test
+  public void incrementalReparseGivesSameResultAsFullParse() {
+    Random random = new Random(239);
+    TokenListEditor<Expr> editor = new TokenListEditor<Expr>(new IncrementalExprSpec());
+    setTokens(editor, new IntValueToken(1));
+    Token removed = null;
+    int removedIndex = 0;
+    for (int i = 0; i < 2000; i++) {
+      if (removed != null) {
+        editor.tokens.add(removedIndex, removed);
+        removed = null;
+      } else if (random.nextInt(5) == 0 && editor.tokens.size() > 1) {
+        removedIndex = random.nextInt(editor.tokens.size());
+        removed = editor.tokens.remove(removedIndex);
+      } else {
+        randomEdit(random, editor);
+      }
+
+      Expr expected = new IncrementalExprSpec().getParser().parse(new ParsingContext(editor.tokens));
+      assertEquals("" + editor.tokens, expected != null, editor.valid.get());
+      if (expected == null) continue;
+
+      assertEquals(print(expected), editor.tokens);
+      assertEquals(signature(printContext(expected).result()), signature(editor.parseNode()));
+      assertEquals(signature(printContext(editor.value.get()).result()), signature(editor.parseNode()));
+    }
+  }
+
+  /**
+   * Makes an edit which keeps a valid token list valid
+   */
+  private void randomEdit(Random random, final TokenListEditor<Expr> editor) {
+    final List<Token> tokens = editor.tokens;
+    List<Integer> operands = new ArrayList<Integer>();
+    for (int i = 0; i < tokens.size(); i++) {
+      if (isOperand(tokens.get(i))) {
+        operands.add(i);
+      }
+    }
+    final int index = operands.get(random.nextInt(operands.size()));
+    final Token operand = randomOperand(random);
+
+    switch (tokens.size() > 40 ? 4 : random.nextInt(5)) {
+      case 0:
+        editor.changeTokens(new Runnable() {
+          @Override
+          public void run() {
+            tokens.set(index, operand);
+          }
+        });
+        break;
+      case 1:
+        final Token operator = random.nextBoolean() ? Tokens.PLUS : Tokens.MUL;
+        editor.changeTokens(new Runnable() {
+          @Override
+          public void run() {
+            tokens.add(index + 1, operand);
+            tokens.add(index + 1, operator);
+          }
+        });
+        break;
+      case 2:
+        editor.changeTokens(new Runnable() {
+          @Override
+          public void run() {
+            tokens.add(index + 1, Tokens.RP);
+            tokens.add(index, Tokens.LP);
+          }
+        });
+        break;
+      case 3:
+        tokens.add(index + 1, Tokens.INCREMENT);
+        break;
+      default:
+        if (index > 0 && (tokens.get(index - 1) == Tokens.PLUS || tokens.get(index - 1) == Tokens.MUL)) {
+          editor.changeTokens(new Runnable() {
+            @Override
+            public void run() {
+              tokens.remove(index);
+              tokens.remove(index - 1);
+            }
+          });
+        } else if (index + 1 < tokens.size() && tokens.get(index + 1) == Tokens.INCREMENT) {
+          tokens.remove(index + 1);
+        } else if (tokens.size() > 40) {
+          editor.changeTokens(new Runnable() {
+            @Override
+            public void run() {
+              tokens.clear();
+              tokens.add(operand);
+            }
+          });
+        }
+    }
+  }
+
+  private boolean isOperand(Token token) {
+    return token == Tokens.ID || token instanceof IntValueToken || token instanceof IdentifierToken;
+  }
+
+  private Token randomOperand(Random random) {
+    switch (random.nextInt(3)) {
+      case 0:
+        return Tokens.ID;
+      case 1:
+        return new IntValueToken(random.nextInt(10));
+      default:
+        return new IdentifierToken("" + (char) ('a' + random.nextInt(26)));
+    }
+  }
+
+  private String signature(ParseNode node) {
+    StringBuilder result = new StringBuilder();
+    if (node.value() instanceof Token) {
+      result.append(node.value());
+    } else {
+      result.append(node.value().getClass().getSimpleName());
+    }
+    result.append(node.range());
+    for (ParseNode child : node.children()) {
+      assertSame(node, child.parent());
+      result.append(" ").append(signature(child));
+    }
+    return "(" + result + ")";
+  }
+
+  private void setTokens(final TokenListEditor<Expr> editor, final Token... tokens) {
+    editor.changeTokens(new Runnable() {
+      @Override
+      public void run() {
+        editor.tokens.addAll(Arrays.asList(tokens));
+      }
+    });
+  }
+
+  private List<Token> print(Expr expr) {
+    return printContext(expr).tokens();
+  }
+
+  private PrettyPrinterContext<Expr> printContext(Expr expr) {
+    PrettyPrinterContext<Expr> ctx = new PrettyPrinterContext<Expr>(new ExprHybridPositionSpec().getPrettyPrinter());
+    ctx.print(expr);
+    return ctx;
+  }
+
+  private static class IncrementalExprSpec extends ExprHybridPositionSpec {
+    private static final Parser<Expr> PARSER = createParser();
+
+    private static Parser<Expr> createParser() {
+      SimpleParserSpecification<Expr> spec = new SimpleParserSpecification<Expr>();
+      spec.addBinaryOperator(Tokens.PLUS, new BinaryExpressionFactory<Expr>() {
+        @Override
+        public Expr create(ParserParameters params, Expr left, Expr right) {
+          PlusExpr result = new PlusExpr();
+          result.left.set(left);
+          result.right.set(right);
+          return result;
+        }
+      }, 0, true);
+      spec.addBinaryOperator(Tokens.MUL, new BinaryExpressionFactory<Expr>() {
+        @Override
+        public Expr create(ParserParameters params, Expr left, Expr right) {
+          MulExpr result = new MulExpr();
+          result.left.set(left);
+          result.right.set(right);
+          return result;
+        }
+      }, 1, true);
+      spec.addSuffix(Tokens.INCREMENT, new UnaryExpressionFactory<Expr>() {
+        @Override
+        public Expr create(ParserParameters params, Expr expr) {
+          PostfixIncrementExpr result = new PostfixIncrementExpr();
+          result.expr.set(expr);
+          return result;
+        }
+      }, 2);
+      spec.changeGrammar(new Handler<SimpleParserSpecification.SimpleGrammarContext>() {
+        @Override
+        public void handle(SimpleParserSpecification.SimpleGrammarContext ctx) {
+          Grammar g = ctx.grammar();
+          NonTerminal expr = ctx.expr();
+
+          g.newRule(expr, ctx.number()).setHandler(new RuleHandler() {
+            @Override
+            public Object handle(RuleContext ctx) {
+              NumberExpr result = new NumberExpr();
+              result.value.set(((IntValueToken) ((Lexeme) ctx.get(0)).getValue()).getValue());
+              return result;
+            }
+          });
+          g.newRule(expr, ctx.id()).setHandler(new RuleHandler() {
+            @Override
+            public Object handle(RuleContext ctx) {
+              VarExpr result = new VarExpr();
+              result.name.set(((IdentifierToken) ((Lexeme) ctx.get(0)).getValue()).getName());
+              return result;
+            }
+          });
+          g.newRule(expr, ctx.terminal(Tokens.ID)).setHandler(new RuleHandler() {
+            @Override
+            public Object handle(RuleContext ctx) {
+              return new IdExpr();
+            }
+          });
+          g.newRule(expr, ctx.terminal(Tokens.LP), expr, ctx.terminal(Tokens.RP)).setHandler(new RuleHandler() {
+            @Override
+            public Object handle(RuleContext ctx) {
+              ParenExpr result = new ParenExpr();
+              result.expr.set((Expr) ctx.get(1));
+              return result;
+            }
+          });
+        }
+      });
+      return spec.buildParser();
+    }
+
+    @Override
+    public Parser<Expr> getParser() {
+      return PARSER;
+    }
+  }
+}
@@ -31,6 +31,7 @@ import jetbrains.jetpad.cell.completion.Completion;
 import jetbrains.jetpad.cell.completion.CompletionItem;
 import jetbrains.jetpad.cell.completion.CompletionParameters;
 import jetbrains.jetpad.cell.completion.CompletionSupplier;
+import jetbrains.jetpad.cell.completion.CompletionSupport;
 import jetbrains.jetpad.cell.indent.IndentCell;
 import jetbrains.jetpad.cell.position.Positions;
 import jetbrains.jetpad.cell.text.TextEditing;
@@ -43,6 +44,8 @@ import jetbrains.jetpad.cell.util.Validators;
 import java.util.*;
 
 abstract class BaseProjectionalSynchronizer<SourceT, ContextT, SourceItemT> implements ProjectionalRoleSynchronizer<ContextT, SourceItemT> {
+  static final CellTrait[] COMPLETION_BASE = { CompletionSupport.trait() };
+
   private RoleSynchronizer<SourceItemT, Cell> myRoleSynchronizer;
   private SelectionSupport<SourceItemT> mySelectionSupport;
   private ObservableList<SourceItemT> mySelectedItems = new ObservableArrayList<SourceItemT>();
@@ -99,6 +102,14 @@ abstract class BaseProjectionalSynchronizer<SourceT, ContextT, SourceItemT> impl
 
   protected abstract CellAction insertItems(List<SourceItemT> items);
 
+  /**
+   * Child cells which are added at consecutive positions while r runs, e.g. for items added with addAll,
+   * are inserted into the target with one addAll.
+   */
+  protected void batchChildAdditions(Runnable r) {
+    myTargetCellList.batchAdditions(r);
+  }
+
   protected CellAction insertItem(SourceItemT item) {
     return insertItems(Arrays.asList(item));
   }
@@ -218,12 +229,17 @@ abstract class BaseProjectionalSynchronizer<SourceT, ContextT, SourceItemT> impl
   }
 
   @Override
-  public void attach(SynchronizerContext ctx) {
+  public void attach(final SynchronizerContext ctx) {
     myTargetCellList.initList();
 
     initChildViews();
 
-    myRoleSynchronizer.attach(ctx);
+    batchChildAdditions(new Runnable() {
+      @Override
+      public void run() {
+        myRoleSynchronizer.attach(ctx);
+      }
+    });
 
     myTarget.addTrait(new BaseCellTrait() {
       @Override
@@ -428,6 +444,8 @@ abstract class BaseProjectionalSynchronizer<SourceT, ContextT, SourceItemT> impl
 
   private class TargetViewList extends AbstractList<Cell> {
     private boolean myHasPlaceholder;
+    private List<Cell> myPendingCells;
+    private int myPendingIndex;
 
     private TargetViewList() {
     }
@@ -440,9 +458,11 @@ abstract class BaseProjectionalSynchronizer<SourceT, ContextT, SourceItemT> impl
     private Cell createPlaceholder() {
       TextCell placeHolder = new TextCell();
       placeHolder.addTrait(new BaseCellTrait() {
+        private final CellTrait[] myBaseTraits = { TextEditing.validTextEditing(Validators.equalsTo("")) };
+
         @Override
         protected CellTrait[] getBaseTraits(Cell cell) {
-          return new CellTrait[] { TextEditing.validTextEditing(Validators.equalsTo("")) };
+          return myBaseTraits;
         }
 
         @Override
@@ -472,7 +492,35 @@ abstract class BaseProjectionalSynchronizer<SourceT, ContextT, SourceItemT> impl
       }
     }
 
+    void batchAdditions(Runnable r) {
+      if (myPendingCells != null) {
+        r.run();
+        return;
+      }
+
+      myPendingCells = new ArrayList<Cell>();
+      try {
+        r.run();
+      } finally {
+        flushAdditions();
+        myPendingCells = null;
+      }
+    }
+
+    private void flushAdditions() {
+      if (myPendingCells == null || myPendingCells.isEmpty()) return;
+
+      List<Cell> cells = myPendingCells;
+      myPendingCells = new ArrayList<Cell>();
+      if (myHasPlaceholder) {
+        getList().remove(0);
+        myHasPlaceholder = false;
+      }
+      getList().addAll(myPendingIndex, cells);
+    }
+
     private TextCell getPlaceHolder() {
+      flushAdditions();
       if (!myHasPlaceholder) return null;
       return (TextCell) getList().get(0).children().get(0);
     }
@@ -483,29 +531,42 @@ abstract class BaseProjectionalSynchronizer<SourceT, ContextT, SourceItemT> impl
 
     @Override
     public Cell get(int index) {
+      flushAdditions();
       if (myHasPlaceholder) throw new IndexOutOfBoundsException();
       return getList().get(index);
     }
 
     @Override
     public int size() {
+      flushAdditions();
       if (myHasPlaceholder) return 0;
       return getList().size();
     }
 
     @Override
     public void add(int index, Cell element) {
-      if (myHasPlaceholder) {
-        getList().remove(0);
-        myHasPlaceholder = false;
+      if (myPendingCells != null) {
+        if (!myPendingCells.isEmpty() && index != myPendingIndex + myPendingCells.size()) {
+          flushAdditions();
+        }
+        if (myPendingCells.isEmpty()) {
+          myPendingIndex = index;
+        }
+        myPendingCells.add(element);
+      } else {
+        if (myHasPlaceholder) {
+          getList().remove(0);
+          myHasPlaceholder = false;
+        }
+        getList().add(index, element);
       }
-      getList().add(index, element);
 
       registerChild(getSubMappers().get(index).getSource(), element);
     }
 
     @Override
     public Cell remove(int index) {
+      flushAdditions();
       Cell result = getList().remove(index);
       if (getList().isEmpty()) {
         getList().add(createPlaceholder());
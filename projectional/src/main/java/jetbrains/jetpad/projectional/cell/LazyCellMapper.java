@@ -0,0 +1,132 @@
+/*
+ * Copyright 2012-2013 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.projectional.cell;
+
+import jetbrains.jetpad.cell.Cell;
+import jetbrains.jetpad.cell.HorizontalCell;
+import jetbrains.jetpad.cell.TextCell;
+import jetbrains.jetpad.cell.action.CellActions;
+import jetbrains.jetpad.cell.event.FocusEvent;
+import jetbrains.jetpad.cell.trait.BaseCellTrait;
+import jetbrains.jetpad.cell.trait.CellTraitEventSpec;
+import jetbrains.jetpad.cell.trait.CellTraitPropertySpec;
+import jetbrains.jetpad.cell.util.Cells;
+import jetbrains.jetpad.event.Event;
+import jetbrains.jetpad.mapper.Mapper;
+import jetbrains.jetpad.mapper.MapperFactory;
+import jetbrains.jetpad.model.property.Property;
+
+/**
+ * Projects an item into a placeholder until it's needed. The real mapper is created when the item becomes visible
+ * in a virtualized container, when the placeholder is focused (e.g. by navigation) or when ON_CREATE is requested.
+ * The target is a wrapper which stays the same, so that role synchronizers don't notice the replacement.
+ * The placeholder is hidden rather than removed since it might be focused by a navigation which is in progress.
+ * The wrapper mapper isn't findable, so getDescendantMapper(item) returns the real mapper once it's created.
+ * Until then the wrapper reports itself as a {@link Cells#PLACEHOLDER}, so that its size isn't used to estimate
+ * sizes of other items.
+ */
+class LazyCellMapper<SourceT> extends Mapper<SourceT, HorizontalCell> {
+  static final String PLACEHOLDER_TEXT = "...";
+
+  private MapperFactory<SourceT, Cell> myFactory;
+  private Property<Mapper<?, ? extends Cell>> myContent;
+  private TextCell myPlaceholder = new TextCell();
+
+  LazyCellMapper(SourceT source, MapperFactory<SourceT, Cell> factory) {
+    super(source, new HorizontalCell());
+    myFactory = factory;
+    myContent = createChildProperty();
+
+    myPlaceholder.text().set(PLACEHOLDER_TEXT);
+    myPlaceholder.focusable().set(true);
+    myPlaceholder.addTrait(new BaseCellTrait() {
+      @Override
+      public void onFocusGained(final Cell cell, FocusEvent event) {
+        super.onFocusGained(cell, event);
+        materialize();
+        if (!isMaterialized()) return;
+
+        //when focus comes from below, e.g. with Left, Up or Shift+Tab, it goes to the end of the content
+        Cell from = event.getOldValue();
+        final boolean fromBelow = from != null && Cells.isBefore(cell, from);
+        //focus can't be moved while it's being changed, so we wait until the focus change is complete
+        cell.container().afterFocusChange(new Runnable() {
+          @Override
+          public void run() {
+            if (cell.focused().get() && isMaterialized()) {
+              if (fromBelow) {
+                CellActions.toLastFocusable(content()).execute();
+              } else {
+                CellActions.toFirstFocusable(content()).execute();
+              }
+            }
+          }
+        });
+      }
+    });
+    getTarget().children().add(myPlaceholder);
+
+    getTarget().addTrait(new BaseCellTrait() {
+      @Override
+      public Object get(Cell cell, CellTraitPropertySpec<?> spec) {
+        if (spec == ProjectionalSynchronizers.ON_CREATE) {
+          materialize();
+        }
+        if (spec == Cells.PLACEHOLDER) {
+          return !isMaterialized();
+        }
+        if (isMaterialized()) {
+          Object result = content().getRaw(spec);
+          if (result != null) return result;
+        }
+        return super.get(cell, spec);
+      }
+
+      @Override
+      public void onViewTraitEvent(Cell cell, CellTraitEventSpec<?> spec, Event event) {
+        if (spec == Cells.BECAME_VISIBLE) {
+          materialize();
+          event.consume();
+          return;
+        }
+        super.onViewTraitEvent(cell, spec, event);
+      }
+    });
+  }
+
+  @Override
+  protected boolean isFindable() {
+    return false;
+  }
+
+  boolean isMaterialized() {
+    return myContent.get() != null;
+  }
+
+  void materialize() {
+    if (isMaterialized() || !isAttached()) return;
+
+    Mapper<? extends SourceT, ? extends Cell> mapper = myFactory.createMapper(getSource());
+    myContent.set(mapper);
+    getTarget().children().add(0, mapper.getTarget());
+    myPlaceholder.focusable().set(false);
+    myPlaceholder.visible().set(false);
+  }
+
+  private Cell content() {
+    return myContent.get().getTarget();
+  }
+}
@@ -60,7 +60,7 @@ class ProjectionalObservableListSynchronizer<ContextT, SourceItemT> extends Base
       @Override
       protected CellTrait[] getBaseTraits(Cell cell) {
         if (!(cell instanceof TextCell)) {
-          return new CellTrait[] { CompletionSupport.trait() };
+          return BaseProjectionalSynchronizer.COMPLETION_BASE;
         }
         return super.getBaseTraits(cell);
       }
@@ -172,22 +172,31 @@ class ProjectionalObservableListSynchronizer<ContextT, SourceItemT> extends Base
   protected CellAction insertItems(List<SourceItemT> items) {
     int index = childCells().indexOf(currentCell());
     if (index == -1) {
-      mySource.addAll(items);
+      addAll(mySource.size(), items);
       return selectOnCreation(items.size() - 1);
     }
 
     if (Positions.isHomePosition(currentCell())) {
-      mySource.addAll(index, items);
+      addAll(index, items);
       if (!isEmpty(index)) {
         return selectOnCreation(index);
       }
       return CellAction.EMPTY;
     } else {
-      mySource.addAll(index + 1, items);
+      addAll(index + 1, items);
       return selectOnCreation(index + items.size());
     }
   }
 
+  private void addAll(final int index, final List<SourceItemT> items) {
+    batchChildAdditions(new Runnable() {
+      @Override
+      public void run() {
+        mySource.addAll(index, items);
+      }
+    });
+  }
+
   @Override
   protected void clear(List<SourceItemT> items) {
     int firstIndex = mySource.indexOf(items.get(0));
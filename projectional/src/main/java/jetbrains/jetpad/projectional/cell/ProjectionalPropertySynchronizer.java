@@ -66,7 +66,7 @@ class ProjectionalPropertySynchronizer<ContextT, SourceItemT extends ContextT> e
       @Override
       protected CellTrait[] getBaseTraits(Cell cell) {
         if (!(cell instanceof TextCell)) {
-          return new CellTrait[] { CompletionSupport.trait() };
+          return BaseProjectionalSynchronizer.COMPLETION_BASE;
         }
         return super.getBaseTraits(cell);
       }
@@ -24,6 +24,7 @@ import jetbrains.jetpad.event.Key;
 import jetbrains.jetpad.event.KeyEvent;
 import jetbrains.jetpad.event.ModifierKey;
 import jetbrains.jetpad.cell.Cell;
+import jetbrains.jetpad.cell.VerticalCell;
 import jetbrains.jetpad.cell.trait.CellTraitPropertySpec;
 import jetbrains.jetpad.cell.action.CellAction;
 import jetbrains.jetpad.cell.action.CellActions;
@@ -54,6 +55,24 @@ public class ProjectionalSynchronizers {
     return new ProjectionalObservableListSynchronizer<ContextT, SourceT>(mapper, source, target, targetList, factory);
   }
 
+  /**
+   * Like {@link #forRole}, but items are projected into placeholders which are replaced with real cells when they
+   * become visible, focused or are reached by navigation. The target is virtualized, so that only items near
+   * the visible area are projected when a large list is opened.
+   */
+  public static <ContextT, SourceT> ProjectionalRoleSynchronizer<ContextT, SourceT> forLazyRole(
+      Mapper<? extends ContextT, ? extends Cell> mapper,
+      ObservableList<SourceT> source, VerticalCell target,
+      final MapperFactory<SourceT, Cell> factory) {
+    target.virtualized().set(true);
+    return forRole(mapper, source, target, target.children(), new MapperFactory<SourceT, Cell>() {
+      @Override
+      public Mapper<? extends SourceT, ? extends Cell> createMapper(SourceT source) {
+        return new LazyCellMapper<SourceT>(source, factory);
+      }
+    });
+  }
+
   public static <ContextT, SourceT extends ContextT> ProjectionalRoleSynchronizer<ContextT, SourceT> forSingleRole(
       Mapper<? extends ContextT, ? extends Cell> mapper,
       Property<SourceT> source, Cell target, MapperFactory<SourceT, Cell> factory) {
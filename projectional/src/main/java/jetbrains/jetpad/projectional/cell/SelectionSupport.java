@@ -20,6 +20,7 @@ import jetbrains.jetpad.model.collections.list.ObservableArrayList;
 import jetbrains.jetpad.model.collections.list.ObservableList;
 import jetbrains.jetpad.event.Key;
 import jetbrains.jetpad.event.KeyEvent;
+import jetbrains.jetpad.event.KeyMap;
 import jetbrains.jetpad.event.ModifierKey;
 import jetbrains.jetpad.cell.*;
 import jetbrains.jetpad.cell.action.CellAction;
@@ -33,6 +34,11 @@ import java.util.List;
 
 public class SelectionSupport<ItemT> {
   private static final CellTraitPropertySpec<SelectionSupport<?>> SELECTION_SUPPORT = new CellTraitPropertySpec<SelectionSupport<?>>("selectionSupport");
+  private static final KeyMap<Boolean> EXTEND_FORWARD = new KeyMap<Boolean>()
+    .bind(true, Key.DOWN, ModifierKey.SHIFT)
+    .bind(true, Key.RIGHT, ModifierKey.SHIFT)
+    .bind(false, Key.UP, ModifierKey.SHIFT)
+    .bind(false, Key.LEFT, ModifierKey.SHIFT);
 
   private ObservableList<ItemT> mySelectedItems = new ObservableArrayList<ItemT>();
   private boolean myChangingSelection;
@@ -144,7 +150,10 @@ public class SelectionSupport<ItemT> {
   }
 
   private void handleTargetKeyPress(final KeyEvent event) {
-    if (event.is(Key.DOWN, ModifierKey.SHIFT) || event.is(Key.RIGHT, ModifierKey.SHIFT)) {
+    Boolean forward = EXTEND_FORWARD.get(event);
+    if (forward == null) return;
+
+    if (forward) {
       runSelectionAction(new Runnable() {
         @Override
         public void run() {
@@ -190,9 +199,7 @@ public class SelectionSupport<ItemT> {
           event.consume();
         }
       });
-    }
-
-    if (event.is(Key.UP, ModifierKey.SHIFT) || event.is(Key.LEFT, ModifierKey.SHIFT)) {
+    } else {
       runSelectionAction(new Runnable() {
         @Override
         public void run() {
@@ -18,6 +18,7 @@ package jetbrains.jetpad.projectional.generic;
 import jetbrains.jetpad.base.Value;
 import jetbrains.jetpad.event.Key;
 import jetbrains.jetpad.event.KeyEvent;
+import jetbrains.jetpad.event.KeyMap;
 import jetbrains.jetpad.event.ModifierKey;
 import jetbrains.jetpad.event.MouseEvent;
 import jetbrains.jetpad.model.composite.*;
@@ -30,6 +31,24 @@ import java.util.Stack;
 import static jetbrains.jetpad.model.composite.Composites.*;
 
 public abstract class NavigationController<ViewT extends Composite<ViewT> & HasFocusability & HasBounds & HasVisibility> {
+  private static final KeyMap<NavigationAction> NAVIGATION_KEYS = new KeyMap<NavigationAction>()
+    .bind(NavigationAction.NEXT, Key.RIGHT)
+    .bind(NavigationAction.NEXT, Key.TAB)
+    .bind(NavigationAction.NEXT_TO_END, Key.RIGHT, ModifierKey.ALT)
+    .bind(NavigationAction.NEXT_TO_END, Key.RIGHT, ModifierKey.CONTROL)
+    .bind(NavigationAction.PREV, Key.LEFT)
+    .bind(NavigationAction.PREV, Key.TAB, ModifierKey.SHIFT)
+    .bind(NavigationAction.PREV_TO_HOME, Key.LEFT, ModifierKey.ALT)
+    .bind(NavigationAction.PREV_TO_HOME, Key.LEFT, ModifierKey.CONTROL)
+    .bind(NavigationAction.UP, Key.UP)
+    .bind(NavigationAction.DOWN, Key.DOWN)
+    .bind(NavigationAction.HOME, Key.HOME)
+    .bind(NavigationAction.HOME, Key.LEFT, ModifierKey.META)
+    .bind(NavigationAction.END, Key.END)
+    .bind(NavigationAction.END, Key.RIGHT, ModifierKey.META)
+    .bind(NavigationAction.PARENT, Key.UP, ModifierKey.ALT)
+    .bind(NavigationAction.CHILD, Key.DOWN, ModifierKey.ALT);
+
   private Value<Integer> myPrevXOffset = new Value<Integer>(null);
   private Value<Boolean> myStackResetEnabled = new Value<Boolean>(true);
   private Stack<ViewT> mySelectionStack = new Stack<ViewT>();
@@ -79,10 +98,13 @@ public abstract class NavigationController<ViewT extends Composite<ViewT> & HasF
   }
 
   protected void handleKeyPress(KeyEvent event) {
+    NavigationAction action = NAVIGATION_KEYS.get(event);
+    if (action == null) return;
+
     ViewT current = focusedView().get();
     Integer currentOffset = null;
 
-    if (event.is(Key.UP) || event.is(Key.DOWN)) {
+    if (action == NavigationAction.UP || action == NavigationAction.DOWN) {
       currentOffset = myPrevXOffset.get();
       if (currentOffset == null) {
         currentOffset = selectedXOffset();
@@ -92,45 +114,57 @@ public abstract class NavigationController<ViewT extends Composite<ViewT> & HasF
     ViewT next = null;
     boolean restoreOffset = false;
 
-    if (event.is(Key.RIGHT) || event.is(Key.TAB)) {
-      next = nextFocusable(current);
-      moveToHome(next);
-    } else if (event.is(Key.RIGHT, ModifierKey.ALT) || event.is(Key.RIGHT, ModifierKey.CONTROL)) {
-      next = nextFocusable(current);
-      moveToEnd(next);
-    } else if (event.is(Key.LEFT) || event.is(Key.TAB, ModifierKey.SHIFT)) {
-      next = prevFocusable(current);
-      moveToEnd(next);
-    } else if (event.is(Key.LEFT, ModifierKey.ALT) || event.is(Key.LEFT, ModifierKey.CONTROL)) {
-      next = prevFocusable(current);
-      moveToHome(next);
-    } else if (event.is(Key.UP)) {
-      next = upperFocusable(current, currentOffset);
-      restoreOffset = true;
-    } else if (event.is(Key.DOWN)) {
-      next = lowerFocusable(current, currentOffset);
-      restoreOffset = true;
-    } else if (event.is(Key.HOME) || event.is(Key.LEFT, ModifierKey.META)) {
-      next = Composites.homeElement(current);
-      moveToHome(next);
-    } else if (event.is(Key.END) || event.is(Key.RIGHT, ModifierKey.META)) {
-      next = Composites.endElement(current);
-      moveToEnd(next);
-    } else if (event.is(Key.UP, ModifierKey.ALT)) {
-      ViewT focusableParent = Composites.focusableParent(current);
-      if (focusableParent != null) {
-        mySelectionStack.push(current);
-        next = focusableParent;
+    switch (action) {
+      case NEXT:
+        next = nextFocusable(current);
+        moveToHome(next);
+        break;
+      case NEXT_TO_END:
+        next = nextFocusable(current);
+        moveToEnd(next);
+        break;
+      case PREV:
+        next = prevFocusable(current);
+        moveToEnd(next);
+        break;
+      case PREV_TO_HOME:
+        next = prevFocusable(current);
+        moveToHome(next);
+        break;
+      case UP:
+        next = upperFocusable(current, currentOffset);
+        restoreOffset = true;
+        break;
+      case DOWN:
+        next = lowerFocusable(current, currentOffset);
+        restoreOffset = true;
+        break;
+      case HOME:
+        next = Composites.homeElement(current);
+        moveToHome(next);
+        break;
+      case END:
+        next = Composites.endElement(current);
+        moveToEnd(next);
+        break;
+      case PARENT:
+        ViewT focusableParent = Composites.focusableParent(current);
+        if (focusableParent != null) {
+          mySelectionStack.push(current);
+          next = focusableParent;
+          myStackResetEnabled.set(false);
+        }
+        break;
+      case CHILD:
+        if (mySelectionStack.isEmpty()) {
+          next = Composites.firstFocusable(current, false);
+        } else {
+          next = mySelectionStack.pop();
+        }
         myStackResetEnabled.set(false);
-      }
-    } else if (event.is(Key.DOWN, ModifierKey.ALT)) {
-      if (mySelectionStack.isEmpty()) {
-        next = Composites.firstFocusable(current, false);
-      } else {
-        next = mySelectionStack.pop();
-      }
-      myStackResetEnabled.set(false);
+        break;
     }
+
     if (next != null) {
       focusedView().set(next);
       scrollTo(next);
@@ -152,4 +186,8 @@ public abstract class NavigationController<ViewT extends Composite<ViewT> & HasF
   private ReadableProperty<Integer> selectedCaretOffset() {
     return Properties.select(focusedView(), caretPositionSelector());
   }
-}
\ No newline at end of file
+
+  private enum NavigationAction {
+    NEXT, NEXT_TO_END, PREV, PREV_TO_HOME, UP, DOWN, HOME, END, PARENT, CHILD
+  }
+}
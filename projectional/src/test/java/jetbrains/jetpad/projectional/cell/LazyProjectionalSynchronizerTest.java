@@ -0,0 +1,235 @@
+/*
+ * Copyright 2012-2013 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.projectional.cell;
+
+import com.google.common.base.Supplier;
+import jetbrains.jetpad.cell.*;
+import jetbrains.jetpad.cell.action.CellActions;
+import jetbrains.jetpad.cell.util.Cells;
+import jetbrains.jetpad.cell.view.MapperCell2View;
+import jetbrains.jetpad.event.Event;
+import jetbrains.jetpad.event.Key;
+import jetbrains.jetpad.event.KeyEvent;
+import jetbrains.jetpad.event.ModifierKey;
+import jetbrains.jetpad.geometry.Rectangle;
+import jetbrains.jetpad.mapper.Mapper;
+import jetbrains.jetpad.mapper.MapperFactory;
+import jetbrains.jetpad.model.collections.list.ObservableArrayList;
+import jetbrains.jetpad.model.collections.list.ObservableList;
+import jetbrains.jetpad.projectional.util.RootController;
+import jetbrains.jetpad.projectional.view.ViewContainer;
+import jetbrains.jetpad.projectional.view.spi.NullViewContainerPeer;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class LazyProjectionalSynchronizerTest {
+  private static final int ITEMS = 1000;
+
+  private ObservableList<Item> items = new ObservableArrayList<Item>();
+  private CellContainer cellContainer = new CellContainer();
+  private ViewContainer viewContainer = new ViewContainer();
+  private ContainerMapper rootMapper;
+  private int created;
+
+  @Before
+  public void init() {
+    for (int i = 0; i < ITEMS; i++) {
+      items.add(new Item("item" + i));
+    }
+
+    viewContainer.setPeer(new NullViewContainerPeer() {
+      @Override
+      public Rectangle visibleRect() {
+        return new Rectangle(0, 0, 400, 300);
+      }
+    });
+
+    rootMapper = new ContainerMapper(items);
+    rootMapper.attachRoot();
+    cellContainer.root.children().add(rootMapper.getTarget());
+    MapperCell2View.map(cellContainer, viewContainer);
+
+    RootController.install(cellContainer);
+  }
+
+  @Test
+  public void itemsNotProjectedInitially() {
+    assertEquals(0, created);
+    assertEquals(ITEMS, rootMapper.getTarget().children().size());
+    assertEquals(LazyCellMapper.PLACEHOLDER_TEXT, text(0));
+  }
+
+  @Test
+  public void visibleItemsProjected() {
+    viewContainer.root().validate();
+
+    assertTrue(created > 0);
+    assertTrue(created < ITEMS / 4);
+    assertEquals("item0", text(0));
+    assertEquals(LazyCellMapper.PLACEHOLDER_TEXT, text(ITEMS - 1));
+  }
+
+  @Test
+  public void becomingVisibleProjects() {
+    childCell(500).dispatch(new Event(), Cells.BECAME_VISIBLE);
+
+    assertEquals(1, created);
+    assertEquals("item500", text(500));
+  }
+
+  @Test
+  public void focusProjects() {
+    CellActions.toFirstFocusable(childCell(500)).execute();
+
+    assertEquals(1, created);
+    assertFocusedText("item500");
+  }
+
+  @Test
+  public void navigationProjects() {
+    viewContainer.root().validate();
+    CellActions.toFirstFocusable(rootMapper.getTarget()).execute();
+    int visible = created;
+
+    for (int i = 0; i < visible + 10; i++) {
+      press(Key.TAB);
+    }
+
+    assertFocusedText("item" + (visible + 10));
+    assertEquals(LazyCellMapper.PLACEHOLDER_TEXT, text(ITEMS - 1));
+  }
+
+  @Test
+  public void focusLeavesPlaceholder() {
+    Cell placeholder = childCell(500).children().get(0);
+    CellActions.toFirstFocusable(childCell(500)).execute();
+
+    assertFalse(placeholder.focused().get());
+    assertTrue(cellContainer.focusedCell.get().focused().get());
+  }
+
+  @Test
+  public void focusFromBelowGoesToEnd() {
+    childCell(501).dispatch(new Event(), Cells.BECAME_VISIBLE);
+    CellActions.toFirstFocusable(childCell(501)).execute();
+
+    press(Key.LEFT);
+
+    assertFocusedText("item500");
+    assertEquals(7, (int) ((TextCell) cellContainer.focusedCell.get()).caretPosition().get());
+  }
+
+  @Test
+  public void descendantMapperIsRealMapper() {
+    Item item = items.get(500);
+    assertNull(rootMapper.getDescendantMapper(item));
+
+    childCell(500).dispatch(new Event(), Cells.BECAME_VISIBLE);
+
+    assertTrue(rootMapper.getDescendantMapper(item) instanceof ItemMapper);
+  }
+
+  @Test
+  public void placeholderUntilProjected() {
+    assertTrue(childCell(500).get(Cells.PLACEHOLDER));
+
+    childCell(500).dispatch(new Event(), Cells.BECAME_VISIBLE);
+
+    assertFalse(childCell(500).get(Cells.PLACEHOLDER));
+  }
+
+  @Test
+  public void projectedOnce() {
+    childCell(0).dispatch(new Event(), Cells.BECAME_VISIBLE);
+    childCell(0).dispatch(new Event(), Cells.BECAME_VISIBLE);
+    CellActions.toFirstFocusable(childCell(0)).execute();
+
+    assertEquals(1, created);
+  }
+
+  @Test
+  public void insertedItemProjected() {
+    CellActions.toFirstFocusable(childCell(500)).execute();
+    ((TextCell) cellContainer.focusedCell.get()).caretPosition().set(7);
+    press(Key.ENTER);
+
+    assertEquals(ITEMS + 1, items.size());
+    assertFocusedText("new");
+  }
+
+  private Cell childCell(int index) {
+    return rootMapper.getTarget().children().get(index);
+  }
+
+  private String text(int index) {
+    return ((TextCell) childCell(index).children().get(0)).text().get();
+  }
+
+  private void assertFocusedText(String text) {
+    assertEquals(text, ((TextCell) cellContainer.focusedCell.get()).text().get());
+  }
+
+  private void press(Key key) {
+    viewContainer.keyPressed(new KeyEvent(key, (char) 0, Collections.<ModifierKey>emptySet()));
+  }
+
+  private class Item {
+    final String name;
+
+    Item(String name) {
+      this.name = name;
+    }
+  }
+
+  private class ContainerMapper extends Mapper<ObservableList<Item>, VerticalCell> {
+    ContainerMapper(ObservableList<Item> source) {
+      super(source, new VerticalCell());
+    }
+
+    @Override
+    protected void registerSynchronizers(SynchronizersConfiguration conf) {
+      super.registerSynchronizers(conf);
+
+      ProjectionalRoleSynchronizer<Object, Item> synchronizer = ProjectionalSynchronizers.<Object, Item>forLazyRole(this, getSource(), getTarget(),
+        new MapperFactory<Item, Cell>() {
+          @Override
+          public Mapper<? extends Item, ? extends Cell> createMapper(Item source) {
+            created++;
+            return new ItemMapper(source);
+          }
+        });
+      synchronizer.setItemFactory(new Supplier<Item>() {
+        @Override
+        public Item get() {
+          return new Item("new");
+        }
+      });
+      conf.add(synchronizer);
+    }
+  }
+
+  private class ItemMapper extends Mapper<Item, TextCell> {
+    ItemMapper(Item source) {
+      super(source, new TextCell());
+      getTarget().text().set(source.name);
+      getTarget().focusable().set(true);
+    }
+  }
+}
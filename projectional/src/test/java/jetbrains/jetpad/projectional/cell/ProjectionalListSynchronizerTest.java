@@ -21,6 +21,7 @@ import jetbrains.jetpad.event.ContentKind;
 import jetbrains.jetpad.event.ContentKinds;
 import jetbrains.jetpad.mapper.Mapper;
 import jetbrains.jetpad.mapper.MapperFactory;
+import jetbrains.jetpad.model.collections.CollectionItemEvent;
 import jetbrains.jetpad.model.collections.list.ObservableArrayList;
 import jetbrains.jetpad.model.collections.list.ObservableList;
 import jetbrains.jetpad.event.Key;
@@ -577,6 +578,36 @@ public class ProjectionalListSynchronizerTest extends EditingTestCase {
   }
 
 
+  @Test
+  public void pastedItemsAddedAtOnce() {
+    add3Items();
+    selectChild(0);
+    press(Key.DOWN, ModifierKey.SHIFT);
+    press(Key.DOWN, ModifierKey.SHIFT);
+    press(Key.C, ModifierKey.CONTROL);
+
+    final List<Integer> added = new ArrayList<Integer>();
+    myCellContainer.addListener(new CellContainerAdapter() {
+      @Override
+      public void onChildAdded(Cell parent, CollectionItemEvent<Cell> change) {
+        if (parent == rootMapper.getTarget()) {
+          added.add(1);
+        }
+      }
+
+      @Override
+      public void onChildrenAdded(Cell parent, int index, List<Cell> children) {
+        if (parent == rootMapper.getTarget()) {
+          added.add(children.size());
+        }
+      }
+    });
+    press(Key.V, ModifierKey.CONTROL);
+
+    assertTrue(container.children.size() > 4);
+    assertEquals(1, added.size());
+  }
+
   @Test
   public void canCopyFocusedItem() {
     container.children.add(new ComplexChild());
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2012-2013 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.projectional.view;
+
+/**
+ * Uniform grid over bounds of children of a view. Bounds are in the coordinates of the parent
+ * without its delta to root, so the index stays valid when ancestors move.
+ */
+class ChildrenIndex {
+  static final int MIN_CHILDREN = 32;
+
+  private static final int[] EMPTY = new int[0];
+  private static final int MAX_ENTRIES_PER_CHILD = 8;
+
+  private int myLeft;
+  private int myTop;
+  private int myCellWidth;
+  private int myCellHeight;
+  private int myColumns;
+  private int myRows;
+  private int[][] myCells;
+
+  /**
+   * @param rects x, y, width and height of each child
+   */
+  ChildrenIndex(int[] rects) {
+    int count = rects.length / 4;
+    if (count == 0) return;
+
+    int left = Integer.MAX_VALUE;
+    int top = Integer.MAX_VALUE;
+    int right = Integer.MIN_VALUE;
+    int bottom = Integer.MIN_VALUE;
+    for (int i = 0; i < count; i++) {
+      left = Math.min(left, rects[4 * i]);
+      top = Math.min(top, rects[4 * i + 1]);
+      right = Math.max(right, rects[4 * i] + rects[4 * i + 2]);
+      bottom = Math.max(bottom, rects[4 * i + 1] + rects[4 * i + 3]);
+    }
+
+    long width = (long) right - left + 1;
+    long height = (long) bottom - top + 1;
+    int columns = (int) Math.round(Math.sqrt((double) count * width / height));
+    columns = Math.max(1, Math.min(count, columns));
+    int rows = Math.max(1, Math.min(count, (count + columns - 1) / columns));
+
+    myLeft = left;
+    myTop = top;
+    myColumns = columns;
+    myRows = rows;
+    myCellWidth = (int) Math.max(1, (width + columns - 1) / columns);
+    myCellHeight = (int) Math.max(1, (height + rows - 1) / rows);
+
+    int[] sizes = new int[columns * rows];
+    long entries = 0;
+    for (int i = 0; i < count; i++) {
+      int x = rects[4 * i];
+      int y = rects[4 * i + 1];
+      int c0 = column(x);
+      int c1 = column(x + rects[4 * i + 2]);
+      int r0 = row(y);
+      int r1 = row(y + rects[4 * i + 3]);
+      entries += (long) (c1 - c0 + 1) * (r1 - r0 + 1);
+      if (entries > (long) MAX_ENTRIES_PER_CHILD * count) return;
+
+      for (int r = r0; r <= r1; r++) {
+        for (int c = c0; c <= c1; c++) {
+          sizes[r * columns + c]++;
+        }
+      }
+    }
+
+    int[][] cells = new int[columns * rows][];
+    for (int i = 0; i < cells.length; i++) {
+      cells[i] = sizes[i] == 0 ? EMPTY : new int[sizes[i]];
+      sizes[i] = 0;
+    }
+    for (int i = 0; i < count; i++) {
+      int x = rects[4 * i];
+      int y = rects[4 * i + 1];
+      int c0 = column(x);
+      int c1 = column(x + rects[4 * i + 2]);
+      int r0 = row(y);
+      int r1 = row(y + rects[4 * i + 3]);
+      for (int r = r0; r <= r1; r++) {
+        for (int c = c0; c <= c1; c++) {
+          int cell = r * columns + c;
+          cells[cell][sizes[cell]++] = i;
+        }
+      }
+    }
+    myCells = cells;
+  }
+
+  private int column(int x) {
+    return (x - myLeft) / myCellWidth;
+  }
+
+  private int row(int y) {
+    return (y - myTop) / myCellHeight;
+  }
+
+  /**
+   * Indices of children whose bounds might contain the point, in ascending order,
+   * or null if there's no index and all children should be checked
+   */
+  int[] candidates(int x, int y) {
+    if (myCells == null) return null;
+    if (x < myLeft || y < myTop) return EMPTY;
+
+    int column = column(x);
+    int row = row(y);
+    if (column >= myColumns || row >= myRows) return EMPTY;
+    return myCells[row * myColumns + column];
+  }
+}
@@ -32,7 +32,7 @@ public class GroupView extends View {
     boolean empty = true;
     Rectangle bounds = null;
     for (View child : children()) {
-      if (!child.visible().get()) continue;
+      if (!child.get(VISIBLE)) continue;
       Rectangle childBounds = child.bounds().get();
       bounds = bounds == null ? childBounds : bounds.union(childBounds);
       empty = false;
@@ -15,11 +15,15 @@
  */
 package jetbrains.jetpad.projectional.view;
 
-import jetbrains.jetpad.geometry.Rectangle;
 import jetbrains.jetpad.geometry.Vector;
 import jetbrains.jetpad.projectional.view.View;
 
 public class HorizontalView extends View {
+  @Override
+  protected boolean hasLocalLayout() {
+    return true;
+  }
+
   @Override
   protected void doValidate(ValidationContext ctx) {
     super.doValidate(ctx);
@@ -28,19 +32,17 @@ public class HorizontalView extends View {
     int aboveBaseline = 0;
     int belowBaseLine = 0;
     for (View child : children()) {
-      if (!child.visible().get()) continue;
+      if (!child.get(VISIBLE)) continue;
       aboveBaseline = Math.max(aboveBaseline, child.baseLine());
-      Rectangle childBounds = child.bounds().get();
-      belowBaseLine = Math.max(belowBaseLine, childBounds.dimension.y - child.baseLine());
-      width += childBounds.dimension.x;
+      belowBaseLine = Math.max(belowBaseLine, child.height() - child.baseLine());
+      width += child.width();
     }
 
     int offset = 0;
     for (View child : children()) {
-      if (!child.visible().get()) continue;
-      Vector newOrigin = ctx.origin().add(new Vector(offset, aboveBaseline - child.baseLine()));
-      child.moveTo(newOrigin);
-      offset += child.bounds().get().dimension.x;
+      if (!child.get(VISIBLE)) continue;
+      child.moveToOffset(offset, aboveBaseline - child.baseLine());
+      offset += child.width();
     }
 
     ctx.bounds(new Vector(width, aboveBaseline + belowBaseLine), aboveBaseline);
@@ -43,6 +43,11 @@ public class ScrollView extends View {
     return prop(SCROLL);
   }
 
+  @Override
+  protected boolean hasLocalLayout() {
+    return true;
+  }
+
   @Override
   protected void doValidate(ValidationContext ctx) {
     super.doValidate(ctx);
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2012-2013 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.projectional.view;
+
+import jetbrains.jetpad.projectional.view.spi.ViewContainerPeer;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Caches text measurements of a peer. Peers measure all text with the same font, so a text is the only key.
+ */
+class TextMetrics {
+  static final int WIDTH_CACHE_SIZE = 4096;
+  static final int PREFIX_CACHE_SIZE = 256;
+
+  private final ViewContainerPeer myPeer;
+  private final Map<String, Integer> myWidths = new LruMap<Integer>(WIDTH_CACHE_SIZE);
+  private final Map<String, int[]> myPrefixWidths = new LruMap<int[]>(PREFIX_CACHE_SIZE);
+
+  TextMetrics(ViewContainerPeer peer) {
+    myPeer = peer;
+  }
+
+  int width(String text) {
+    Integer result = myWidths.get(text);
+    if (result == null) {
+      result = myPeer.textWidth(text);
+      myWidths.put(text, result);
+    }
+    return result;
+  }
+
+  /**
+   * Widths of all prefixes of the text, i.e. result[i] is the width of text.substring(0, i)
+   */
+  int[] prefixWidths(String text) {
+    int[] result = myPrefixWidths.get(text);
+    if (result == null) {
+      result = new int[text.length() + 1];
+      for (int i = 1; i <= text.length(); i++) {
+        result[i] = i == text.length() ? width(text) : myPeer.textWidth(text.substring(0, i));
+      }
+      myPrefixWidths.put(text, result);
+    }
+    return result;
+  }
+
+  /**
+   * Position of a caret closest to the offset: the first position such that the middle of the following
+   * character is at or after the offset
+   */
+  int caretAt(String text, int xOffset) {
+    int[] widths = prefixWidths(text);
+    int low = 0;
+    int high = text.length();
+    while (low < high) {
+      int mid = (low + high) / 2;
+      if ((widths[mid] + widths[mid + 1]) / 2 >= xOffset) {
+        high = mid;
+      } else {
+        low = mid + 1;
+      }
+    }
+    return low;
+  }
+
+  private static class LruMap<ValueT> extends LinkedHashMap<String, ValueT> {
+    private final int myCapacity;
+
+    private LruMap(int capacity) {
+      super(16, 0.75f, true);
+      myCapacity = capacity;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, ValueT> eldest) {
+      return size() > myCapacity;
+    }
+  }
+}
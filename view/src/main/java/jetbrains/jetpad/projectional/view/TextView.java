@@ -67,21 +67,15 @@ public class TextView extends View {
   }
 
   public int getCaretAt(int xOffset) {
-    ViewContainerPeer peer = container().peer();
     String text = this.text().get();
     if (text == null) return 0;
-    for (int i = 0; i < text.length(); i++) {
-      int width = (peer.textWidth(text.substring(0, i)) + peer.textWidth(text.substring(0, i + 1))) / 2;
-      if (width >= xOffset) return i;
-    }
-    return text.length();
+    return container().textMetrics().caretAt(text, xOffset);
   }
 
   public int getCaretOffset(int caret) {
     if (container() == null) throw new IllegalStateException();
     if (text().get() == null) return 0;
-    ViewContainerPeer peer = container().peer();
-    return peer.textWidth(text().get().substring(0, caret));
+    return container().textMetrics().width(text().get().substring(0, caret));
   }
 
   @Override
@@ -89,7 +83,7 @@ public class TextView extends View {
     super.doValidate(ctx);
     ViewContainerPeer peer = container().peer();
     String text = text().get();
-    Vector bounds = new Vector(peer.textWidth(text) + 1, peer.textHeight());
+    Vector bounds = new Vector(container().textMetrics().width(text) + 1, peer.textHeight());
     ctx.bounds(new Vector(bounds.x, bounds.y), peer.textBaseLine());
   }
 
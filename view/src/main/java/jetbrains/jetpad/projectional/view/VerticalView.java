@@ -15,7 +15,6 @@
  */
 package jetbrains.jetpad.projectional.view;
 
-import jetbrains.jetpad.geometry.Rectangle;
 import jetbrains.jetpad.geometry.Vector;
 import jetbrains.jetpad.model.property.Property;
 import jetbrains.jetpad.model.property.ReadableProperty;
@@ -32,33 +31,68 @@ public class VerticalView extends View {
     return prop(INDENT_WIDTH);
   }
 
+  @Override
+  protected boolean hasLocalLayout() {
+    return true;
+  }
+
   @Override
   protected void doValidate(ValidationContext ctx) {
     super.doValidate(ctx);
 
-    Vector origin = ctx.origin();
+    if (resizedChildren() != null && updateWidth(ctx)) return;
+
     int width = 0;
     int height = 0;
-    int indentWidth = indent().get() ? container().peer().textWidth("x") * 2 : 0;
+    int indentWidth = indent().get() ? container().textMetrics().width("x") * 2 : 0;
     prop(INDENT_WIDTH).set(indentWidth);
 
     for (View child : children()) {
-      if (!child.visible().get()) continue;
+      if (!child.get(VISIBLE)) continue;
 
-      Rectangle bounds = child.bounds().get();
-      child.moveTo(origin.add(new Vector(indentWidth, height)));
+      child.moveToOffset(indentWidth, height);
 
-      height += bounds.dimension.y;
-      width = Math.max(width, bounds.dimension.x + indentWidth);
+      height += child.height();
+      width = Math.max(width, child.width() + indentWidth);
     }
 
     int baseLine = 0;
     for (View child : children()) {
-      if (!child.visible().get()) continue;
+      if (!child.get(VISIBLE)) continue;
       baseLine = child.baseLine();
       break;
     }
 
     ctx.bounds(new Vector(width, height), baseLine);
   }
-}
\ No newline at end of file
+
+  private boolean updateWidth(ValidationContext ctx) {
+    int indentWidth = get(INDENT_WIDTH);
+    int oldWidth = width();
+    int width = oldWidth;
+    boolean recompute = false;
+    for (ChildResize resize : resizedChildren()) {
+      View child = resize.child;
+      if (child.height() != resize.oldHeight || child.baseLine() != resize.oldBaseLine) return false;
+      if (!child.get(VISIBLE)) continue;
+
+      int childWidth = child.width() + indentWidth;
+      if (childWidth > width) {
+        width = childWidth;
+      } else if (resize.oldWidth + indentWidth == oldWidth) {
+        recompute = true;
+      }
+    }
+
+    if (recompute) {
+      width = 0;
+      for (View child : children()) {
+        if (!child.get(VISIBLE)) continue;
+        width = Math.max(width, child.width() + indentWidth);
+      }
+    }
+
+    ctx.bounds(new Vector(width, height()), baseLine());
+    return true;
+  }
+}
@@ -27,11 +27,11 @@ import jetbrains.jetpad.model.collections.list.ObservableArrayList;
 import jetbrains.jetpad.model.collections.list.ObservableList;
 import jetbrains.jetpad.model.event.*;
 import jetbrains.jetpad.model.property.*;
-import jetbrains.jetpad.model.util.ListMap;
 import jetbrains.jetpad.values.Color;
 
 import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 
@@ -46,13 +46,18 @@ public abstract class View implements Composite<View> {
   public static final ViewPropertySpec<Color> BORDER_COLOR = new ViewPropertySpec<Color>("bordercolor", ViewPropertyKind.REPAINT, null);
 
   private View myParent;
-  private ObservableList<View> myChildren;
-  private ListMap<ViewPropertySpec<?>, Object> myProperties;
+  private ChildList myChildren;
+  private int myBooleanMask;
+  private int myBooleanValues;
+  private PropertySlots myProperties;
   private List<ViewTrait> myTraits;
   private Listeners<ViewListener> myListeners;
   private ViewContainer myContainer;
 
   private boolean myValid;
+  private boolean myLayoutDirty = true;
+  private List<View> myInvalidChildren;
+  private List<ChildResize> myResizedChildren;
   private int myBaseLine = 0;
 
   private int myX;
@@ -63,6 +68,14 @@ public abstract class View implements Composite<View> {
   private int myDeltaY;
   private int myDeltaListenersCount;
 
+  private int myRootDeltaX;
+  private int myRootDeltaY;
+  //if the delta to root is valid, it's valid for all the ancestors as well, so a move invalidates only the
+  //part of the moved subtree which was validated since the previous move
+  private boolean myRootDeltaValid;
+
+  private ChildrenIndex myChildrenIndex;
+
   public Property<Boolean> visible() {
     return prop(VISIBLE);
   }
@@ -216,8 +229,9 @@ public abstract class View implements Composite<View> {
   }
 
   <ValueT> ValueT get(ViewPropertySpec<ValueT> prop) {
-    if (myProperties != null && myProperties.containsKey(prop)) {
-      return (ValueT) myProperties.get(prop);
+    Object value = ownValue(prop);
+    if (value != null) {
+      return (ValueT) value;
     }
 
     if (myTraits != null) {
@@ -234,23 +248,47 @@ public abstract class View implements Composite<View> {
   <ValueT> void set(final ViewPropertySpec<ValueT> prop, ValueT value) {
     final ValueT oldValue = get(prop);
 
-    if (myProperties == null && value == null) return;
-    if (myProperties == null) {
-      myProperties = new ListMap<ViewPropertySpec<?>, Object>();
+    ownValue(prop, value);
+
+    final ValueT newValue = get(prop);
+    if (!Objects.equal(newValue, oldValue)) {
+      propertyChanged(prop, new PropertyChangeEvent<ValueT>(oldValue, newValue));
     }
+  }
 
-    if (value == null) {
-      myProperties.remove(prop);
-      if (myProperties.isEmpty()) {
-        myProperties = null;
+  private Object ownValue(ViewPropertySpec<?> prop) {
+    int bit = prop.booleanBit();
+    if ((myBooleanMask & bit) != 0) {
+      return (myBooleanValues & bit) != 0;
+    }
+
+    if (myProperties == null) return null;
+    return myProperties.get(prop.slot());
+  }
+
+  private void ownValue(ViewPropertySpec<?> prop, Object value) {
+    int bit = prop.booleanBit();
+    myBooleanMask &= ~bit;
+    if (bit != 0 && value instanceof Boolean) {
+      myBooleanMask |= bit;
+      if ((Boolean) value) {
+        myBooleanValues |= bit;
+      } else {
+        myBooleanValues &= ~bit;
       }
-    } else {
-      myProperties.put(prop, value);
+      value = null;
     }
 
-    final ValueT newValue = get(prop);
-    if (!Objects.equal(newValue, oldValue)) {
-      propertyChanged(prop, new PropertyChangeEvent<ValueT>(oldValue, newValue));
+    if (value != null) {
+      if (myProperties == null) {
+        myProperties = new PropertySlots();
+      }
+      myProperties.put(prop.slot(), value);
+    } else if (myProperties != null) {
+      myProperties.remove(prop.slot());
+      if (myProperties.isEmpty()) {
+        myProperties = null;
+      }
     }
   }
 
@@ -341,6 +379,11 @@ public abstract class View implements Composite<View> {
   }
 
   public void invalidate() {
+    myLayoutDirty = true;
+    invalidatePath();
+  }
+
+  private void invalidatePath() {
     if (!myValid) return;
 
     myValid = false;
@@ -352,9 +395,17 @@ public abstract class View implements Composite<View> {
       }
     });
 
-    if (parent().get() != null) {
-      parent().get().invalidate();
+    if (myParent != null) {
+      myParent.childInvalidated(this);
+    }
+  }
+
+  private void childInvalidated(View child) {
+    if (myInvalidChildren == null) {
+      myInvalidChildren = new ArrayList<View>(1);
     }
+    myInvalidChildren.add(child);
+    invalidatePath();
   }
 
   protected void fire(ListenerCaller<ViewListener> caller) {
@@ -376,14 +427,77 @@ public abstract class View implements Composite<View> {
   }
 
   protected void doValidate(ValidationContext ctx) {
+    if (myResizedChildren != null) return;
+
     for (View child : children()) {
       child.validate();
     }
   }
 
+  /**
+   * Views whose layout depends only on their own properties and on bounds and base lines of their children
+   * should return true. When such a view is invalid only because of its descendants, only the invalid children
+   * are validated, and the view itself is relaid out only if some child's bounds or base line changed. In the
+   * latter case all children are valid and keep their positions, so doValidate may update the layout incrementally
+   * with the help of resizedChildren(). Subclasses which override doValidate in a way which isn't idempotent
+   * should return false.
+   */
+  protected boolean hasLocalLayout() {
+    return false;
+  }
+
   public void validate() {
     if (myValid) return;
 
+    List<View> invalidChildren = myInvalidChildren;
+    myInvalidChildren = null;
+
+    boolean incremental = !myLayoutDirty && hasLocalLayout();
+    if (incremental && invalidChildren != null) {
+      for (View child : invalidChildren) {
+        if (child.myParent == this) {
+          child.validate();
+        }
+      }
+      incremental = !myLayoutDirty;
+    }
+
+    if (incremental) {
+      if (myResizedChildren != null) {
+        relayout();
+        myResizedChildren = null;
+      }
+    } else {
+      myResizedChildren = null;
+      relayout();
+
+      for (View child : children()) {
+        if (!child.valid().get()) {
+          throw new IllegalStateException("After doValidate all children must be valid");
+        }
+      }
+    }
+    myLayoutDirty = false;
+
+    myValid = true;
+
+    fire(new ListenerCaller<ViewListener>() {
+      @Override
+      public void call(ViewListener l) {
+        l.onViewValidated();
+      }
+    });
+  }
+
+  /**
+   * Children whose bounds or base lines changed since the last layout of this view. Not null only during
+   * an incremental relayout of a view with local layout.
+   */
+  List<ChildResize> resizedChildren() {
+    return myResizedChildren;
+  }
+
+  private void relayout() {
     doValidate(new ValidationContext() {
       @Override
       public Vector origin() {
@@ -398,7 +512,15 @@ public abstract class View implements Composite<View> {
       @Override
       public void bounds(Rectangle bounds, int baseLine) {
         final Rectangle oldBounds = View.this.bounds().get();
-        localBounds(bounds.sub(toRootDelta().get()));
+        int oldWidth = myWidth;
+        int oldHeight = myHeight;
+        int oldBaseLine = myBaseLine;
+        validateRootDelta();
+        myX = bounds.origin.x - myRootDeltaX;
+        myY = bounds.origin.y - myRootDeltaY;
+        myWidth = bounds.dimension.x;
+        myHeight = bounds.dimension.y;
+        myBaseLine = baseLine;
 
         if (!Objects.equal(oldBounds, bounds)) {
           final PropertyChangeEvent<Rectangle> event = new PropertyChangeEvent<Rectangle>(oldBounds, bounds);
@@ -412,41 +534,43 @@ public abstract class View implements Composite<View> {
           if (myContainer != null) {
             myContainer.boundsChanged(View.this, event);
           }
+
+          if (myParent != null) {
+            myParent.myChildrenIndex = null;
+          }
         }
 
-        myBaseLine = baseLine;
+        if (!Objects.equal(oldBounds.origin, bounds.origin)) {
+          if (myParent != null) {
+            myParent.myLayoutDirty = true;
+          }
+        } else if (oldWidth != myWidth || oldHeight != myHeight || oldBaseLine != baseLine) {
+          resized(oldWidth, oldHeight, oldBaseLine);
+        }
       }
     });
+  }
 
-    for (View child : children()) {
-      if (!child.valid().get()) {
-        throw new IllegalStateException("After doValidate all children must be valid");
-      }
-    }
-
-    myValid = true;
+  private void resized(int oldWidth, int oldHeight, int oldBaseLine) {
+    View parent = myParent;
+    if (parent == null || parent.myLayoutDirty || !parent.hasLocalLayout()) return;
 
-    fire(new ListenerCaller<ViewListener>() {
-      @Override
-      public void call(ViewListener l) {
-        l.onViewValidated();
+    if (parent.myResizedChildren == null) {
+      parent.myResizedChildren = new ArrayList<ChildResize>(1);
+    } else {
+      for (ChildResize resize : parent.myResizedChildren) {
+        if (resize.child == this) return;
       }
-    });
+    }
+    parent.myResizedChildren.add(new ChildResize(this, oldWidth, oldHeight, oldBaseLine));
   }
 
   protected ReadableProperty<Vector> toRootDelta() {
     return new BaseReadableProperty<Vector>() {
       @Override
       public Vector get() {
-        View current = View.this;
-        int x = 0;
-        int y = 0;
-        while (current != null) {
-          x += current.myDeltaX;
-          y += current.myDeltaY;
-          current = current.myParent;
-        }
-        return new Vector(x, y);
+        validateRootDelta();
+        return new Vector(myRootDeltaX, myRootDeltaY);
       }
 
       @Override
@@ -473,7 +597,8 @@ public abstract class View implements Composite<View> {
     return new BaseReadableProperty<Rectangle>() {
       @Override
       public Rectangle get() {
-        return localBounds().add(toRootDelta().get());
+        validateRootDelta();
+        return new Rectangle(myX + myRootDeltaX, myY + myRootDeltaY, myWidth, myHeight);
       }
 
       @Override
@@ -502,26 +627,84 @@ public abstract class View implements Composite<View> {
     return new Rectangle(myX, myY, myWidth, myHeight);
   }
 
-  private void localBounds(Rectangle r) {
-    myX = r.origin.x;
-    myY = r.origin.y;
-    myWidth = r.dimension.x;
-    myHeight = r.dimension.y;
+  private void validateRootDelta() {
+    if (myRootDeltaValid) return;
+
+    int x = myDeltaX;
+    int y = myDeltaY;
+    if (myParent != null) {
+      myParent.validateRootDelta();
+      x += myParent.myRootDeltaX;
+      y += myParent.myRootDeltaY;
+    }
+    myRootDeltaX = x;
+    myRootDeltaY = y;
+    myRootDeltaValid = true;
+  }
+
+  private void invalidateRootDelta() {
+    if (!myRootDeltaValid) return;
+
+    myRootDeltaValid = false;
+    if (myChildren == null) return;
+    for (View child : myChildren) {
+      child.invalidateRootDelta();
+    }
+  }
+
+  /**
+   * Writes absolute bounds of this view into the first four elements of the array as x, y, width, height.
+   * Unlike bounds().get(), this method doesn't allocate anything.
+   */
+  public void boundsInto(int[] result) {
+    validateRootDelta();
+    result[0] = myX + myRootDeltaX;
+    result[1] = myY + myRootDeltaY;
+    result[2] = myWidth;
+    result[3] = myHeight;
   }
 
   public int baseLine() {
     return myBaseLine;
   }
 
+  int width() {
+    return myWidth;
+  }
+
+  int height() {
+    return myHeight;
+  }
+
+  /**
+   * This method should only be called during layout. It's equivalent to moveTo(parent.origin + (x, y))
+   * but doesn't walk the ancestors to compute absolute bounds.
+   */
+  void moveToOffset(int x, int y) {
+    int parentX = myParent == null ? 0 : myParent.myX;
+    int parentY = myParent == null ? 0 : myParent.myY;
+    int dx = x - (myX + myDeltaX - parentX);
+    int dy = y - (myY + myDeltaY - parentY);
+    if (dx == 0 && dy == 0) return;
+    move(new Vector(dx, dy));
+  }
+
   public View viewAt(Vector loc) {
     List<View> children = children();
-    for (int i = children.size() - 1; i >= 0; i--) {
-      View child = children.get(i);
-
-      if (!child.visible().get()) continue;
+    int[] candidates = null;
+    if (children.size() >= ChildrenIndex.MIN_CHILDREN) {
+      validateRootDelta();
+      candidates = childrenIndex().candidates(loc.x - myRootDeltaX, loc.y - myRootDeltaY);
+    }
 
-      if (child.bounds().get().contains(loc)) {
-        View result = child.viewAt(loc);
+    if (candidates != null) {
+      for (int i = candidates.length - 1; i >= 0; i--) {
+        View result = childViewAt(children.get(candidates[i]), loc);
+        if (result != null) return result;
+      }
+    } else {
+      for (int i = children.size() - 1; i >= 0; i--) {
+        View result = childViewAt(children.get(i), loc);
         if (result != null) return result;
       }
     }
@@ -531,6 +714,28 @@ public abstract class View implements Composite<View> {
     return null;
   }
 
+  private View childViewAt(View child, Vector loc) {
+    if (!child.get(VISIBLE)) return null;
+    if (!child.bounds().get().contains(loc)) return null;
+    return child.viewAt(loc);
+  }
+
+  private ChildrenIndex childrenIndex() {
+    if (myChildrenIndex == null) {
+      List<View> children = children();
+      int[] rects = new int[4 * children.size()];
+      for (int i = 0; i < children.size(); i++) {
+        View child = children.get(i);
+        rects[4 * i] = child.myX + child.myDeltaX;
+        rects[4 * i + 1] = child.myY + child.myDeltaY;
+        rects[4 * i + 2] = child.myWidth;
+        rects[4 * i + 3] = child.myHeight;
+      }
+      myChildrenIndex = new ChildrenIndex(rects);
+    }
+    return myChildrenIndex;
+  }
+
   protected boolean contains(Vector loc) {
     return bounds().get().contains(loc);
   }
@@ -576,6 +781,10 @@ public abstract class View implements Composite<View> {
 
     myDeltaX += delta.x;
     myDeltaY += delta.y;
+    invalidateRootDelta();
+    if (myParent != null) {
+      myParent.myChildrenIndex = null;
+    }
 
     if (parent().get() != null) {
       parent().get().invalidate();
@@ -691,10 +900,27 @@ public abstract class View implements Composite<View> {
 
   private class ChildList extends ObservableArrayList<View> {
     @Override
-    public void add(final int index, final View item) {
+    public void add(int index, View item) {
+      invalidate();
+      addChild(index, item);
+    }
+
+    @Override
+    public boolean addAll(int index, Collection<? extends View> items) {
+      if (items.isEmpty()) return false;
+
       invalidate();
+      int current = index;
+      for (View item : new ArrayList<View>(items)) {
+        addChild(current++, item);
+      }
+      return true;
+    }
 
+    private void addChild(final int index, final View item) {
       item.myParent = View.this;
+      item.invalidateRootDelta();
+      myChildrenIndex = null;
       item.fire(new ListenerCaller<ViewListener>() {
         @Override
         public void call(ViewListener l) {
@@ -714,13 +940,31 @@ public abstract class View implements Composite<View> {
     }
 
     @Override
-    public View remove(final int index) {
+    public View remove(int index) {
+      View result = removeChild(index);
+      invalidate();
+      return result;
+    }
+
+    @Override
+    protected void removeRange(int fromIndex, int toIndex) {
+      if (fromIndex >= toIndex) return;
+
+      for (int i = fromIndex; i < toIndex; i++) {
+        removeChild(fromIndex);
+      }
+      invalidate();
+    }
+
+    private View removeChild(final int index) {
       final View item = get(index);
       if (isAttached()) {
         item.detach();
       }
       final View oldParent = item.myParent;
       item.myParent = null;
+      item.invalidateRootDelta();
+      myChildrenIndex = null;
       item.fire(new ListenerCaller<ViewListener>() {
         @Override
         public void call(ViewListener l) {
@@ -734,7 +978,6 @@ public abstract class View implements Composite<View> {
           l.onChildRemoved(new CollectionItemEvent<View>(item, index, false));
         }
       });
-      invalidate();
       return result;
     }
   }
@@ -764,6 +1007,19 @@ public abstract class View implements Composite<View> {
       myChildren.add(index, element);
     }
 
+    @Override
+    public boolean addAll(Collection<? extends View> elements) {
+      return addAll(size(), elements);
+    }
+
+    @Override
+    public boolean addAll(int index, Collection<? extends View> elements) {
+      if (index < 0 || index > size()) throw new IndexOutOfBoundsException();
+      if (elements.isEmpty()) return false;
+      ensureChildrenInitialized();
+      return myChildren.addAll(index, elements);
+    }
+
     private void ensureChildrenInitialized() {
       if (myChildren == null) {
         myChildren = new ChildList();
@@ -780,6 +1036,16 @@ public abstract class View implements Composite<View> {
       return result;
     }
 
+    @Override
+    protected void removeRange(int fromIndex, int toIndex) {
+      if (fromIndex == toIndex) return;
+      if (myChildren == null) throw new IndexOutOfBoundsException();
+      myChildren.removeRange(fromIndex, toIndex);
+      if (myChildren.isEmpty()) {
+        myChildren = null;
+      }
+    }
+
     @Override
     public Registration addListener(final CollectionListener<View> l) {
       return View.this.addListener(new ViewAdapter() {
@@ -816,4 +1082,18 @@ public abstract class View implements Composite<View> {
     void bounds(Vector rect, int baseLine);
     void bounds(Rectangle bounds, int baseLine);
   }
-}
\ No newline at end of file
+
+  static class ChildResize {
+    final View child;
+    final int oldWidth;
+    final int oldHeight;
+    final int oldBaseLine;
+
+    ChildResize(View child, int oldWidth, int oldHeight, int oldBaseLine) {
+      this.child = child;
+      this.oldWidth = oldWidth;
+      this.oldHeight = oldHeight;
+      this.oldBaseLine = oldBaseLine;
+    }
+  }
+}
@@ -33,11 +33,13 @@ import java.util.List;
 
 public class ViewContainer {
   private ViewContainerPeer myPeer = new NullViewContainerPeer();
+  private TextMetrics myTextMetrics = new TextMetrics(myPeer);
   private RootView myContentRoot = new RootView();
   private Property<View> myFocusedView = new FocusedViewProperty();
   private View myDragStart;
   private List<Runnable> myOnValidate = new ArrayList<Runnable>();
   private Listeners<ViewContainerListener> myListeners = new Listeners<ViewContainerListener>();
+  private Listeners<Runnable> myVisibleRectListeners = new Listeners<Runnable>();
 
   public ViewContainer() {
     myPeer.attach(this);
@@ -72,9 +74,26 @@ public class ViewContainer {
     return myPeer.visibleRect();
   }
 
+  /**
+   * Peers call this when the visible part of the container changes without changes of views, e.g. on scrolling
+   */
+  public void visibleRectChanged() {
+    myVisibleRectListeners.fire(new ListenerCaller<Runnable>() {
+      @Override
+      public void call(Runnable l) {
+        l.run();
+      }
+    });
+  }
+
+  public Registration addVisibleRectListener(Runnable l) {
+    return myVisibleRectListeners.add(l);
+  }
+
   public void setPeer(ViewContainerPeer peer) {
     myPeer.detach();
     myPeer = peer;
+    myTextMetrics = new TextMetrics(peer);
     myContentRoot.invalidateTree();
     myPeer.attach(this);
   }
@@ -83,6 +102,10 @@ public class ViewContainer {
     return myPeer;
   }
 
+  TextMetrics textMetrics() {
+    return myTextMetrics;
+  }
+
   void repaint(View view) {
     myPeer.repaint(view);
   }
@@ -220,10 +243,11 @@ public class ViewContainer {
     @Override
     public void validate() {
       super.validate();
-      for (Runnable r : myOnValidate) {
+      List<Runnable> onValidate = myOnValidate;
+      myOnValidate = new ArrayList<Runnable>();
+      for (Runnable r : onValidate) {
         r.run();
       }
-      myOnValidate.clear();
 
     }
 
@@ -16,15 +16,21 @@
 package jetbrains.jetpad.projectional.view;
 
 public class ViewPropertySpec<ValueT> {
+  private static int ourSlotCount;
+  private static int ourBooleanBitCount;
+
   private String myName;
   private ValueT myDefaultValue;
   private ViewPropertyKind myKind;
-
+  private final int mySlot;
+  private final int myBooleanBit;
 
   public ViewPropertySpec(String name,  ViewPropertyKind kind, ValueT defaultValue) {
     myName = name;
     myDefaultValue = defaultValue;
     myKind = kind;
+    mySlot = nextSlot();
+    myBooleanBit = defaultValue instanceof Boolean ? nextBooleanBit() : 0;
   }
 
   public ViewPropertySpec(String name, ViewPropertyKind kind) {
@@ -43,6 +49,26 @@ public class ViewPropertySpec<ValueT> {
     return myKind;
   }
 
+  int slot() {
+    return mySlot;
+  }
+
+  /**
+   * Bit in View's boolean storage or 0 if values of this property are stored as objects
+   */
+  int booleanBit() {
+    return myBooleanBit;
+  }
+
+  //specs are usually created in static initializers, which can run in different threads
+  private static synchronized int nextSlot() {
+    return ourSlotCount++;
+  }
+
+  private static synchronized int nextBooleanBit() {
+    return ourBooleanBitCount < 32 ? 1 << ourBooleanBitCount++ : 0;
+  }
+
   @Override
   public String toString() {
     return myName;
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2012-2013 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.projectional.view.awt;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Accumulates damaged areas, merging overlapping ones and keeping at most a few regions
+ * so that a burst of small changes results in a small number of repaints
+ */
+class DirtyRegion {
+  static final int MAX_REGIONS = 4;
+
+  private List<Rectangle> myRects = new ArrayList<Rectangle>();
+
+  boolean isEmpty() {
+    return myRects.isEmpty();
+  }
+
+  List<Rectangle> rects() {
+    return myRects;
+  }
+
+  void add(Rectangle rect) {
+    if (rect.isEmpty()) return;
+
+    Rectangle current = new Rectangle(rect);
+    boolean merged = true;
+    while (merged) {
+      merged = false;
+      for (int i = 0; i < myRects.size(); i++) {
+        Rectangle r = myRects.get(i);
+        if (touches(r, current)) {
+          current = current.union(r);
+          myRects.remove(i);
+          merged = true;
+          break;
+        }
+      }
+    }
+    myRects.add(current);
+
+    while (myRects.size() > MAX_REGIONS) {
+      mergeCheapest();
+    }
+  }
+
+  void clear() {
+    myRects.clear();
+  }
+
+  private void mergeCheapest() {
+    int bestI = 0;
+    int bestJ = 1;
+    double bestWaste = Double.MAX_VALUE;
+    for (int i = 0; i < myRects.size(); i++) {
+      for (int j = i + 1; j < myRects.size(); j++) {
+        Rectangle ri = myRects.get(i);
+        Rectangle rj = myRects.get(j);
+        double waste = area(ri.union(rj)) - area(ri) - area(rj);
+        if (waste < bestWaste) {
+          bestWaste = waste;
+          bestI = i;
+          bestJ = j;
+        }
+      }
+    }
+    Rectangle union = myRects.get(bestI).union(myRects.get(bestJ));
+    myRects.remove(bestJ);
+    myRects.set(bestI, union);
+  }
+
+  private static boolean touches(Rectangle r1, Rectangle r2) {
+    return r1.x <= r2.x + r2.width && r2.x <= r1.x + r1.width && r1.y <= r2.y + r2.height && r2.y <= r1.y + r1.height;
+  }
+
+  private static double area(Rectangle r) {
+    return (double) r.width * r.height;
+  }
+}
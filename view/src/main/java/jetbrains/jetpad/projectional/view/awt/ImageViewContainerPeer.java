@@ -0,0 +1,196 @@
+/*
+ * Copyright 2012-2013 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.projectional.view.awt;
+
+import jetbrains.jetpad.model.property.PropertyChangeEvent;
+import jetbrains.jetpad.projectional.view.View;
+import jetbrains.jetpad.projectional.view.ViewContainer;
+import jetbrains.jetpad.projectional.view.spi.ViewContainerPeer;
+
+import java.awt.*;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Renders a view container into images without any windowing, e.g. for previews generated on a server.
+ * With an executor, horizontal bands of an image are rasterized in parallel. Every band traverses the view tree, so
+ * there are only a few bands per processor. The views mustn't be modified while rendering.
+ */
+public class ImageViewContainerPeer implements ViewContainerPeer {
+  static final int MIN_BAND_HEIGHT = 256;
+  private static final int BANDS_PER_PROCESSOR = 2;
+
+  private final FontMetrics myMetrics;
+  private final ExecutorService myExecutor;
+  private ViewContainer myContainer;
+
+  public ImageViewContainerPeer() {
+    this(null);
+  }
+
+  public ImageViewContainerPeer(ExecutorService executor) {
+    myExecutor = executor;
+    Graphics2D g = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB).createGraphics();
+    try {
+      myMetrics = g.getFontMetrics(ViewPainter.FONT);
+    } finally {
+      g.dispose();
+    }
+  }
+
+  /**
+   * Renders the content root, i.e. everything except decorations such as popups
+   */
+  public BufferedImage render() {
+    myContainer.root().validate();
+    jetbrains.jetpad.geometry.Rectangle bounds = myContainer.contentRoot().bounds().get();
+    return render(new Rectangle(bounds.origin.x, bounds.origin.y, bounds.dimension.x, bounds.dimension.y));
+  }
+
+  public BufferedImage render(Rectangle area) {
+    myContainer.root().validate();
+
+    BufferedImage result = new BufferedImage(Math.max(1, area.width), Math.max(1, area.height), BufferedImage.TYPE_INT_RGB);
+    int bandHeight = Math.max(MIN_BAND_HEIGHT, area.height / (BANDS_PER_PROCESSOR * Runtime.getRuntime().availableProcessors()) + 1);
+    if (myExecutor == null || area.height <= bandHeight) {
+      paint(result, area);
+      return result;
+    }
+
+    validateBounds(myContainer.root(), new int[4]);
+
+    List<Rectangle> bands = new ArrayList<Rectangle>();
+    List<Future<BufferedImage>> images = new ArrayList<Future<BufferedImage>>();
+    for (int y = 0; y < area.height; y += bandHeight) {
+      final Rectangle band = new Rectangle(area.x, area.y + y, area.width, Math.min(bandHeight, area.height - y));
+      bands.add(band);
+      images.add(myExecutor.submit(new Callable<BufferedImage>() {
+        @Override
+        public BufferedImage call() {
+          BufferedImage image = new BufferedImage(band.width, band.height, BufferedImage.TYPE_INT_RGB);
+          paint(image, band);
+          return image;
+        }
+      }));
+    }
+
+    Graphics2D g = result.createGraphics();
+    try {
+      for (int i = 0; i < bands.size(); i++) {
+        Rectangle band = bands.get(i);
+        g.drawImage(images.get(i).get(), band.x - area.x, band.y - area.y, null);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      throw new RuntimeException(e.getCause());
+    } finally {
+      g.dispose();
+    }
+    return result;
+  }
+
+  /**
+   * Whole container scaled down to fit into a square of the given size
+   */
+  public BufferedImage thumbnail(int size) {
+    BufferedImage image = render();
+    double scale = Math.min(1.0, (double) size / Math.max(image.getWidth(), image.getHeight()));
+    int width = Math.max(1, (int) Math.round(image.getWidth() * scale));
+    int height = Math.max(1, (int) Math.round(image.getHeight() * scale));
+
+    BufferedImage result = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    Graphics2D g = result.createGraphics();
+    try {
+      g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+      g.drawImage(image, 0, 0, width, height, null);
+    } finally {
+      g.dispose();
+    }
+    return result;
+  }
+
+  /**
+   * Views compute absolute bounds lazily. Bands read them concurrently, so they are computed before painting starts.
+   */
+  private void validateBounds(View view, int[] bounds) {
+    view.boundsInto(bounds);
+    for (View child : view.children()) {
+      validateBounds(child, bounds);
+    }
+  }
+
+  private void paint(BufferedImage image, Rectangle area) {
+    Graphics2D g = image.createGraphics();
+    try {
+      g.translate(-area.x, -area.y);
+      g.clipRect(area.x, area.y, area.width, area.height);
+      ViewPainter.paint(g, myContainer.root());
+    } finally {
+      g.dispose();
+    }
+  }
+
+  @Override
+  public void attach(ViewContainer container) {
+    myContainer = container;
+  }
+
+  @Override
+  public void detach() {
+    myContainer = null;
+  }
+
+  @Override
+  public void repaint(View view) {
+  }
+
+  @Override
+  public jetbrains.jetpad.geometry.Rectangle visibleRect() {
+    myContainer.root().validate();
+    return myContainer.root().bounds().get();
+  }
+
+  @Override
+  public void scrollTo(View view) {
+  }
+
+  @Override
+  public void boundsChanged(View view, PropertyChangeEvent<jetbrains.jetpad.geometry.Rectangle> change) {
+  }
+
+  @Override
+  public int textHeight() {
+    return myMetrics.getHeight();
+  }
+
+  @Override
+  public int textBaseLine() {
+    return myMetrics.getLeading() + myMetrics.getAscent();
+  }
+
+  @Override
+  public int textWidth(String text) {
+    return myMetrics.stringWidth(text);
+  }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2012-2013 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.projectional.view.awt;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Off-screen copy of a component split into fixed size tiles. Only damaged parts of tiles are
+ * painted again, the rest is copied from the images.
+ */
+class TiledBuffer {
+  static final int TILE_SIZE = 256;
+
+  private Map<Point, Tile> myTiles = new HashMap<Point, Tile>();
+
+  void invalidate(Rectangle rect) {
+    for (Map.Entry<Point, Tile> e : myTiles.entrySet()) {
+      Point p = e.getKey();
+      Rectangle damaged = rect.intersection(new Rectangle(p.x * TILE_SIZE, p.y * TILE_SIZE, TILE_SIZE, TILE_SIZE));
+      if (damaged.isEmpty()) continue;
+      e.getValue().invalidate(damaged);
+    }
+  }
+
+  void invalidateAll() {
+    myTiles.clear();
+  }
+
+  /**
+   * Draws the clip area to g, calling painter for parts which aren't up to date. Tiles which
+   * don't intersect retained area are dropped.
+   */
+  void paint(Graphics g, Rectangle clip, Rectangle retained, Painter painter) {
+    int c0 = tileIndex(clip.x);
+    int c1 = tileIndex(clip.x + clip.width - 1);
+    int r0 = tileIndex(clip.y);
+    int r1 = tileIndex(clip.y + clip.height - 1);
+    for (int r = r0; r <= r1; r++) {
+      for (int c = c0; c <= c1; c++) {
+        Point p = new Point(c, r);
+        Tile tile = myTiles.get(p);
+        if (tile == null) {
+          tile = new Tile(c * TILE_SIZE, r * TILE_SIZE);
+          myTiles.put(p, tile);
+        }
+        tile.validate(painter);
+        g.drawImage(tile.myImage, tile.myX, tile.myY, null);
+      }
+    }
+
+    for (Iterator<Point> it = myTiles.keySet().iterator(); it.hasNext(); ) {
+      Point p = it.next();
+      if (!retained.intersects(new Rectangle(p.x * TILE_SIZE, p.y * TILE_SIZE, TILE_SIZE, TILE_SIZE))) {
+        it.remove();
+      }
+    }
+  }
+
+  private static int tileIndex(int coord) {
+    return coord >= 0 ? coord / TILE_SIZE : -((-coord - 1) / TILE_SIZE) - 1;
+  }
+
+  int tileCount() {
+    return myTiles.size();
+  }
+
+  interface Painter {
+    /**
+     * Paints in component coordinates. g is clipped to the area which should be painted.
+     */
+    void paint(Graphics g);
+  }
+
+  private static class Tile {
+    private final int myX;
+    private final int myY;
+    private final BufferedImage myImage = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_RGB);
+    private Rectangle myDirty;
+
+    private Tile(int x, int y) {
+      myX = x;
+      myY = y;
+      myDirty = new Rectangle(x, y, TILE_SIZE, TILE_SIZE);
+    }
+
+    private void invalidate(Rectangle rect) {
+      myDirty = myDirty == null ? rect : myDirty.union(rect);
+    }
+
+    private void validate(Painter painter) {
+      if (myDirty == null) return;
+
+      Graphics2D g = myImage.createGraphics();
+      try {
+        g.translate(-myX, -myY);
+        g.clipRect(myDirty.x, myDirty.y, myDirty.width, myDirty.height);
+        painter.paint(g);
+      } finally {
+        g.dispose();
+      }
+      myDirty = null;
+    }
+  }
+}
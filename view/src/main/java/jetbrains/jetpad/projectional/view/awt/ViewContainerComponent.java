@@ -35,6 +35,7 @@ import java.awt.datatransfer.*;
 import java.awt.event.*;
 import java.awt.event.KeyEvent;
 import java.awt.event.MouseEvent;
+import java.awt.geom.AffineTransform;
 import java.io.IOException;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
@@ -43,15 +44,13 @@ import java.util.Set;
 import static jetbrains.jetpad.projectional.view.awt.AwtConverters.*;
 
 public class ViewContainerComponent extends JComponent implements Scrollable {
-  static final Font FONT = new Font(Font.MONOSPACED, Font.PLAIN, 15);
-
-  static final Color SELECTION_COLOR = Color.DARK_BLUE;
-
   private ViewContainer myContainer;
   private Registration myContainerReg = Registration.EMPTY;
 
   private Set<View> myMovedViews = new LinkedHashSet<View>();
-  private Set<jetbrains.jetpad.geometry.Rectangle> myDirtyAreas = new LinkedHashSet<jetbrains.jetpad.geometry.Rectangle>();
+  private DirtyRegion myDirtyRegion = new DirtyRegion();
+  private boolean myFlushScheduled;
+  private TiledBuffer myBuffer = new TiledBuffer();
   private Set<View> myDirtyViews = new LinkedHashSet<View>();
   private boolean myCaretVisible;
   private boolean myFocused;
@@ -234,6 +233,24 @@ public class ViewContainerComponent extends JComponent implements Scrollable {
     };
     addKeyListener(keyListener);
 
+    addComponentListener(new ComponentAdapter() {
+      @Override
+      public void componentResized(ComponentEvent e) {
+        myBuffer.invalidateAll();
+        visibleRectChanged();
+      }
+
+      @Override
+      public void componentMoved(ComponentEvent e) {
+        visibleRectChanged();
+      }
+
+      private void visibleRectChanged() {
+        if (myContainer == null) return;
+        myContainer.visibleRectChanged();
+      }
+    });
+
     myTimer = new Timer(500, new ActionListener() {
       @Override
       public void actionPerformed(ActionEvent e) {
@@ -276,10 +293,18 @@ public class ViewContainerComponent extends JComponent implements Scrollable {
 
   private void repaintCarets() {
     for (TextView tv : myWithCaretVisible) {
-      myPeer.repaint(tv);
+      if (!tv.visible().get()) continue;
+      Rectangle caret = caretBounds(tv);
+      repaint(caret.x, caret.y, caret.width, caret.height);
     }
   }
 
+  private Rectangle caretBounds(TextView textView) {
+    jetbrains.jetpad.geometry.Rectangle bounds = textView.bounds().get();
+    int xOffset = ViewPainter.xOffset(Toolkit.getDefaultToolkit().getFontMetrics(ViewPainter.font(textView)), textView.text().get(), textView.caretPosition().get());
+    return new Rectangle(bounds.origin.x + xOffset, bounds.origin.y, 1, bounds.dimension.y);
+  }
+
   public ViewContainer container() {
     return myContainer;
   }
@@ -293,6 +318,7 @@ public class ViewContainerComponent extends JComponent implements Scrollable {
     }
 
     myContainer = container;
+    myBuffer.invalidateAll();
 
     if (myContainer != null) {
       myContainer.setPeer(myPeer);
@@ -340,7 +366,7 @@ public class ViewContainerComponent extends JComponent implements Scrollable {
 
           @Override
           public void onViewDetached(View view) {
-            myDirtyAreas.add(view.bounds().get());
+            addDirtyArea(view.bounds().get());
             if (view instanceof TextView) {
               TextView textView = (TextView) view;
               myWithCaretVisible.remove(textView);
@@ -357,19 +383,41 @@ public class ViewContainerComponent extends JComponent implements Scrollable {
       myContainer.root().validate();
     } finally {
       for (View v : myDirtyViews) {
-        repaint(v.bounds().get());
+        addDirtyArea(v.bounds().get());
       }
       myDirtyViews.clear();
 
       for (View v : myMovedViews) {
-        repaint(v.bounds().get());
+        addDirtyArea(v.bounds().get());
       }
+      myMovedViews.clear();
+
+      flushDirtyRegion();
+    }
+  }
+
+  private void addDirtyArea(jetbrains.jetpad.geometry.Rectangle rect) {
+    myDirtyRegion.add(toAwtRectangle(rect));
+  }
 
-      for (jetbrains.jetpad.geometry.Rectangle r : myDirtyAreas) {
-        repaint(r);
+  private void scheduleFlush() {
+    if (myFlushScheduled) return;
+    myFlushScheduled = true;
+    SwingUtilities.invokeLater(new Runnable() {
+      @Override
+      public void run() {
+        flushDirtyRegion();
       }
-      myMovedViews.clear();
+    });
+  }
+
+  private void flushDirtyRegion() {
+    myFlushScheduled = false;
+    for (Rectangle r : myDirtyRegion.rects()) {
+      myBuffer.invalidate(r);
+      repaint(r);
     }
+    myDirtyRegion.clear();
   }
 
   @Override
@@ -384,185 +432,92 @@ public class ViewContainerComponent extends JComponent implements Scrollable {
   protected void paintComponent(Graphics g) {
     super.paintComponent(g);
 
-    g.setColor(toAwtColor(jetbrains.jetpad.values.Color.WHITE));
-    g.fillRect(0, 0, getWidth(), getHeight());
-
-    myContainer.root().validate();
-    paint(g, myContainer.root());
-  }
-
-  private void paint(Graphics g, View view) {
-    if (!view.visible().get()) return;
-
-    java.awt.Rectangle clip = g.getClipBounds();
-
-    jetbrains.jetpad.geometry.Rectangle bounds = view.bounds().get();
+    validateRoot();
 
-    if (clip != null) {
-      jetbrains.jetpad.geometry.Rectangle rect = new jetbrains.jetpad.geometry.Rectangle(clip.x, clip.y, clip.width, clip.height);
-
-      if (!rect.intersects(bounds)) return;
-    }
-    g.clipRect(bounds.origin.x, bounds.origin.y, bounds.dimension.x, bounds.dimension.y);
-
-    Color background = view.background().get();
-    if (background != null) {
-      g.setColor(toAwtColor(background));
-      g.fillRect(bounds.origin.x, bounds.origin.y, bounds.dimension.x, bounds.dimension.y);
-    }
-
-    Color border = view.border().get();
-    if (border != null) {
-      g.setColor(toAwtColor(border));
-      g.drawRect(bounds.origin.x, bounds.origin.y, bounds.dimension.x - 1, bounds.dimension.y - 1);
+    Rectangle clip = g.getClipBounds();
+    if (clip == null) {
+      clip = new Rectangle(0, 0, getWidth(), getHeight());
     }
 
-    if (view instanceof RectView) {
-      RectView rectView = (RectView) view;
-      g.setColor(toAwtColor(rectView.background().get()));
-
-      g.fillRect(bounds.origin.x, bounds.origin.y, bounds.dimension.x, bounds.dimension.y);
-    }
-
-    if (view instanceof LineView) {
-      LineView lineView = (LineView) view;
-      g.setColor(toAwtColor(lineView.color().get()));
-      Vector start = lineView.start().get();
-      Vector end = lineView.end().get();
-      g.drawLine(start.x, start.y, end.x, end.y);
+    if (isScaled(g)) {
+      //tiles would be blurred on scaled displays
+      ViewPainter.paint(g, myContainer.root());
+    } else {
+      Rectangle retained = getVisibleRect();
+      retained.grow(TiledBuffer.TILE_SIZE, TiledBuffer.TILE_SIZE);
+      myBuffer.paint(g, clip, retained, new TiledBuffer.Painter() {
+        @Override
+        public void paint(Graphics g) {
+          ViewPainter.paint(g, myContainer.root());
+        }
+      });
     }
 
-    if (view instanceof TextView) {
-      TextView textView = (TextView) view;
-      String text = textView.text().get();
-      Vector origin = bounds.origin;
+    paintCarets(g, clip);
+  }
 
-      Font font = FONT;
-      if (textView.bold().get()) {
-        font = font.deriveFont(Font.BOLD, font.getSize());
-      }
-      g.setFont(font);
+  private boolean isScaled(Graphics g) {
+    if (!(g instanceof Graphics2D)) return false;
+    AffineTransform transform = ((Graphics2D) g).getTransform();
+    return transform.getScaleX() != 1 || transform.getScaleY() != 1 || transform.getShearX() != 0 || transform.getShearY() != 0;
+  }
 
-      g.setColor(toAwtColor(textView.textColor().get()));
-      g.drawString(text, origin.x, origin.y + textView.baseLine());
+  private void paintCarets(Graphics g, Rectangle clip) {
+    if (!myCaretVisible || !myFocused) return;
 
-      if (textView.selectionVisible().get()) {
-        int start = textView.selectionStart().get();
-        int end = textView.caretPosition().get();
+    for (TextView textView : myWithCaretVisible) {
+      if (!textView.visible().get()) continue;
 
-        int left = Math.min(start, end);
-        int xLeft = xOffset(g, text, left);
-        int right = Math.max(start, end);
-        int xRight = xOffset(g, text, right);
-        g.setColor(toAwtColor(SELECTION_COLOR));
-        g.fillRect(origin.x + xLeft, origin.y, xRight - xLeft - 1, bounds.dimension.y - 1);
+      Rectangle caret = caretBounds(textView);
+      if (!caret.intersects(clip)) continue;
 
+      Rectangle visible = visibleBounds(textView);
+      if (visible == null) continue;
 
-        Graphics g2 = g.create();
-        g2.setColor(toAwtColor(Color.WHITE));
-        g2.drawString(text.substring(left, right), origin.x + xLeft, origin.y + textView.baseLine());
+      Graphics cg = g.create();
+      try {
+        cg.clipRect(visible.x, visible.y, visible.width, visible.height);
+        cg.setColor(toAwtColor(textView.textColor().get()));
+        cg.drawLine(caret.x, caret.y, caret.x, caret.y + caret.height - 1);
+      } finally {
+        cg.dispose();
       }
+    }
+  }
 
-      if (textView.caretVisible().get() && myCaretVisible && myFocused) {
-        int xOffset = xOffset(g, text, textView.caretPosition().get());
-        g.drawLine(origin.x + xOffset, origin.y, origin.x + xOffset, origin.y + bounds.dimension.y - 1);
-      }
+  /**
+   * Part of the view's bounds which isn't clipped by ancestors, or null if it's hidden
+   */
+  private Rectangle visibleBounds(View view) {
+    Rectangle result = toAwtRectangle(view.bounds().get());
+    for (View current = view.parent().get(); current != null; current = current.parent().get()) {
+      if (!current.visible().get()) return null;
+      result = result.intersection(toAwtRectangle(scrollClip(current)));
+      if (result.isEmpty()) return null;
     }
+    return result;
+  }
 
+  private jetbrains.jetpad.geometry.Rectangle scrollClip(View view) {
+    jetbrains.jetpad.geometry.Rectangle clip = view.bounds().get();
     if (view instanceof ScrollView) {
       ScrollView scrollView = (ScrollView) view;
-      jetbrains.jetpad.geometry.Rectangle additionalClip = scrollView.bounds().get();
       if (scrollView.isHorizontalScroller()) {
-        paintScroller(g, scrollView, false);
-        additionalClip = additionalClip.changeDimension(additionalClip.dimension.sub(new Vector(0, scrollView.xScrollWidth())));
+        clip = clip.changeDimension(clip.dimension.sub(new Vector(0, scrollView.xScrollWidth())));
       }
-
       if (scrollView.isVerticalScroller()) {
-        paintScroller(g, scrollView, true);
-        additionalClip = additionalClip.changeDimension(additionalClip.dimension.sub(new Vector(scrollView.yScrollWidth(), 0)));
+        clip = clip.changeDimension(clip.dimension.sub(new Vector(scrollView.yScrollWidth(), 0)));
       }
-
-      g.clipRect(additionalClip.origin.x, additionalClip.origin.y, additionalClip.dimension.x, additionalClip.dimension.y);
-    }
-
-    if (view instanceof MultiPointView) {
-      MultiPointView multiPoint = (MultiPointView) view;
-      g.setColor(toAwtColor(multiPoint.color().get()));
-
-      int n = multiPoint.points.size();
-      int[] xs = new int[n];
-      int[] ys = new int[n];
-
-      for (int i = 0; i < n; i++) {
-        Vector point = multiPoint.points.get(i);
-        xs[i] = point.x;
-        ys[i] = point.y;
-      }
-
-      if (!multiPoint.points.isEmpty()) {
-        if (view instanceof PolyLineView) {
-          g.drawPolyline(xs, ys, n);
-        } else {
-          g.fillPolygon(xs, ys, n);
-        }
-      }
-    }
-
-    for (View child : view.children()) {
-      paint(g.create(), child);
     }
+    return clip;
   }
 
-  private void paintScroller(Graphics g, ScrollView scrollView, boolean vertical) {
-    jetbrains.jetpad.geometry.Rectangle bounds = scrollView.bounds().get();
-
-    Color scrollerBackground = Color.GRAY;
-    Color scrollerColor = Color.BLACK;
-
-    g.setColor(toAwtColor(scrollerBackground));
-
-    if (vertical) {
-      g.fillRect(bounds.origin.x + bounds.dimension.x - scrollView.yScrollWidth(), bounds.origin.y, scrollView.yScrollWidth(), bounds.dimension.y);
-    } else {
-      g.fillRect(bounds.origin.x, bounds.origin.y + bounds.dimension.y - scrollView.xScrollWidth(), bounds.dimension.x, scrollView.xScrollWidth());
-    }
-
-    Vector intBounds = scrollView.internalsBounds();
-    Vector offset = scrollView.offset().get();
-    Vector maxDim = scrollView.maxDimension().get();
-
-    double total = vertical ? intBounds.y : intBounds.x;
-    double startPercentage = (- (vertical ? offset.y : offset.x) / total);
-    double heightPercentage = ((vertical ? maxDim.y : maxDim.x) / total);
-
-    int max = vertical ? maxDim.y : maxDim.x;
-
-    double sOffset = startPercentage * max;
-
-    g.setColor(toAwtColor(scrollerColor));
-
-
-    if (vertical) {
-      g.fillRect(
-        bounds.origin.x + bounds.dimension.x - scrollView.yScrollWidth(),
-        bounds.origin.y + (int) sOffset,
-        scrollView.yScrollWidth(),
-        (int) (heightPercentage * max));
-    } else {
-      g.fillRect(
-        bounds.origin.x + (int) sOffset,
-        bounds.origin.y + bounds.dimension.x - scrollView.xScrollWidth(),
-        (int) (heightPercentage * max),
-        scrollView.xScrollWidth());
-    }
-  }
-
-  private int xOffset(Graphics g, String text, int pos) {
-    return Math.max(0, g.getFontMetrics().stringWidth(text.substring(0, pos)));
+  private Rectangle toAwtRectangle(jetbrains.jetpad.geometry.Rectangle rect) {
+    return new Rectangle(rect.origin.x, rect.origin.y, rect.dimension.x, rect.dimension.y);
   }
 
   private FontMetrics getFontMetrics() {
-    return Toolkit.getDefaultToolkit().getFontMetrics(FONT);
+    return Toolkit.getDefaultToolkit().getFontMetrics(ViewPainter.FONT);
   }
 
   @Override
@@ -590,10 +545,6 @@ public class ViewContainerComponent extends JComponent implements Scrollable {
     return viewPort.getWidth() > getPreferredSize().width;
   }
 
-  private void repaint(jetbrains.jetpad.geometry.Rectangle rect) {
-    repaint(new Rectangle(rect.origin.x, rect.origin.y, rect.dimension.x, rect.dimension.y));
-  }
-
   @Override
   public boolean getScrollableTracksViewportHeight() {
     JViewport viewPort = (JViewport) getParent();
@@ -614,7 +565,8 @@ public class ViewContainerComponent extends JComponent implements Scrollable {
       if (!view.visible().get()) return;
 
       if (myContainer.root().valid().get()) {
-        ViewContainerComponent.this.repaint(view.bounds().get());
+        addDirtyArea(view.bounds().get());
+        scheduleFlush();
       } else {
         myDirtyViews.add(view);
       }
@@ -641,7 +593,7 @@ public class ViewContainerComponent extends JComponent implements Scrollable {
       if (myMovedViews.contains(view)) return;
 
       myMovedViews.add(view);
-      myDirtyAreas.add(change.getOldValue());
+      addDirtyArea(change.getOldValue());
     }
 
     @Override
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2012-2013 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.projectional.view.awt;
+
+import jetbrains.jetpad.geometry.Vector;
+import jetbrains.jetpad.projectional.view.*;
+import jetbrains.jetpad.values.Color;
+
+import java.awt.*;
+import java.awt.Rectangle;
+
+import static jetbrains.jetpad.projectional.view.awt.AwtConverters.toAwtColor;
+
+/**
+ * Java2D rendering of views shared by Swing and off-screen peers
+ */
+class ViewPainter {
+  static final Font FONT = new Font(Font.MONOSPACED, Font.PLAIN, 15);
+  static final Font BOLD_FONT = FONT.deriveFont(Font.BOLD, FONT.getSize());
+
+  static final Color SELECTION_COLOR = Color.DARK_BLUE;
+
+  private ViewPainter() {
+  }
+
+  /**
+   * Paints the part of the view tree within the clip of g on a white background
+   */
+  static void paint(Graphics g, View root) {
+    Rectangle clip = g.getClipBounds();
+    g.setColor(toAwtColor(Color.WHITE));
+    g.fillRect(clip.x, clip.y, clip.width, clip.height);
+    paint(g, root, clip);
+  }
+
+  private static void paint(Graphics g, View view, Rectangle clip) {
+    jetbrains.jetpad.geometry.Rectangle bounds = view.bounds().get();
+    Vector origin = bounds.origin;
+    Vector dimension = bounds.dimension;
+    if (origin.x >= clip.x + clip.width || origin.x + dimension.x <= clip.x
+        || origin.y >= clip.y + clip.height || origin.y + dimension.y <= clip.y) return;
+
+    if (!view.visible().get()) return;
+
+    g.clipRect(bounds.origin.x, bounds.origin.y, bounds.dimension.x, bounds.dimension.y);
+
+    Color background = view.background().get();
+    if (background != null) {
+      g.setColor(toAwtColor(background));
+      g.fillRect(bounds.origin.x, bounds.origin.y, bounds.dimension.x, bounds.dimension.y);
+    }
+
+    Color border = view.border().get();
+    if (border != null) {
+      g.setColor(toAwtColor(border));
+      g.drawRect(bounds.origin.x, bounds.origin.y, bounds.dimension.x - 1, bounds.dimension.y - 1);
+    }
+
+    if (view instanceof RectView && view.background().get() != null) {
+      RectView rectView = (RectView) view;
+      g.setColor(toAwtColor(rectView.background().get()));
+
+      g.fillRect(bounds.origin.x, bounds.origin.y, bounds.dimension.x, bounds.dimension.y);
+    }
+
+    if (view instanceof LineView) {
+      LineView lineView = (LineView) view;
+      g.setColor(toAwtColor(lineView.color().get()));
+      Vector start = lineView.start().get();
+      Vector end = lineView.end().get();
+      g.drawLine(start.x, start.y, end.x, end.y);
+    }
+
+    if (view instanceof TextView) {
+      TextView textView = (TextView) view;
+      String text = textView.text().get();
+
+      g.setFont(font(textView));
+
+      g.setColor(toAwtColor(textView.textColor().get()));
+      g.drawString(text, origin.x, origin.y + textView.baseLine());
+
+      if (textView.selectionVisible().get()) {
+        int start = textView.selectionStart().get();
+        int end = textView.caretPosition().get();
+
+        int left = Math.min(start, end);
+        int xLeft = xOffset(g.getFontMetrics(), text, left);
+        int right = Math.max(start, end);
+        int xRight = xOffset(g.getFontMetrics(), text, right);
+        g.setColor(toAwtColor(SELECTION_COLOR));
+        g.fillRect(origin.x + xLeft, origin.y, xRight - xLeft - 1, bounds.dimension.y - 1);
+
+
+        Graphics g2 = g.create();
+        g2.setColor(toAwtColor(Color.WHITE));
+        g2.drawString(text.substring(left, right), origin.x + xLeft, origin.y + textView.baseLine());
+        g2.dispose();
+      }
+    }
+
+    if (view instanceof ScrollView) {
+      ScrollView scrollView = (ScrollView) view;
+      jetbrains.jetpad.geometry.Rectangle additionalClip = scrollView.bounds().get();
+      if (scrollView.isHorizontalScroller()) {
+        paintScroller(g, scrollView, false);
+        additionalClip = additionalClip.changeDimension(additionalClip.dimension.sub(new Vector(0, scrollView.xScrollWidth())));
+      }
+
+      if (scrollView.isVerticalScroller()) {
+        paintScroller(g, scrollView, true);
+        additionalClip = additionalClip.changeDimension(additionalClip.dimension.sub(new Vector(scrollView.yScrollWidth(), 0)));
+      }
+
+      g.clipRect(additionalClip.origin.x, additionalClip.origin.y, additionalClip.dimension.x, additionalClip.dimension.y);
+    }
+
+    if (view instanceof MultiPointView) {
+      MultiPointView multiPoint = (MultiPointView) view;
+      g.setColor(toAwtColor(multiPoint.color().get()));
+
+      int n = multiPoint.points.size();
+      int[] xs = new int[n];
+      int[] ys = new int[n];
+
+      for (int i = 0; i < n; i++) {
+        Vector point = multiPoint.points.get(i);
+        xs[i] = point.x;
+        ys[i] = point.y;
+      }
+
+      if (!multiPoint.points.isEmpty()) {
+        if (view instanceof PolyLineView) {
+          g.drawPolyline(xs, ys, n);
+        } else {
+          g.fillPolygon(xs, ys, n);
+        }
+      }
+    }
+
+    Rectangle childClip = g.getClipBounds();
+    for (View child : view.children()) {
+      Graphics cg = g.create();
+      try {
+        paint(cg, child, childClip);
+      } finally {
+        cg.dispose();
+      }
+    }
+  }
+
+  private static void paintScroller(Graphics g, ScrollView scrollView, boolean vertical) {
+    jetbrains.jetpad.geometry.Rectangle bounds = scrollView.bounds().get();
+
+    Color scrollerBackground = Color.GRAY;
+    Color scrollerColor = Color.BLACK;
+
+    g.setColor(toAwtColor(scrollerBackground));
+
+    if (vertical) {
+      g.fillRect(bounds.origin.x + bounds.dimension.x - scrollView.yScrollWidth(), bounds.origin.y, scrollView.yScrollWidth(), bounds.dimension.y);
+    } else {
+      g.fillRect(bounds.origin.x, bounds.origin.y + bounds.dimension.y - scrollView.xScrollWidth(), bounds.dimension.x, scrollView.xScrollWidth());
+    }
+
+    Vector intBounds = scrollView.internalsBounds();
+    Vector offset = scrollView.offset().get();
+    Vector maxDim = scrollView.maxDimension().get();
+
+    double total = vertical ? intBounds.y : intBounds.x;
+    double startPercentage = (- (vertical ? offset.y : offset.x) / total);
+    double heightPercentage = ((vertical ? maxDim.y : maxDim.x) / total);
+
+    int max = vertical ? maxDim.y : maxDim.x;
+
+    double sOffset = startPercentage * max;
+
+    g.setColor(toAwtColor(scrollerColor));
+
+
+    if (vertical) {
+      g.fillRect(
+        bounds.origin.x + bounds.dimension.x - scrollView.yScrollWidth(),
+        bounds.origin.y + (int) sOffset,
+        scrollView.yScrollWidth(),
+        (int) (heightPercentage * max));
+    } else {
+      g.fillRect(
+        bounds.origin.x + (int) sOffset,
+        bounds.origin.y + bounds.dimension.x - scrollView.xScrollWidth(),
+        (int) (heightPercentage * max),
+        scrollView.xScrollWidth());
+    }
+  }
+
+  static int xOffset(FontMetrics metrics, String text, int pos) {
+    return Math.max(0, metrics.stringWidth(text.substring(0, pos)));
+  }
+
+  static Font font(TextView textView) {
+    return textView.bold().get() ? BOLD_FONT : FONT;
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2012-2013 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.projectional.view;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PropertySlotsTest {
+  private PropertySlots slots = new PropertySlots();
+
+  @Test
+  public void putKeepsSlotsSorted() {
+    slots.put(5, "five");
+    slots.put(1, "one");
+    slots.put(3, "three");
+
+    assertEquals(0, slots.indexOf(1));
+    assertEquals(1, slots.indexOf(3));
+    assertEquals(2, slots.indexOf(5));
+    assertEquals("three", slots.get(3));
+    assertTrue(slots.indexOf(4) < 0);
+  }
+
+  @Test
+  public void putReplacesValue() {
+    slots.put(1, "a");
+    slots.put(1, "b");
+
+    assertEquals("b", slots.get(1));
+    assertEquals(0, slots.indexOf(1));
+  }
+
+  @Test
+  public void nullValueIsStored() {
+    slots.put(2, null);
+
+    assertTrue(slots.indexOf(2) >= 0);
+    assertNull(slots.valueAt(slots.indexOf(2)));
+  }
+
+  @Test
+  public void remove() {
+    slots.put(1, "one");
+    slots.put(2, "two");
+    slots.put(3, "three");
+
+    slots.remove(2);
+    assertTrue(slots.indexOf(2) < 0);
+    assertEquals("three", slots.get(3));
+
+    slots.remove(1);
+    slots.remove(3);
+    assertTrue(slots.isEmpty());
+    assertNull(slots.get(1));
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2012-2013 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.projectional.view;
+
+import jetbrains.jetpad.projectional.view.spi.NullViewContainerPeer;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class TextMetricsTest {
+  private CountingPeer peer = new CountingPeer();
+  private TextMetrics metrics = new TextMetrics(peer);
+
+  @Test
+  public void widthCached() {
+    assertEquals(15, metrics.width("abc"));
+    assertEquals(15, metrics.width("abc"));
+
+    assertEquals(1, peer.calls);
+  }
+
+  @Test
+  public void leastRecentlyUsedEvicted() {
+    metrics.width("first");
+    for (int i = 0; i < TextMetrics.WIDTH_CACHE_SIZE; i++) {
+      metrics.width("text" + i);
+    }
+    peer.calls = 0;
+
+    metrics.width("first");
+
+    assertEquals(1, peer.calls);
+  }
+
+  @Test
+  public void prefixWidths() {
+    int[] widths = metrics.prefixWidths("ab");
+
+    assertEquals(3, widths.length);
+    assertEquals(0, widths[0]);
+    assertEquals(5, widths[1]);
+    assertEquals(10, widths[2]);
+  }
+
+  @Test
+  public void caretAtSameAsLinearSearch() {
+    String text = "someLongIdentifier";
+    for (int x = -3; x < 5 * text.length() + 5; x++) {
+      assertEquals("x = " + x, linearCaretAt(text, x), metrics.caretAt(text, x));
+    }
+  }
+
+  @Test
+  public void caretAtEmptyText() {
+    assertEquals(0, metrics.caretAt("", 10));
+  }
+
+  @Test
+  public void caretAtMeasuresOnce() {
+    String text = "someLongIdentifier";
+    metrics.caretAt(text, 10);
+    int calls = peer.calls;
+
+    metrics.caretAt(text, 20);
+    metrics.caretAt(text, 30);
+
+    assertEquals(calls, peer.calls);
+  }
+
+  private int linearCaretAt(String text, int xOffset) {
+    for (int i = 0; i < text.length(); i++) {
+      int width = (peer.textWidth(text.substring(0, i)) + peer.textWidth(text.substring(0, i + 1))) / 2;
+      if (width >= xOffset) return i;
+    }
+    return text.length();
+  }
+
+  private static class CountingPeer extends NullViewContainerPeer {
+    private int calls;
+
+    @Override
+    public int textWidth(String text) {
+      calls++;
+      return super.textWidth(text);
+    }
+  }
+}
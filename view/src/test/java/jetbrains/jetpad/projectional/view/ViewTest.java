@@ -66,6 +66,28 @@ public class ViewTest {
     assertNull(v2.parent().get());
   }
 
+  @Test
+  public void viewAddAllAndRemoveRange() {
+    View parent = newView();
+    View v1 = newView();
+    View v2 = newView();
+    View v3 = newView();
+    parent.children().add(v3);
+    container.contentRoot().children().add(parent);
+
+    parent.children().addAll(0, Arrays.asList(v1, v2));
+
+    assertEquals(Arrays.asList(v1, v2, v3), parent.children());
+    assertSame(parent, v2.parent().get());
+    assertTrue(v2.isAttached());
+
+    parent.children().subList(0, 2).clear();
+
+    assertEquals(Arrays.asList(v3), parent.children());
+    assertNull(v1.parent().get());
+    assertFalse(v1.isAttached());
+  }
+
   @Test
   public void propSet() {
     View v = newView();
@@ -134,6 +156,65 @@ public class ViewTest {
     assertFalse(parent.valid().get());
   }
 
+  @Test
+  public void relayoutStopsWhenChildBoundsDontChange() {
+    LayoutCountingView outer = new LayoutCountingView();
+    LayoutCountingView inner = new LayoutCountingView();
+    RectView wide = new RectView();
+    RectView narrow = new RectView();
+    wide.dimension().set(new Vector(100, 10));
+    outer.children().add(inner);
+    inner.children().addAll(Arrays.asList(wide, narrow));
+    container.contentRoot().children().add(outer);
+    container.root().validate();
+
+    outer.layoutCount = 0;
+    inner.layoutCount = 0;
+    narrow.dimension().set(new Vector(20, 10));
+    container.root().validate();
+
+    assertEquals(1, inner.layoutCount);
+    assertEquals(0, outer.layoutCount);
+    assertTrue(outer.valid().get());
+  }
+
+  @Test
+  public void relayoutPropagatesWhenChildBoundsChange() {
+    LayoutCountingView outer = new LayoutCountingView();
+    RectView rect = new RectView();
+    outer.children().add(rect);
+    container.contentRoot().children().add(outer);
+    container.root().validate();
+
+    outer.layoutCount = 0;
+    rect.dimension().set(new Vector(20, 30));
+    container.root().validate();
+
+    assertEquals(1, outer.layoutCount);
+    assertEquals(new Vector(20, 30), outer.bounds().get().dimension);
+  }
+
+  @Test
+  public void incrementalRelayoutWhenWidestChildShrinks() {
+    VerticalView vertical = new VerticalView();
+    RectView wide = new RectView();
+    RectView narrow = new RectView();
+    wide.dimension().set(new Vector(100, 10));
+    narrow.dimension().set(new Vector(50, 10));
+    vertical.children().addAll(Arrays.asList(wide, narrow));
+    container.contentRoot().children().add(vertical);
+    container.root().validate();
+
+    wide.dimension().set(new Vector(30, 10));
+    container.root().validate();
+    assertEquals(new Vector(50, 20), vertical.bounds().get().dimension);
+
+    narrow.dimension().set(new Vector(70, 10));
+    container.root().validate();
+    assertEquals(new Vector(70, 20), vertical.bounds().get().dimension);
+    assertEquals(new Vector(0, 10), narrow.bounds().get().origin.sub(vertical.bounds().get().origin));
+  }
+
   @Test
   public void attachment() {
     View child = newView();
@@ -217,6 +298,46 @@ public class ViewTest {
     assertEquals(Arrays.asList(new Vector(10, 10)), origins);
   }
 
+  @Test
+  public void boundsFollowAncestorMovesAndReparenting() {
+    View parent = newView();
+    View otherParent = newView();
+    View child = newView();
+    parent.children().add(child);
+    assertEquals(Vector.ZERO, child.bounds().get().origin);
+
+    parent.move(new Vector(10, 20));
+    assertEquals(new Vector(10, 20), child.bounds().get().origin);
+
+    otherParent.move(new Vector(1, 2));
+    parent.children().remove(child);
+    otherParent.children().add(child);
+
+    int[] bounds = new int[4];
+    child.boundsInto(bounds);
+    assertEquals(new Vector(1, 2), child.bounds().get().origin);
+    assertEquals(1, bounds[0]);
+    assertEquals(2, bounds[1]);
+  }
+
+  @Test
+  public void boundsFollowMovesOfValidatedAncestors() {
+    View root = newView();
+    View parent = newView();
+    View child = newView();
+    root.children().add(parent);
+    parent.children().add(child);
+    child.move(new Vector(1, 1));
+    assertEquals(new Vector(1, 1), child.bounds().get().origin);
+
+    root.move(new Vector(10, 0));
+    assertEquals(new Vector(10, 0), parent.bounds().get().origin);
+
+    parent.move(new Vector(0, 10));
+    assertEquals(new Vector(11, 11), child.bounds().get().origin);
+    assertEquals(new Vector(10, 10), parent.bounds().get().origin);
+  }
+
   @Test(expected = IllegalStateException.class)
   public void cantFocusUnfocusable() {
     View view = newView();
@@ -334,6 +455,31 @@ public class ViewTest {
     assertTrue(container.root().viewAt(view.bounds().get().center()) != view);
   }
 
+  @Test
+  public void viewAtWithManyChildren() {
+    GroupView group = new GroupView();
+    List<RectView> rects = new ArrayList<RectView>();
+    for (int i = 0; i < 100; i++) {
+      RectView rect = new RectView();
+      rect.dimension().set(new Vector(10, 10));
+      rect.moveTo(new Vector(20 * (i % 10), 20 * (i / 10)));
+      rects.add(rect);
+      group.children().add(rect);
+    }
+    container.contentRoot().children().add(group);
+    container.root().validate();
+
+    assertSame(rects.get(23), container.root().viewAt(new Vector(65, 45)));
+    assertSame(container.root(), container.root().viewAt(new Vector(75, 45)));
+
+    group.move(new Vector(1000, 1000));
+    rects.get(0).moveTo(new Vector(1075, 1045));
+    container.root().validate();
+
+    assertSame(rects.get(23), container.root().viewAt(new Vector(1065, 1045)));
+    assertSame(rects.get(0), container.root().viewAt(new Vector(1078, 1052)));
+  }
+
   @Test
   public void onAttachEventSource() {
     View view = newFocusableView();
@@ -392,4 +538,14 @@ public class ViewTest {
   }
 
   private class MyView extends View {}
+
+  private class LayoutCountingView extends VerticalView {
+    private int layoutCount;
+
+    @Override
+    protected void doValidate(ValidationContext ctx) {
+      layoutCount++;
+      super.doValidate(ctx);
+    }
+  }
 }
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2012-2013 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.projectional.view.awt;
+
+import org.junit.Test;
+
+import java.awt.Rectangle;
+
+import static org.junit.Assert.*;
+
+public class DirtyRegionTest {
+  private DirtyRegion region = new DirtyRegion();
+
+  @Test
+  public void overlappingRectsMerged() {
+    region.add(new Rectangle(0, 0, 10, 10));
+    region.add(new Rectangle(5, 5, 10, 10));
+
+    assertEquals(1, region.rects().size());
+    assertEquals(new Rectangle(0, 0, 15, 15), region.rects().get(0));
+  }
+
+  @Test
+  public void adjacentRectsMerged() {
+    region.add(new Rectangle(0, 0, 10, 10));
+    region.add(new Rectangle(10, 0, 10, 10));
+
+    assertEquals(1, region.rects().size());
+  }
+
+  @Test
+  public void distantRectsKeptApart() {
+    region.add(new Rectangle(0, 0, 10, 10));
+    region.add(new Rectangle(100, 100, 10, 10));
+
+    assertEquals(2, region.rects().size());
+  }
+
+  @Test
+  public void mergeCascades() {
+    region.add(new Rectangle(0, 0, 10, 10));
+    region.add(new Rectangle(20, 0, 10, 10));
+    region.add(new Rectangle(5, 0, 20, 10));
+
+    assertEquals(1, region.rects().size());
+    assertEquals(new Rectangle(0, 0, 30, 10), region.rects().get(0));
+  }
+
+  @Test
+  public void regionCountLimited() {
+    for (int i = 0; i < 20; i++) {
+      region.add(new Rectangle(i * 100, i * 100, 10, 10));
+    }
+
+    assertEquals(DirtyRegion.MAX_REGIONS, region.rects().size());
+    for (int i = 0; i < 20; i++) {
+      assertTrue(covered(new Rectangle(i * 100, i * 100, 10, 10)));
+    }
+  }
+
+  @Test
+  public void emptyRectIgnored() {
+    region.add(new Rectangle(5, 5, 0, 0));
+
+    assertTrue(region.isEmpty());
+  }
+
+  private boolean covered(Rectangle rect) {
+    for (Rectangle r : region.rects()) {
+      if (r.contains(rect)) return true;
+    }
+    return false;
+  }
+}
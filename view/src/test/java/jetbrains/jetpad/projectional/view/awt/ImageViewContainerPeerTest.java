@@ -0,0 +1,133 @@
+/*
+ * Copyright 2012-2013 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.projectional.view.awt;
+
+import jetbrains.jetpad.geometry.Vector;
+import jetbrains.jetpad.projectional.view.*;
+import jetbrains.jetpad.values.Color;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.*;
+
+public class ImageViewContainerPeerTest {
+  private ViewContainer container = new ViewContainer();
+  private VerticalView root = new VerticalView();
+
+  @Before
+  public void init() {
+    container.contentRoot().children().add(root);
+  }
+
+  @Test
+  public void rendersContentBounds() {
+    ImageViewContainerPeer peer = new ImageViewContainerPeer();
+    container.setPeer(peer);
+    root.children().add(rect(100, 50, Color.RED));
+
+    BufferedImage image = peer.render();
+
+    assertEquals(100, image.getWidth());
+    assertEquals(50, image.getHeight());
+    assertEquals(java.awt.Color.RED.getRGB(), image.getRGB(50, 25));
+  }
+
+  @Test
+  public void textMeasuredWithFontMetrics() {
+    container.setPeer(new ImageViewContainerPeer());
+    TextView shortText = new TextView("a");
+    TextView longText = new TextView("aaaa");
+    root.children().addAll(Arrays.asList(shortText, longText));
+    container.root().validate();
+
+    int charWidth = shortText.bounds().get().dimension.x - 1;
+    assertTrue(charWidth > 0);
+    assertEquals(4 * charWidth + 1, longText.bounds().get().dimension.x);
+  }
+
+  @Test
+  public void parallelRenderingGivesSameImage() {
+    for (int i = 0; i < 30; i++) {
+      root.children().add(rect(1000 + i, 40, i % 2 == 0 ? Color.RED : Color.BLUE));
+      root.children().add(new TextView("line " + i));
+    }
+
+    assertParallelRenderingGivesSameImage();
+  }
+
+  @Test
+  public void parallelRenderingAfterMove() {
+    VerticalView inner = new VerticalView();
+    for (int i = 0; i < 30; i++) {
+      inner.children().add(rect(500, 40, i % 2 == 0 ? Color.RED : Color.BLUE));
+    }
+    RectView header = rect(600, 100, Color.GRAY);
+    root.children().addAll(Arrays.asList(header, inner));
+    container.setPeer(new ImageViewContainerPeer());
+    container.root().validate();
+
+    header.dimension().set(new Vector(600, 300));
+
+    assertParallelRenderingGivesSameImage();
+  }
+
+  private void assertParallelRenderingGivesSameImage() {
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      ImageViewContainerPeer parallel = new ImageViewContainerPeer(executor);
+      container.setPeer(parallel);
+      BufferedImage actual = parallel.render();
+
+      ImageViewContainerPeer sequential = new ImageViewContainerPeer();
+      container.setPeer(sequential);
+      BufferedImage expected = sequential.render();
+
+      assertEquals(expected.getWidth(), actual.getWidth());
+      assertEquals(expected.getHeight(), actual.getHeight());
+      for (int y = 0; y < expected.getHeight(); y++) {
+        for (int x = 0; x < expected.getWidth(); x++) {
+          assertEquals(expected.getRGB(x, y), actual.getRGB(x, y));
+        }
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void thumbnailFitsSize() {
+    ImageViewContainerPeer peer = new ImageViewContainerPeer();
+    container.setPeer(peer);
+    root.children().add(rect(400, 200, Color.RED));
+
+    BufferedImage thumbnail = peer.thumbnail(100);
+
+    assertEquals(100, thumbnail.getWidth());
+    assertEquals(50, thumbnail.getHeight());
+  }
+
+  private RectView rect(int width, int height, Color color) {
+    RectView result = new RectView();
+    result.dimension().set(new Vector(width, height));
+    result.background().set(color);
+    return result;
+  }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2012-2013 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.projectional.view.awt;
+
+import org.junit.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TiledBufferTest {
+  private static final int SIZE = TiledBuffer.TILE_SIZE;
+
+  private TiledBuffer buffer = new TiledBuffer();
+  private BufferedImage target = new BufferedImage(2 * SIZE, 2 * SIZE, BufferedImage.TYPE_INT_RGB);
+  private Rectangle all = new Rectangle(0, 0, 2 * SIZE, 2 * SIZE);
+  private List<Rectangle> painted = new ArrayList<Rectangle>();
+  private Color color = Color.RED;
+
+  @Test
+  public void firstPaintPaintsAllTiles() {
+    paint(all);
+
+    assertEquals(4, painted.size());
+    assertEquals(4, buffer.tileCount());
+    assertPixel(SIZE + 1, SIZE + 1, Color.RED);
+  }
+
+  @Test
+  public void validTilesCopied() {
+    paint(all);
+    painted.clear();
+    color = Color.BLUE;
+
+    paint(all);
+
+    assertTrue(painted.isEmpty());
+    assertPixel(1, 1, Color.RED);
+  }
+
+  @Test
+  public void onlyDamagedPartRepainted() {
+    paint(all);
+    painted.clear();
+    color = Color.BLUE;
+
+    buffer.invalidate(new Rectangle(10, 10, 5, 5));
+    paint(all);
+
+    assertEquals(1, painted.size());
+    assertEquals(new Rectangle(10, 10, 5, 5), painted.get(0));
+    assertPixel(12, 12, Color.BLUE);
+    assertPixel(20, 20, Color.RED);
+  }
+
+  @Test
+  public void damageAcrossTilesSplit() {
+    paint(all);
+    painted.clear();
+
+    buffer.invalidate(new Rectangle(SIZE - 5, 0, 10, 10));
+    paint(all);
+
+    assertEquals(2, painted.size());
+  }
+
+  @Test
+  public void tilesOutsideRetainedAreaDropped() {
+    paint(all);
+
+    buffer.paint(target.getGraphics(), new Rectangle(0, 0, 10, 10), new Rectangle(0, 0, 10, 10), painter());
+
+    assertEquals(1, buffer.tileCount());
+  }
+
+  private void paint(Rectangle clip) {
+    buffer.paint(target.getGraphics(), clip, all, painter());
+  }
+
+  private TiledBuffer.Painter painter() {
+    return new TiledBuffer.Painter() {
+      @Override
+      public void paint(Graphics g) {
+        Rectangle clip = g.getClipBounds();
+        painted.add(clip);
+        g.setColor(color);
+        g.fillRect(clip.x, clip.y, clip.width, clip.height);
+      }
+    };
+  }
+
+  private void assertPixel(int x, int y, Color expected) {
+    assertEquals(expected.getRGB(), target.getRGB(x, y));
+  }
+}
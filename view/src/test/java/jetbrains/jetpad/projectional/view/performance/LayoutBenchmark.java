@@ -0,0 +1,62 @@
+/*
+ * Copyright 2012-2013 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.projectional.view.performance;
+
+import jetbrains.jetpad.projectional.view.HorizontalView;
+import jetbrains.jetpad.projectional.view.TextView;
+import jetbrains.jetpad.projectional.view.VerticalView;
+import jetbrains.jetpad.projectional.view.ViewContainer;
+
+public class LayoutBenchmark {
+  private static final int TOKENS_PER_LINE = 5;
+  private static final int KEYSTROKES = 2000;
+
+  public static void main(String[] args) {
+    //warm up
+    measure(1000);
+
+    for (int lines : new int[] { 1000, 5000, 20000 }) {
+      System.out.println(lines + " lines: " + measure(lines) + " us per keystroke");
+    }
+  }
+
+  private static long measure(int lines) {
+    ViewContainer container = new ViewContainer();
+    VerticalView document = new VerticalView();
+    container.contentRoot().children().add(document);
+
+    TextView target = null;
+    for (int i = 0; i < lines; i++) {
+      HorizontalView line = new HorizontalView();
+      for (int j = 0; j < TOKENS_PER_LINE; j++) {
+        line.children().add(new TextView("token" + j));
+      }
+      document.children().add(line);
+      if (i == lines / 2) {
+        target = (TextView) line.children().get(0);
+      }
+    }
+    container.root().validate();
+
+    long start = System.nanoTime();
+    for (int i = 0; i < KEYSTROKES; i++) {
+      String text = target.text().get();
+      target.text().set(i % 2 == 0 ? text + "x" : text.substring(0, text.length() - 1));
+      container.root().validate();
+    }
+    return (System.nanoTime() - start) / KEYSTROKES / 1000;
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2012-2013 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.projectional.view.performance;
+
+import jetbrains.jetpad.projectional.view.HorizontalView;
+import jetbrains.jetpad.projectional.view.TextView;
+import jetbrains.jetpad.projectional.view.VerticalView;
+import jetbrains.jetpad.projectional.view.ViewContainer;
+import jetbrains.jetpad.projectional.view.awt.ImageViewContainerPeer;
+import jetbrains.jetpad.values.Color;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class RenderBenchmark {
+  private static final int TOKENS_PER_LINE = 8;
+  private static final int FRAMES = 20;
+
+  public static void main(String[] args) {
+    int threads = Runtime.getRuntime().availableProcessors();
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      //warm up
+      measure(200, null);
+      measure(200, executor);
+
+      for (int lines : new int[] { 200, 1000, 5000 }) {
+        System.out.println(lines + " lines, 1 thread: " + measure(lines, null));
+        System.out.println(lines + " lines, " + threads + " threads: " + measure(lines, executor));
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  private static String measure(int lines, ExecutorService executor) {
+    ViewContainer container = new ViewContainer();
+    ImageViewContainerPeer peer = new ImageViewContainerPeer(executor);
+    container.setPeer(peer);
+
+    VerticalView document = new VerticalView();
+    container.contentRoot().children().add(document);
+    for (int i = 0; i < lines; i++) {
+      HorizontalView line = new HorizontalView();
+      for (int j = 0; j < TOKENS_PER_LINE; j++) {
+        TextView token = new TextView("token" + j + " ");
+        if (j % 3 == 0) {
+          token.background().set(Color.LIGHT_GRAY);
+        }
+        line.children().add(token);
+      }
+      document.children().add(line);
+    }
+
+    long pixels = 0;
+    long start = System.nanoTime();
+    for (int i = 0; i < FRAMES; i++) {
+      BufferedImage image = peer.render();
+      pixels += (long) image.getWidth() * image.getHeight();
+    }
+    long time = System.nanoTime() - start;
+    return (time / FRAMES / 1000000) + " ms per frame, " + (pixels * 1000 / time) + " Mpixel/s";
+  }
+}